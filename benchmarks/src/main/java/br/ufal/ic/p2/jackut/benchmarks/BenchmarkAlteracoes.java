@@ -0,0 +1,69 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Operações da {@code Facade} que alteram o sistema. Cada alteração é confirmada no journal (com
+ * fsync), então os tempos incluem a gravação em disco, como em uso real.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkAlteracoes {
+    private static final AtomicLong SEQUENCIA = new AtomicLong();
+
+    @Benchmark
+    public void criarUsuario(EstadoRede rede) {
+        long n = SEQUENCIA.incrementAndGet();
+        rede.facade.criarUsuario("novo" + n, "senha", "Novo " + n);
+    }
+
+    @Benchmark
+    public String abrirSessao(EstadoRede rede) {
+        return rede.facade.abrirSessao(rede.loginAleatorio(), RedeSintetica.SENHA);
+    }
+
+    @Benchmark
+    public void editarPerfil(EstadoRede rede) {
+        rede.facade.editarPerfil(rede.sessoes[rede.sessaoAleatoria()], "descricao", "Perfil " + SEQUENCIA.incrementAndGet());
+    }
+
+    /**
+     * Convida ou aceita um amigo sorteado. Quando o sorteio repete um par já convidado ou já amigo, a
+     * exceção faz parte do custo medido, como aconteceria na aplicação.
+     */
+    @Benchmark
+    public Object adicionarAmigo(EstadoRede rede) {
+        try {
+            rede.facade.adicionarAmigo(rede.sessoes[rede.sessaoAleatoria()], rede.loginAleatorio());
+            return null;
+        } catch (JackutException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Envia um recado e o lê em seguida, para que as caixas não cresçam durante a medição.
+     */
+    @Benchmark
+    public String enviarELerRecado(EstadoRede rede) {
+        int remetente = rede.sessaoAleatoria();
+        int destinatario = (remetente + 1) % rede.sessoes.length;
+        if (remetente == destinatario) {
+            return null;
+        }
+        rede.facade.enviarRecado(rede.sessoes[remetente], RedeSintetica.login(rede.donosSessoes[destinatario]), "Oi!");
+        try {
+            return rede.facade.lerRecado(rede.sessoes[destinatario]);
+        } catch (JackutException e) {
+            // Com várias threads, outra pode ter lido o recado antes
+            return null;
+        }
+    }
+}
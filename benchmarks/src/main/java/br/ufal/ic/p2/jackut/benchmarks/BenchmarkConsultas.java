@@ -0,0 +1,86 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import br.ufal.ic.p2.jackut.entities.PaginaUsuarios;
+import br.ufal.ic.p2.jackut.entities.Recomendacao;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operações da {@code Facade} que apenas consultam o sistema, sobre usuários sorteados em toda a rede.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkConsultas {
+
+    @Benchmark
+    public String getAtributoUsuario(EstadoRede rede) {
+        return rede.facade.getAtributoUsuario(rede.loginAleatorio(), "descricao");
+    }
+
+    @Benchmark
+    public boolean ehAmigo(EstadoRede rede) {
+        return rede.facade.ehAmigo(rede.loginAleatorio(), rede.loginAleatorio());
+    }
+
+    /**
+     * Consulta um amigo que certamente existe na lista, percorrida até o fim no pior caso.
+     */
+    @Benchmark
+    public boolean ehAmigoCelebridade(EstadoRede rede) {
+        return rede.facade.ehAmigo(RedeSintetica.login(0), rede.loginAleatorio());
+    }
+
+    @Benchmark
+    public String getAmigos(EstadoRede rede) {
+        return rede.facade.getAmigos(rede.loginAleatorio());
+    }
+
+    /**
+     * Lista de amigos do usuário de maior grau na distribuição {@code POTENCIA}.
+     */
+    @Benchmark
+    public String getAmigosCelebridade(EstadoRede rede) {
+        return rede.facade.getAmigos(RedeSintetica.login(ThreadLocalRandom.current().nextInt(4)));
+    }
+
+    @Benchmark
+    public PaginaUsuarios buscarUsuarios(EstadoRede rede) {
+        return rede.facade.buscarUsuarios("cidade=cidade" + ThreadLocalRandom.current().nextInt(RedeSintetica.CIDADES),
+                null, 20);
+    }
+
+    /**
+     * Interseção de uma cidade com a união de dois estilos, que juntos cobrem quase 30% da rede.
+     */
+    @Benchmark
+    public PaginaUsuarios buscarUsuariosComposta(EstadoRede rede) {
+        int estilo = ThreadLocalRandom.current().nextInt(RedeSintetica.ESTILOS - 1);
+        return rede.facade.buscarUsuarios("cidade=cidade" + ThreadLocalRandom.current().nextInt(RedeSintetica.CIDADES)
+                + " & (estilo=estilo" + estilo + " | estilo=estilo" + (estilo + 1) + ")", null, 20);
+    }
+
+    @Benchmark
+    public int contarAmigosEmComum(EstadoRede rede) {
+        return rede.facade.contarAmigosEmComum(rede.loginAleatorio(), rede.loginAleatorio());
+    }
+
+    @Benchmark
+    public List<Recomendacao> recomendarAmigos(EstadoRede rede) {
+        return rede.facade.recomendarAmigos(rede.loginAleatorio(), 10);
+    }
+
+    /**
+     * Recomendações para as celebridades da distribuição {@code POTENCIA}, cujos amigos de amigos
+     * cobrem boa parte da rede; com o cache, só a primeira chamada de cada uma calcula o ranking.
+     */
+    @Benchmark
+    public List<Recomendacao> recomendarAmigosCelebridade(EstadoRede rede) {
+        return rede.facade.recomendarAmigos(RedeSintetica.login(ThreadLocalRandom.current().nextInt(4)), 10);
+    }
+}
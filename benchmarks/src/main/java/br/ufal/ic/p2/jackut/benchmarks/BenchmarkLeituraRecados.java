@@ -0,0 +1,56 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leitura de uma caixa com muitos recados acumulados: um recado por chamada com {@code tryLerRecado},
+ * comparado a {@code lerRecados} em lotes. Cada invocação esvazia uma caixa com {@code acumulados}
+ * recados, enchida antes dela, fora da medição.
+ * <p>
+ * O custo não depende do tamanho da rede; {@code -p usuarios=1000 -p grauMedio=10 -p distribuicao=UNIFORME}
+ * basta.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkLeituraRecados {
+
+    @Param({"100", "1000"})
+    public int acumulados;
+
+    @Param({"256"})
+    public int lote;
+
+    @Setup(Level.Invocation)
+    public void encher(EstadoRede rede) {
+        for (int i = 0; i < acumulados; i++) {
+            rede.facade.enviarRecado(rede.sessoes[1], RedeSintetica.login(rede.donosSessoes[0]), "recado " + i);
+        }
+    }
+
+    @Benchmark
+    public int umPorUm(EstadoRede rede) {
+        int lidos = 0;
+        while (rede.facade.tryLerRecado(rede.sessoes[0]).isSucesso()) {
+            lidos++;
+        }
+        return lidos;
+    }
+
+    @Benchmark
+    public int emLotes(EstadoRede rede) {
+        int lidos = 0;
+        List<String> recados;
+        do {
+            recados = rede.facade.lerRecados(rede.sessoes[0], lote);
+            lidos += recados.size();
+        } while (recados.size() == lote);
+        return lidos;
+    }
+}
@@ -0,0 +1,86 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.persistence.EscritorSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo das métricas da {@code Facade}: as mesmas consultas, que são as operações mais rápidas e
+ * portanto as mais sensíveis à instrumentação, com as métricas ligadas (amostradas e sem amostragem)
+ * e desligadas. Cada variante roda em um fork próprio, já que a configuração é lida na carga da classe.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BenchmarkMetricas {
+
+    @State(Scope.Benchmark)
+    public static class Rede {
+        static final int USUARIOS = 10_000;
+
+        File diretorio;
+        Facade facade;
+
+        @Setup(Level.Trial)
+        public void preparar() throws IOException {
+            diretorio = Files.createTempDirectory("jackut-jmh-metricas").toFile();
+            Sistema sistema = RedeSintetica.gerar(USUARIOS, 10, RedeSintetica.Distribuicao.UNIFORME);
+            try (FileOutputStream saida = new FileOutputStream(new File(diretorio, "sistema.dat"))) {
+                EscritorSnapshot.escrever(sistema, saida);
+            }
+            facade = new Facade(diretorio);
+        }
+
+        @TearDown(Level.Trial)
+        public void encerrar() {
+            facade.encerrarSistema();
+            for (File arquivo : diretorio.listFiles()) {
+                arquivo.delete();
+            }
+            diretorio.delete();
+        }
+
+        String loginAleatorio() {
+            return RedeSintetica.login(ThreadLocalRandom.current().nextInt(USUARIOS));
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Djackut.metricas=false")
+    public boolean ehAmigoSemMetricas(Rede rede) {
+        return rede.facade.ehAmigo(rede.loginAleatorio(), rede.loginAleatorio());
+    }
+
+    @Benchmark
+    @Fork(1)
+    public boolean ehAmigoComMetricas(Rede rede) {
+        return rede.facade.ehAmigo(rede.loginAleatorio(), rede.loginAleatorio());
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Djackut.metricas.amostragem=1")
+    public boolean ehAmigoSemAmostragem(Rede rede) {
+        return rede.facade.ehAmigo(rede.loginAleatorio(), rede.loginAleatorio());
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Djackut.metricas=false")
+    public String getAtributoUsuarioSemMetricas(Rede rede) {
+        return rede.facade.getAtributoUsuario(rede.loginAleatorio(), "nome");
+    }
+
+    @Benchmark
+    @Fork(1)
+    public String getAtributoUsuarioComMetricas(Rede rede) {
+        return rede.facade.getAtributoUsuario(rede.loginAleatorio(), "nome");
+    }
+}
@@ -0,0 +1,48 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkpoint e carga completa do sistema. Cada chamada leva de milissegundos a segundos, então cada
+ * medição é uma única execução.
+ * <p>
+ * O checkpoint é incremental, então antes de cada execução de {@code saveSistema} são alterados
+ * {@link Alteracoes#alteracoes} usuários: o tempo deve acompanhar essa quantidade, e não o tamanho da rede.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchmarkPersistencia {
+
+    /**
+     * Usuários alterados entre um checkpoint e o seguinte, limitados às sessões abertas na preparação.
+     */
+    @State(Scope.Benchmark)
+    public static class Alteracoes {
+        @Param({"10", "100", "1000"})
+        public int alteracoes;
+
+        private long sequencia;
+
+        @Setup(Level.Invocation)
+        public void alterar(EstadoRede rede) {
+            for (int i = 0; i < Math.min(alteracoes, rede.sessoes.length); i++) {
+                rede.facade.editarPerfil(rede.sessoes[i], "descricao", "Perfil " + sequencia++);
+            }
+        }
+    }
+
+    @Benchmark
+    public void saveSistema(EstadoRede rede, Alteracoes alteracoes) {
+        rede.facade.saveSistema();
+    }
+
+    @Benchmark
+    public void readSistema(EstadoRede rede) {
+        rede.facade.readSistema();
+    }
+}
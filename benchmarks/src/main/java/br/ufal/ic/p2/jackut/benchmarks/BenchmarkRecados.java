@@ -0,0 +1,62 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import br.ufal.ic.p2.jackut.entities.Resultado;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.exceptions.MessageException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consulta em laço de caixas de recados vazias, o caso comum de um cliente que espera por recados:
+ * {@code lerRecado}, que lança uma exceção, comparado a {@code tryLerRecado}, que devolve um status. O
+ * benchmark {@code excecaoComPilha} mede, como referência, a criação de uma exceção com a pilha de
+ * chamadas preenchida, que era o custo pago por {@code lerRecado} a cada caixa vazia antes de a
+ * exceção se tornar uma instância única.
+ * <p>
+ * O custo não depende do tamanho da rede; {@code -p usuarios=1000 -p grauMedio=10 -p distribuicao=UNIFORME}
+ * basta.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkRecados {
+
+    /**
+     * Esvazia as caixas de recados das sessões abertas, caso a rede sintética tenha recados.
+     */
+    @Setup(Level.Iteration)
+    public void esvaziar(EstadoRede rede) {
+        for (String sessao : rede.sessoes) {
+            while (rede.facade.tryLerRecado(sessao).isSucesso()) {
+                // Descarta o recado
+            }
+        }
+    }
+
+    @Benchmark
+    public Object lerRecado(EstadoRede rede) {
+        try {
+            return rede.facade.lerRecado(rede.sessoes[rede.sessaoAleatoria()]);
+        } catch (JackutException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Resultado<String> tryLerRecado(EstadoRede rede) {
+        return rede.facade.tryLerRecado(rede.sessoes[rede.sessaoAleatoria()]);
+    }
+
+    @Benchmark
+    public Object excecaoComPilha() {
+        try {
+            throw new MessageException("Não há recados.");
+        } catch (JackutException e) {
+            return e;
+        }
+    }
+}
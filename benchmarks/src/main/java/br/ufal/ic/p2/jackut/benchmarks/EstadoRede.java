@@ -0,0 +1,99 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.persistence.EscritorSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Estado compartilhado pelos benchmarks: uma rede sintética gravada como snapshot em um diretório
+ * temporário e carregada por uma {@link Facade} própria, com journal, como em produção.
+ * <p>
+ * O tamanho da rede é parametrizado. Os valores padrão cabem em um heap de 4 GB; redes maiores podem
+ * ser pedidas na linha de comando, por exemplo {@code -p usuarios=10000000 -jvmArgsAppend -Xmx24g}.
+ */
+@State(Scope.Benchmark)
+public class EstadoRede {
+    /**
+     * Quantidade de usuários na rede.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int usuarios;
+
+    /**
+     * Quantidade média de amigos por usuário.
+     */
+    @Param({"10", "50"})
+    public int grauMedio;
+
+    /**
+     * Forma da distribuição dos graus.
+     */
+    @Param({"UNIFORME", "POTENCIA"})
+    public RedeSintetica.Distribuicao distribuicao;
+
+    /**
+     * Quantidade de sessões abertas antes da medição, para as operações que exigem um usuário logado.
+     */
+    static final int SESSOES = 1024;
+
+    File diretorio;
+    Facade facade;
+    String[] sessoes;
+    int[] donosSessoes;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("jackut-jmh").toFile();
+        Sistema sistema = RedeSintetica.gerar(usuarios, grauMedio, distribuicao);
+        try (FileOutputStream saida = new FileOutputStream(new File(diretorio, "sistema.dat"))) {
+            EscritorSnapshot.escrever(sistema, saida);
+        }
+        sistema = null;
+
+        facade = new Facade(diretorio);
+        int quantidade = Math.min(SESSOES, usuarios);
+        sessoes = new String[quantidade];
+        donosSessoes = new int[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            donosSessoes[i] = (int) ((long) i * usuarios / quantidade);
+            sessoes[i] = facade.abrirSessao(RedeSintetica.login(donosSessoes[i]), RedeSintetica.SENHA);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        facade.encerrarSistema();
+        File[] arquivos = diretorio.listFiles();
+        if (arquivos != null) {
+            for (File arquivo : arquivos) {
+                arquivo.delete();
+            }
+        }
+        diretorio.delete();
+    }
+
+    /**
+     * Sorteia o login de um usuário qualquer da rede.
+     *
+     * @return O login sorteado.
+     */
+    String loginAleatorio() {
+        return RedeSintetica.login(ThreadLocalRandom.current().nextInt(usuarios));
+    }
+
+    /**
+     * Sorteia uma das sessões abertas na preparação.
+     *
+     * @return A posição da sessão em {@link #sessoes}.
+     */
+    int sessaoAleatoria() {
+        return ThreadLocalRandom.current().nextInt(sessoes.length);
+    }
+}
@@ -0,0 +1,29 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ponto de entrada do {@code benchmarks.jar}. Aceita as mesmas opções do JMH e sempre ativa o
+ * profiler de GC, que reporta a alocação por operação e a quantidade de coletas.
+ * <p>
+ * Exemplos:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar BenchmarkConsultas -p usuarios=1000
+ * java -jar benchmarks/target/benchmarks.jar -p usuarios=10000000 -p grauMedio=10 -jvmArgsAppend -Xmx24g
+ * </pre>
+ */
+public class ExecutarBenchmarks {
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions linhaDeComando = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(linhaDeComando)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,91 @@
+package br.ufal.ic.p2.jackut.benchmarks;
+
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.entities.Usuario;
+
+import java.util.SplittableRandom;
+
+/**
+ * Gera redes de amizade sintéticas para os benchmarks, montando os usuários diretamente (sem passar
+ * pelo journal), como faria a leitura de um snapshot.
+ * <p>
+ * Os usuários se chamam {@code usuario0 .. usuarioN-1}, todos com a senha {@code "senha"}. A geração
+ * usa uma semente fixa, então os mesmos parâmetros produzem sempre a mesma rede. Além da descrição,
+ * cada perfil tem uma entre {@value #CIDADES} cidades e um entre {@value #ESTILOS} estilos, para as
+ * buscas por atributos.
+ */
+public class RedeSintetica {
+    static final String SENHA = "senha";
+    static final int CIDADES = 100;
+    static final int ESTILOS = 7;
+
+    /**
+     * Forma da distribuição dos graus de amizade.
+     */
+    public enum Distribuicao {
+        /**
+         * Os amigos de cada usuário são sorteados uniformemente; todos os graus ficam próximos da média.
+         */
+        UNIFORME,
+        /**
+         * Os amigos são sorteados com viés para os primeiros ids, que viram celebridades com milhares de
+         * amigos enquanto a maioria dos usuários tem poucos (cauda longa, como em redes sociais reais).
+         */
+        POTENCIA
+    }
+
+    /**
+     * Gera uma rede com o grau médio informado.
+     *
+     * @param quantidadeUsuarios A quantidade de usuários.
+     * @param grauMedio A quantidade média de amigos por usuário.
+     * @param distribuicao A forma da distribuição dos graus.
+     * @return O sistema com os usuários e amizades gerados.
+     */
+    public static Sistema gerar(int quantidadeUsuarios, int grauMedio, Distribuicao distribuicao) {
+        SplittableRandom sorteio = new SplittableRandom(42);
+        Usuario[] usuarios = new Usuario[quantidadeUsuarios];
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            usuarios[i] = new Usuario(i, login(i), SENHA, "Usuario " + i);
+            usuarios[i].setAtributo("descricao", "Perfil do usuario " + i);
+            usuarios[i].setAtributo("cidade", "cidade" + i % CIDADES);
+            usuarios[i].setAtributo("estilo", "estilo" + i % ESTILOS);
+        }
+
+        // Cada amizade conta para os dois lados, então cada usuário inicia metade do grau médio
+        long amizades = (long) quantidadeUsuarios * grauMedio / 2;
+        for (long k = 0; k < amizades; k++) {
+            int a = (int) (k % quantidadeUsuarios);
+            int b = sortearAmigo(sorteio, quantidadeUsuarios, distribuicao);
+            if (a != b) {
+                usuarios[a].adicionarAmigo(b);
+                usuarios[b].adicionarAmigo(a);
+            }
+        }
+
+        Sistema sistema = new Sistema();
+        for (Usuario usuario : usuarios) {
+            sistema.restaurarUsuario(usuario);
+        }
+        return sistema;
+    }
+
+    /**
+     * Obtém o login do usuário gerado com o id informado.
+     *
+     * @param id O id do usuário.
+     * @return O login.
+     */
+    public static String login(int id) {
+        return "usuario" + id;
+    }
+
+    private static int sortearAmigo(SplittableRandom sorteio, int quantidadeUsuarios, Distribuicao distribuicao) {
+        if (distribuicao == Distribuicao.UNIFORME) {
+            return sorteio.nextInt(quantidadeUsuarios);
+        }
+        // Densidade proporcional a x^(-2/3): quanto menor o id, maior a chance de ser sorteado
+        double u = sorteio.nextDouble();
+        return (int) (quantidadeUsuarios * u * u * u);
+    }
+}
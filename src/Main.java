@@ -2,34 +2,37 @@ import easyaccept.EasyAccept;
 
 public class Main {
     public static void main(String[] args) {
-        String[] args2 = {"br.ufal.ic.p2.jackut.Facade",
+        // A fachada testada pode ser trocada, como em "java Main br.ufal.ic.p2.jackut.atores.AdaptadorEasyAccept"
+        String facade = args.length > 0 ? args[0] : "br.ufal.ic.p2.jackut.Facade";
+
+        String[] args2 = {facade,
                 "tests/us1_1.txt"
         };
-        String[] args3 = {"br.ufal.ic.p2.jackut.Facade",
+        String[] args3 = {facade,
         "tests/us1_2.txt"
         };
 
-        String[] args4 = {"br.ufal.ic.p2.jackut.Facade",
+        String[] args4 = {facade,
                 "tests/us2_1.txt"
         };
 
-        String[] args5 = {"br.ufal.ic.p2.jackut.Facade",
+        String[] args5 = {facade,
                 "tests/us2_2.txt"
         };
 
-        String[] args6 = {"br.ufal.ic.p2.jackut.Facade",
+        String[] args6 = {facade,
                 "tests/us3_1.txt"
         };
 
-        String[] args7 = {"br.ufal.ic.p2.jackut.Facade",
+        String[] args7 = {facade,
                 "tests/us3_2.txt"
         };
 
-        String[] args8 = {"br.ufal.ic.p2.jackut.Facade",
+        String[] args8 = {facade,
                 "tests/us4_1.txt"
         };
 
-        String[] args9 = {"br.ufal.ic.p2.jackut.Facade",
+        String[] args9 = {facade,
                 "tests/us4_2.txt"
         };
 
@@ -1,166 +1,932 @@
-package br.ufal.ic.p2.jackut;
-
-import br.ufal.ic.p2.jackut.entities.*;
-import br.ufal.ic.p2.jackut.exceptions.*;
-
-import java.io.*;
-
-/**
- * A classe Facade fornece uma interface simplificada para interagir com o sistema Jackut.
- * Implementa a interface Serializable para permitir a serialização dos objetos.
- */
-public class Facade implements Serializable {
-    private Sistema sistema;
-    private static final long serialVersionUID = 1L;
-    private static final String SISTEMA_FILE = "sistema.dat";
-
-    /**
-     * Construtor da classe Facade.
-     * Inicializa o sistema lendo os dados do arquivo "sistema.dat".
-     */
-    public Facade() {
-        this.sistema = new Sistema(); // Inicialização padrão para evitar NullPointerException
-        this.readSistema();
-    }
-
-    /**
-     * Salva o estado atual do sistema no arquivo "sistema.dat".
-     */
-    public void saveSistema() {
-        try (FileOutputStream fileOutputStream = new FileOutputStream(SISTEMA_FILE);
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
-
-            objectOutputStream.writeObject(this.sistema);
-
-        } catch (IOException e) {
-            throw new SystemSaveException("Erro ao salvar o sistema");
-        }
-    }
-
-    /**
-     * Lê o estado do sistema a partir do arquivo "sistema.dat".
-     */
-    public void readSistema() {
-        File file = new File(SISTEMA_FILE);
-        if (!file.exists()) {
-            return;
-        }
-        
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
-            sistema = (Sistema) in.readObject();
-
-        } catch (IOException | ClassNotFoundException e) {
-            throw new SystemSaveException("Erro ao ler o sistema");
-        }
-    }
-
-    /**
-     * Reseta o sistema, limpando as coleções de usuários e sessões.
-     */
-    public void zerarSistema() {
-        this.sistema.zerarSistema();
-    }
-
-    /**
-     * Obtém o valor de um atributo de um usuário.
-     *
-     * @param login O login do usuário.
-     * @param atributo O nome do atributo.
-     * @return O valor do atributo.
-     */
-    public String getAtributoUsuario(String login, String atributo) {
-        return sistema.getAtributoUsuario(login, atributo);
-    }
-
-    /**
-     * Cria um novo usuário no sistema.
-     *
-     * @param login O login do usuário.
-     * @param senha A senha do usuário.
-     * @param nome O nome do usuário.
-     */
-    public void criarUsuario(String login, String senha, String nome) {
-        sistema.criarUsuario(login, senha, nome);
-    }
-
-    /**
-     * Abre uma sessão para um usuário.
-     *
-     * @param login O login do usuário.
-     * @param senha A senha do usuário.
-     * @return O login do usuário.
-     */
-    public String abrirSessao(String login, String senha) {
-        return sistema.abrirSessao(login, senha);
-    }
-
-    /**
-     * Salva o estado atual do sistema e encerra a aplicação.
-     */
-    public void encerrarSistema() {
-        this.saveSistema();
-    }
-
-    /**
-     * Edita o perfil de um usuário.
-     *
-     * @param id O ID do usuário.
-     * @param atributo O nome do atributo a ser editado.
-     * @param valor O novo valor do atributo.
-     */
-    public void editarPerfil(String id, String atributo, String valor) {
-        sistema.editarPerfil(id, atributo, valor);
-    }
-
-    /**
-     * Verifica se dois usuários são amigos.
-     *
-     * @param login O login do usuário.
-     * @param amigo O login do amigo.
-     * @return true se os usuários são amigos, false caso contrário.
-     */
-    public boolean ehAmigo(String login, String amigo) {
-        return sistema.ehAmigo(login, amigo);
-    }
-
-    /**
-     * Adiciona um amigo para um usuário.
-     *
-     * @param login O login do usuário.
-     * @param amigo O login do amigo a ser adicionado.
-     */
-    public void adicionarAmigo(String login, String amigo) {
-        sistema.adicionarAmigo(login, amigo);
-    }
-
-    /**
-     * Obtém a lista de amigos de um usuário.
-     *
-     * @param login O login do usuário.
-     * @return Uma string contendo os logins dos amigos do usuário.
-     */
-    public String getAmigos(String login) {
-        return sistema.getAmigos(login);
-    }
-
-    /**
-     * Envia um recado para um usuário.
-     *
-     * @param id O ID do usuário que envia o recado.
-     * @param destinatario O ID do usuário que recebe o recado.
-     * @param recado O conteúdo do recado.
-     */
-    public void enviarRecado(String id, String destinatario, String recado) {
-        sistema.enviarRecado(id, destinatario, recado);
-    }
-
-    /**
-     * Lê um recado de um usuário.
-     *
-     * @param id O ID do usuário.
-     * @return O conteúdo do recado.
-     */
-    public String lerRecado(String id) {
-        return sistema.lerRecado(id);
-    }
-}
\ No newline at end of file
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.entities.*;
+import br.ufal.ic.p2.jackut.exceptions.*;
+import br.ufal.ic.p2.jackut.indice.Consulta;
+import br.ufal.ic.p2.jackut.metricas.EventoCarga;
+import br.ufal.ic.p2.jackut.metricas.EventoCheckpoint;
+import br.ufal.ic.p2.jackut.metricas.Metricas;
+import br.ufal.ic.p2.jackut.metricas.Operacao;
+import br.ufal.ic.p2.jackut.migracao.ExportadorRede;
+import br.ufal.ic.p2.jackut.migracao.FormatoMigracao;
+import br.ufal.ic.p2.jackut.migracao.ImportadorRede;
+import br.ufal.ic.p2.jackut.migracao.ResultadoImportacao;
+import br.ufal.ic.p2.jackut.persistence.ArquivosCheckpoint;
+import br.ufal.ic.p2.jackut.persistence.Journal;
+import br.ufal.ic.p2.jackut.persistence.SnapshotMapeado;
+import br.ufal.ic.p2.jackut.replicacao.PublicadorReplicacao;
+import br.ufal.ic.p2.jackut.replicacao.SeguidorReplicacao;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A classe Facade fornece uma interface simplificada para interagir com o sistema Jackut.
+ * Implementa a interface Serializable para permitir a serialização dos objetos.
+ * <p>
+ * A latência e o resultado de cada operação são registrados nas {@link Metricas}.
+ * <p>
+ * Uma Facade pode publicar o seu journal para réplicas ({@link #publicarReplicacao(int)}), e uma
+ * réplica ({@link #replica(InetSocketAddress)}) é uma Facade que só responde consultas, sobre um
+ * sistema mantido em dia com o do primário. Para ler as próprias escritas em uma réplica, o cliente
+ * obtém {@link #getUltimoLsn()} do primário depois de escrever e chama {@link #aguardarLsn(long)} na
+ * réplica antes de ler.
+ */
+public class Facade implements Serializable {
+    private volatile Sistema sistema;
+    private transient volatile Journal journal;
+    private transient volatile PublicadorReplicacao publicador;
+    private transient volatile ArquivosCheckpoint checkpoints;
+    private final transient AtomicBoolean checkpointAgendado = new AtomicBoolean();
+    private final transient SeguidorReplicacao seguidor;
+    private final File arquivoSistema;
+    private final File arquivoJournal;
+    private static final long serialVersionUID = 1L;
+    private static final String SISTEMA_FILE = "sistema.dat";
+    private static final String JOURNAL_FILE = "sistema.journal";
+    private static final long LIMITE_JOURNAL = Long.getLong("jackut.journal.limite", 16L * 1024 * 1024);
+    private static final boolean CARGA_PREGUICOSA = Boolean.getBoolean("jackut.snapshot.mapeado");
+    private static final boolean CHECKPOINT_INCREMENTAL =
+            Boolean.parseBoolean(System.getProperty("jackut.checkpoint.incremental", "true"));
+    private static final long ESPERA_REPLICA = Long.getLong("jackut.replicacao.espera", 1_000);
+    private static final int THREADS_IMPORTACAO =
+            Integer.getInteger("jackut.importacao.threads", Runtime.getRuntime().availableProcessors());
+    private static final Metricas METRICAS = Metricas.padrao();
+    private static final ExecutorService CHECKPOINTS = Executors.newSingleThreadExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "jackut-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Construtor da classe Facade.
+     * Inicializa o sistema lendo os dados do arquivo "sistema.dat" e reaplicando o journal.
+     */
+    public Facade() {
+        this(new File("."));
+    }
+
+    /**
+     * Cria uma Facade cujos arquivos "sistema.dat" e "sistema.journal" ficam no diretório informado,
+     * em vez do diretório de trabalho.
+     *
+     * @param diretorio O diretório dos arquivos do sistema.
+     */
+    public Facade(File diretorio) {
+        this.arquivoSistema = new File(diretorio, SISTEMA_FILE);
+        this.arquivoJournal = new File(diretorio, JOURNAL_FILE);
+        this.seguidor = null;
+        this.sistema = new Sistema(); // Inicialização padrão para evitar NullPointerException
+        this.readSistema();
+    }
+
+    private Facade(InetSocketAddress primario) {
+        this.arquivoSistema = null;
+        this.arquivoJournal = null;
+        this.sistema = new Sistema();
+        this.seguidor = new SeguidorReplicacao(primario, recebido -> this.sistema = recebido);
+        this.seguidor.iniciar();
+    }
+
+    /**
+     * Cria uma réplica somente leitura de outra Facade, que acompanha o journal publicado por ela.
+     * A réplica não usa arquivos: o estado inicial vem de um snapshot enviado pelo primário, e as
+     * operações que alteram o sistema lançam {@link ReadOnlyReplicaException}.
+     *
+     * @param primario O endereço de replicação do primário.
+     * @return A réplica, que começa vazia e recebe o estado do primário assim que se conectar.
+     */
+    public static Facade replica(InetSocketAddress primario) {
+        return new Facade(primario);
+    }
+
+    /**
+     * Passa a publicar o journal para réplicas, que se conectam na porta informada.
+     *
+     * @param porta A porta TCP, ou 0 para uma porta livre qualquer.
+     * @return A porta em que as réplicas devem se conectar.
+     * @throws ReadOnlyReplicaException Se esta Facade for uma réplica.
+     * @throws SystemSaveException Se a porta não puder ser aberta.
+     */
+    public synchronized int publicarReplicacao(int porta) {
+        if (this.seguidor != null) {
+            throw new ReadOnlyReplicaException();
+        }
+        if (this.publicador == null) {
+            try {
+                this.publicador = new PublicadorReplicacao(() -> this.sistema, this.journal, porta);
+            } catch (IOException e) {
+                throw new SystemSaveException("Erro ao abrir a porta de replicação");
+            }
+        }
+        return this.publicador.getPorta();
+    }
+
+    /**
+     * Executa uma operação registrando-a nas métricas. Em uma réplica, apenas consultas são aceitas.
+     */
+    private <T> T medir(Operacao operacao, Supplier<T> corpo) {
+        return METRICAS.medir(operacao, () -> {
+            verificarOperacao(operacao);
+            return corpo.get();
+        });
+    }
+
+    /**
+     * Executa uma operação sem retorno registrando-a nas métricas. Em uma réplica, apenas consultas
+     * são aceitas.
+     */
+    private void medirAcao(Operacao operacao, Runnable corpo) {
+        METRICAS.medirAcao(operacao, () -> {
+            verificarOperacao(operacao);
+            corpo.run();
+        });
+    }
+
+    private void verificarOperacao(Operacao operacao) {
+        if (this.seguidor != null && !operacao.isConsulta()) {
+            throw new ReadOnlyReplicaException();
+        }
+    }
+
+    /**
+     * Salva o estado atual do sistema (checkpoint) e descarta do journal as alterações que passaram a
+     * fazer parte dele. As operações sobre usuários só ficam bloqueadas enquanto um
+     * {@link SnapshotSistema} é aberto; a gravação acontece em seguida, com as operações em andamento,
+     * e o que é gravado corresponde exatamente ao LSN do início do checkpoint.
+     * <p>
+     * O checkpoint é incremental: só os usuários criados ou alterados desde o anterior são gravados,
+     * em um novo segmento ao lado de "sistema.dat" (veja {@link ArquivosCheckpoint}), e os segmentos
+     * acumulados são compactados em segundo plano. O sistema inteiro é gravado em "sistema.dat" no
+     * primeiro checkpoint, depois de {@link #zerarSistema()} e, no modo de carga preguiçosa, no lugar
+     * da compactação, para que os usuários não alterados desde então deixem a memória e voltem a ser
+     * lidos do novo snapshot mapeado. Com a propriedade {@code jackut.checkpoint.incremental=false},
+     * todo checkpoint grava o sistema inteiro.
+     */
+    public synchronized void saveSistema() {
+        medirAcao(Operacao.SAVE_SISTEMA, this::checkpoint);
+    }
+
+    /**
+     * Faz o checkpoint descrito em {@link #saveSistema()}, emitindo um {@link EventoCheckpoint}.
+     */
+    private void checkpoint() {
+        EventoCheckpoint evento = new EventoCheckpoint();
+        evento.begin();
+
+        Sistema atual = this.sistema;
+        boolean zerado;
+        boolean completo;
+        BitSet alterados;
+        SnapshotSistema snapshot;
+        long inicioBloqueio = System.nanoTime();
+        atual.travarTudo();
+        try {
+            zerado = atual.isZeradoDesdeCheckpoint();
+            completo = zerado || !CHECKPOINT_INCREMENTAL || this.checkpoints.exigeCompleto()
+                    || (CARGA_PREGUICOSA && this.checkpoints.precisaCompactar());
+            alterados = atual.retirarAlterados();
+            snapshot = atual.abrirSnapshot(completo ? null : alterados);
+        } finally {
+            atual.destravarTudo();
+        }
+        evento.bloqueio = System.nanoTime() - inicioBloqueio;
+
+        if (this.journal != null) {
+            // As alterações do snapshot precisam estar no journal: as de um lote cuja gravação falhou
+            // não podem se tornar duráveis pelo checkpoint
+            try {
+                this.journal.commit();
+            } catch (SystemSaveException e) {
+                snapshot.close();
+                atual.devolverAlterados(alterados, zerado);
+                throw e;
+            }
+        }
+
+        try (snapshot) {
+            evento.usuarios = atual.getQuantidadeUsuarios();
+            evento.usuariosGravados = snapshot.getQuantidade();
+            evento.incremental = !completo;
+            evento.bytes = completo ? this.gravarSnapshot(atual, snapshot) : this.checkpoints.gravarSegmento(snapshot);
+        } catch (IOException e) {
+            atual.devolverAlterados(alterados, zerado);
+            throw new SystemSaveException("Erro ao salvar o sistema");
+        }
+
+        if (this.journal != null) {
+            this.journal.truncarAte(snapshot.getUltimoLsn());
+        }
+        if (!CARGA_PREGUICOSA && this.checkpoints.precisaCompactar()) {
+            this.checkpoints.compactarEmSegundoPlano();
+        }
+
+        evento.lsn = snapshot.getUltimoLsn();
+        evento.commit();
+    }
+
+    /**
+     * Grava o sistema inteiro como a nova base "sistema.dat", substituindo os segmentos. No modo de
+     * carga preguiçosa, a nova base passa a ser a origem dos usuários não alterados durante a gravação.
+     *
+     * @return A quantidade de bytes gravados.
+     */
+    private long gravarSnapshot(Sistema atual, SnapshotSistema snapshot) throws IOException {
+        long bytes = this.checkpoints.gravarCompleto(snapshot);
+        if (CARGA_PREGUICOSA) {
+            SnapshotMapeado mapeado = SnapshotMapeado.abrir(this.arquivoSistema);
+            if (mapeado != null) {
+                atual.travarTudo();
+                try {
+                    atual.trocarOrigem(mapeado);
+                } finally {
+                    atual.destravarTudo();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Agenda um checkpoint na thread de checkpoints, se ainda não houver um agendado, para que a
+     * operação que fez o journal passar do limite não espere por ele.
+     */
+    private void agendarCheckpoint(Journal atual) {
+        if (!this.checkpointAgendado.compareAndSet(false, true)) {
+            return;
+        }
+        CHECKPOINTS.execute(() -> {
+            try {
+                if (this.journal == atual) {
+                    this.saveSistema();
+                }
+            } catch (JackutException e) {
+                // O próximo commit acima do limite agenda outro checkpoint
+            } finally {
+                this.checkpointAgendado.set(false);
+            }
+        });
+    }
+
+    /**
+     * Lê o estado do sistema a partir de "sistema.dat" e dos segmentos dos checkpoints incrementais, e
+     * reaplica as alterações registradas no journal desde o último checkpoint. Arquivos gravados no
+     * formato antigo (serialização Java) também são aceitos e passam ao formato binário no próximo
+     * checkpoint.
+     * <p>
+     * Com a propriedade {@code jackut.snapshot.mapeado=true}, o snapshot é mapeado em memória e os
+     * usuários só são decodificados quando acessados pela primeira vez; os usuários dos segmentos são
+     * mantidos em memória.
+     */
+    public synchronized void readSistema() {
+        medirAcao(Operacao.READ_SISTEMA, this::carregar);
+    }
+
+    /**
+     * Faz a carga descrita em {@link #readSistema()}, emitindo um {@link EventoCarga}.
+     */
+    private void carregar() {
+        EventoCarga evento = new EventoCarga();
+        evento.begin();
+        this.fecharJournal();
+        if (this.checkpoints != null) {
+            this.checkpoints.close();
+        }
+
+        try {
+            this.checkpoints = ArquivosCheckpoint.abrir(this.arquivoSistema);
+            if (this.checkpoints.existe()) {
+                evento.bytesSnapshot = this.checkpoints.getBytes();
+                evento.segmentos = this.checkpoints.getQuantidadeSegmentos();
+                evento.preguicosa = CARGA_PREGUICOSA;
+                sistema = this.checkpoints.carregar(CARGA_PREGUICOSA);
+            }
+        } catch (IOException e) {
+            throw new SystemSaveException("Erro ao ler o sistema");
+        }
+
+        AtomicLong reaplicados = new AtomicLong();
+        Sistema carregado = this.sistema;
+        this.journal = Journal.abrir(this.arquivoJournal, carregado.getUltimoLsn(), registro -> {
+            carregado.aplicar(registro);
+            reaplicados.incrementAndGet();
+        });
+        this.sistema.setJournal(this.journal);
+        if (this.publicador != null) {
+            this.publicador.acompanhar(this.journal);
+        }
+
+        evento.bytesJournal = this.journal.tamanho();
+        evento.registrosReaplicados = reaplicados.get();
+        evento.commit();
+    }
+
+    /**
+     * Aguarda a gravação em disco das alterações feitas pela operação atual e, se o journal
+     * tiver crescido além do limite configurado, agenda um checkpoint.
+     */
+    private void confirmar() {
+        Journal atual = this.journal;
+        if (atual == null) {
+            return;
+        }
+
+        atual.commit();
+        if (atual.tamanho() > LIMITE_JOURNAL) {
+            this.agendarCheckpoint(atual);
+        }
+    }
+
+    /**
+     * Fecha o journal atual, se houver um aberto.
+     */
+    private void fecharJournal() {
+        if (this.journal != null) {
+            this.sistema.setJournal(null);
+            this.journal.close();
+            this.journal = null;
+        }
+    }
+
+    /**
+     * Reseta o sistema, limpando as coleções de usuários e sessões.
+     */
+    public void zerarSistema() {
+        medirAcao(Operacao.ZERAR_SISTEMA, () -> {
+            this.sistema.zerarSistema();
+            this.confirmar();
+        });
+    }
+
+    /**
+     * Obtém o valor de um atributo de um usuário.
+     *
+     * @param login O login do usuário.
+     * @param atributo O nome do atributo.
+     * @return O valor do atributo.
+     */
+    public String getAtributoUsuario(String login, String atributo) {
+        return medir(Operacao.GET_ATRIBUTO_USUARIO, () -> sistema.getAtributoUsuario(login, atributo));
+    }
+
+    /**
+     * Obtém o valor de um atributo de um usuário, informando o usuário não cadastrado e o atributo não
+     * preenchido pelo status do resultado em vez de exceções.
+     *
+     * @param login O login do usuário.
+     * @param atributo O nome do atributo.
+     * @return O resultado, com o valor do atributo em caso de sucesso.
+     */
+    public Resultado<String> findAtributo(String login, String atributo) {
+        return medir(Operacao.FIND_ATRIBUTO, () -> sistema.findAtributo(login, atributo));
+    }
+
+    /**
+     * Cria um novo usuário no sistema.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @param nome O nome do usuário.
+     */
+    public void criarUsuario(String login, String senha, String nome) {
+        medirAcao(Operacao.CRIAR_USUARIO, () -> {
+            sistema.criarUsuario(login, senha, nome);
+            this.confirmar();
+        });
+    }
+
+    /**
+     * Cria vários usuários de uma vez, gravando o lote inteiro no journal com uma única confirmação.
+     *
+     * @param usuarios Os dados de cada usuário, como {@code {login, senha, nome}}.
+     * @return O resultado do lote, com as falhas de cada usuário que não pôde ser criado.
+     */
+    public ResultadoLote criarUsuarios(Stream<String[]> usuarios) {
+        return medir(Operacao.CRIAR_USUARIOS, () -> {
+            ResultadoLote resultado = sistema.criarUsuarios(usuarios.iterator());
+            this.confirmar();
+            return resultado;
+        });
+    }
+
+    /**
+     * Importa uma rede inteira de um arquivo JSONL ou CSV, escolhido pela extensão (veja
+     * {@link FormatoMigracao}): usuários, atributos, amizades, convites pendentes e recados não lidos.
+     * A leitura e a validação são divididas entre {@code jackut.importacao.threads} threads (por
+     * padrão, uma por processador), e os itens são escritos direto no sistema, sem passar um a um
+     * pelas operações e pelo journal.
+     * <p>
+     * As operações sobre usuários ficam bloqueadas durante a importação e o checkpoint que a segue,
+     * que torna a importação durável. As réplicas recebem um novo snapshot. Itens inválidos são
+     * registrados como falhas no resultado, sem interromper a importação.
+     *
+     * @param arquivo O caminho do arquivo.
+     * @return O resultado da importação.
+     * @throws SystemSaveException Se o arquivo não puder ser lido ou o checkpoint falhar.
+     */
+    public synchronized ResultadoImportacao importarRede(String arquivo) {
+        return medir(Operacao.IMPORTAR_REDE, () -> {
+            Sistema atual = this.sistema;
+            ImportadorRede importador = new ImportadorRede(atual, FormatoMigracao.doArquivo(arquivo), THREADS_IMPORTACAO);
+            atual.travarTudo();
+            try {
+                try {
+                    return importador.importar(new File(arquivo));
+                } catch (IOException e) {
+                    throw new SystemSaveException("Erro ao importar a rede");
+                } finally {
+                    // Ainda com as operações bloqueadas, para que nenhuma alteração do journal
+                    // preceda o checkpoint que contém a importação
+                    this.checkpoint();
+                    if (this.publicador != null) {
+                        this.publicador.reenviarSnapshots();
+                    }
+                }
+            } finally {
+                atual.destravarTudo();
+            }
+        });
+    }
+
+    /**
+     * Exporta a rede inteira para um arquivo JSONL ou CSV, escolhido pela extensão, que pode ser
+     * importado com {@link #importarRede(String)}. O que é exportado corresponde a um único LSN, e as
+     * operações continuam durante a exportação.
+     *
+     * @param arquivo O caminho do arquivo.
+     * @return A quantidade de usuários exportados.
+     * @throws SystemSaveException Se o arquivo não puder ser gravado.
+     */
+    public int exportarRede(String arquivo) {
+        return medir(Operacao.EXPORTAR_REDE, () -> {
+            Sistema atual = this.sistema;
+            SnapshotSistema snapshot;
+            atual.travarTudo();
+            try {
+                snapshot = atual.abrirSnapshot(null);
+            } finally {
+                atual.destravarTudo();
+            }
+            try (snapshot; OutputStream saida = new FileOutputStream(arquivo)) {
+                return ExportadorRede.exportar(snapshot, FormatoMigracao.doArquivo(arquivo), saida);
+            } catch (IOException e) {
+                throw new SystemSaveException("Erro ao exportar a rede");
+            }
+        });
+    }
+
+    /**
+     * Abre uma sessão para um usuário.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @return O token da sessão.
+     */
+    public String abrirSessao(String login, String senha) {
+        return medir(Operacao.ABRIR_SESSAO, () -> sistema.abrirSessao(login, senha));
+    }
+
+    /**
+     * Abre uma sessão para um usuário, informando credenciais inválidas pelo status do resultado em
+     * vez de uma exceção.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @return O resultado, com o token da sessão em caso de sucesso.
+     */
+    public Resultado<String> tryAbrirSessao(String login, String senha) {
+        return medir(Operacao.TRY_ABRIR_SESSAO, () -> sistema.tryAbrirSessao(login, senha));
+    }
+
+    /**
+     * Salva o estado atual do sistema, fecha o journal e encerra a aplicação. A compactação dos segmentos
+     * em andamento termina antes do retorno, para que o processo possa sair sem deixar o arquivo
+     * temporário dela para trás. Em uma réplica, apenas deixa de acompanhar o primário.
+     */
+    public synchronized void encerrarSistema() {
+        METRICAS.medirAcao(Operacao.ENCERRAR_SISTEMA, () -> {
+            if (this.seguidor != null) {
+                this.seguidor.close();
+                return;
+            }
+            if (this.publicador != null) {
+                this.publicador.close();
+                this.publicador = null;
+            }
+            this.saveSistema();
+            this.fecharJournal();
+            this.checkpoints.close();
+        });
+    }
+
+    /**
+     * Edita o perfil de um usuário.
+     *
+     * @param id O token da sessão do usuário.
+     * @param atributo O nome do atributo a ser editado.
+     * @param valor O novo valor do atributo.
+     */
+    public void editarPerfil(String id, String atributo, String valor) {
+        medirAcao(Operacao.EDITAR_PERFIL, () -> {
+            sistema.editarPerfil(id, atributo, valor);
+            this.confirmar();
+        });
+    }
+
+    /**
+     * Verifica se dois usuários são amigos.
+     *
+     * @param login O login do usuário.
+     * @param amigo O login do amigo.
+     * @return true se os usuários são amigos, false caso contrário.
+     */
+    public boolean ehAmigo(String login, String amigo) {
+        return medir(Operacao.EH_AMIGO, () -> sistema.ehAmigo(login, amigo));
+    }
+
+    /**
+     * Adiciona um amigo para um usuário.
+     *
+     * @param id O token da sessão do usuário.
+     * @param amigo O login do amigo a ser adicionado.
+     */
+    public void adicionarAmigo(String id, String amigo) {
+        medirAcao(Operacao.ADICIONAR_AMIGO, () -> {
+            sistema.adicionarAmigo(id, amigo);
+            this.confirmar();
+        });
+    }
+
+    /**
+     * Obtém a lista de amigos de um usuário.
+     *
+     * @param login O login do usuário.
+     * @return Uma string contendo os logins dos amigos do usuário.
+     */
+    public String getAmigos(String login) {
+        return medir(Operacao.GET_AMIGOS, () -> sistema.getAmigos(login));
+    }
+
+    /**
+     * Obtém uma página da lista de amigos de um usuário.
+     *
+     * @param login O login do usuário.
+     * @param cursor O cursor devolvido pela página anterior, ou null para a primeira página.
+     * @param limite A quantidade máxima de amigos na página.
+     * @return A página de amigos.
+     */
+    public PaginaAmigos listarAmigos(String login, String cursor, int limite) {
+        return medir(Operacao.LISTAR_AMIGOS, () -> sistema.listarAmigos(login, cursor, limite));
+    }
+
+    /**
+     * Busca os usuários cujos atributos de perfil satisfazem uma consulta, em ordem de cadastro.
+     * A consulta combina termos {@code atributo=valor} com {@code &} (E), {@code |} (OU) e parênteses,
+     * como em {@code cidade=Maceio & (estilo=rock | estilo="musica pop")}.
+     *
+     * @param consulta A consulta.
+     * @param cursor O cursor devolvido pela página anterior, ou null para a primeira página.
+     * @param limite A quantidade máxima de usuários na página.
+     * @return A página de usuários.
+     */
+    public PaginaUsuarios buscarUsuarios(String consulta, String cursor, int limite) {
+        return medir(Operacao.BUSCAR_USUARIOS,
+                () -> sistema.buscarUsuarios(Consulta.interpretar(consulta), cursor, limite));
+    }
+
+    /**
+     * Conta os amigos em comum entre dois usuários.
+     *
+     * @param login O login de um usuário.
+     * @param outro O login do outro usuário.
+     * @return A quantidade de amigos em comum.
+     */
+    public int contarAmigosEmComum(String login, String outro) {
+        return medir(Operacao.CONTAR_AMIGOS_EM_COMUM, () -> sistema.contarAmigosEmComum(login, outro));
+    }
+
+    /**
+     * Recomenda como amigos os amigos dos amigos de um usuário, ordenados pela quantidade de amigos em
+     * comum.
+     *
+     * @param login O login do usuário.
+     * @param limite A quantidade máxima de recomendações.
+     * @return As recomendações.
+     */
+    public List<Recomendacao> recomendarAmigos(String login, int limite) {
+        return medir(Operacao.RECOMENDAR_AMIGOS, () -> sistema.recomendarAmigos(login, limite));
+    }
+
+    /**
+     * Percorre os amigos de um usuário sem montar a lista formatada.
+     *
+     * @param login O login do usuário.
+     * @param acao A ação executada com o login de cada amigo.
+     */
+    public void paraCadaAmigo(String login, Consumer<String> acao) {
+        medirAcao(Operacao.PARA_CADA_AMIGO, () -> sistema.paraCadaAmigo(login, acao));
+    }
+
+    /**
+     * Envia um recado para um usuário.
+     *
+     * @param id O token da sessão do usuário que envia o recado.
+     * @param destinatario O login do usuário que recebe o recado.
+     * @param recado O conteúdo do recado.
+     */
+    public void enviarRecado(String id, String destinatario, String recado) {
+        medirAcao(Operacao.ENVIAR_RECADO, () -> {
+            sistema.enviarRecado(id, destinatario, recado);
+            this.confirmar();
+        });
+    }
+
+    /**
+     * Envia o mesmo recado para vários destinatários, com uma única confirmação no journal.
+     *
+     * @param id O token da sessão do usuário que envia o recado.
+     * @param destinatarios Os logins dos destinatários.
+     * @param recado O conteúdo do recado.
+     * @return O resultado do lote, com as falhas de cada destinatário que não recebeu o recado.
+     */
+    public ResultadoLote enviarRecados(String id, Collection<String> destinatarios, String recado) {
+        return medir(Operacao.ENVIAR_RECADOS, () -> {
+            ResultadoLote resultado = sistema.enviarRecados(id, destinatarios, recado);
+            this.confirmar();
+            return resultado;
+        });
+    }
+
+    /**
+     * Envia o mesmo recado para todos os amigos do usuário, com uma única confirmação no journal.
+     *
+     * @param id O token da sessão do usuário que envia o recado.
+     * @param recado O conteúdo do recado.
+     * @return O resultado do lote, com as falhas de cada amigo que não recebeu o recado.
+     */
+    public ResultadoLote enviarRecadoAmigos(String id, String recado) {
+        return medir(Operacao.ENVIAR_RECADO_AMIGOS, () -> {
+            ResultadoLote resultado = sistema.enviarRecadoAmigos(id, recado);
+            this.confirmar();
+            return resultado;
+        });
+    }
+
+    /**
+     * Lê um recado de um usuário.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O conteúdo do recado.
+     */
+    public String lerRecado(String id) {
+        return medir(Operacao.LER_RECADO, () -> {
+            String recado = sistema.lerRecado(id);
+            this.confirmar();
+            return recado;
+        });
+    }
+
+    /**
+     * Lê um recado de um usuário, informando a caixa vazia e a sessão inválida pelo status do
+     * resultado em vez de exceções. É a forma indicada para consultar a caixa de recados em laço.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O resultado, com o conteúdo do recado em caso de sucesso.
+     */
+    public Resultado<String> tryLerRecado(String id) {
+        return medir(Operacao.TRY_LER_RECADO, () -> {
+            Resultado<String> recado = sistema.tryLerRecado(id);
+            if (recado.isSucesso()) {
+                this.confirmar();
+            }
+            return recado;
+        });
+    }
+
+    /**
+     * Lê de uma vez até uma quantidade de recados de um usuário, do mais antigo para o mais novo, com
+     * uma única confirmação no journal.
+     *
+     * @param id O token da sessão do usuário.
+     * @param maximo A quantidade máxima de recados.
+     * @return Os recados lidos, ou uma lista vazia se não houver recados.
+     */
+    public List<String> lerRecados(String id, int maximo) {
+        return medir(Operacao.LER_RECADOS, () -> {
+            List<String> recados = sistema.lerRecados(id, maximo);
+            if (!recados.isEmpty()) {
+                this.confirmar();
+            }
+            return recados;
+        });
+    }
+
+    /**
+     * Lê até uma quantidade de recados de um usuário, esperando a chegada de um recado por até o tempo
+     * informado se a caixa estiver vazia, em vez de o cliente consultar a caixa em laço. A entrega de um
+     * recado acorda o leitor.
+     *
+     * @param id O token da sessão do usuário.
+     * @param maximo A quantidade máxima de recados.
+     * @param esperaMillis O tempo máximo de espera, em milissegundos.
+     * @return Os recados lidos, ou uma lista vazia se nenhum chegar a tempo.
+     */
+    public List<String> aguardarRecados(String id, int maximo, long esperaMillis) {
+        return medir(Operacao.AGUARDAR_RECADOS, () -> {
+            List<String> recados;
+            try {
+                recados = sistema.aguardarRecados(id, maximo, esperaMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return List.of();
+            }
+            if (!recados.isEmpty()) {
+                this.confirmar();
+            }
+            return recados;
+        });
+    }
+
+    /**
+     * Lê até uma quantidade de recados de um usuário como {@link #aguardarRecados(String, int, long)},
+     * mas sem ocupar a thread que chama durante a espera, como o servidor faz para não prender um
+     * trabalhador a um leitor ocioso. A leitura e a confirmação da remoção são feitas no executor
+     * informado.
+     *
+     * @param id O token da sessão do usuário.
+     * @param maximo A quantidade máxima de recados.
+     * @param esperaMillis O tempo máximo de espera, em milissegundos.
+     * @param executor O executor que lê a caixa depois da chegada de um recado.
+     * @return Conclui com os recados lidos, ou com uma lista vazia se nenhum chegar a tempo.
+     */
+    public CompletableFuture<List<String>> aguardarRecados(String id, int maximo, long esperaMillis, Executor executor) {
+        return medir(Operacao.AGUARDAR_RECADOS, () -> sistema.aguardarRecados(id, maximo, esperaMillis, executor))
+                .thenApply(recados -> {
+                    if (!recados.isEmpty()) {
+                        this.confirmar();
+                    }
+                    return recados;
+                });
+    }
+
+    /**
+     * Obtém a quantidade de recados não lidos de um usuário, sem lê-los.
+     *
+     * @param id O token da sessão do usuário.
+     * @return A quantidade de recados.
+     */
+    public int contarRecados(String id) {
+        return medir(Operacao.CONTAR_RECADOS, () -> sistema.contarRecados(id));
+    }
+
+    /**
+     * Obtém o recado mais antigo de um usuário sem retirá-lo da caixa.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O resultado, com o conteúdo do recado em caso de sucesso.
+     */
+    public Resultado<String> espiarRecado(String id) {
+        return medir(Operacao.ESPIAR_RECADO, () -> sistema.espiarRecado(id));
+    }
+
+    /**
+     * Obtém o login do usuário de uma sessão. Faz parte do protocolo entre o roteador do modo
+     * particionado e as partições.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O login do usuário.
+     */
+    public String getLoginSessao(String id) {
+        return medir(Operacao.GET_LOGIN_SESSAO, () -> sistema.getLoginSessao(id));
+    }
+
+    /**
+     * Verifica se um usuário desta partição tem um convite de amizade pendente de outro usuário. Faz
+     * parte do protocolo entre o roteador do modo particionado e as partições.
+     *
+     * @param login O login do usuário desta partição.
+     * @param remetente O login de quem teria enviado o convite.
+     * @return true se o convite estiver pendente.
+     */
+    public boolean temConvite(String login, String remetente) {
+        return medir(Operacao.TEM_CONVITE, () -> sistema.temConvite(login, remetente));
+    }
+
+    /**
+     * Registra o convite de amizade de um usuário de outra partição. Faz parte do protocolo entre o
+     * roteador do modo particionado e as partições.
+     *
+     * @param login O login do usuário desta partição, que recebe o convite.
+     * @param remetente O login do usuário da outra partição.
+     */
+    public void registrarConviteRemoto(String login, String remetente) {
+        medirAcao(Operacao.REGISTRAR_CONVITE_REMOTO, () -> {
+            sistema.registrarConviteRemoto(login, remetente);
+            this.confirmar();
+        });
+    }
+
+    /**
+     * Registra, do lado desta partição, a amizade com um usuário de outra partição. Faz parte do
+     * protocolo entre o roteador do modo particionado e as partições.
+     *
+     * @param login O login do usuário desta partição.
+     * @param amigo O login do usuário da outra partição.
+     */
+    public void confirmarAmizadeRemota(String login, String amigo) {
+        medirAcao(Operacao.CONFIRMAR_AMIZADE_REMOTA, () -> {
+            sistema.confirmarAmizadeRemota(login, amigo);
+            this.confirmar();
+        });
+    }
+
+    /**
+     * Entrega um recado enviado por um usuário de outra partição. Faz parte do protocolo entre o
+     * roteador do modo particionado e as partições.
+     *
+     * @param remetente O login do usuário da outra partição.
+     * @param destinatario O login do usuário desta partição.
+     * @param recado O conteúdo do recado.
+     */
+    public void receberRecado(String remetente, String destinatario, String recado) {
+        medirAcao(Operacao.RECEBER_RECADO, () -> {
+            sistema.receberRecado(remetente, destinatario, recado);
+            this.confirmar();
+        });
+    }
+
+    /**
+     * Obtém o LSN da última alteração confirmada. No primário, é a última gravada em disco (e,
+     * portanto, publicada para as réplicas); em uma réplica, é a última aplicada.
+     *
+     * @return O LSN.
+     */
+    public long getUltimoLsn() {
+        return medir(Operacao.GET_ULTIMO_LSN, this::ultimoLsn);
+    }
+
+    /**
+     * Aguarda, por até {@code jackut.replicacao.espera} milissegundos, que esta réplica aplique a
+     * alteração com o LSN informado, obtido de {@link #getUltimoLsn()} no primário depois de uma
+     * escrita. No primário, retorna imediatamente.
+     *
+     * @param lsn O LSN da alteração.
+     * @return O LSN da última alteração aplicada; se for menor que o informado, o tempo acabou e a
+     * leitura deve ser feita no primário.
+     */
+    public long aguardarLsn(long lsn) {
+        return medir(Operacao.AGUARDAR_LSN, () -> {
+            if (this.seguidor == null) {
+                return this.ultimoLsn();
+            }
+            try {
+                return this.seguidor.aguardar(lsn, ESPERA_REPLICA);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return this.seguidor.getLsnAplicado();
+            }
+        });
+    }
+
+    /**
+     * Obtém o atraso desta réplica: há quanto tempo, no máximo, o primário estava no estado que ela
+     * reflete. No primário, é zero.
+     *
+     * @return O atraso em milissegundos, ou -1 se a réplica ainda não recebeu o estado do primário.
+     */
+    public long getAtrasoReplicacao() {
+        return medir(Operacao.GET_ATRASO_REPLICACAO,
+                () -> this.seguidor == null ? 0 : this.seguidor.getAtrasoMillis());
+    }
+
+    /**
+     * Obtém a quantidade de alterações já publicadas pelo primário e ainda não aplicadas por esta
+     * réplica. No primário, é zero.
+     *
+     * @return O atraso em alterações.
+     */
+    public long getAtrasoReplicacaoRegistros() {
+        return medir(Operacao.GET_ATRASO_REPLICACAO_REGISTROS,
+                () -> this.seguidor == null ? 0 : this.seguidor.getAtrasoRegistros());
+    }
+
+    private long ultimoLsn() {
+        if (this.seguidor != null) {
+            return this.seguidor.getLsnAplicado();
+        }
+        Journal atual = this.journal;
+        return atual != null ? atual.getUltimoDuravel() : this.sistema.getUltimoLsn();
+    }
+}
@@ -0,0 +1,113 @@
+package br.ufal.ic.p2.jackut.atores;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Expõe a {@link FacadeAssincrona} com as assinaturas síncronas da {@link Facade}, para que os scripts
+ * do EasyAccept em {@code tests/} possam ser executados sobre ela: cada método envia a operação aos
+ * atores, espera o futuro e lança a mesma exceção que a {@code Facade} lançaria.
+ * <p>
+ * Uso: {@code java Main br.ufal.ic.p2.jackut.atores.AdaptadorEasyAccept}.
+ */
+public class AdaptadorEasyAccept {
+    private final FacadeAssincrona assincrona;
+
+    /**
+     * Cria o adaptador sobre uma {@code Facade} com os arquivos no diretório de trabalho, como a
+     * {@code Facade} usada pelo EasyAccept.
+     */
+    public AdaptadorEasyAccept() {
+        this.assincrona = new FacadeAssincrona(new Facade());
+    }
+
+    /**
+     * @see Facade#zerarSistema()
+     */
+    public void zerarSistema() {
+        esperar(assincrona.zerarSistema());
+    }
+
+    /**
+     * @see Facade#encerrarSistema()
+     */
+    public void encerrarSistema() {
+        esperar(assincrona.encerrarSistema());
+    }
+
+    /**
+     * @see Facade#criarUsuario(String, String, String)
+     */
+    public void criarUsuario(String login, String senha, String nome) {
+        esperar(assincrona.criarUsuario(login, senha, nome));
+    }
+
+    /**
+     * @see Facade#abrirSessao(String, String)
+     */
+    public String abrirSessao(String login, String senha) {
+        return esperar(assincrona.abrirSessao(login, senha));
+    }
+
+    /**
+     * @see Facade#getAtributoUsuario(String, String)
+     */
+    public String getAtributoUsuario(String login, String atributo) {
+        return esperar(assincrona.getAtributoUsuario(login, atributo));
+    }
+
+    /**
+     * @see Facade#editarPerfil(String, String, String)
+     */
+    public void editarPerfil(String id, String atributo, String valor) {
+        esperar(assincrona.editarPerfil(id, atributo, valor));
+    }
+
+    /**
+     * @see Facade#ehAmigo(String, String)
+     */
+    public boolean ehAmigo(String login, String amigo) {
+        return esperar(assincrona.ehAmigo(login, amigo));
+    }
+
+    /**
+     * @see Facade#adicionarAmigo(String, String)
+     */
+    public void adicionarAmigo(String id, String amigo) {
+        esperar(assincrona.adicionarAmigo(id, amigo));
+    }
+
+    /**
+     * @see Facade#getAmigos(String)
+     */
+    public String getAmigos(String login) {
+        return esperar(assincrona.getAmigos(login));
+    }
+
+    /**
+     * @see Facade#enviarRecado(String, String, String)
+     */
+    public void enviarRecado(String id, String destinatario, String recado) {
+        esperar(assincrona.enviarRecado(id, destinatario, recado));
+    }
+
+    /**
+     * @see Facade#lerRecado(String)
+     */
+    public String lerRecado(String id) {
+        return esperar(assincrona.lerRecado(id));
+    }
+
+    private static <T> T esperar(CompletableFuture<T> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package br.ufal.ic.p2.jackut.atores;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Os atores dos usuários: cada login tem uma caixa de mensagens, cujas mensagens são executadas uma por
+ * vez, na ordem de chegada, por um executor compartilhado por todos os atores. Um ator não tem thread
+ * própria; ele ocupa uma thread do executor apenas enquanto tem mensagens, e cede a thread a outros
+ * atores a cada {@link #LOTE} mensagens.
+ * <p>
+ * Um ator existe apenas enquanto tem mensagens pendentes ou está estacionado, de modo que usuários
+ * parados não ocupam memória. As mensagens de duas caixas diferentes nunca disputam nenhuma trava, e o
+ * monitor de cada ator protege apenas a sua caixa.
+ * <p>
+ * Uma operação sobre dois usuários ({@link #enviarCoordenada}) estaciona o ator do menor login, que
+ * deixa de executar as suas mensagens, e segue como mensagem para o ator do maior login, que a executa
+ * e retoma o primeiro. Como os atores são sempre estacionados nessa ordem, uma cadeia de atores
+ * estacionados termina sempre em um ator livre, e nenhuma thread do executor fica esperando.
+ */
+class Atores {
+    private static final int LOTE = 64;
+
+    private final ConcurrentHashMap<String, Ator> atores = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    /**
+     * Cria os atores sobre um executor.
+     *
+     * @param executor O executor que executa as mensagens.
+     */
+    Atores(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Envia uma mensagem para o ator de um login.
+     *
+     * @param login O login do usuário.
+     * @param mensagem A mensagem, que não deve lançar exceções.
+     */
+    void enviar(String login, Runnable mensagem) {
+        while (true) {
+            Ator ator = this.atores.computeIfAbsent(login, Ator::new);
+            synchronized (ator) {
+                if (ator.removido) {
+                    // O ator ficou ocioso e saiu do mapa depois de obtido; o próximo é criado de novo
+                    continue;
+                }
+                ator.fila.add(mensagem);
+                if (!ator.agendado && !ator.estacionado) {
+                    ator.agendado = true;
+                    this.executor.execute(ator::processar);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Executa uma operação sobre dois usuários com os atores dos dois parados: a operação vem depois
+     * das mensagens já enviadas a cada um deles, e nenhuma das mensagens seguintes começa antes de ela
+     * terminar.
+     *
+     * @param login O login de um usuário.
+     * @param outro O login do outro usuário.
+     * @param operacao A operação, que não deve lançar exceções.
+     */
+    void enviarCoordenada(String login, String outro, Runnable operacao) {
+        if (login.equals(outro)) {
+            enviar(login, operacao);
+            return;
+        }
+        String primeiro = login.compareTo(outro) < 0 ? login : outro;
+        String segundo = primeiro == login ? outro : login;
+        enviar(primeiro, () -> {
+            Ator estacionado = this.atores.get(primeiro);
+            estacionado.estacionar();
+            enviar(segundo, () -> {
+                try {
+                    operacao.run();
+                } finally {
+                    estacionado.retomar();
+                }
+            });
+        });
+    }
+
+    /**
+     * A caixa de mensagens de um login. Todos os campos são protegidos pelo monitor do ator.
+     */
+    private final class Ator {
+        private final String login;
+        private final ArrayDeque<Runnable> fila = new ArrayDeque<>();
+        // Há uma tarefa no executor processando ou prestes a processar a caixa
+        private boolean agendado;
+        private boolean estacionado;
+        private boolean removido;
+
+        Ator(String login) {
+            this.login = login;
+        }
+
+        private void processar() {
+            for (int i = 0; i < LOTE; i++) {
+                Runnable mensagem;
+                synchronized (this) {
+                    mensagem = this.estacionado ? null : this.fila.poll();
+                    if (mensagem == null) {
+                        this.agendado = false;
+                        removerSeOcioso();
+                        return;
+                    }
+                }
+                mensagem.run();
+            }
+            Atores.this.executor.execute(this::processar);
+        }
+
+        /**
+         * Para de executar as mensagens depois da atual, até {@link #retomar()}. Deve ser chamado por
+         * uma mensagem do próprio ator.
+         */
+        private synchronized void estacionar() {
+            this.estacionado = true;
+        }
+
+        private synchronized void retomar() {
+            this.estacionado = false;
+            if (this.agendado) {
+                // A mensagem que estacionou o ator ainda não terminou; o laço dela continua
+                return;
+            }
+            if (this.fila.isEmpty()) {
+                removerSeOcioso();
+            } else {
+                this.agendado = true;
+                Atores.this.executor.execute(this::processar);
+            }
+        }
+
+        private void removerSeOcioso() {
+            if (!this.agendado && !this.estacionado && this.fila.isEmpty()) {
+                this.removido = true;
+                Atores.this.atores.remove(this.login, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package br.ufal.ic.p2.jackut.atores;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * API assíncrona sobre uma {@link Facade}: cada operação retorna imediatamente um
+ * {@link CompletableFuture}, que é completado com o resultado da operação ou com a exceção que a
+ * {@code Facade} lançaria.
+ * <p>
+ * As operações são enviadas ao ator do usuário que elas afetam (veja {@link Atores}), que as executa uma
+ * por vez, na ordem em que foram chamadas; assim, todas as alterações de um usuário são serializadas
+ * sem nenhuma trava global, e quem chama nunca espera por outro usuário. As operações com sessão vão
+ * para o ator do usuário da sessão, e as duas operações entre usuários são coordenadas por mensagens
+ * entre os atores:
+ * <ul>
+ *     <li>{@code adicionarAmigo} estaciona o ator de um dos usuários e é executada pelo ator do outro,
+ *     pois pode alterar os dois;</li>
+ *     <li>{@code enviarRecado} passa pelo ator do remetente, o que mantém a ordem dos seus recados, e é
+ *     executada pelo ator do destinatário, o único alterado.</li>
+ * </ul>
+ * O {@code Sistema} continua com as suas travas por usuário, usadas pela {@code Facade} síncrona, mas
+ * as operações que chegam pelos atores quase nunca esperam por elas. {@code zerarSistema} e
+ * {@code encerrarSistema} não passam pelos atores e não são ordenadas com as operações em andamento;
+ * quem as chama deve esperar antes os futuros das operações anteriores.
+ * <p>
+ * Os atores são executados por um grupo de {@code jackut.atores.threads} threads, ou por um executor
+ * informado, como o de threads virtuais do Java 21. Uma alteração ocupa a thread até a confirmação do
+ * journal, e as confirmações das threads que esperam juntas são agrupadas em um único fsync; por isso o
+ * padrão é de quatro threads por processador, e no mínimo 32.
+ */
+public class FacadeAssincrona {
+    private static final int THREADS =
+            Integer.getInteger("jackut.atores.threads", Math.max(32, 4 * Runtime.getRuntime().availableProcessors()));
+
+    private final Facade facade;
+    private final Executor executor;
+    // O executor criado pela própria fachada, encerrado com o sistema
+    private final ExecutorService proprio;
+    private final Atores atores;
+
+    /**
+     * Cria a API assíncrona sobre uma {@code Facade}, com o seu próprio grupo de threads.
+     *
+     * @param facade A {@code Facade} que executa as operações.
+     */
+    public FacadeAssincrona(Facade facade) {
+        this(facade, criarExecutor(), true);
+    }
+
+    /**
+     * Cria a API assíncrona sobre uma {@code Facade}, com os atores executados pelo executor informado,
+     * que não é encerrado com o sistema.
+     *
+     * @param facade A {@code Facade} que executa as operações.
+     * @param executor O executor dos atores.
+     */
+    public FacadeAssincrona(Facade facade, Executor executor) {
+        this(facade, executor, false);
+    }
+
+    private FacadeAssincrona(Facade facade, Executor executor, boolean proprio) {
+        this.facade = facade;
+        this.executor = executor;
+        this.proprio = proprio ? (ExecutorService) executor : null;
+        this.atores = new Atores(executor);
+    }
+
+    private static ExecutorService criarExecutor() {
+        AtomicInteger contador = new AtomicInteger();
+        return Executors.newFixedThreadPool(THREADS, tarefa -> {
+            Thread thread = new Thread(tarefa, "jackut-ator-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Apaga todos os dados do sistema.
+     *
+     * @return O futuro da operação.
+     */
+    public CompletableFuture<Void> zerarSistema() {
+        return CompletableFuture.runAsync(facade::zerarSistema, executor);
+    }
+
+    /**
+     * Salva o estado do sistema e fecha o journal, como {@link Facade#encerrarSistema()}. O grupo de
+     * threads próprio da fachada é encerrado em seguida.
+     *
+     * @return O futuro da operação.
+     */
+    public CompletableFuture<Void> encerrarSistema() {
+        CompletableFuture<Void> futuro = CompletableFuture.runAsync(facade::encerrarSistema, executor);
+        if (proprio != null) {
+            futuro = futuro.whenComplete((resultado, erro) -> proprio.shutdown());
+        }
+        return futuro;
+    }
+
+    /**
+     * Cria um usuário.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @param nome O nome do usuário.
+     * @return O futuro da operação.
+     */
+    public CompletableFuture<Void> criarUsuario(String login, String senha, String nome) {
+        return executar(login, () -> {
+            facade.criarUsuario(login, senha, nome);
+            return null;
+        });
+    }
+
+    /**
+     * Abre uma sessão para um usuário.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @return O futuro com o token da sessão.
+     */
+    public CompletableFuture<String> abrirSessao(String login, String senha) {
+        return executar(login, () -> facade.abrirSessao(login, senha));
+    }
+
+    /**
+     * Obtém o valor de um atributo de um usuário.
+     *
+     * @param login O login do usuário.
+     * @param atributo O nome do atributo.
+     * @return O futuro com o valor do atributo.
+     */
+    public CompletableFuture<String> getAtributoUsuario(String login, String atributo) {
+        return executar(login, () -> facade.getAtributoUsuario(login, atributo));
+    }
+
+    /**
+     * Edita o perfil do usuário de uma sessão.
+     *
+     * @param id O token da sessão do usuário.
+     * @param atributo O nome do atributo.
+     * @param valor O novo valor do atributo.
+     * @return O futuro da operação.
+     */
+    public CompletableFuture<Void> editarPerfil(String id, String atributo, String valor) {
+        return comSessao(id, login -> executar(login, () -> {
+            facade.editarPerfil(id, atributo, valor);
+            return null;
+        }));
+    }
+
+    /**
+     * Verifica se dois usuários são amigos.
+     *
+     * @param login O login do usuário.
+     * @param amigo O login do amigo.
+     * @return O futuro com true se os usuários são amigos.
+     */
+    public CompletableFuture<Boolean> ehAmigo(String login, String amigo) {
+        return executar(login, () -> facade.ehAmigo(login, amigo));
+    }
+
+    /**
+     * Adiciona um amigo para o usuário de uma sessão, com os atores dos dois usuários parados.
+     *
+     * @param id O token da sessão do usuário.
+     * @param amigo O login do amigo.
+     * @return O futuro da operação.
+     */
+    public CompletableFuture<Void> adicionarAmigo(String id, String amigo) {
+        return comSessao(id, login -> {
+            CompletableFuture<Void> futuro = new CompletableFuture<>();
+            Runnable operacao = mensagem(futuro, () -> {
+                facade.adicionarAmigo(id, amigo);
+                return null;
+            });
+            if (amigo == null) {
+                atores.enviar(login, operacao);
+            } else {
+                atores.enviarCoordenada(login, amigo, operacao);
+            }
+            return futuro;
+        });
+    }
+
+    /**
+     * Obtém a lista de amigos de um usuário.
+     *
+     * @param login O login do usuário.
+     * @return O futuro com a lista formatada dos amigos.
+     */
+    public CompletableFuture<String> getAmigos(String login) {
+        return executar(login, () -> facade.getAmigos(login));
+    }
+
+    /**
+     * Envia um recado do usuário de uma sessão para outro usuário.
+     *
+     * @param id O token da sessão do remetente.
+     * @param destinatario O login do destinatário.
+     * @param recado O conteúdo do recado.
+     * @return O futuro da operação.
+     */
+    public CompletableFuture<Void> enviarRecado(String id, String destinatario, String recado) {
+        return comSessao(id, login -> {
+            CompletableFuture<Void> futuro = new CompletableFuture<>();
+            Runnable entrega = mensagem(futuro, () -> {
+                facade.enviarRecado(id, destinatario, recado);
+                return null;
+            });
+            if (destinatario == null || destinatario.equals(login)) {
+                atores.enviar(login, entrega);
+            } else {
+                atores.enviar(login, () -> atores.enviar(destinatario, entrega));
+            }
+            return futuro;
+        });
+    }
+
+    /**
+     * Lê o próximo recado do usuário de uma sessão.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O futuro com o recado.
+     */
+    public CompletableFuture<String> lerRecado(String id) {
+        return comSessao(id, login -> executar(login, () -> facade.lerRecado(id)));
+    }
+
+    /**
+     * Lê até {@code maximo} recados do usuário de uma sessão.
+     *
+     * @param id O token da sessão do usuário.
+     * @param maximo A quantidade máxima de recados.
+     * @return O futuro com os recados lidos, na ordem de chegada.
+     */
+    public CompletableFuture<List<String>> lerRecados(String id, int maximo) {
+        return comSessao(id, login -> executar(login, () -> facade.lerRecados(id, maximo)));
+    }
+
+    /**
+     * Executa uma operação no ator de um usuário. Sem login, não há usuário a proteger, e a operação,
+     * que vai falhar na validação da {@code Facade}, é executada diretamente no executor.
+     */
+    private <T> CompletableFuture<T> executar(String login, Supplier<T> operacao) {
+        CompletableFuture<T> futuro = new CompletableFuture<>();
+        Runnable mensagem = mensagem(futuro, operacao);
+        if (login == null) {
+            executor.execute(mensagem);
+        } else {
+            atores.enviar(login, mensagem);
+        }
+        return futuro;
+    }
+
+    /**
+     * Resolve a sessão na thread de quem chama e segue com o login do usuário dela. Uma sessão inválida
+     * falha o futuro com a mesma exceção da {@code Facade}.
+     */
+    private <T> CompletableFuture<T> comSessao(String id, Function<String, CompletableFuture<T>> operacao) {
+        String login;
+        try {
+            login = facade.getLoginSessao(id);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return operacao.apply(login);
+    }
+
+    private static <T> Runnable mensagem(CompletableFuture<T> futuro, Supplier<T> operacao) {
+        return () -> {
+            try {
+                futuro.complete(operacao.get());
+            } catch (RuntimeException e) {
+                futuro.completeExceptionally(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,240 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Atributos de perfil de um usuário, armazenados de forma compacta.
+ * <p>
+ * Os nomes de atributo recebem, na primeira vez em que aparecem, uma posição fixa em um esquema
+ * compartilhado por todos os usuários, e cada usuário guarda apenas um array com os valores indexado
+ * por essa posição, em vez de um {@code HashMap} com suas entradas e chaves próprias. O esquema tem
+ * no máximo {@code jackut.atributos.slots} posições (64 por padrão); os atributos que surgem depois
+ * disso, os valores nulos e o nome nulo (aceito pelo antigo {@code HashMap}) ficam em um mapa à parte,
+ * criado apenas para os usuários que os usam.
+ * <p>
+ * O esquema é do processo, e não de cada {@code Sistema}: partições, réplicas e sistemas zerados
+ * compartilham as mesmas posições. Isso só afeta a compactação, nunca os valores, porque as posições
+ * apenas crescem, nunca são reutilizadas e não saem do processo (a serialização grava os nomes). As
+ * inclusões acontecem sob o monitor do esquema e são publicadas pelo {@code ConcurrentHashMap} e pelo
+ * array volátil de nomes.
+ * <p>
+ * Valores curtos passam por uma tabela de valores comuns, para que usuários com o mesmo estado civil
+ * ou a mesma cidade compartilhem a mesma string. A tabela tem tamanho fixo e, em caso de colisão,
+ * simplesmente guarda o valor mais recente, de modo que valores únicos não a fazem crescer. Ela também
+ * é do processo e é alterada sem as travas dos usuários, por isso suas posições são lidas e gravadas
+ * atomicamente.
+ * <p>
+ * Como o restante do usuário, não é thread-safe: o acesso é protegido pela trava do usuário. As cópias
+ * publicadas nas versões do usuário ({@link VersaoUsuario}) não são mais alteradas e são lidas sem ela.
+ */
+public final class AtributosPerfil implements Serializable {
+    private static final int MAXIMO_SLOTS = Integer.getInteger("jackut.atributos.slots", 64);
+    private static final int TAMANHO_MAXIMO_COMUM = 64;
+    private static final int MASCARA_COMUNS = (1 << 16) - 1;
+    private static final String[] SEM_VALORES = new String[0];
+    private static final Map<String, Integer> SLOTS = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<String> VALORES_COMUNS = new AtomicReferenceArray<>(MASCARA_COMUNS + 1);
+    private static volatile String[] nomes = new String[0];
+    private static final long serialVersionUID = 1L;
+
+    private transient String[] valores = SEM_VALORES;
+    private transient Map<String, String> raros;
+
+    /**
+     * Define o valor de um atributo.
+     *
+     * @param nome O nome do atributo.
+     * @param valor O valor do atributo.
+     */
+    public void definir(String nome, String valor) {
+        int slot = valor != null ? criarSlot(nome) : -1;
+        if (slot < 0) {
+            removerSlot(slotExistente(nome));
+            if (this.raros == null) {
+                this.raros = new HashMap<>(4);
+            }
+            this.raros.put(comum(nome), comum(valor));
+            return;
+        }
+        if (this.raros != null) {
+            this.raros.remove(nome);
+            if (this.raros.isEmpty()) {
+                this.raros = null;
+            }
+        }
+        if (slot >= this.valores.length) {
+            this.valores = Arrays.copyOf(this.valores, slot + 1);
+        }
+        this.valores[slot] = comum(valor);
+    }
+
+    /**
+     * Obtém o valor de um atributo.
+     *
+     * @param nome O nome do atributo.
+     * @return O valor, ou null se o atributo não estiver definido ou tiver valor nulo.
+     */
+    public String obter(String nome) {
+        int slot = slotExistente(nome);
+        if (slot >= 0 && slot < this.valores.length && this.valores[slot] != null) {
+            return this.valores[slot];
+        }
+        return this.raros != null ? this.raros.get(nome) : null;
+    }
+
+    /**
+     * Verifica se um atributo está definido.
+     *
+     * @param nome O nome do atributo.
+     * @return true se o atributo estiver definido, mesmo com valor nulo.
+     */
+    public boolean contem(String nome) {
+        int slot = slotExistente(nome);
+        if (slot >= 0 && slot < this.valores.length && this.valores[slot] != null) {
+            return true;
+        }
+        return this.raros != null && this.raros.containsKey(nome);
+    }
+
+    /**
+     * Obtém a quantidade de atributos definidos.
+     *
+     * @return A quantidade de atributos.
+     */
+    public int tamanho() {
+        int tamanho = this.raros != null ? this.raros.size() : 0;
+        for (String valor : this.valores) {
+            if (valor != null) {
+                tamanho++;
+            }
+        }
+        return tamanho;
+    }
+
+    /**
+     * Executa uma ação para cada atributo definido: primeiro os do esquema, na ordem das posições, e
+     * depois os demais.
+     *
+     * @param acao A ação, que recebe o nome e o valor do atributo.
+     */
+    public void paraCada(BiConsumer<String, String> acao) {
+        String[] esquema = nomes;
+        for (int slot = 0; slot < this.valores.length; slot++) {
+            if (this.valores[slot] != null) {
+                acao.accept(esquema[slot], this.valores[slot]);
+            }
+        }
+        if (this.raros != null) {
+            this.raros.forEach(acao);
+        }
+    }
+
+    /**
+     * Obtém uma cópia independente dos atributos.
+     *
+     * @return A cópia.
+     */
+    public AtributosPerfil copiar() {
+        AtributosPerfil copia = new AtributosPerfil();
+        copia.valores = this.valores.length == 0 ? SEM_VALORES : this.valores.clone();
+        copia.raros = this.raros != null ? new HashMap<>(this.raros) : null;
+        return copia;
+    }
+
+    private void removerSlot(int slot) {
+        if (slot >= 0 && slot < this.valores.length) {
+            this.valores[slot] = null;
+        }
+    }
+
+    private static int slotExistente(String nome) {
+        if (nome == null) {
+            return -1;
+        }
+        Integer slot = SLOTS.get(nome);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Obtém a posição de um nome de atributo no esquema, incluindo-o se ainda houver espaço.
+     *
+     * @return A posição, ou -1 se o esquema estiver cheio ou o nome for nulo.
+     */
+    private static int criarSlot(String nome) {
+        int slot = slotExistente(nome);
+        if (slot >= 0 || nome == null) {
+            return slot;
+        }
+        synchronized (SLOTS) {
+            slot = slotExistente(nome);
+            if (slot >= 0 || nomes.length >= MAXIMO_SLOTS) {
+                return slot;
+            }
+            String[] novos = Arrays.copyOf(nomes, nomes.length + 1);
+            novos[nomes.length] = nome;
+            // O nome é publicado antes da posição, para que quem encontrar a posição encontre o nome
+            nomes = novos;
+            SLOTS.put(nome, novos.length - 1);
+            return novos.length - 1;
+        }
+    }
+
+    /**
+     * Troca um valor curto pela instância guardada na tabela de valores comuns, se for igual, ou o
+     * guarda nela.
+     */
+    private static String comum(String valor) {
+        if (valor == null || valor.length() > TAMANHO_MAXIMO_COMUM) {
+            return valor;
+        }
+        int hash = valor.hashCode();
+        int posicao = (hash ^ (hash >>> 16)) & MASCARA_COMUNS;
+        String guardado = VALORES_COMUNS.get(posicao);
+        if (valor.equals(guardado)) {
+            return guardado;
+        }
+        // Perder a disputa por uma posição apenas deixa de compartilhar um valor
+        VALORES_COMUNS.lazySet(posicao, valor);
+        return valor;
+    }
+
+    /**
+     * Grava os atributos como pares de nome e valor, já que as posições do esquema só valem no
+     * processo atual.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(tamanho());
+        String[] esquema = nomes;
+        for (int slot = 0; slot < this.valores.length; slot++) {
+            if (this.valores[slot] != null) {
+                out.writeObject(esquema[slot]);
+                out.writeObject(this.valores[slot]);
+            }
+        }
+        if (this.raros != null) {
+            for (Map.Entry<String, String> atributo : this.raros.entrySet()) {
+                out.writeObject(atributo.getKey());
+                out.writeObject(atributo.getValue());
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.valores = SEM_VALORES;
+        int tamanho = in.readInt();
+        for (int i = 0; i < tamanho; i++) {
+            definir((String) in.readObject(), (String) in.readObject());
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto de IDs de usuários que preserva a ordem de inserção, armazenado apenas em arrays de
+ * {@code int}, sem objetos por elemento.
+ * <p>
+ * Os elementos ficam em um array na ordem em que foram inseridos. Conjuntos pequenos são consultados
+ * por busca linear; a partir de {@link #LIMITE_BUSCA_LINEAR} elementos, uma tabela de endereçamento
+ * aberto (sondagem linear, fator de carga de até 3/4), que guarda a posição de cada elemento no array,
+ * torna {@link #contem(int)} O(1). Uma cópia ordenada dos elementos, usada nas interseções da análise
+ * de amizades, é montada sob demanda e descartada na próxima alteração.
+ * <p>
+ * {@link #visao()} obtém em O(1) uma visão imutável do conjunto, que compartilha os arrays com ele e
+ * pode ser lida por outras threads sem trava. Para isso, o conjunto nunca altera as posições já
+ * ocupadas dos arrays: novos elementos são acrescentados depois do tamanho da visão, uma nova posição
+ * na tabela só ocupa uma entrada livre (e a visão ignora posições além do seu tamanho), e a remoção e
+ * a reconstrução da tabela criam arrays novos.
+ */
+public class ConjuntoIds implements Serializable {
+    private static final int LIMITE_BUSCA_LINEAR = 8;
+    private static final int[] VAZIO = new int[0];
+    private static final int LIVRE = -1;
+    private static final long serialVersionUID = 1L;
+
+    private static final ConjuntoIds VISAO_VAZIA = new ConjuntoIds(VAZIO, 0, null);
+
+    private int[] elementos = VAZIO;
+    private int tamanho;
+    private int[] tabela;
+    private transient volatile int[] ordenados;
+    private transient boolean somenteLeitura;
+    private transient ConjuntoIds visao;
+
+    /**
+     * Cria um conjunto vazio.
+     */
+    public ConjuntoIds() {
+    }
+
+    private ConjuntoIds(int[] elementos, int tamanho, int[] tabela) {
+        this.elementos = elementos;
+        this.tamanho = tamanho;
+        this.tabela = tabela;
+        this.somenteLeitura = true;
+    }
+
+    /**
+     * Obtém a quantidade de elementos do conjunto.
+     *
+     * @return O tamanho do conjunto.
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Verifica se o conjunto está vazio.
+     *
+     * @return true se não houver elementos.
+     */
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    /**
+     * Obtém o elemento em uma posição, na ordem de inserção.
+     *
+     * @param posicao A posição do elemento.
+     * @return O ID na posição informada.
+     */
+    public int get(int posicao) {
+        if (posicao >= tamanho) {
+            throw new IndexOutOfBoundsException(posicao);
+        }
+        return elementos[posicao];
+    }
+
+    /**
+     * Verifica se o conjunto contém um ID.
+     *
+     * @param id O ID procurado.
+     * @return true se o ID estiver no conjunto.
+     */
+    public boolean contem(int id) {
+        if (tabela == null) {
+            for (int i = 0; i < tamanho; i++) {
+                if (elementos[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int mascara = tabela.length - 1;
+        for (int i = espalhar(id) & mascara; tabela[i] != LIVRE; i = (i + 1) & mascara) {
+            int posicao = tabela[i];
+            if (posicao < tamanho && elementos[posicao] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adiciona um ID ao fim do conjunto.
+     *
+     * @param id O ID a ser adicionado; não pode ser negativo.
+     * @return true se o ID foi adicionado, false se ele já estava no conjunto.
+     */
+    public boolean adicionar(int id) {
+        verificarAlteravel();
+        if (contem(id)) {
+            return false;
+        }
+
+        if (tamanho == elementos.length) {
+            elementos = Arrays.copyOf(elementos, Math.max(4, tamanho + (tamanho >> 1)));
+        }
+        elementos[tamanho] = id;
+        tamanho++;
+        ordenados = null;
+        visao = null;
+
+        if (tabela != null) {
+            if (tamanho * 4 > tabela.length * 3) {
+                reconstruirTabela();
+            } else {
+                inserirNaTabela(tabela, id, tamanho - 1);
+            }
+        } else if (tamanho > LIMITE_BUSCA_LINEAR) {
+            reconstruirTabela();
+        }
+        return true;
+    }
+
+    /**
+     * Remove um ID do conjunto, preservando a ordem dos demais.
+     *
+     * @param id O ID a ser removido.
+     * @return true se o ID estava no conjunto.
+     */
+    public boolean remover(int id) {
+        verificarAlteravel();
+        for (int i = 0; i < tamanho; i++) {
+            if (elementos[i] == id) {
+                // Um array novo, porque as visões já obtidas ainda leem o atual
+                int[] restantes = new int[elementos.length];
+                System.arraycopy(elementos, 0, restantes, 0, i);
+                System.arraycopy(elementos, i + 1, restantes, i, tamanho - i - 1);
+                elementos = restantes;
+                tamanho--;
+                ordenados = null;
+                visao = null;
+                if (tabela != null) {
+                    reconstruirTabela();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtém uma visão imutável do conjunto como ele está agora, que pode ser lida sem a trava do dono
+     * do conjunto enquanto ele continua sendo alterado. A mesma visão é devolvida até a próxima
+     * alteração.
+     *
+     * @return A visão, que lança {@link UnsupportedOperationException} se for alterada.
+     */
+    public ConjuntoIds visao() {
+        if (somenteLeitura) {
+            return this;
+        }
+        ConjuntoIds resultado = visao;
+        if (resultado == null) {
+            resultado = tamanho == 0 ? VISAO_VAZIA : new ConjuntoIds(elementos, tamanho, tabela);
+            resultado.ordenados = ordenados;
+            visao = resultado;
+        }
+        return resultado;
+    }
+
+    /**
+     * Percorre os elementos na ordem de inserção.
+     *
+     * @param acao A ação executada para cada ID.
+     */
+    public void paraCada(IntConsumer acao) {
+        for (int i = 0; i < tamanho; i++) {
+            acao.accept(elementos[i]);
+        }
+    }
+
+    /**
+     * Obtém uma cópia independente do conjunto.
+     *
+     * @return Um novo conjunto com os mesmos elementos, na mesma ordem.
+     */
+    public ConjuntoIds copiar() {
+        ConjuntoIds copia = new ConjuntoIds();
+        copia.elementos = toArray();
+        copia.tamanho = tamanho;
+        copia.tabela = tabela != null ? Arrays.copyOf(tabela, tabela.length) : null;
+        return copia;
+    }
+
+    /**
+     * Obtém uma cópia dos elementos na ordem de inserção.
+     *
+     * @return Um novo array com os IDs.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elementos, tamanho);
+    }
+
+    /**
+     * Obtém os elementos em ordem crescente. O array é guardado até a próxima alteração do conjunto e
+     * nunca é modificado; por isso pode ser lido sem a trava do dono do conjunto depois de obtido.
+     *
+     * @return Os IDs em ordem crescente; não deve ser alterado.
+     */
+    public int[] ordenados() {
+        int[] resultado = ordenados;
+        if (resultado == null) {
+            resultado = toArray();
+            Arrays.sort(resultado);
+            ordenados = resultado;
+        }
+        return resultado;
+    }
+
+    private void reconstruirTabela() {
+        if (tamanho <= LIMITE_BUSCA_LINEAR) {
+            tabela = null;
+            return;
+        }
+
+        int capacidade = Integer.highestOneBit(tamanho * 2 - 1) << 1;
+        int[] nova = new int[capacidade];
+        Arrays.fill(nova, LIVRE);
+        for (int i = 0; i < tamanho; i++) {
+            inserirNaTabela(nova, elementos[i], i);
+        }
+        tabela = nova;
+    }
+
+    private static void inserirNaTabela(int[] tabela, int id, int posicao) {
+        int mascara = tabela.length - 1;
+        int i = espalhar(id) & mascara;
+        while (tabela[i] != LIVRE) {
+            i = (i + 1) & mascara;
+        }
+        tabela[i] = posicao;
+    }
+
+    private void verificarAlteravel() {
+        if (somenteLeitura) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static int espalhar(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,49 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uma página da lista de amigos de um usuário, na ordem em que as amizades foram feitas.
+ * <p>
+ * Como amizades nunca são desfeitas, a lista só cresce pelo fim, e o cursor (a posição do próximo
+ * amigo) continua válido mesmo que novas amizades sejam feitas entre uma página e outra.
+ */
+public class PaginaAmigos {
+    private final List<String> amigos;
+    private final String proximoCursor;
+    private final int total;
+
+    PaginaAmigos(List<String> amigos, String proximoCursor, int total) {
+        this.amigos = Collections.unmodifiableList(amigos);
+        this.proximoCursor = proximoCursor;
+        this.total = total;
+    }
+
+    /**
+     * Obtém os logins dos amigos desta página.
+     *
+     * @return Uma lista somente leitura com os logins.
+     */
+    public List<String> getAmigos() {
+        return amigos;
+    }
+
+    /**
+     * Obtém o cursor a ser informado para buscar a próxima página.
+     *
+     * @return O cursor, ou null se esta for a última página.
+     */
+    public String getProximoCursor() {
+        return proximoCursor;
+    }
+
+    /**
+     * Obtém a quantidade total de amigos do usuário no momento da consulta.
+     *
+     * @return O total de amigos.
+     */
+    public int getTotal() {
+        return total;
+    }
+}
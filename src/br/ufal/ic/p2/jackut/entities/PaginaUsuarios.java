@@ -0,0 +1,55 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uma página do resultado de uma busca de usuários, em ordem de cadastro.
+ * <p>
+ * O cursor é o ID a partir do qual a próxima página começa; como IDs nunca são reaproveitados, ele
+ * continua válido mesmo que perfis sejam alterados entre uma página e outra (nesse caso a próxima
+ * página reflete o estado no momento em que for buscada).
+ */
+public class PaginaUsuarios {
+    private final List<String> usuarios;
+    private final String proximoCursor;
+    private final int total;
+
+    PaginaUsuarios(List<String> usuarios, String proximoCursor, int total) {
+        this.usuarios = Collections.unmodifiableList(usuarios);
+        this.proximoCursor = proximoCursor;
+        this.total = total;
+    }
+
+    /**
+     * Obtém os logins dos usuários desta página.
+     *
+     * @return Uma lista somente leitura com os logins.
+     */
+    public List<String> getUsuarios() {
+        return usuarios;
+    }
+
+    /**
+     * Obtém o cursor a ser informado para buscar a próxima página.
+     *
+     * @return O cursor, ou null se esta for a última página.
+     */
+    public String getProximoCursor() {
+        return proximoCursor;
+    }
+
+    /**
+     * Obtém a quantidade total de usuários que satisfazem a consulta no momento da busca.
+     *
+     * @return O total de usuários encontrados.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "{" + String.join(",", usuarios) + "}";
+    }
+}
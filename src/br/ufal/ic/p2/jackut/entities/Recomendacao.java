@@ -0,0 +1,38 @@
+package br.ufal.ic.p2.jackut.entities;
+
+/**
+ * Um usuário recomendado como amigo, com a quantidade de amigos que ele tem em comum com o usuário
+ * que recebeu a recomendação.
+ */
+public class Recomendacao {
+    private final String login;
+    private final int amigosEmComum;
+
+    Recomendacao(String login, int amigosEmComum) {
+        this.login = login;
+        this.amigosEmComum = amigosEmComum;
+    }
+
+    /**
+     * Obtém o login do usuário recomendado.
+     *
+     * @return O login.
+     */
+    public String getLogin() {
+        return login;
+    }
+
+    /**
+     * Obtém a quantidade de amigos em comum.
+     *
+     * @return A quantidade de amigos em comum.
+     */
+    public int getAmigosEmComum() {
+        return amigosEmComum;
+    }
+
+    @Override
+    public String toString() {
+        return login + " (" + amigosEmComum + ")";
+    }
+}
@@ -0,0 +1,127 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import br.ufal.ic.p2.jackut.exceptions.AuthenticationException;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.exceptions.MessageException;
+import br.ufal.ic.p2.jackut.exceptions.ProfileAttributeException;
+import br.ufal.ic.p2.jackut.exceptions.UserNotFoundException;
+
+/**
+ * Resultado de uma operação que informa as falhas frequentes, como uma caixa de recados vazia, com um
+ * status em vez de lançar uma exceção. Cada status de falha tem uma única instância, de modo que
+ * clientes que consultam a caixa de recados em laço não alocam nada enquanto ela está vazia.
+ *
+ * @param <T> O tipo do valor obtido em caso de sucesso.
+ */
+public final class Resultado<T> {
+    private static final Resultado<?>[] FALHAS = new Resultado<?>[Status.values().length];
+
+    static {
+        for (Status status : Status.values()) {
+            FALHAS[status.ordinal()] = new Resultado<>(status, null);
+        }
+    }
+
+    private final Status status;
+    private final T valor;
+
+    private Resultado(Status status, T valor) {
+        this.status = status;
+        this.valor = valor;
+    }
+
+    /**
+     * Cria um resultado de sucesso.
+     *
+     * @param valor O valor obtido.
+     * @param <T> O tipo do valor.
+     * @return O resultado.
+     */
+    static <T> Resultado<T> sucesso(T valor) {
+        return new Resultado<>(Status.OK, valor);
+    }
+
+    /**
+     * Obtém a instância única de um status de falha.
+     *
+     * @param status O status, diferente de {@link Status#OK}.
+     * @param <T> O tipo do valor que seria obtido.
+     * @return O resultado.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Resultado<T> falha(Status status) {
+        return (Resultado<T>) FALHAS[status.ordinal()];
+    }
+
+    /**
+     * Verifica se a operação teve sucesso.
+     *
+     * @return true se o status for {@link Status#OK}.
+     */
+    public boolean isSucesso() {
+        return status == Status.OK;
+    }
+
+    /**
+     * Obtém o status da operação.
+     *
+     * @return O status.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Obtém o valor obtido, ou lança a exceção que a operação equivalente da {@code Facade} lançaria.
+     *
+     * @return O valor.
+     * @throws JackutException A exceção correspondente ao status, se a operação falhou.
+     */
+    public T getValor() {
+        if (status != Status.OK) {
+            throw status.excecao;
+        }
+        return valor;
+    }
+
+    /**
+     * Obtém o valor obtido, ou um valor padrão se a operação falhou.
+     *
+     * @param padrao O valor padrão.
+     * @return O valor obtido ou o padrão.
+     */
+    public T getValorOu(T padrao) {
+        return status == Status.OK ? valor : padrao;
+    }
+
+    /**
+     * Obtém a mensagem da falha, a mesma da exceção correspondente.
+     *
+     * @return A mensagem, ou null em caso de sucesso.
+     */
+    public String getMensagem() {
+        return status.excecao != null ? status.excecao.getMessage() : null;
+    }
+
+    @Override
+    public String toString() {
+        return status == Status.OK ? String.valueOf(valor) : status + ": " + getMensagem();
+    }
+
+    /**
+     * Status de um {@link Resultado}, com a exceção lançada pela operação equivalente da {@code Facade}.
+     */
+    public enum Status {
+        OK(null),
+        USUARIO_NAO_CADASTRADO(UserNotFoundException.NAO_CADASTRADO),
+        LOGIN_INVALIDO(AuthenticationException.LOGIN_INVALIDO),
+        ATRIBUTO_NAO_PREENCHIDO(ProfileAttributeException.NAO_PREENCHIDO),
+        SEM_RECADOS(MessageException.SEM_RECADOS);
+
+        private final JackutException excecao;
+
+        Status(JackutException excecao) {
+            this.excecao = excecao;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de uma operação em lote. Um item que falha não interrompe o lote; a falha é
+ * registrada com a posição do item e a mensagem do erro, e os demais itens são processados.
+ */
+public class ResultadoLote {
+    private final List<Falha> falhas = new ArrayList<>();
+    private int sucessos;
+
+    void registrarSucesso() {
+        sucessos++;
+    }
+
+    void registrarFalha(int indice, String item, RuntimeException erro) {
+        falhas.add(new Falha(indice, item, erro.getMessage()));
+    }
+
+    /**
+     * Obtém a quantidade de itens processados com sucesso.
+     *
+     * @return A quantidade de sucessos.
+     */
+    public int getSucessos() {
+        return sucessos;
+    }
+
+    /**
+     * Obtém as falhas do lote, na ordem dos itens.
+     *
+     * @return Uma lista somente leitura com as falhas.
+     */
+    public List<Falha> getFalhas() {
+        return Collections.unmodifiableList(falhas);
+    }
+
+    @Override
+    public String toString() {
+        return sucessos + " sucessos, " + falhas.size() + " falhas";
+    }
+
+    /**
+     * Falha de um item do lote.
+     */
+    public static class Falha {
+        private final int indice;
+        private final String item;
+        private final String mensagem;
+
+        Falha(int indice, String item, String mensagem) {
+            this.indice = indice;
+            this.item = item;
+            this.mensagem = mensagem;
+        }
+
+        /**
+         * Obtém a posição do item no lote, a partir de zero.
+         *
+         * @return A posição do item.
+         */
+        public int getIndice() {
+            return indice;
+        }
+
+        /**
+         * Obtém o item que falhou, como o login do destinatário ou do usuário a ser criado.
+         *
+         * @return O item.
+         */
+        public String getItem() {
+            return item;
+        }
+
+        /**
+         * Obtém a mensagem do erro.
+         *
+         * @return A mensagem.
+         */
+        public String getMensagem() {
+            return mensagem;
+        }
+
+        @Override
+        public String toString() {
+            return indice + " (" + item + "): " + mensagem;
+        }
+    }
+}
@@ -1,236 +1,1562 @@
-package br.ufal.ic.p2.jackut.entities;
-
-import br.ufal.ic.p2.jackut.exceptions.*;
-
-import java.io.Serializable;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
-import java.util.Map;
-import java.util.Set;
-
-/**
- * A classe Sistema representa o sistema principal do Jackut.
- * Implementa a interface Serializable para permitir a serialização dos objetos.
- */
-public class Sistema implements Serializable {
-    private Map<String, Usuario> usuarios;
-    private Map<String, String> sessoes;
-    private int nextSessionId;
-    private static final long serialVersionUID = 1L;
-
-    /**
-     * Construtor da classe Sistema.
-     * Inicializa as coleções de usuários e sessões, e o ID da próxima sessão.
-     */
-    public Sistema() {
-        this.sessoes = new HashMap<>();
-        this.nextSessionId = 1;
-        this.usuarios = new HashMap<>();
-    }
-
-    /**
-     * Reseta o sistema, limpando as coleções de usuários e sessões.
-     */
-    public void zerarSistema() {
-        this.sessoes = new HashMap<>();
-        this.nextSessionId = 1;
-        this.usuarios = new HashMap<>();
-    }
-
-    /**
-     * Verifica se um usuário existe no sistema.
-     *
-     * @param login O login do usuário.
-     * @return O objeto Usuario correspondente.
-     * @throws UserNotFoundException Se o usuário não estiver cadastrado.
-     */
-    private Usuario verificarUsuarioExiste(String login) {
-        if (!this.usuarios.containsKey(login)) {
-            throw new UserNotFoundException();
-        }
-        return this.usuarios.get(login);
-    }
-
-    /**
-     * Obtém o valor de um atributo de um usuário.
-     *
-     * @param login O login do usuário.
-     * @param atributo O nome do atributo.
-     * @return O valor do atributo.
-     * @throws UserNotFoundException Se o usuário não estiver cadastrado.
-     */
-    public String getAtributoUsuario(String login, String atributo) {
-        Usuario usuario = verificarUsuarioExiste(login);
-
-        switch (atributo) {
-            case "nome":
-                return usuario.getNome();
-            case "login":
-                return usuario.getLogin();
-            default:
-                return usuario.getAtributo(atributo);
-        }
-    }
-
-    /**
-     * Cria um novo usuário no sistema.
-     *
-     * @param login O login do usuário.
-     * @param senha A senha do usuário.
-     * @param nome O nome do usuário.
-     * @throws InvalidUserDataException Se o login ou a senha forem inválidos, ou se já existir um usuário com o mesmo login.
-     */
-    public void criarUsuario(String login, String senha, String nome) {
-        if (login == null) {
-            throw new InvalidUserDataException("Login inválido.");
-        }
-
-        if (senha == null) {
-            throw new InvalidUserDataException("Senha inválida.");
-        }
-
-        if (this.usuarios.containsKey(login)) {
-            throw new InvalidUserDataException("Conta com esse nome já existe.");
-        }
-
-        Usuario usuario = new Usuario(login, senha, nome);
-        this.usuarios.put(login, usuario);
-    }
-
-    /**
-     * Abre uma sessão para um usuário.
-     *
-     * @param login O login do usuário.
-     * @param senha A senha do usuário.
-     * @return O login do usuário.
-     * @throws AuthenticationException Se o login ou a senha forem inválidos.
-     */
-    public String abrirSessao(String login, String senha) {
-        if (!this.usuarios.containsKey(login)) {
-            throw new AuthenticationException();
-        }
-
-        Usuario usuario = this.usuarios.get(login);
-
-        if (!usuario.isPasswordValid(senha)) {
-            throw new AuthenticationException();
-        }
-
-        String sessionId = String.valueOf(this.nextSessionId);
-        this.sessoes.put(sessionId, login);
-        this.nextSessionId++;
-
-        return login;
-    }
-
-    /**
-     * Edita o perfil de um usuário.
-     *
-     * @param id O ID do usuário.
-     * @param atributo O nome do atributo a ser editado.
-     * @param valor O novo valor do atributo.
-     * @throws UserNotFoundException Se o usuário não estiver cadastrado.
-     */
-    public void editarPerfil(String id, String atributo, String valor) {
-        Usuario usuario = verificarUsuarioExiste(id);
-        usuario.setAtributo(atributo, valor);
-    }
-
-    /**
-     * Verifica se dois usuários são amigos.
-     *
-     * @param login O login do usuário.
-     * @param amigo O login do amigo.
-     * @return true se os usuários são amigos, false caso contrário.
-     */
-    public boolean ehAmigo(String login, String amigo) {
-        Usuario usuario = verificarUsuarioExiste(login);
-        return usuario.getAmigos().contains(amigo);
-    }
-
-    /**
-     * Adiciona um amigo para um usuário.
-     *
-     * @param login O login do usuário.
-     * @param amigo O login do amigo a ser adicionado.
-     * @throws FriendshipException Se o usuário tentar adicionar a si mesmo, ou se o convite já existir.
-     * @throws UserNotFoundException Se o usuário ou o amigo não estiverem cadastrados.
-     */
-    public void adicionarAmigo(String login, String amigo) {
-        if (login.equals(amigo)) {
-            throw new FriendshipException("Usuário não pode adicionar a si mesmo como amigo.");
-        }
-
-        Usuario usuarioRecebeConvite = verificarUsuarioExiste(amigo);
-        Usuario usuarioEnviaConvite = verificarUsuarioExiste(login);
-
-        if (usuarioEnviaConvite.getConvitesAmizade().contains(amigo)) {
-            // Aceitar convite pendente (ambos já enviaram convites)
-            usuarioRecebeConvite.adicionarAmigo(login);
-            usuarioEnviaConvite.adicionarAmigo(amigo);
-
-            usuarioRecebeConvite.removerConviteAmizade(login);
-            usuarioEnviaConvite.removerConviteAmizade(amigo);
-            return;
-        }
-
-        if (usuarioRecebeConvite.getConvitesAmizade().contains(login)) {
-            throw new FriendshipException("Usuário já está adicionado como amigo, esperando aceitação do convite.");
-        }
-
-        if (usuarioRecebeConvite.getAmigos().contains(login)) {
-            throw new FriendshipException("Usuário já está adicionado como amigo.");
-        }
-
-        usuarioRecebeConvite.adicionarConviteAmizade(login);
-    }
-
-    /**
-     * Obtém a lista de amigos de um usuário.
-     *
-     * @param login O login do usuário.
-     * @return Uma string contendo os logins dos amigos do usuário.
-     */
-    public String getAmigos(String login) {
-        Usuario usuario = verificarUsuarioExiste(login);
-        String amigos = String.join(",", usuario.getAmigos());
-        return "{" + amigos + "}";
-    }
-
-    /**
-     * Envia um recado para um usuário.
-     *
-     * @param id O ID do usuário que envia o recado.
-     * @param destinatario O ID do usuário que recebe o recado.
-     * @param recado O conteúdo do recado.
-     * @throws MessageException Se o usuário tentar enviar um recado para si mesmo.
-     * @throws UserNotFoundException Se o usuário ou o destinatário não estiverem cadastrados.
-     */
-    public void enviarRecado(String id, String destinatario, String recado) {
-        if (id.equals(destinatario)) {
-            throw new MessageException("Usuário não pode enviar recado para si mesmo.");
-        }
-
-        Usuario enviaRecado = verificarUsuarioExiste(id);
-        Usuario recebeRecado = verificarUsuarioExiste(destinatario);
-
-        recebeRecado.adicionarRecado(recado);
-    }
-
-    /**
-     * Lê um recado de um usuário.
-     *
-     * @param id O ID do usuário.
-     * @return O conteúdo do recado.
-     * @throws MessageException Se não houver recados.
-     */
-    public String lerRecado(String id) {
-        Usuario usuario = verificarUsuarioExiste(id);
-
-        if (usuario.getRecados().isEmpty()) {
-            throw new MessageException("Não há recados.");
-        }
-
-        return usuario.getRecados().poll();
-    }
+package br.ufal.ic.p2.jackut.entities;
+
+import br.ufal.ic.p2.jackut.exceptions.*;
+import br.ufal.ic.p2.jackut.grafo.AnaliseAmizades;
+import br.ufal.ic.p2.jackut.grafo.Candidatos;
+import br.ufal.ic.p2.jackut.indice.Consulta;
+import br.ufal.ic.p2.jackut.indice.IndicePerfis;
+import br.ufal.ic.p2.jackut.persistence.Journal;
+import br.ufal.ic.p2.jackut.persistence.RegistroJournal;
+import br.ufal.ic.p2.jackut.persistence.SnapshotMapeado;
+import br.ufal.ic.p2.jackut.persistence.TipoRegistro;
+import br.ufal.ic.p2.jackut.recados.EsperaRecados;
+import br.ufal.ic.p2.jackut.sessoes.GerenciadorSessoes;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A classe Sistema representa o sistema principal do Jackut.
+ * Implementa a interface Serializable para permitir a serialização dos objetos.
+ * <p>
+ * O sistema pode ser usado por várias threads ao mesmo tempo. O mapa de usuários e o
+ * {@link GerenciadorSessoes} são concorrentes, e o estado de cada usuário só é alterado com a trava da sua listra
+ * (veja {@link TravasUsuarios}) adquirida. Cada operação que altera um usuário publica, antes de liberar a trava,
+ * uma versão imutável dele ({@link Usuario#publicar()}), e as consultas ao perfil, aos amigos e aos convites leem
+ * essa versão sem adquirir a trava. Uma consulta longa, como {@code getAmigos} de um usuário com muitos amigos,
+ * não atrasa as alterações, e uma consulta nunca espera por uma alteração em andamento; ela vê o usuário como ele
+ * estava antes ou depois da alteração, nunca no meio dela. Os recados continuam sendo lidos com a trava, porque
+ * a leitura os retira da caixa.
+ * <p>
+ * A propriedade {@code jackut.leituras.versionadas=false} faz as consultas adquirirem a trava do usuário durante
+ * toda a leitura, como antes das versões, para comparação.
+ */
+public class Sistema implements Serializable {
+    private static final int LISTRAS = 256;
+    private static final boolean LEITURAS_VERSIONADAS =
+            !"false".equals(System.getProperty("jackut.leituras.versionadas"));
+
+    private volatile Map<String, Usuario> usuarios;
+    private final AtomicLong ultimoLsn;
+    private volatile String[] loginsPorId;
+    private volatile int quantidadeIds;
+    private final transient TravasUsuarios travas;
+    private final transient GerenciadorSessoes sessoes;
+    private transient volatile Journal journal;
+    private transient volatile SnapshotMapeado origem;
+    private final transient IndicePerfis indice;
+    // Falso enquanto os usuários carregados de um snapshot mapeado ainda não foram indexados
+    private transient volatile boolean indicePronto;
+    private final transient AnaliseAmizades analise;
+    // IDs dos usuários criados ou alterados desde o último checkpoint, protegidos pelo próprio BitSet
+    private final transient BitSet alterados;
+    private transient boolean zeradoDesdeCheckpoint;
+    private final transient List<SnapshotSistema> snapshots;
+    private final transient EsperaRecados esperas;
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construtor da classe Sistema.
+     * Inicializa as coleções de usuários e o gerenciador de sessões.
+     */
+    public Sistema() {
+        this.sessoes = new GerenciadorSessoes();
+        this.usuarios = new ConcurrentHashMap<>();
+        this.ultimoLsn = new AtomicLong();
+        this.travas = new TravasUsuarios(LISTRAS);
+        this.loginsPorId = new String[16];
+        this.indice = new IndicePerfis();
+        this.indicePronto = true;
+        this.analise = new AnaliseAmizades(this::getAmigosOrdenados, () -> this.quantidadeIds);
+        this.alterados = new BitSet();
+        this.snapshots = new CopyOnWriteArrayList<>();
+        this.esperas = new EsperaRecados();
+    }
+
+    /**
+     * Reseta o sistema, limpando as coleções de usuários e sessões.
+     */
+    public void zerarSistema() {
+        travarTudo();
+        try {
+            this.sessoes.limpar();
+            this.usuarios = new ConcurrentHashMap<>();
+            this.origem = null;
+            this.indice.limpar();
+            this.indicePronto = true;
+            this.analise.limpar();
+            synchronized (this) {
+                this.loginsPorId = new String[16];
+                this.quantidadeIds = 0;
+            }
+            synchronized (this.alterados) {
+                this.alterados.clear();
+                this.zeradoDesdeCheckpoint = true;
+            }
+            for (SnapshotSistema snapshot : this.snapshots) {
+                snapshot.congelar();
+            }
+            registrar(TipoRegistro.ZERAR_SISTEMA);
+        } finally {
+            destravarTudo();
+        }
+    }
+
+    /**
+     * Bloqueia todas as operações sobre usuários até {@link #destravarTudo()}. Usado para
+     * obter um estado consistente do sistema, por exemplo durante um checkpoint.
+     */
+    public void travarTudo() {
+        this.travas.travarTodas();
+    }
+
+    /**
+     * Libera as operações bloqueadas por {@link #travarTudo()}.
+     */
+    public void destravarTudo() {
+        this.travas.destravarTodas();
+    }
+
+    /**
+     * Verifica se o sistema foi zerado desde o último checkpoint, caso em que os usuários alterados
+     * não bastam para reconstruí-lo e o próximo checkpoint precisa gravar o sistema inteiro. Deve ser
+     * chamado com {@link #travarTudo()} em vigor.
+     *
+     * @return true se o sistema foi zerado.
+     */
+    public boolean isZeradoDesdeCheckpoint() {
+        synchronized (this.alterados) {
+            return this.zeradoDesdeCheckpoint;
+        }
+    }
+
+    /**
+     * Obtém os IDs dos usuários criados ou alterados desde o último checkpoint e recomeça o
+     * acompanhamento. Deve ser chamado com {@link #travarTudo()} em vigor, para que o conjunto
+     * corresponda exatamente ao LSN do checkpoint.
+     *
+     * @return Os IDs alterados.
+     */
+    public BitSet retirarAlterados() {
+        synchronized (this.alterados) {
+            BitSet retirados = (BitSet) this.alterados.clone();
+            this.alterados.clear();
+            this.zeradoDesdeCheckpoint = false;
+            return retirados;
+        }
+    }
+
+    /**
+     * Devolve os IDs obtidos com {@link #retirarAlterados()} quando o checkpoint que os gravaria falha,
+     * para que sejam gravados no próximo.
+     *
+     * @param ids Os IDs alterados.
+     * @param zerado O valor de {@link #isZeradoDesdeCheckpoint()} antes da retirada.
+     */
+    public void devolverAlterados(BitSet ids, boolean zerado) {
+        synchronized (this.alterados) {
+            this.alterados.or(ids);
+            this.zeradoDesdeCheckpoint |= zerado;
+        }
+    }
+
+    /**
+     * Abre um snapshot do estado atual, que pode ser gravado enquanto as operações continuam (veja
+     * {@link SnapshotSistema}). Deve ser chamado com {@link #travarTudo()} em vigor, e o snapshot deve
+     * ser fechado depois de gravado.
+     *
+     * @param ids Os IDs dos usuários que o snapshot deve conter, ou null para todos.
+     * @return O snapshot.
+     */
+    public SnapshotSistema abrirSnapshot(BitSet ids) {
+        SnapshotSistema snapshot = new SnapshotSistema(this, this.travas, this.ultimoLsn.get(), this.quantidadeIds,
+                ids != null ? (BitSet) ids.clone() : null, this.loginsPorId, this.usuarios, this.origem);
+        this.snapshots.add(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Deixa de acompanhar um snapshot fechado.
+     */
+    void fecharSnapshot(SnapshotSistema snapshot) {
+        this.snapshots.remove(snapshot);
+    }
+
+    /**
+     * Marca um usuário como alterado desde o último checkpoint.
+     */
+    private void marcarAlterado(int id) {
+        synchronized (this.alterados) {
+            this.alterados.set(id);
+        }
+    }
+
+    /**
+     * Define o journal em que as alterações do sistema serão registradas.
+     *
+     * @param journal O journal, ou null para não registrar alterações.
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Obtém o LSN da última alteração aplicada ao sistema.
+     *
+     * @return O LSN da última alteração.
+     */
+    public long getUltimoLsn() {
+        return ultimoLsn.get();
+    }
+
+    /**
+     * Define o LSN da última alteração contida no estado carregado de um snapshot.
+     *
+     * @param ultimoLsn O LSN da última alteração.
+     */
+    public void setUltimoLsn(long ultimoLsn) {
+        this.ultimoLsn.set(ultimoLsn);
+    }
+
+    /**
+     * Define o snapshot mapeado de onde os usuários ainda não acessados são lidos sob demanda.
+     * Os usuários mantidos em memória são descartados, pois passam a ser lidos do novo snapshot, e o
+     * índice de perfis só é reconstruído na primeira busca.
+     *
+     * @param origem O snapshot mapeado.
+     */
+    public void setOrigem(SnapshotMapeado origem) {
+        List<String> logins = origem.getLogins();
+        synchronized (this) {
+            this.loginsPorId = logins.toArray(new String[Math.max(16, logins.size())]);
+            this.quantidadeIds = logins.size();
+        }
+        this.usuarios = new ConcurrentHashMap<>();
+        this.indicePronto = false;
+        this.indice.limpar();
+        this.analise.limpar();
+        this.origem = origem;
+        this.ultimoLsn.set(origem.getUltimoLsn());
+    }
+
+    /**
+     * Passa a ler de um snapshot mapeado recém-gravado os usuários que não foram alterados desde o
+     * início da gravação. Os demais, inclusive os criados depois, continuam em memória. Deve ser chamado
+     * com {@link #travarTudo()} em vigor, e não tem efeito se o sistema tiver sido zerado nesse meio tempo.
+     *
+     * @param origem O snapshot mapeado, gravado a partir de um {@link SnapshotSistema} deste sistema.
+     */
+    public void trocarOrigem(SnapshotMapeado origem) {
+        Map<String, Usuario> mantidos = new ConcurrentHashMap<>();
+        synchronized (this.alterados) {
+            if (this.zeradoDesdeCheckpoint) {
+                return;
+            }
+            String[] logins = this.loginsPorId;
+            for (int id = this.alterados.nextSetBit(0); id >= 0; id = this.alterados.nextSetBit(id + 1)) {
+                Usuario usuario = this.usuarios.get(logins[id]);
+                if (usuario != null) {
+                    mantidos.put(logins[id], usuario);
+                }
+            }
+        }
+        this.usuarios = mantidos;
+        this.indicePronto = false;
+        this.indice.limpar();
+        this.analise.limpar();
+        this.origem = origem;
+    }
+
+    /**
+     * Obtém todos os usuários cadastrados no sistema, em ordem de ID. No modo de carga preguiçosa,
+     * os usuários que ainda estão apenas no snapshot mapeado são decodificados durante a iteração,
+     * sem permanecerem em memória.
+     *
+     * @return Uma coleção somente leitura com os usuários.
+     */
+    public Collection<Usuario> getUsuarios() {
+        int quantidade = this.quantidadeIds;
+        return new AbstractCollection<Usuario>() {
+            @Override
+            public Iterator<Usuario> iterator() {
+                return new Iterator<Usuario>() {
+                    private int proximo;
+
+                    @Override
+                    public boolean hasNext() {
+                        return proximo < quantidade;
+                    }
+
+                    @Override
+                    public Usuario next() {
+                        if (proximo >= quantidade) {
+                            throw new NoSuchElementException();
+                        }
+                        return getUsuarioPorId(proximo++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return quantidade;
+            }
+        };
+    }
+
+    /**
+     * Obtém a quantidade de IDs de usuário atribuídos. Os IDs são densos, de 0 até esse valor.
+     *
+     * @return A quantidade de usuários cadastrados.
+     */
+    public int getQuantidadeUsuarios() {
+        return this.quantidadeIds;
+    }
+
+    /**
+     * Obtém a quantidade de sessões abertas.
+     *
+     * @return A quantidade de sessões, incluindo as expiradas que ainda não foram removidas.
+     */
+    public int getQuantidadeSessoes() {
+        return this.sessoes.quantidade();
+    }
+
+    /**
+     * Obtém um usuário pelo seu ID. No modo de carga preguiçosa, um usuário que ainda não foi
+     * acessado é decodificado do snapshot mapeado sem ser mantido em memória.
+     *
+     * @param id O ID do usuário.
+     * @return O usuário, ou null se não houver usuário com esse ID.
+     */
+    public Usuario getUsuarioPorId(int id) {
+        String login = getLoginPorId(id);
+        if (login == null) {
+            return null;
+        }
+        Usuario usuario = this.usuarios.get(login);
+        SnapshotMapeado snapshot = this.origem;
+        if (usuario == null && snapshot != null) {
+            usuario = snapshot.ler(login);
+        }
+        return usuario;
+    }
+
+    /**
+     * Adiciona ao sistema um usuário carregado de um snapshot, sem registrar a alteração no journal.
+     *
+     * @param usuario O usuário carregado.
+     */
+    public void restaurarUsuario(Usuario usuario) {
+        synchronized (this) {
+            int id = usuario.getId();
+            if (id >= this.loginsPorId.length) {
+                this.loginsPorId = Arrays.copyOf(this.loginsPorId, Math.max(id + 1, this.loginsPorId.length * 2));
+            }
+            this.loginsPorId[id] = usuario.getLogin();
+            this.quantidadeIds = Math.max(this.quantidadeIds, id + 1);
+        }
+        this.usuarios.put(usuario.getLogin(), usuario);
+        if (this.indicePronto) {
+            indexar(usuario);
+        }
+    }
+
+    /**
+     * Reaplica uma alteração lida do journal durante a recuperação do sistema.
+     *
+     * @param registro O registro a ser reaplicado.
+     */
+    public void aplicar(RegistroJournal registro) {
+        Journal atual = this.journal;
+        this.journal = null;
+        try {
+            switch (registro.getTipo()) {
+                case CRIAR_USUARIO:
+                    criarUsuario(registro.getArgumento(0), registro.getArgumento(1), registro.getArgumento(2));
+                    break;
+                case EDITAR_PERFIL:
+                    alterarPerfil(registro.getArgumento(0), registro.getArgumento(1), registro.getArgumento(2));
+                    break;
+                case ADICIONAR_AMIGO:
+                    convidarAmigo(registro.getArgumento(0), registro.getArgumento(1));
+                    break;
+                case ENVIAR_RECADO:
+                    entregarRecado(registro.getArgumento(0), registro.getArgumento(1), registro.getArgumento(2), false);
+                    break;
+                case LER_RECADO:
+                    retirarRecado(registro.getArgumento(0)).getValor();
+                    break;
+                case LER_RECADOS:
+                    retirarRecados(registro.getArgumento(0), Integer.parseInt(registro.getArgumento(1)));
+                    break;
+                case ZERAR_SISTEMA:
+                    zerarSistema();
+                    break;
+                case REGISTRAR_CONVITE_REMOTO:
+                    registrarConviteRemoto(registro.getArgumento(0), registro.getArgumento(1));
+                    break;
+                case CONFIRMAR_AMIZADE_REMOTA:
+                    confirmarAmizadeRemota(registro.getArgumento(0), registro.getArgumento(1));
+                    break;
+                case RECEBER_RECADO:
+                    receberRecado(registro.getArgumento(0), registro.getArgumento(1), registro.getArgumento(2), false);
+                    break;
+            }
+        } finally {
+            this.journal = atual;
+        }
+        this.ultimoLsn.set(registro.getLsn());
+    }
+
+    /**
+     * Registra uma alteração no journal, se houver um configurado.
+     *
+     * @param tipo O tipo da alteração.
+     * @param argumentos Os argumentos da alteração.
+     */
+    private void registrar(TipoRegistro tipo, String... argumentos) {
+        Journal atual = this.journal;
+        if (atual != null) {
+            long lsn = atual.anexar(tipo, argumentos);
+            this.ultimoLsn.accumulateAndGet(lsn, Math::max);
+        }
+    }
+
+    /**
+     * Atribui o próximo ID disponível a um novo login.
+     *
+     * @param login O login do novo usuário.
+     * @return O ID atribuído.
+     */
+    private synchronized int atribuirId(String login) {
+        int id = this.quantidadeIds;
+        if (id == this.loginsPorId.length) {
+            this.loginsPorId = Arrays.copyOf(this.loginsPorId, id * 2);
+        }
+        this.loginsPorId[id] = login;
+        this.quantidadeIds = id + 1;
+        return id;
+    }
+
+    /**
+     * Obtém o login correspondente a um ID.
+     *
+     * @param id O ID do usuário.
+     * @return O login, ou null se o ID não tiver sido atribuído.
+     */
+    private String getLoginPorId(int id) {
+        String[] logins = this.loginsPorId;
+        return id >= 0 && id < logins.length ? logins[id] : null;
+    }
+
+    /**
+     * Obtém o ID de um usuário a partir do login, sem decodificá-lo do snapshot.
+     *
+     * @param login O login do usuário.
+     * @return O ID do usuário, ou -1 se ele não estiver cadastrado.
+     */
+    private int getId(String login) {
+        if (login == null) {
+            return -1;
+        }
+        Usuario usuario = this.usuarios.get(login);
+        if (usuario != null) {
+            return usuario.getId();
+        }
+        SnapshotMapeado snapshot = this.origem;
+        return snapshot != null ? snapshot.posicao(login) : -1;
+    }
+
+    /**
+     * Obtém o login do dono de uma sessão.
+     *
+     * @param id O token da sessão.
+     * @return O login do usuário.
+     * @throws UserNotFoundException Se a sessão não existir ou tiver expirado.
+     */
+    private String resolverSessao(String id) {
+        String login = this.sessoes.resolver(id);
+        if (login == null) {
+            throw UserNotFoundException.NAO_CADASTRADO;
+        }
+        return login;
+    }
+
+    /**
+     * Verifica se um usuário existe no sistema.
+     *
+     * @param login O login do usuário.
+     * @return O objeto Usuario correspondente.
+     * @throws UserNotFoundException Se o usuário não estiver cadastrado.
+     */
+    private Usuario verificarUsuarioExiste(String login) {
+        Usuario usuario = buscarUsuario(login);
+        // Uma referência a um usuário de outra partição não é um usuário desta
+        if (usuario == null || usuario.isRemoto()) {
+            throw UserNotFoundException.NAO_CADASTRADO;
+        }
+        return usuario;
+    }
+
+    /**
+     * Busca um usuário em memória ou, no modo de carga preguiçosa, no snapshot mapeado.
+     *
+     * @param login O login do usuário.
+     * @return O usuário, ou null se ele não estiver cadastrado.
+     */
+    private Usuario buscarUsuario(String login) {
+        if (login == null) {
+            return null;
+        }
+        Usuario usuario = this.usuarios.get(login);
+        if (usuario == null && this.origem != null) {
+            usuario = this.origem.obter(login);
+        }
+        return usuario;
+    }
+
+    /**
+     * Verifica se existe um usuário com o login informado, sem decodificá-lo do snapshot.
+     *
+     * @param login O login do usuário.
+     * @return true se o usuário estiver cadastrado.
+     */
+    private boolean existeUsuario(String login) {
+        return getId(login) >= 0;
+    }
+
+    /**
+     * Mantém em memória um usuário que será alterado, o marca para o próximo checkpoint e guarda uma
+     * cópia dele nos snapshots abertos que ainda não o gravaram. No modo de carga preguiçosa, um usuário
+     * alterado deixa de poder ser descartado e relido do snapshot mapeado.
+     *
+     * @param usuario O usuário que será alterado.
+     */
+    private void fixar(Usuario usuario) {
+        marcarAlterado(usuario.getId());
+        for (SnapshotSistema snapshot : this.snapshots) {
+            snapshot.preservar(usuario);
+        }
+        if (this.origem != null && this.usuarios.putIfAbsent(usuario.getLogin(), usuario) == null) {
+            this.origem.liberar(usuario.getLogin());
+        }
+    }
+
+    /**
+     * Executa uma consulta sobre a versão publicada de um usuário, sem adquirir a trava dele. Um usuário
+     * que ainda não tem versão, porque foi carregado de um snapshot ou importado e não foi alterado
+     * desde então, tem a primeira publicada com a trava adquirida.
+     *
+     * @param login O login do usuário.
+     * @param consulta A consulta, que recebe null se o usuário não estiver cadastrado.
+     * @return O resultado da consulta.
+     */
+    private <T> T consultar(String login, Function<VersaoUsuario, T> consulta) {
+        if (!LEITURAS_VERSIONADAS) {
+            this.travas.travar(login);
+            try {
+                Usuario usuario = buscarUsuario(login);
+                return consulta.apply(usuario == null ? null : usuario.publicar());
+            } finally {
+                this.travas.destravar(login);
+            }
+        }
+
+        Usuario usuario = buscarUsuario(login);
+        if (usuario == null) {
+            return consulta.apply(null);
+        }
+        VersaoUsuario versao = usuario.getVersao();
+        if (versao == null) {
+            this.travas.travar(login);
+            try {
+                versao = usuario.publicar();
+            } finally {
+                this.travas.destravar(login);
+            }
+        }
+        return consulta.apply(versao);
+    }
+
+    /**
+     * Verifica, como {@link #verificarUsuarioExiste}, se a versão de um usuário é de um usuário
+     * cadastrado nesta partição.
+     */
+    private static VersaoUsuario verificarVersao(VersaoUsuario versao) {
+        if (versao == null || versao.isRemoto()) {
+            throw UserNotFoundException.NAO_CADASTRADO;
+        }
+        return versao;
+    }
+
+    /**
+     * Obtém o valor de um atributo de um usuário.
+     *
+     * @param login O login do usuário.
+     * @param atributo O nome do atributo.
+     * @return O valor do atributo.
+     * @throws UserNotFoundException Se o usuário não estiver cadastrado.
+     */
+    public String getAtributoUsuario(String login, String atributo) {
+        return findAtributo(login, atributo).getValor();
+    }
+
+    /**
+     * Obtém o valor de um atributo de um usuário, como {@link #getAtributoUsuario}, mas informando as
+     * falhas pelo status do resultado em vez de exceções.
+     *
+     * @param login O login do usuário.
+     * @param atributo O nome do atributo.
+     * @return O valor do atributo, ou o status {@code USUARIO_NAO_CADASTRADO} ou
+     * {@code ATRIBUTO_NAO_PREENCHIDO}.
+     */
+    public Resultado<String> findAtributo(String login, String atributo) {
+        return consultar(login, usuario -> {
+            if (usuario == null || usuario.isRemoto()) {
+                return Resultado.falha(Resultado.Status.USUARIO_NAO_CADASTRADO);
+            }
+
+            switch (atributo) {
+                case "nome":
+                    return Resultado.sucesso(usuario.getNome());
+                case "login":
+                    return Resultado.sucesso(usuario.getLogin());
+                default:
+                    if (!usuario.hasAtributo(atributo)) {
+                        return Resultado.falha(Resultado.Status.ATRIBUTO_NAO_PREENCHIDO);
+                    }
+                    return Resultado.sucesso(usuario.getAtributo(atributo));
+            }
+        });
+    }
+
+    /**
+     * Cria um novo usuário no sistema.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @param nome O nome do usuário.
+     * @throws InvalidUserDataException Se o login ou a senha forem inválidos, ou se já existir um usuário com o mesmo login.
+     */
+    public void criarUsuario(String login, String senha, String nome) {
+        if (login == null) {
+            throw new InvalidUserDataException("Login inválido.");
+        }
+
+        if (senha == null) {
+            throw new InvalidUserDataException("Senha inválida.");
+        }
+
+        this.travas.travar(login);
+        try {
+            if (existeUsuario(login)) {
+                throw new InvalidUserDataException("Conta com esse nome já existe.");
+            }
+
+            Usuario usuario = new Usuario(atribuirId(login), login, senha, nome);
+            usuario.publicar();
+            this.usuarios.put(login, usuario);
+            marcarAlterado(usuario.getId());
+            if (this.indicePronto) {
+                indexar(usuario);
+            }
+            registrar(TipoRegistro.CRIAR_USUARIO, login, senha, nome);
+        } finally {
+            this.travas.destravar(login);
+        }
+    }
+
+    /**
+     * Cadastra um usuário de uma importação em lote, sem registrar a alteração no journal. Deve ser
+     * chamado com todas as operações bloqueadas por {@link #travarTudo()}, e quem importa deve gravar
+     * um checkpoint antes de liberá-las, para que o journal continue a partir de um estado que contém
+     * a importação.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @param nome O nome do usuário.
+     * @return O usuário criado, ou null se já existir um usuário com o mesmo login.
+     * @throws InvalidUserDataException Se o login ou a senha forem inválidos.
+     */
+    public Usuario importarUsuario(String login, String senha, String nome) {
+        if (login == null) {
+            throw new InvalidUserDataException("Login inválido.");
+        }
+
+        if (senha == null) {
+            throw new InvalidUserDataException("Senha inválida.");
+        }
+
+        if (existeUsuario(login)) {
+            return null;
+        }
+
+        Usuario usuario = new Usuario(atribuirId(login), login, senha, nome);
+        this.usuarios.put(login, usuario);
+        marcarAlterado(usuario.getId());
+        if (this.indicePronto) {
+            indexar(usuario);
+        }
+        return usuario;
+    }
+
+    /**
+     * Define um atributo de um usuário importado, como {@code editarPerfil}, mas sem registrar a
+     * alteração no journal. Deve ser chamado com todas as operações bloqueadas.
+     *
+     * @param usuario O usuário, obtido de {@link #importarUsuario}.
+     * @param atributo O nome do atributo.
+     * @param valor O valor do atributo.
+     */
+    public void importarAtributo(Usuario usuario, String atributo, String valor) {
+        definirAtributo(usuario, atributo, valor);
+    }
+
+    /**
+     * Conclui uma importação em lote, descartando o que a análise de amizades guardou sobre os
+     * amigos de antes dela. Deve ser chamado com todas as operações bloqueadas.
+     */
+    public void concluirImportacao() {
+        this.analise.limpar();
+    }
+
+    /**
+     * Obtém o ID de um usuário a partir do login.
+     *
+     * @param login O login do usuário.
+     * @return O ID do usuário, ou -1 se ele não estiver cadastrado.
+     */
+    public int getIdUsuario(String login) {
+        return getId(login);
+    }
+
+    /**
+     * Cria vários usuários em uma única passada. Um usuário inválido ou já existente é registrado
+     * como falha no resultado, sem interromper a criação dos demais.
+     *
+     * @param usuarios Os dados de cada usuário, como {@code {login, senha, nome}}.
+     * @return O resultado do lote, em que cada item é o login do usuário.
+     */
+    public ResultadoLote criarUsuarios(Iterator<String[]> usuarios) {
+        ResultadoLote resultado = new ResultadoLote();
+        for (int indice = 0; usuarios.hasNext(); indice++) {
+            String[] dados = usuarios.next();
+            try {
+                criarUsuario(dados[0], dados[1], dados[2]);
+                resultado.registrarSucesso();
+            } catch (JackutException e) {
+                resultado.registrarFalha(indice, dados[0], e);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Abre uma sessão para um usuário.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @return O token da sessão, a ser informado como ID nas operações do usuário.
+     * @throws AuthenticationException Se o login ou a senha forem inválidos.
+     */
+    public String abrirSessao(String login, String senha) {
+        return tryAbrirSessao(login, senha).getValor();
+    }
+
+    /**
+     * Abre uma sessão para um usuário, como {@link #abrirSessao}, mas informando credenciais inválidas
+     * pelo status do resultado em vez de uma exceção.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @return O token da sessão, ou o status {@code LOGIN_INVALIDO}.
+     */
+    public Resultado<String> tryAbrirSessao(String login, String senha) {
+        this.travas.travar(login);
+        try {
+            Usuario usuario = buscarUsuario(login);
+
+            if (usuario == null || usuario.isRemoto() || !usuario.isPasswordValid(senha)) {
+                return Resultado.falha(Resultado.Status.LOGIN_INVALIDO);
+            }
+        } finally {
+            this.travas.destravar(login);
+        }
+
+        return Resultado.sucesso(this.sessoes.abrir(login));
+    }
+
+    /**
+     * Edita o perfil do usuário de uma sessão.
+     *
+     * @param id O token da sessão do usuário.
+     * @param atributo O nome do atributo a ser editado.
+     * @param valor O novo valor do atributo.
+     * @throws UserNotFoundException Se a sessão for inválida ou o usuário não estiver cadastrado.
+     */
+    public void editarPerfil(String id, String atributo, String valor) {
+        alterarPerfil(resolverSessao(id), atributo, valor);
+    }
+
+    private void alterarPerfil(String login, String atributo, String valor) {
+        this.travas.travar(login);
+        try {
+            Usuario usuario = verificarUsuarioExiste(login);
+            fixar(usuario);
+            definirAtributo(usuario, atributo, valor);
+            usuario.publicar();
+            registrar(TipoRegistro.EDITAR_PERFIL, login, atributo, valor);
+        } finally {
+            this.travas.destravar(login);
+        }
+    }
+
+    private void definirAtributo(Usuario usuario, String atributo, String valor) {
+        // "nome" e "login" são lidos dos campos do usuário, não dos atributos; não mudam o índice
+        if (this.indicePronto && !"nome".equals(atributo) && !"login".equals(atributo)) {
+            String anterior = usuario.hasAtributo(atributo) ? usuario.getAtributo(atributo) : null;
+            this.indice.trocar(atributo, anterior, valor, usuario.getId());
+        }
+        usuario.setAtributo(atributo, valor);
+    }
+
+    /**
+     * Verifica se dois usuários são amigos.
+     *
+     * @param login O login do usuário.
+     * @param amigo O login do amigo.
+     * @return true se os usuários são amigos, false caso contrário.
+     */
+    public boolean ehAmigo(String login, String amigo) {
+        return consultar(login, usuario -> {
+            ConjuntoIds amigos = verificarVersao(usuario).getAmigos();
+            int idAmigo = getId(amigo);
+            return idAmigo >= 0 && amigos.contem(idAmigo);
+        });
+    }
+
+    /**
+     * Adiciona um amigo para o usuário de uma sessão.
+     *
+     * @param id O token da sessão do usuário.
+     * @param amigo O login do amigo a ser adicionado.
+     * @throws FriendshipException Se o usuário tentar adicionar a si mesmo, ou se o convite já existir.
+     * @throws UserNotFoundException Se a sessão for inválida ou o usuário ou o amigo não estiverem cadastrados.
+     */
+    public void adicionarAmigo(String id, String amigo) {
+        convidarAmigo(resolverSessao(id), amigo);
+    }
+
+    private void convidarAmigo(String login, String amigo) {
+        if (login.equals(amigo)) {
+            throw new FriendshipException("Usuário não pode adicionar a si mesmo como amigo.");
+        }
+
+        this.travas.travar(login, amigo);
+        try {
+            Usuario usuarioRecebeConvite = verificarUsuarioExiste(amigo);
+            Usuario usuarioEnviaConvite = verificarUsuarioExiste(login);
+
+            int idEnvia = usuarioEnviaConvite.getId();
+            int idRecebe = usuarioRecebeConvite.getId();
+
+            if (usuarioEnviaConvite.getConvitesAmizade().contem(idRecebe)) {
+                // Aceitar convite pendente (ambos já enviaram convites)
+                fixar(usuarioRecebeConvite);
+                fixar(usuarioEnviaConvite);
+                usuarioRecebeConvite.adicionarAmigo(idEnvia);
+                usuarioEnviaConvite.adicionarAmigo(idRecebe);
+
+                usuarioRecebeConvite.removerConviteAmizade(idEnvia);
+                usuarioEnviaConvite.removerConviteAmizade(idRecebe);
+                usuarioRecebeConvite.publicar();
+                usuarioEnviaConvite.publicar();
+                this.analise.invalidar(idEnvia, idRecebe, usuarioEnviaConvite.getAmigos(), usuarioRecebeConvite.getAmigos());
+                registrar(TipoRegistro.ADICIONAR_AMIGO, login, amigo);
+                return;
+            }
+
+            if (usuarioRecebeConvite.getConvitesAmizade().contem(idEnvia)) {
+                throw new FriendshipException("Usuário já está adicionado como amigo, esperando aceitação do convite.");
+            }
+
+            if (usuarioRecebeConvite.getAmigos().contem(idEnvia)) {
+                throw new FriendshipException("Usuário já está adicionado como amigo.");
+            }
+
+            fixar(usuarioRecebeConvite);
+            usuarioRecebeConvite.adicionarConviteAmizade(idEnvia);
+            usuarioRecebeConvite.publicar();
+            registrar(TipoRegistro.ADICIONAR_AMIGO, login, amigo);
+        } finally {
+            this.travas.destravar(login, amigo);
+        }
+    }
+
+    /**
+     * Obtém a lista de amigos de um usuário. A lista formatada fica guardada na versão do usuário e só
+     * é montada de novo depois que ele fizer uma nova amizade.
+     *
+     * @param login O login do usuário.
+     * @return Uma string contendo os logins dos amigos do usuário.
+     */
+    public String getAmigos(String login) {
+        return consultar(login, versao -> {
+            VersaoUsuario usuario = verificarVersao(versao);
+            String formatados = usuario.getAmigosFormatados();
+            if (formatados == null) {
+                ConjuntoIds amigos = usuario.getAmigos();
+                StringBuilder resultado = new StringBuilder("{");
+                for (int i = 0; i < amigos.tamanho(); i++) {
+                    if (i > 0) {
+                        resultado.append(',');
+                    }
+                    resultado.append(getLoginPorId(amigos.get(i)));
+                }
+                formatados = resultado.append('}').toString();
+                usuario.setAmigosFormatados(formatados);
+            }
+            return formatados;
+        });
+    }
+
+    /**
+     * Obtém uma página da lista de amigos de um usuário.
+     *
+     * @param login O login do usuário.
+     * @param cursor O cursor devolvido pela página anterior, ou null para começar do primeiro amigo.
+     * @param limite A quantidade máxima de amigos na página.
+     * @return A página de amigos.
+     * @throws UserNotFoundException Se o usuário não estiver cadastrado.
+     * @throws IllegalArgumentException Se o cursor for inválido ou o limite não for positivo.
+     */
+    public PaginaAmigos listarAmigos(String login, String cursor, int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite inválido.");
+        }
+        int inicio = cursor == null ? 0 : lerCursor(cursor);
+
+        return consultar(login, usuario -> {
+            ConjuntoIds amigos = verificarVersao(usuario).getAmigos();
+            int total = amigos.tamanho();
+            int fim = (int) Math.min(total, (long) inicio + limite);
+            List<String> pagina = new ArrayList<>(Math.max(0, fim - inicio));
+            for (int i = inicio; i < fim; i++) {
+                pagina.add(getLoginPorId(amigos.get(i)));
+            }
+            return new PaginaAmigos(pagina, fim < total ? Integer.toString(fim) : null, total);
+        });
+    }
+
+    /**
+     * Percorre os amigos de um usuário, na ordem em que as amizades foram feitas, sem montar a lista
+     * formatada. Os amigos são os da versão do usuário obtida no início, e a ação é executada sem
+     * nenhuma trava adquirida, de modo que ela pode chamar outras operações do sistema.
+     *
+     * @param login O login do usuário.
+     * @param acao A ação executada com o login de cada amigo.
+     * @throws UserNotFoundException Se o usuário não estiver cadastrado.
+     */
+    public void paraCadaAmigo(String login, Consumer<String> acao) {
+        ConjuntoIds amigos = consultar(login, usuario -> verificarVersao(usuario).getAmigos());
+        amigos.paraCada(amigo -> acao.accept(getLoginPorId(amigo)));
+    }
+
+    /**
+     * Busca os usuários cujos atributos de perfil satisfazem uma consulta, em ordem de cadastro. Os
+     * atributos são comparados como {@link #getAtributoUsuario} os retorna: "nome" é o nome informado
+     * na criação, e os demais são os editados no perfil. No modo de carga preguiçosa, a primeira busca
+     * indexa todos os usuários do snapshot.
+     *
+     * @param consulta A consulta.
+     * @param cursor O cursor retornado pela página anterior, ou null para a primeira página.
+     * @param limite A quantidade máxima de usuários na página.
+     * @return A página de usuários.
+     * @throws IllegalArgumentException Se o limite ou o cursor forem inválidos, ou se a consulta usar
+     * um atributo não indexado.
+     */
+    public PaginaUsuarios buscarUsuarios(Consulta consulta, String cursor, int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite inválido.");
+        }
+        int inicio = cursor == null ? 0 : lerCursor(cursor);
+        if (!this.indicePronto) {
+            construirIndice();
+        }
+
+        int[] total = new int[1];
+        // Um a mais que o limite, para saber se há próxima página
+        int[] pagina = this.indice.consultar(consulta, ids -> {
+            total[0] = ids.tamanho();
+            return ids.pagina(inicio, (int) Math.min(Integer.MAX_VALUE, limite + 1L));
+        });
+        int quantidade = Math.min(pagina.length, limite);
+        List<String> logins = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            logins.add(getLoginPorId(pagina[i]));
+        }
+        String proximo = pagina.length > limite ? Integer.toString(pagina[limite]) : null;
+        return new PaginaUsuarios(logins, proximo, total[0]);
+    }
+
+    private void indexar(Usuario usuario) {
+        int id = usuario.getId();
+        this.indice.adicionar("nome", usuario.getNome(), id);
+        usuario.paraCadaAtributo((atributo, valor) -> {
+            if (!"nome".equals(atributo) && !"login".equals(atributo)) {
+                this.indice.adicionar(atributo, valor, id);
+            }
+        });
+    }
+
+    /**
+     * Indexa todos os usuários, com todas as travas adquiridas para que nenhuma alteração se perca
+     * entre a leitura de um usuário e a liberação do índice. As referências a usuários de outras
+     * partições ficam de fora: elas não têm perfil, e a busca é respondida pela partição de cada um.
+     */
+    private void construirIndice() {
+        travarTudo();
+        try {
+            if (this.indicePronto) {
+                return;
+            }
+            for (Usuario usuario : getUsuarios()) {
+                if (usuario != null && !usuario.isRemoto()) {
+                    indexar(usuario);
+                }
+            }
+            this.indicePronto = true;
+        } finally {
+            destravarTudo();
+        }
+    }
+
+    /**
+     * Obtém o login do usuário de uma sessão. Usado pelo roteador do modo particionado, que precisa
+     * do login para decidir em que partição está o outro usuário de uma operação.
+     *
+     * @param id O token da sessão.
+     * @return O login do usuário da sessão.
+     * @throws UserNotFoundException Se a sessão for inválida.
+     */
+    public String getLoginSessao(String id) {
+        return resolverSessao(id);
+    }
+
+    /**
+     * Verifica se um usuário tem um convite de amizade pendente de outro, que pode estar em outra
+     * partição. Primeiro passo de {@code adicionarAmigo} entre partições: se o convite existir, a
+     * amizade é confirmada nas duas partições; senão, o convite é registrado na partição do outro.
+     *
+     * @param login O login do usuário desta partição.
+     * @param remetente O login de quem teria enviado o convite.
+     * @return true se o convite estiver pendente.
+     * @throws UserNotFoundException Se o usuário não estiver cadastrado nesta partição.
+     */
+    public boolean temConvite(String login, String remetente) {
+        return consultar(login, usuario -> {
+            ConjuntoIds convites = verificarVersao(usuario).getConvitesAmizade();
+            int id = getId(remetente);
+            return id >= 0 && convites.contem(id);
+        });
+    }
+
+    /**
+     * Registra o convite de amizade de um usuário de outra partição para um usuário desta, com as
+     * mesmas verificações de {@code adicionarAmigo}.
+     *
+     * @param login O login do usuário desta partição, que recebe o convite.
+     * @param remetente O login do usuário da outra partição.
+     * @throws UserNotFoundException Se o usuário não estiver cadastrado nesta partição.
+     * @throws FriendshipException Se já houver um convite pendente ou se os dois já forem amigos.
+     */
+    public void registrarConviteRemoto(String login, String remetente) {
+        this.travas.travar(login, remetente);
+        try {
+            Usuario usuario = verificarUsuarioExiste(login);
+            Usuario referencia = garantirRemoto(remetente);
+            fixar(usuario);
+            if (usuario.getConvitesAmizade().contem(referencia.getId())) {
+                throw new FriendshipException("Usuário já está adicionado como amigo, esperando aceitação do convite.");
+            }
+            if (usuario.getAmigos().contem(referencia.getId())) {
+                throw new FriendshipException("Usuário já está adicionado como amigo.");
+            }
+            usuario.adicionarConviteAmizade(referencia.getId());
+            usuario.publicar();
+            registrar(TipoRegistro.REGISTRAR_CONVITE_REMOTO, login, remetente);
+        } finally {
+            this.travas.destravar(login, remetente);
+        }
+    }
+
+    /**
+     * Registra, do lado desta partição, a amizade entre um usuário desta e um de outra partição,
+     * descartando o convite pendente entre os dois. A operação é idempotente, para que o roteador
+     * possa repeti-la se a outra partição falhar no meio da confirmação.
+     *
+     * @param login O login do usuário desta partição.
+     * @param amigo O login do usuário da outra partição.
+     * @throws UserNotFoundException Se o usuário não estiver cadastrado nesta partição.
+     */
+    public void confirmarAmizadeRemota(String login, String amigo) {
+        this.travas.travar(login, amigo);
+        try {
+            Usuario usuario = verificarUsuarioExiste(login);
+            Usuario referencia = garantirRemoto(amigo);
+            fixar(usuario);
+            fixar(referencia);
+            usuario.adicionarAmigo(referencia.getId());
+            referencia.adicionarAmigo(usuario.getId());
+            usuario.removerConviteAmizade(referencia.getId());
+            usuario.publicar();
+            referencia.publicar();
+            this.analise.invalidar(usuario.getId(), referencia.getId(), usuario.getAmigos(), referencia.getAmigos());
+            registrar(TipoRegistro.CONFIRMAR_AMIZADE_REMOTA, login, amigo);
+        } finally {
+            this.travas.destravar(login, amigo);
+        }
+    }
+
+    /**
+     * Entrega a um usuário desta partição um recado enviado por um usuário de outra, cuja sessão já
+     * foi verificada pelo roteador na partição dele.
+     *
+     * @param remetente O login do usuário da outra partição.
+     * @param destinatario O login do usuário desta partição.
+     * @param recado O conteúdo do recado.
+     * @throws UserNotFoundException Se o destinatário não estiver cadastrado nesta partição.
+     * @throws MessageException Se a caixa de recados do destinatário tiver atingido a cota.
+     */
+    public void receberRecado(String remetente, String destinatario, String recado) {
+        receberRecado(remetente, destinatario, recado, true);
+    }
+
+    private void receberRecado(String remetente, String destinatario, String recado, boolean verificarCota) {
+        this.travas.travar(destinatario);
+        try {
+            Usuario recebeRecado = verificarUsuarioExiste(destinatario);
+            if (verificarCota && recebeRecado.getRecados().isCheia()) {
+                throw new MessageException("Caixa de recados do destinatário está cheia.");
+            }
+            fixar(recebeRecado);
+            recebeRecado.adicionarRecado(recado);
+            registrar(TipoRegistro.RECEBER_RECADO, remetente, destinatario, recado);
+        } finally {
+            this.travas.destravar(destinatario);
+        }
+        this.esperas.notificar(destinatario);
+    }
+
+    /**
+     * Obtém a referência a um usuário de outra partição, criando-a se necessário. Deve ser chamado
+     * com a trava do login adquirida.
+     * <p>
+     * A referência entra em {@code usuarios} antes das verificações da operação que a criou e fica lá
+     * mesmo se elas falharem, o que é inofensivo: sem senha, ela não abre sessão e não aparece como
+     * usuário cadastrado ({@link #verificarUsuarioExiste}, {@link #verificarVersao}). Ela também não é
+     * indexada para a busca nem aceita como sujeito de {@code contarAmigosEmComum} e
+     * {@code recomendarAmigos}. Como amiga de usuários desta partição, porém, ela pode aparecer entre
+     * as recomendações deles, com os amigos em comum contados apenas pelas amizades registradas aqui.
+     */
+    private Usuario garantirRemoto(String login) {
+        if (login == null) {
+            throw UserNotFoundException.NAO_CADASTRADO;
+        }
+        Usuario usuario = buscarUsuario(login);
+        if (usuario == null) {
+            usuario = new Usuario(atribuirId(login), login, null, null);
+            this.usuarios.put(login, usuario);
+            marcarAlterado(usuario.getId());
+        }
+        return usuario;
+    }
+
+    /**
+     * Conta os amigos em comum entre dois usuários.
+     *
+     * @param login O login de um usuário.
+     * @param outro O login do outro usuário.
+     * @return A quantidade de amigos em comum.
+     * @throws UserNotFoundException Se algum dos usuários não estiver cadastrado.
+     */
+    public int contarAmigosEmComum(String login, String outro) {
+        return this.analise.contarEmComum(getIdExistente(login), getIdExistente(outro));
+    }
+
+    /**
+     * Recomenda como amigos os amigos dos amigos de um usuário que ainda não são seus amigos, do que
+     * tem mais amigos em comum com ele para o que tem menos. O ranking fica guardado até que uma
+     * amizade do usuário ou de um dos seus amigos seja feita.
+     *
+     * @param login O login do usuário.
+     * @param limite A quantidade máxima de recomendações.
+     * @return As recomendações.
+     * @throws UserNotFoundException Se o usuário não estiver cadastrado.
+     * @throws IllegalArgumentException Se o limite for inválido.
+     */
+    public List<Recomendacao> recomendarAmigos(String login, int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite inválido.");
+        }
+        Candidatos candidatos = this.analise.recomendar(getIdExistente(login), limite);
+        int quantidade = Math.min(limite, candidatos.tamanho());
+        List<Recomendacao> recomendacoes = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            recomendacoes.add(new Recomendacao(getLoginPorId(candidatos.getId(i)), candidatos.getEmComum(i)));
+        }
+        return recomendacoes;
+    }
+
+    private int getIdExistente(String login) {
+        int id = getId(login);
+        if (id < 0) {
+            throw UserNotFoundException.NAO_CADASTRADO;
+        }
+        consultar(login, Sistema::verificarVersao);
+        return id;
+    }
+
+    /**
+     * Obtém os IDs dos amigos de um usuário em ordem crescente, para a análise de amizades. O array é
+     * o da versão publicada do usuário e não é alterado depois.
+     */
+    private int[] getAmigosOrdenados(int id) {
+        String login = getLoginPorId(id);
+        if (login == null) {
+            return new int[0];
+        }
+        return consultar(login, usuario -> usuario == null ? new int[0] : usuario.getAmigos().ordenados());
+    }
+
+    private static int lerCursor(String cursor) {
+        try {
+            int posicao = Integer.parseInt(cursor);
+            if (posicao >= 0) {
+                return posicao;
+            }
+        } catch (NumberFormatException e) {
+            // tratado abaixo
+        }
+        throw new IllegalArgumentException("Cursor inválido.");
+    }
+
+    /**
+     * Envia um recado do usuário de uma sessão para outro usuário.
+     *
+     * @param id O token da sessão do usuário que envia o recado.
+     * @param destinatario O login do usuário que recebe o recado.
+     * @param recado O conteúdo do recado.
+     * @throws MessageException Se o usuário tentar enviar um recado para si mesmo, ou se a caixa de
+     * recados do destinatário tiver atingido a cota.
+     * @throws UserNotFoundException Se a sessão for inválida ou o usuário ou o destinatário não estiverem cadastrados.
+     */
+    public void enviarRecado(String id, String destinatario, String recado) {
+        entregarRecado(resolverSessao(id), destinatario, recado, true);
+    }
+
+    /**
+     * Entrega um recado. A cota da caixa do destinatário não é verificada ao reaplicar o journal,
+     * já que o recado foi aceito quando a alteração foi feita.
+     */
+    private void entregarRecado(String remetente, String destinatario, String recado, boolean verificarCota) {
+        if (remetente.equals(destinatario)) {
+            throw new MessageException("Usuário não pode enviar recado para si mesmo.");
+        }
+
+        this.travas.travar(remetente, destinatario);
+        try {
+            verificarUsuarioExiste(remetente);
+            Usuario recebeRecado = verificarUsuarioExiste(destinatario);
+
+            if (verificarCota && recebeRecado.getRecados().isCheia()) {
+                throw new MessageException("Caixa de recados do destinatário está cheia.");
+            }
+
+            fixar(recebeRecado);
+            recebeRecado.adicionarRecado(recado);
+            registrar(TipoRegistro.ENVIAR_RECADO, remetente, destinatario, recado);
+        } finally {
+            this.travas.destravar(remetente, destinatario);
+        }
+        this.esperas.notificar(destinatario);
+    }
+
+    /**
+     * Envia o mesmo recado do usuário de uma sessão para vários destinatários. A sessão e o remetente
+     * são verificados uma única vez; um destinatário inválido é registrado como falha no resultado,
+     * sem interromper o envio aos demais.
+     *
+     * @param id O token da sessão do usuário que envia o recado.
+     * @param destinatarios Os logins dos destinatários.
+     * @param recado O conteúdo do recado.
+     * @return O resultado do lote, em que cada item é o login de um destinatário.
+     * @throws UserNotFoundException Se a sessão for inválida.
+     */
+    public ResultadoLote enviarRecados(String id, Collection<String> destinatarios, String recado) {
+        String remetente = resolverSessao(id);
+        if (!existeUsuario(remetente)) {
+            throw UserNotFoundException.NAO_CADASTRADO;
+        }
+        return entregarRecados(remetente, destinatarios, recado);
+    }
+
+    /**
+     * Envia o mesmo recado do usuário de uma sessão para todos os seus amigos.
+     *
+     * @param id O token da sessão do usuário que envia o recado.
+     * @param recado O conteúdo do recado.
+     * @return O resultado do lote, em que cada item é o login de um amigo.
+     * @throws UserNotFoundException Se a sessão for inválida.
+     */
+    public ResultadoLote enviarRecadoAmigos(String id, String recado) {
+        String remetente = resolverSessao(id);
+        List<String> amigos = new ArrayList<>();
+        this.travas.travar(remetente);
+        try {
+            verificarUsuarioExiste(remetente).getAmigos().paraCada(amigo -> amigos.add(getLoginPorId(amigo)));
+        } finally {
+            this.travas.destravar(remetente);
+        }
+        return entregarRecados(remetente, amigos, recado);
+    }
+
+    /**
+     * Entrega um recado a cada destinatário, adquirindo apenas a trava do destinatário da vez.
+     * O remetente já foi verificado pelo chamador.
+     */
+    private ResultadoLote entregarRecados(String remetente, Collection<String> destinatarios, String recado) {
+        ResultadoLote resultado = new ResultadoLote();
+        int indice = 0;
+        for (String destinatario : destinatarios) {
+            try {
+                if (remetente.equals(destinatario)) {
+                    throw new MessageException("Usuário não pode enviar recado para si mesmo.");
+                }
+
+                this.travas.travar(destinatario);
+                try {
+                    Usuario recebeRecado = verificarUsuarioExiste(destinatario);
+                    if (recebeRecado.getRecados().isCheia()) {
+                        throw new MessageException("Caixa de recados do destinatário está cheia.");
+                    }
+
+                    fixar(recebeRecado);
+                    recebeRecado.adicionarRecado(recado);
+                    registrar(TipoRegistro.ENVIAR_RECADO, remetente, destinatario, recado);
+                } finally {
+                    this.travas.destravar(destinatario);
+                }
+                this.esperas.notificar(destinatario);
+                resultado.registrarSucesso();
+            } catch (JackutException e) {
+                resultado.registrarFalha(indice, destinatario, e);
+            }
+            indice++;
+        }
+        return resultado;
+    }
+
+    /**
+     * Lê o recado mais antigo do usuário de uma sessão.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O conteúdo do recado.
+     * @throws MessageException Se não houver recados.
+     * @throws UserNotFoundException Se a sessão for inválida.
+     */
+    public String lerRecado(String id) {
+        return tryLerRecado(id).getValor();
+    }
+
+    /**
+     * Lê o recado mais antigo do usuário de uma sessão, como {@link #lerRecado}, mas informando a caixa
+     * vazia e a sessão inválida pelo status do resultado em vez de exceções. Nesses casos nada é
+     * alocado, o que torna barato consultar a caixa em laço.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O conteúdo do recado, ou o status {@code SEM_RECADOS} ou {@code USUARIO_NAO_CADASTRADO}.
+     */
+    public Resultado<String> tryLerRecado(String id) {
+        String login = this.sessoes.resolver(id);
+        if (login == null) {
+            return Resultado.falha(Resultado.Status.USUARIO_NAO_CADASTRADO);
+        }
+        return retirarRecado(login);
+    }
+
+    private Resultado<String> retirarRecado(String login) {
+        this.travas.travar(login);
+        try {
+            Usuario usuario = buscarUsuario(login);
+            if (usuario == null || usuario.isRemoto()) {
+                return Resultado.falha(Resultado.Status.USUARIO_NAO_CADASTRADO);
+            }
+
+            if (usuario.getRecados().isEmpty()) {
+                return Resultado.falha(Resultado.Status.SEM_RECADOS);
+            }
+
+            fixar(usuario);
+            String recado = usuario.getRecados().poll();
+            registrar(TipoRegistro.LER_RECADO, login);
+            return Resultado.sucesso(recado);
+        } finally {
+            this.travas.destravar(login);
+        }
+    }
+
+    /**
+     * Lê de uma vez até uma quantidade de recados do usuário de uma sessão, do mais antigo para o mais
+     * novo, com uma única aquisição da trava e um único registro no journal.
+     *
+     * @param id O token da sessão do usuário.
+     * @param maximo A quantidade máxima de recados.
+     * @return Os recados lidos, ou uma lista vazia se não houver recados.
+     * @throws UserNotFoundException Se a sessão for inválida.
+     * @throws IllegalArgumentException Se o máximo não for positivo.
+     */
+    public List<String> lerRecados(String id, int maximo) {
+        if (maximo <= 0) {
+            throw new IllegalArgumentException("Limite inválido.");
+        }
+        return retirarRecados(resolverSessao(id), maximo);
+    }
+
+    /**
+     * Lê até uma quantidade de recados do usuário de uma sessão, como {@link #lerRecados}, mas, se a
+     * caixa estiver vazia, espera a chegada de um recado por até o tempo informado em vez de retornar
+     * imediatamente. A entrega de um recado acorda o leitor que espera por ele.
+     *
+     * @param id O token da sessão do usuário.
+     * @param maximo A quantidade máxima de recados.
+     * @param esperaMillis O tempo máximo de espera, em milissegundos.
+     * @return Os recados lidos, ou uma lista vazia se nenhum chegar a tempo ou se outro leitor da mesma
+     * caixa os ler primeiro.
+     * @throws UserNotFoundException Se a sessão for inválida.
+     * @throws IllegalArgumentException Se o máximo não for positivo.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public List<String> aguardarRecados(String id, int maximo, long esperaMillis) throws InterruptedException {
+        if (maximo <= 0) {
+            throw new IllegalArgumentException("Limite inválido.");
+        }
+        String login = resolverSessao(id);
+        List<String> recados = retirarRecados(login, maximo);
+        if (!recados.isEmpty() || esperaMillis <= 0) {
+            return recados;
+        }
+        if (!this.esperas.aguardar(login, TimeUnit.MILLISECONDS.toNanos(esperaMillis), () -> contarRecadosDe(login) > 0)) {
+            return recados;
+        }
+        return retirarRecados(login, maximo);
+    }
+
+    /**
+     * Lê até uma quantidade de recados do usuário de uma sessão como {@link #aguardarRecados}, mas sem
+     * ocupar a thread que chama durante a espera: se a caixa estiver vazia, a espera fica registrada e a
+     * leitura é feita no executor informado quando um recado chegar.
+     *
+     * @param id O token da sessão do usuário.
+     * @param maximo A quantidade máxima de recados.
+     * @param esperaMillis O tempo máximo de espera, em milissegundos.
+     * @param executor O executor que lê a caixa depois da chegada de um recado.
+     * @return Conclui com os recados lidos, ou com uma lista vazia se nenhum chegar a tempo ou se outro
+     * leitor da mesma caixa os ler primeiro.
+     * @throws UserNotFoundException Se a sessão for inválida.
+     * @throws IllegalArgumentException Se o máximo não for positivo.
+     */
+    public CompletableFuture<List<String>> aguardarRecados(String id, int maximo, long esperaMillis, Executor executor) {
+        if (maximo <= 0) {
+            throw new IllegalArgumentException("Limite inválido.");
+        }
+        String login = resolverSessao(id);
+        List<String> recados = retirarRecados(login, maximo);
+        if (!recados.isEmpty() || esperaMillis <= 0) {
+            return CompletableFuture.completedFuture(recados);
+        }
+        return this.esperas.estacionar(login, TimeUnit.MILLISECONDS.toNanos(esperaMillis), () -> contarRecadosDe(login) > 0)
+                .thenApplyAsync(chegou -> chegou ? retirarRecados(login, maximo) : recados, executor);
+    }
+
+    /**
+     * Obtém a quantidade de recados não lidos do usuário de uma sessão, sem lê-los.
+     *
+     * @param id O token da sessão do usuário.
+     * @return A quantidade de recados na caixa.
+     * @throws UserNotFoundException Se a sessão for inválida.
+     */
+    public int contarRecados(String id) {
+        String login = resolverSessao(id);
+        this.travas.travar(login);
+        try {
+            return verificarUsuarioExiste(login).getRecados().tamanho();
+        } finally {
+            this.travas.destravar(login);
+        }
+    }
+
+    /**
+     * Obtém o recado mais antigo do usuário de uma sessão sem retirá-lo da caixa. O próximo
+     * {@link #lerRecado} retorna o mesmo recado.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O conteúdo do recado, ou o status {@code SEM_RECADOS} ou {@code USUARIO_NAO_CADASTRADO}.
+     */
+    public Resultado<String> espiarRecado(String id) {
+        String login = this.sessoes.resolver(id);
+        if (login == null) {
+            return Resultado.falha(Resultado.Status.USUARIO_NAO_CADASTRADO);
+        }
+        this.travas.travar(login);
+        try {
+            Usuario usuario = buscarUsuario(login);
+            if (usuario == null || usuario.isRemoto()) {
+                return Resultado.falha(Resultado.Status.USUARIO_NAO_CADASTRADO);
+            }
+            if (usuario.getRecados().isEmpty()) {
+                return Resultado.falha(Resultado.Status.SEM_RECADOS);
+            }
+            return Resultado.sucesso(usuario.getRecados().peek());
+        } finally {
+            this.travas.destravar(login);
+        }
+    }
+
+    private int contarRecadosDe(String login) {
+        this.travas.travar(login);
+        try {
+            Usuario usuario = buscarUsuario(login);
+            return usuario != null ? usuario.getRecados().tamanho() : 0;
+        } finally {
+            this.travas.destravar(login);
+        }
+    }
+
+    private List<String> retirarRecados(String login, int maximo) {
+        this.travas.travar(login);
+        try {
+            Usuario usuario = verificarUsuarioExiste(login);
+            if (usuario.getRecados().isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            fixar(usuario);
+            List<String> recados = new ArrayList<>(Math.min(maximo, usuario.getRecados().tamanho()));
+            usuario.getRecados().poll(maximo, recados::add);
+            registrar(TipoRegistro.LER_RECADOS, login, Integer.toString(recados.size()));
+            return recados;
+        } finally {
+            this.travas.destravar(login);
+        }
+    }
 }
\ No newline at end of file
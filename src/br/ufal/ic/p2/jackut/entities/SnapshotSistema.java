@@ -0,0 +1,153 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import br.ufal.ic.p2.jackut.persistence.SnapshotMapeado;
+
+import java.io.Closeable;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot do sistema em um LSN, obtido com {@link Sistema#abrirSnapshot(BitSet)}, que pode ser gravado
+ * enquanto as operações continuam.
+ * <p>
+ * Abrir o snapshot custa apenas guardar as referências à estrutura atual. A partir daí, a primeira
+ * alteração de cada usuário contido no snapshot que ainda não foi percorrido guarda uma cópia do usuário
+ * como ele estava (cópia na escrita); {@link #paraCada(Consumer)} entrega essa cópia, ou o próprio
+ * usuário se ele não foi alterado, com a trava do usuário adquirida. Como o percurso segue a ordem dos
+ * IDs, só os usuários alterados à frente dele são copiados, e cada cópia é descartada assim que
+ * entregue. Se o sistema for zerado, os usuários do snapshot deixam de ser alcançáveis pelas operações
+ * e não precisam mais de cópias.
+ */
+public class SnapshotSistema implements Closeable {
+    private final Sistema sistema;
+    private final TravasUsuarios travas;
+    private final long ultimoLsn;
+    private final int limite;
+    private final BitSet ids;
+    private final String[] logins;
+    private final Map<String, Usuario> usuarios;
+    private final SnapshotMapeado origem;
+    private final Map<Integer, Usuario> preservados = new ConcurrentHashMap<>();
+    private volatile int posicao;
+    private volatile boolean congelado;
+
+    SnapshotSistema(Sistema sistema, TravasUsuarios travas, long ultimoLsn, int limite, BitSet ids, String[] logins,
+                    Map<String, Usuario> usuarios, SnapshotMapeado origem) {
+        this.sistema = sistema;
+        this.travas = travas;
+        this.ultimoLsn = ultimoLsn;
+        this.limite = limite;
+        this.ids = ids;
+        this.logins = logins;
+        this.usuarios = usuarios;
+        this.origem = origem;
+    }
+
+    /**
+     * Obtém o LSN da última alteração contida no snapshot.
+     *
+     * @return O LSN.
+     */
+    public long getUltimoLsn() {
+        return ultimoLsn;
+    }
+
+    /**
+     * Verifica se o snapshot contém apenas alguns usuários, como em um checkpoint incremental.
+     *
+     * @return true se o snapshot foi aberto com um conjunto de IDs.
+     */
+    public boolean isParcial() {
+        return ids != null;
+    }
+
+    /**
+     * Obtém a quantidade de usuários do snapshot.
+     *
+     * @return A quantidade de usuários.
+     */
+    public int getQuantidade() {
+        return ids != null ? ids.cardinality() : limite;
+    }
+
+    /**
+     * Obtém o login de um usuário do snapshot, por exemplo para traduzir os IDs dos amigos.
+     *
+     * @param id O ID do usuário.
+     * @return O login, ou null se o ID não fizer parte do snapshot.
+     */
+    public String getLogin(int id) {
+        return id >= 0 && id < limite ? logins[id] : null;
+    }
+
+    /**
+     * Percorre os usuários do snapshot em ordem de ID, cada um como estava no LSN do snapshot. A ação é
+     * executada com a trava do usuário adquirida e não deve guardar o usuário.
+     *
+     * @param acao A ação executada para cada usuário.
+     */
+    public void paraCada(Consumer<Usuario> acao) {
+        int id = ids != null ? ids.nextSetBit(0) : 0;
+        while (id >= 0 && id < limite) {
+            String login = logins[id];
+            travas.travar(login);
+            try {
+                Usuario preservado = preservados.remove(id);
+                Usuario usuario = preservado;
+                if (usuario == null) {
+                    usuario = usuarios.get(login);
+                }
+                if (usuario == null && origem != null) {
+                    usuario = origem.ler(login);
+                }
+                try {
+                    acao.accept(usuario);
+                } finally {
+                    if (preservado != null) {
+                        // Os blocos de recados da cópia são compartilhados com o usuário
+                        preservado.getRecados().liberar();
+                    }
+                }
+                posicao = id + 1;
+            } finally {
+                travas.destravar(login);
+            }
+            id = ids != null ? ids.nextSetBit(id + 1) : id + 1;
+        }
+    }
+
+    /**
+     * Guarda uma cópia de um usuário que está para ser alterado, se ele faz parte do snapshot e ainda
+     * não foi percorrido. Chamado pelo sistema com a trava do usuário adquirida.
+     *
+     * @param usuario O usuário, antes da alteração.
+     */
+    void preservar(Usuario usuario) {
+        int id = usuario.getId();
+        if (congelado || id >= limite || id < posicao || (ids != null && !ids.get(id))) {
+            return;
+        }
+        preservados.computeIfAbsent(id, chave -> usuario.copiar());
+    }
+
+    /**
+     * Indica que os usuários do snapshot não serão mais alterados, porque o sistema foi zerado. As
+     * cópias já guardadas continuam valendo.
+     */
+    void congelar() {
+        congelado = true;
+    }
+
+    /**
+     * Encerra o snapshot, liberando as cópias ainda não percorridas.
+     */
+    @Override
+    public void close() {
+        congelado = true;
+        sistema.fecharSnapshot(this);
+        preservados.values().forEach(copia -> copia.getRecados().liberar());
+        preservados.clear();
+    }
+}
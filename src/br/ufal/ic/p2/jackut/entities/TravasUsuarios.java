@@ -0,0 +1,105 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Conjunto de travas listradas que protege o estado dos usuários.
+ * <p>
+ * Cada login é associado a uma listra pelo seu hash. Operações que envolvem dois usuários
+ * adquirem as duas listras sempre em ordem crescente de índice, o que impede deadlocks entre
+ * chamadas concorrentes como {@code adicionarAmigo(a, b)} e {@code adicionarAmigo(b, a)}.
+ */
+class TravasUsuarios {
+    private final ReentrantLock[] listras;
+    private final int mascara;
+
+    /**
+     * Construtor da classe TravasUsuarios.
+     *
+     * @param quantidade A quantidade mínima de listras; é arredondada para a próxima potência de dois.
+     */
+    TravasUsuarios(int quantidade) {
+        int tamanho = Integer.highestOneBit(Math.max(1, quantidade - 1)) << 1;
+        this.listras = new ReentrantLock[tamanho];
+        this.mascara = tamanho - 1;
+        for (int i = 0; i < tamanho; i++) {
+            this.listras[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Adquire a trava de um usuário.
+     *
+     * @param login O login do usuário.
+     */
+    void travar(String login) {
+        listras[indice(login)].lock();
+    }
+
+    /**
+     * Libera a trava de um usuário.
+     *
+     * @param login O login do usuário.
+     */
+    void destravar(String login) {
+        listras[indice(login)].unlock();
+    }
+
+    /**
+     * Adquire as travas de dois usuários em ordem fixa.
+     *
+     * @param login O login do primeiro usuário.
+     * @param outro O login do segundo usuário.
+     */
+    void travar(String login, String outro) {
+        int primeira = indice(login);
+        int segunda = indice(outro);
+        if (primeira == segunda) {
+            listras[primeira].lock();
+            return;
+        }
+        listras[Math.min(primeira, segunda)].lock();
+        listras[Math.max(primeira, segunda)].lock();
+    }
+
+    /**
+     * Libera as travas adquiridas por {@link #travar(String, String)}.
+     *
+     * @param login O login do primeiro usuário.
+     * @param outro O login do segundo usuário.
+     */
+    void destravar(String login, String outro) {
+        int primeira = indice(login);
+        int segunda = indice(outro);
+        listras[primeira].unlock();
+        if (primeira != segunda) {
+            listras[segunda].unlock();
+        }
+    }
+
+    /**
+     * Adquire todas as travas, em ordem, bloqueando qualquer operação sobre usuários.
+     */
+    void travarTodas() {
+        for (ReentrantLock listra : listras) {
+            listra.lock();
+        }
+    }
+
+    /**
+     * Libera todas as travas adquiridas por {@link #travarTodas()}.
+     */
+    void destravarTodas() {
+        for (int i = listras.length - 1; i >= 0; i--) {
+            listras[i].unlock();
+        }
+    }
+
+    private int indice(String login) {
+        if (login == null) {
+            return 0;
+        }
+        int hash = login.hashCode();
+        return (hash ^ (hash >>> 16)) & mascara;
+    }
+}
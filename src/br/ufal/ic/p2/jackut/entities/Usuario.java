@@ -1,192 +1,325 @@
-
-package br.ufal.ic.p2.jackut.entities;
-
-import br.ufal.ic.p2.jackut.exceptions.ProfileAttributeException;
-
-import java.io.Serializable;
-import java.util.*;
-
-/**
- * A classe Usuario representa um usuário no sistema Jackut.
- * Implementa a interface Serializable para permitir a serialização dos objetos.
- */
-public class Usuario implements Serializable {
-    private String login;
-    private String senha;
-    private String nome;
-    private Map<String, String> atributos;
-    private Set<String> convitesAmizade;
-    private Set<String> amigos;
-    private Queue<String> recados;
-    private static final long serialVersionUID = 1L;
-
-    /**
-     * Construtor da classe Usuario.
-     *
-     * @param login O login do usuário.
-     * @param senha A senha do usuário.
-     * @param nome O nome do usuário.
-     */
-    public Usuario(String login, String senha, String nome) {
-        this.login = login;
-        this.senha = senha;
-        this.nome = nome;
-        this.atributos = new HashMap<>();
-        this.amigos = new LinkedHashSet<>();
-        this.convitesAmizade = new LinkedHashSet<>();
-        this.recados = new LinkedList<>();
-    }
-
-    /**
-     * Obtém o login do usuário.
-     *
-     * @return O login do usuário.
-     */
-    public String getLogin() {
-        return login;
-    }
-
-    /**
-     * Obtém o nome do usuário.
-     *
-     * @return O nome do usuário.
-     */
-    public String getNome() {
-        return nome;
-    }
-
-    /**
-     * Define um atributo do usuário.
-     *
-     * @param atributo O nome do atributo.
-     * @param valor O valor do atributo.
-     */
-    public void setAtributo(String atributo, String valor) {
-        this.atributos.put(atributo, valor);
-    }
-
-    /**
-     * Obtém o valor de um atributo do usuário.
-     *
-     * @param atributo O nome do atributo.
-     * @return O valor do atributo.
-     * @throws ProfileAttributeException Se o atributo não estiver preenchido.
-     */
-    public String getAtributo(String atributo) {
-        if (!this.hasAtributo(atributo)) {
-            throw new ProfileAttributeException("Atributo não preenchido.");
-        }
-
-        return this.atributos.get(atributo);
-    }
-
-    /**
-     * Define o login do usuário.
-     *
-     * @param login O novo login do usuário.
-     */
-    public void setLogin(String login) {
-        this.login = login;
-    }
-
-    /**
-     * Define a senha do usuário.
-     *
-     * @param senha A nova senha do usuário.
-     */
-    public void setSenha(String senha) {
-        this.senha = senha;
-    }
-
-    /**
-     * Define o nome do usuário.
-     *
-     * @param nome O novo nome do usuário.
-     */
-    public void setNome(String nome) {
-        this.nome = nome;
-    }
-
-    /**
-     * Obtém os convites de amizade do usuário.
-     *
-     * @return Um conjunto de IDs de convites de amizade.
-     */
-    public Set<String> getConvitesAmizade() {
-        return convitesAmizade;
-    }
-
-    /**
-     * Remove um convite de amizade.
-     *
-     * @param id O ID do convite de amizade a ser removido.
-     */
-    public void removerConviteAmizade(String id) {
-        this.convitesAmizade.remove(id);
-    }
-
-    /**
-     * Adiciona um convite de amizade.
-     *
-     * @param id O ID do convite de amizade a ser adicionado.
-     */
-    public void adicionarConviteAmizade(String id) {
-        this.convitesAmizade.add(id);
-    }
-
-    /**
-     * Obtém a lista de amigos do usuário.
-     *
-     * @return Um conjunto de IDs de amigos.
-     */
-    public Set<String> getAmigos() {
-        return amigos;
-    }
-
-    /**
-     * Verifica se a senha fornecida é válida.
-     *
-     * @param password A senha a ser verificada.
-     * @return true se a senha for válida, false caso contrário.
-     */
-    public boolean isPasswordValid(String password) {
-        return this.senha.equals(password);
-    }
-
-    /**
-     * Verifica se o usuário possui um determinado atributo.
-     *
-     * @param atributo O nome do atributo.
-     * @return true se o atributo existir, false caso contrário.
-     */
-    public boolean hasAtributo(String atributo) {
-        return this.atributos.containsKey(atributo);
-    }
-
-    /**
-     * Adiciona um amigo ao usuário.
-     *
-     * @param amigo O ID do amigo a ser adicionado.
-     */
-    public void adicionarAmigo(String amigo) {
-        this.amigos.add(amigo);
-    }
-
-    /**
-     * Adiciona um recado ao usuário.
-     *
-     * @param recado O recado a ser adicionado.
-     */
-    public void adicionarRecado(String recado) {
-        recados.add(recado);
-    }
-
-    /**
-     * Obtém a fila de recados do usuário.
-     *
-     * @return A fila de recados.
-     */
-    public Queue<String> getRecados() {
-        return this.recados;
-    }
-}
+
+package br.ufal.ic.p2.jackut.entities;
+
+import br.ufal.ic.p2.jackut.exceptions.ProfileAttributeException;
+import br.ufal.ic.p2.jackut.recados.CaixaRecados;
+
+import java.io.Serializable;
+import java.util.function.BiConsumer;
+
+/**
+ * A classe Usuario representa um usuário no sistema Jackut.
+ * Implementa a interface Serializable para permitir a serialização dos objetos.
+ * <p>
+ * No modo particionado, um usuário sem senha é apenas a referência a um usuário de outra partição,
+ * que aparece aqui como amigo ou como autor de um convite de amizade (veja {@link #isRemoto()}).
+ * <p>
+ * As alterações são feitas com a trava do usuário adquirida e, ao final de cada operação do sistema,
+ * publicadas em uma {@link VersaoUsuario} imutável por {@link #publicar()}. As consultas leem a versão
+ * publicada, sem a trava, e por isso nunca esperam por uma alteração em andamento.
+ */
+public class Usuario implements Serializable {
+    private final int id;
+    private String login;
+    private String senha;
+    private String nome;
+    private AtributosPerfil atributos;
+    private ConjuntoIds convitesAmizade;
+    private ConjuntoIds amigos;
+    private CaixaRecados recados;
+    private transient volatile VersaoUsuario versao;
+    // Cópia dos atributos usada pelas versões, descartada quando um atributo é alterado
+    private transient AtributosPerfil atributosPublicados;
+    private transient boolean desatualizado;
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construtor da classe Usuario.
+     *
+     * @param id O ID numérico do usuário, atribuído pelo sistema.
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @param nome O nome do usuário.
+     */
+    public Usuario(int id, String login, String senha, String nome) {
+        this.id = id;
+        this.login = login;
+        this.senha = senha;
+        this.nome = nome;
+        this.atributos = new AtributosPerfil();
+        this.amigos = new ConjuntoIds();
+        this.convitesAmizade = new ConjuntoIds();
+        this.recados = new CaixaRecados();
+    }
+
+    /**
+     * Obtém o ID numérico do usuário.
+     *
+     * @return O ID do usuário.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Obtém o login do usuário.
+     *
+     * @return O login do usuário.
+     */
+    public String getLogin() {
+        return login;
+    }
+
+    /**
+     * Obtém a senha do usuário.
+     *
+     * @return A senha do usuário.
+     */
+    public String getSenha() {
+        return senha;
+    }
+
+    /**
+     * Obtém o nome do usuário.
+     *
+     * @return O nome do usuário.
+     */
+    public String getNome() {
+        return nome;
+    }
+
+    /**
+     * Define um atributo do usuário.
+     *
+     * @param atributo O nome do atributo.
+     * @param valor O valor do atributo.
+     */
+    public void setAtributo(String atributo, String valor) {
+        this.atributos.definir(atributo, valor);
+        this.atributosPublicados = null;
+        this.desatualizado = true;
+    }
+
+    /**
+     * Obtém o valor de um atributo do usuário.
+     *
+     * @param atributo O nome do atributo.
+     * @return O valor do atributo.
+     * @throws ProfileAttributeException Se o atributo não estiver preenchido.
+     */
+    public String getAtributo(String atributo) {
+        if (!this.hasAtributo(atributo)) {
+            throw ProfileAttributeException.NAO_PREENCHIDO;
+        }
+
+        return this.atributos.obter(atributo);
+    }
+
+    /**
+     * Obtém a quantidade de atributos de perfil preenchidos pelo usuário.
+     *
+     * @return A quantidade de atributos.
+     */
+    public int getQuantidadeAtributos() {
+        return this.atributos.tamanho();
+    }
+
+    /**
+     * Executa uma ação para cada atributo de perfil preenchido pelo usuário.
+     *
+     * @param acao A ação, que recebe o nome e o valor do atributo.
+     */
+    public void paraCadaAtributo(BiConsumer<String, String> acao) {
+        this.atributos.paraCada(acao);
+    }
+
+    /**
+     * Define o login do usuário.
+     *
+     * @param login O novo login do usuário.
+     */
+    public void setLogin(String login) {
+        this.login = login;
+        this.desatualizado = true;
+    }
+
+    /**
+     * Define a senha do usuário.
+     *
+     * @param senha A nova senha do usuário.
+     */
+    public void setSenha(String senha) {
+        this.senha = senha;
+        this.desatualizado = true;
+    }
+
+    /**
+     * Define o nome do usuário.
+     *
+     * @param nome O novo nome do usuário.
+     */
+    public void setNome(String nome) {
+        this.nome = nome;
+        this.desatualizado = true;
+    }
+
+    /**
+     * Obtém os convites de amizade do usuário.
+     *
+     * @return Um conjunto com os IDs dos usuários que enviaram convites, em ordem de chegada.
+     */
+    public ConjuntoIds getConvitesAmizade() {
+        return convitesAmizade;
+    }
+
+    /**
+     * Remove um convite de amizade.
+     *
+     * @param id O ID do usuário que enviou o convite.
+     */
+    public void removerConviteAmizade(int id) {
+        if (this.convitesAmizade.remover(id)) {
+            this.desatualizado = true;
+        }
+    }
+
+    /**
+     * Adiciona um convite de amizade.
+     *
+     * @param id O ID do usuário que enviou o convite.
+     */
+    public void adicionarConviteAmizade(int id) {
+        if (this.convitesAmizade.adicionar(id)) {
+            this.desatualizado = true;
+        }
+    }
+
+    /**
+     * Obtém a lista de amigos do usuário.
+     *
+     * @return Um conjunto com os IDs dos amigos, na ordem em que as amizades foram feitas.
+     */
+    public ConjuntoIds getAmigos() {
+        return amigos;
+    }
+
+    /**
+     * Verifica se a senha fornecida é válida.
+     *
+     * @param password A senha a ser verificada.
+     * @return true se a senha for válida, false caso contrário.
+     */
+    public boolean isPasswordValid(String password) {
+        return this.senha != null && this.senha.equals(password);
+    }
+
+    /**
+     * Verifica se o usuário é apenas a referência a um usuário de outra partição. Referências não têm
+     * senha, nome nem perfil, e guardam apenas as amizades e convites dos usuários desta partição.
+     *
+     * @return true se o usuário pertence a outra partição.
+     */
+    public boolean isRemoto() {
+        return this.senha == null;
+    }
+
+    /**
+     * Verifica se o usuário possui um determinado atributo.
+     *
+     * @param atributo O nome do atributo.
+     * @return true se o atributo existir, false caso contrário.
+     */
+    public boolean hasAtributo(String atributo) {
+        return this.atributos.contem(atributo);
+    }
+
+    /**
+     * Adiciona um amigo ao usuário.
+     *
+     * @param amigo O ID do amigo a ser adicionado.
+     */
+    public void adicionarAmigo(int amigo) {
+        if (this.amigos.adicionar(amigo)) {
+            this.desatualizado = true;
+        }
+    }
+
+    /**
+     * Remove um amigo do usuário, apenas deste lado da amizade.
+     *
+     * @param amigo O ID do amigo a ser removido.
+     */
+    public void removerAmigo(int amigo) {
+        if (this.amigos.remover(amigo)) {
+            this.desatualizado = true;
+        }
+    }
+
+    /**
+     * Obtém a última versão publicada do usuário. Pode ser chamado sem a trava do usuário.
+     *
+     * @return A versão, ou null se nenhuma foi publicada desde que o usuário foi criado ou carregado.
+     */
+    VersaoUsuario getVersao() {
+        return versao;
+    }
+
+    /**
+     * Publica uma nova versão com o estado atual do usuário, se ele mudou desde a última. Deve ser
+     * chamado com a trava do usuário adquirida, depois das alterações de uma operação. Os atributos só
+     * são copiados se mudaram, e a lista de amigos formatada passa para a nova versão enquanto os
+     * amigos forem os mesmos.
+     *
+     * @return A versão publicada.
+     */
+    VersaoUsuario publicar() {
+        VersaoUsuario atual = this.versao;
+        if (atual != null && !this.desatualizado) {
+            return atual;
+        }
+        if (this.atributosPublicados == null) {
+            this.atributosPublicados = this.atributos.copiar();
+        }
+        ConjuntoIds visaoAmigos = this.amigos.visao();
+        String formatados = atual != null && atual.getAmigos() == visaoAmigos ? atual.getAmigosFormatados() : null;
+        atual = new VersaoUsuario(login, nome, senha == null, this.atributosPublicados, visaoAmigos,
+                this.convitesAmizade.visao(), formatados);
+        this.versao = atual;
+        this.desatualizado = false;
+        return atual;
+    }
+
+    /**
+     * Adiciona um recado ao usuário.
+     *
+     * @param recado O recado a ser adicionado.
+     */
+    public void adicionarRecado(String recado) {
+        recados.adicionar(recado);
+    }
+
+    /**
+     * Obtém a caixa de recados não lidos do usuário.
+     *
+     * @return A caixa de recados.
+     */
+    public CaixaRecados getRecados() {
+        return this.recados;
+    }
+
+    /**
+     * Obtém uma cópia independente do usuário, que não é afetada pelas alterações seguintes do original.
+     * Os blocos de recados em disco são compartilhados com a cópia, sem serem lidos
+     * ({@link CaixaRecados#copiar()}).
+     *
+     * @return A cópia.
+     */
+    public Usuario copiar() {
+        Usuario copia = new Usuario(id, login, senha, nome);
+        copia.atributos = atributos.copiar();
+        copia.amigos = amigos.copiar();
+        copia.convitesAmizade = convitesAmizade.copiar();
+        copia.recados = recados.copiar();
+        return copia;
+    }
+}
@@ -0,0 +1,86 @@
+package br.ufal.ic.p2.jackut.entities;
+
+/**
+ * Uma versão imutável do estado de um usuário, publicada a cada alteração, que as consultas leem sem
+ * adquirir a trava do usuário (veja {@link Usuario#publicar()}).
+ * <p>
+ * Os atributos são uma cópia que não é mais alterada, e os amigos e convites são visões dos conjuntos
+ * do usuário ({@link ConjuntoIds#visao()}), que compartilham os arrays com eles. Uma versão deixa de
+ * ser alcançável, e é coletada, quando a seguinte é publicada e nenhuma consulta em andamento a usa.
+ */
+final class VersaoUsuario {
+    private final String login;
+    private final String nome;
+    private final boolean remoto;
+    private final AtributosPerfil atributos;
+    private final ConjuntoIds amigos;
+    private final ConjuntoIds convitesAmizade;
+    // Montada pela primeira consulta que precisa dela, fora de qualquer trava. É volátil para que as
+    // outras consultas vejam a string inteira; duas consultas ao mesmo tempo apenas montam a mesma string
+    private volatile String amigosFormatados;
+
+    VersaoUsuario(String login, String nome, boolean remoto, AtributosPerfil atributos, ConjuntoIds amigos,
+                  ConjuntoIds convitesAmizade, String amigosFormatados) {
+        this.login = login;
+        this.nome = nome;
+        this.remoto = remoto;
+        this.atributos = atributos;
+        this.amigos = amigos;
+        this.convitesAmizade = convitesAmizade;
+        this.amigosFormatados = amigosFormatados;
+    }
+
+    String getLogin() {
+        return login;
+    }
+
+    String getNome() {
+        return nome;
+    }
+
+    /**
+     * @see Usuario#isRemoto()
+     */
+    boolean isRemoto() {
+        return remoto;
+    }
+
+    /**
+     * Obtém o valor de um atributo de perfil.
+     *
+     * @param atributo O nome do atributo.
+     * @return O valor, ou null se o atributo não estiver preenchido.
+     */
+    String getAtributo(String atributo) {
+        return atributos.obter(atributo);
+    }
+
+    boolean hasAtributo(String atributo) {
+        return atributos.contem(atributo);
+    }
+
+    AtributosPerfil getAtributos() {
+        return atributos;
+    }
+
+    ConjuntoIds getAmigos() {
+        return amigos;
+    }
+
+    ConjuntoIds getConvitesAmizade() {
+        return convitesAmizade;
+    }
+
+    /**
+     * Obtém a lista de amigos já formatada por {@code getAmigos} do sistema.
+     *
+     * @return A lista formatada, ou null se ela ainda não foi montada para esta versão.
+     */
+    String getAmigosFormatados() {
+        return amigosFormatados;
+    }
+
+    void setAmigosFormatados(String amigosFormatados) {
+        this.amigosFormatados = amigosFormatados;
+    }
+}
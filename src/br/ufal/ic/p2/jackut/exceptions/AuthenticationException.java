@@ -6,10 +6,20 @@ package br.ufal.ic.p2.jackut.exceptions;
 public class AuthenticationException extends JackutException {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Instância única, sem pilha de chamadas, lançada quando o login ou a senha são inválidos.
+     */
+    public static final AuthenticationException LOGIN_INVALIDO =
+            new AuthenticationException("Login ou senha inválidos.", false);
+
     public AuthenticationException() {
         super("Login ou senha inválidos.");
     }
 
+    private AuthenticationException(String message, boolean pilha) {
+        super(message, pilha);
+    }
+
     public AuthenticationException(String message) {
         super(message);
     }
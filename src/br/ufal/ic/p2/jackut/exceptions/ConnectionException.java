@@ -0,0 +1,13 @@
+package br.ufal.ic.p2.jackut.exceptions;
+
+/**
+ * Exceção lançada quando um {@code ServidorJackut}, como uma partição ou o primário de uma réplica,
+ * não pode ser alcançado ou responde fora do protocolo.
+ */
+public class ConnectionException extends JackutException {
+    private static final long serialVersionUID = 1L;
+
+    public ConnectionException(String message) {
+        super(message);
+    }
+}
@@ -9,4 +9,15 @@ public class JackutException extends RuntimeException {
     public JackutException(String message) {
         super(message);
     }
+
+    /**
+     * Cria uma exceção sem pilha de chamadas, para as instâncias únicas das falhas frequentes, que
+     * são lançadas muitas vezes e em que a pilha não ajudaria a diagnosticar nada.
+     *
+     * @param message A mensagem.
+     * @param pilha false para não preencher a pilha de chamadas.
+     */
+    protected JackutException(String message, boolean pilha) {
+        super(message, null, false, pilha);
+    }
 }
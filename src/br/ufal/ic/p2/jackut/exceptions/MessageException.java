@@ -6,7 +6,16 @@ package br.ufal.ic.p2.jackut.exceptions;
 public class MessageException extends JackutException {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Instância única, sem pilha de chamadas, lançada ao ler uma caixa de recados vazia.
+     */
+    public static final MessageException SEM_RECADOS = new MessageException("Não há recados.", false);
+
     public MessageException(String message) {
         super(message);
     }
+
+    private MessageException(String message, boolean pilha) {
+        super(message, pilha);
+    }
 }
\ No newline at end of file
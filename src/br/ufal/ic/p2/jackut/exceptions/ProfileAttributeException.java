@@ -6,7 +6,17 @@ package br.ufal.ic.p2.jackut.exceptions;
 public class ProfileAttributeException extends JackutException {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Instância única, sem pilha de chamadas, lançada ao ler um atributo não preenchido.
+     */
+    public static final ProfileAttributeException NAO_PREENCHIDO =
+            new ProfileAttributeException("Atributo não preenchido.", false);
+
     public ProfileAttributeException(String message) {
         super(message);
     }
+
+    private ProfileAttributeException(String message, boolean pilha) {
+        super(message, pilha);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package br.ufal.ic.p2.jackut.exceptions;
+
+/**
+ * Exceção lançada quando uma operação que altera o sistema é chamada em uma réplica, que só responde
+ * consultas.
+ */
+public class ReadOnlyReplicaException extends JackutException {
+    private static final long serialVersionUID = 1L;
+
+    public ReadOnlyReplicaException() {
+        super("Réplica somente leitura.");
+    }
+}
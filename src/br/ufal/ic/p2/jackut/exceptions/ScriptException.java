@@ -0,0 +1,13 @@
+package br.ufal.ic.p2.jackut.exceptions;
+
+/**
+ * Exceção lançada quando um comando de script não pode ser interpretado ou quando o seu resultado
+ * difere do esperado.
+ */
+public class ScriptException extends JackutException {
+    private static final long serialVersionUID = 1L;
+
+    public ScriptException(String message) {
+        super(message);
+    }
+}
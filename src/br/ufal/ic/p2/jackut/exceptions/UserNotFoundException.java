@@ -4,9 +4,15 @@ package br.ufal.ic.p2.jackut.exceptions;
  * Exceção lançada quando dados de usuário são inválidos.
  */
 
-public class UserNotFoundException extends RuntimeException {
+public class UserNotFoundException extends JackutException {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Instância única, sem pilha de chamadas, lançada quando o usuário ou a sessão não existem.
+     */
+    public static final UserNotFoundException NAO_CADASTRADO =
+            new UserNotFoundException("Usuário não cadastrado.", false);
+
     public UserNotFoundException() {
         super("Usuário não cadastrado.");
     }
@@ -14,4 +20,8 @@ public class UserNotFoundException extends RuntimeException {
     public UserNotFoundException(String message) {
         super(message);
     }
+
+    private UserNotFoundException(String message, boolean pilha) {
+        super(message, pilha);
+    }
 }
\ No newline at end of file
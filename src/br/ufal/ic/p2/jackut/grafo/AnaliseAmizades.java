@@ -0,0 +1,491 @@
+package br.ufal.ic.p2.jackut.grafo;
+
+import br.ufal.ic.p2.jackut.entities.ConjuntoIds;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * Análises sobre o grafo de amizades: quantidade de amigos em comum entre dois usuários e ranking de
+ * amigos de amigos ("pessoas que você talvez conheça").
+ * <p>
+ * As listas de adjacência são arrays de IDs em ordem crescente (veja {@link ConjuntoIds#ordenados()}),
+ * de modo que amigos em comum são uma interseção de arrays ordenados. Os amigos de amigos são contados
+ * ordenando-os e contando as repetições; quando são muitos em relação à quantidade de usuários (os
+ * amigos de uma celebridade), cada ocorrência incrementa um contador por ID, sem ordenação. Para
+ * usuários de grau alto, a leitura das listas dos amigos, a cópia, a ordenação, a contagem e a
+ * interseção são divididas em tarefas do {@link ForkJoinPool#commonPool()}; o limite é configurado
+ * pela propriedade {@code jackut.grafo.paralelo}.
+ * <p>
+ * Os rankings ficam em um cache LRU de {@code jackut.recomendacoes.cache} usuários. Quando uma amizade
+ * é feita, os rankings dos dois usuários e dos amigos de cada um são descartados, pois são os únicos em
+ * que ela pode aparecer. Um ranking calculado enquanto alguma amizade era feita não é guardado, já que
+ * pode ter lido as listas de antes dela.
+ */
+public class AnaliseAmizades {
+    private static final int LIMITE_PARALELO = Integer.getInteger("jackut.grafo.paralelo", 1 << 15);
+    private static final int CAPACIDADE_CACHE = Integer.getInteger("jackut.recomendacoes.cache", 4096);
+    // Quantidade de amigos a partir da qual as listas deles são lidas em paralelo
+    private static final int LIMITE_LEITURA_PARALELA = 1024;
+    private static final int TRECHO = 4096;
+
+    private final IntFunction<int[]> amigos;
+    private final IntSupplier quantidadeUsuarios;
+    private final Map<Integer, Candidatos> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Candidatos> maisAntigo) {
+            return size() > CAPACIDADE_CACHE;
+        }
+    };
+    // Incrementada a cada amizade feita; protegida pela trava do cache
+    private long geracao;
+
+    /**
+     * Cria a análise sobre um grafo de amizades.
+     *
+     * @param amigos Obtém os IDs dos amigos de um usuário em ordem crescente, em um array que não é
+     * alterado depois de retornado.
+     * @param quantidadeUsuarios Obtém a quantidade de IDs atribuídos; todos os IDs são menores que ela.
+     */
+    public AnaliseAmizades(IntFunction<int[]> amigos, IntSupplier quantidadeUsuarios) {
+        this.amigos = amigos;
+        this.quantidadeUsuarios = quantidadeUsuarios;
+    }
+
+    /**
+     * Conta os amigos em comum entre dois usuários.
+     *
+     * @param usuario O ID de um usuário.
+     * @param outro O ID do outro usuário.
+     * @return A quantidade de amigos em comum.
+     */
+    public int contarEmComum(int usuario, int outro) {
+        int[] a = amigos.apply(usuario);
+        int[] b = amigos.apply(outro);
+        int[] menor = a.length <= b.length ? a : b;
+        int[] maior = menor == a ? b : a;
+        if (menor.length >= LIMITE_PARALELO) {
+            return ForkJoinPool.commonPool().invoke(new ContagemIntersecao(menor, 0, menor.length, maior));
+        }
+        return contarIntersecao(menor, 0, menor.length, maior, 0, maior.length);
+    }
+
+    /**
+     * Obtém os amigos de amigos de um usuário que ainda não são seus amigos, ordenados pela quantidade
+     * de amigos em comum.
+     *
+     * @param usuario O ID do usuário.
+     * @param limite A quantidade mínima de candidatos desejada; o resultado pode ter mais, se vier do
+     * cache, ou menos, se não houver tantos candidatos.
+     * @return Os candidatos.
+     */
+    public Candidatos recomendar(int usuario, int limite) {
+        long inicio;
+        synchronized (cache) {
+            Candidatos guardados = cache.get(usuario);
+            if (guardados != null && (guardados.isCompleto() || guardados.tamanho() >= limite)) {
+                return guardados;
+            }
+            inicio = geracao;
+        }
+
+        Candidatos candidatos = calcular(usuario, limite);
+        synchronized (cache) {
+            if (geracao == inicio && CAPACIDADE_CACHE > 0) {
+                cache.put(usuario, candidatos);
+            }
+        }
+        return candidatos;
+    }
+
+    /**
+     * Descarta os rankings afetados por uma amizade recém-feita. Deve ser chamado depois que os dois
+     * usuários já constam como amigos um do outro.
+     *
+     * @param usuario O ID de um dos usuários.
+     * @param amigo O ID do outro usuário.
+     * @param amigosUsuario Os amigos do primeiro usuário.
+     * @param amigosAmigo Os amigos do segundo usuário.
+     */
+    public void invalidar(int usuario, int amigo, ConjuntoIds amigosUsuario, ConjuntoIds amigosAmigo) {
+        synchronized (cache) {
+            geracao++;
+            if (cache.isEmpty()) {
+                return;
+            }
+            // Percorre o que for menor: o cache ou as listas de amigos
+            if (cache.size() <= amigosUsuario.tamanho() + amigosAmigo.tamanho()) {
+                cache.keySet().removeIf(id -> id == usuario || id == amigo
+                        || amigosUsuario.contem(id) || amigosAmigo.contem(id));
+            } else {
+                cache.remove(usuario);
+                cache.remove(amigo);
+                amigosUsuario.paraCada(cache::remove);
+                amigosAmigo.paraCada(cache::remove);
+            }
+        }
+    }
+
+    /**
+     * Descarta todos os rankings guardados.
+     */
+    public void limpar() {
+        synchronized (cache) {
+            geracao++;
+            cache.clear();
+        }
+    }
+
+    private Candidatos calcular(int usuario, int limite) {
+        int[] proprios = amigos.apply(usuario);
+        int[][] listas = new int[proprios.length][];
+        if (proprios.length >= LIMITE_LEITURA_PARALELA) {
+            ForkJoinPool.commonPool().invoke(new LeituraListas(proprios, listas, 0, proprios.length));
+        } else {
+            for (int i = 0; i < proprios.length; i++) {
+                listas[i] = amigos.apply(proprios[i]);
+            }
+        }
+
+        int[] posicoes = new int[listas.length + 1];
+        for (int i = 0; i < listas.length; i++) {
+            long fim = (long) posicoes[i] + listas[i].length;
+            if (fim > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Amigos de amigos demais para analisar.");
+            }
+            posicoes[i + 1] = (int) fim;
+        }
+        int total = posicoes[listas.length];
+        int universo = Math.max(quantidadeUsuarios.getAsInt(), maiorId(listas) + 1);
+        if (total >= LIMITE_PARALELO && total >= universo / 8) {
+            return contarDenso(usuario, proprios, listas, posicoes, universo, limite);
+        }
+
+        int[] todos = new int[total];
+        if (total >= LIMITE_PARALELO) {
+            ForkJoinPool.commonPool().invoke(new CopiaListas(listas, posicoes, todos, 0, listas.length));
+            Arrays.parallelSort(todos);
+        } else {
+            for (int i = 0; i < listas.length; i++) {
+                System.arraycopy(listas[i], 0, todos, posicoes[i], listas[i].length);
+            }
+            Arrays.sort(todos);
+        }
+
+        // Cada repetição de um ID é um amigo em comum; fica com os maiores em um heap mínimo
+        HeapCandidatos melhores = new HeapCandidatos(Math.max(1, Math.min(limite, total)));
+        int distintos = 0;
+        for (int i = 0; i < todos.length; ) {
+            int candidato = todos[i];
+            int j = i + 1;
+            while (j < todos.length && todos[j] == candidato) {
+                j++;
+            }
+            if (candidato != usuario && Arrays.binarySearch(proprios, candidato) < 0) {
+                distintos++;
+                melhores.oferecer(candidato, j - i);
+            }
+            i = j;
+        }
+        return melhores.extrair(distintos <= limite);
+    }
+
+    private Candidatos contarDenso(int usuario, int[] proprios, int[][] listas, int[] posicoes, int universo,
+                                   int limite) {
+        // Cada parte conta em um array próprio, então não há mais partes que threads
+        int partes = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(),
+                posicoes[listas.length] / LIMITE_PARALELO));
+        int[] contagens = ForkJoinPool.commonPool().invoke(
+                new ContagemDensa(listas, posicoes, 0, listas.length, universo, partes));
+        contagens[usuario] = 0;
+        for (int amigo : proprios) {
+            contagens[amigo] = 0;
+        }
+
+        HeapCandidatos melhores = new HeapCandidatos(Math.max(1, Math.min(limite, universo)));
+        int distintos = 0;
+        for (int candidato = 0; candidato < universo; candidato++) {
+            if (contagens[candidato] > 0) {
+                distintos++;
+                melhores.oferecer(candidato, contagens[candidato]);
+            }
+        }
+        return melhores.extrair(distintos <= limite);
+    }
+
+    private static int maiorId(int[][] listas) {
+        int maior = -1;
+        for (int[] lista : listas) {
+            if (lista.length > 0) {
+                maior = Math.max(maior, lista[lista.length - 1]);
+            }
+        }
+        return maior;
+    }
+
+    /**
+     * Conta os elementos comuns de dois trechos de arrays ordenados: por intercalação quando os
+     * tamanhos são próximos, ou por busca binária de cada elemento do menor no maior.
+     */
+    private static int contarIntersecao(int[] menor, int de, int ate, int[] maior, int deMaior, int ateMaior) {
+        int comum = 0;
+        if (ateMaior - deMaior < (ate - de) * 32) {
+            int i = de;
+            int j = deMaior;
+            // Sem desvios dependentes dos dados, que o processador erraria em metade das comparações
+            while (i < ate && j < ateMaior) {
+                int a = menor[i];
+                int b = maior[j];
+                comum += a == b ? 1 : 0;
+                i += a <= b ? 1 : 0;
+                j += a >= b ? 1 : 0;
+            }
+            return comum;
+        }
+        for (int i = de; i < ate; i++) {
+            int posicao = Arrays.binarySearch(maior, deMaior, ateMaior, menor[i]);
+            if (posicao >= 0) {
+                comum++;
+                deMaior = posicao + 1;
+            } else {
+                deMaior = -posicao - 1;
+            }
+        }
+        return comum;
+    }
+
+    /**
+     * Posição do primeiro elemento maior ou igual a um valor em um array ordenado.
+     */
+    private static int limiteInferior(int[] ordenado, int valor) {
+        int posicao = Arrays.binarySearch(ordenado, valor);
+        return posicao >= 0 ? posicao : -posicao - 1;
+    }
+
+    /**
+     * Conta a interseção dividindo o array menor em trechos; cada trecho é comparado apenas com a
+     * faixa do maior que cobre os mesmos valores.
+     */
+    private static class ContagemIntersecao extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] menor;
+        private final int de;
+        private final int ate;
+        private final int[] maior;
+
+        ContagemIntersecao(int[] menor, int de, int ate, int[] maior) {
+            this.menor = menor;
+            this.de = de;
+            this.ate = ate;
+            this.maior = maior;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (ate - de <= TRECHO) {
+                int deMaior = limiteInferior(maior, menor[de]);
+                int ateMaior = menor[ate - 1] == Integer.MAX_VALUE
+                        ? maior.length : limiteInferior(maior, menor[ate - 1] + 1);
+                return contarIntersecao(menor, de, ate, maior, deMaior, ateMaior);
+            }
+            int meio = (de + ate) >>> 1;
+            ContagemIntersecao esquerda = new ContagemIntersecao(menor, de, meio, maior);
+            esquerda.fork();
+            int direita = new ContagemIntersecao(menor, meio, ate, maior).compute();
+            return esquerda.join() + direita;
+        }
+    }
+
+    /**
+     * Lê as listas de amigos de um trecho dos amigos do usuário.
+     */
+    private class LeituraListas extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] proprios;
+        private final int[][] listas;
+        private final int de;
+        private final int ate;
+
+        LeituraListas(int[] proprios, int[][] listas, int de, int ate) {
+            this.proprios = proprios;
+            this.listas = listas;
+            this.de = de;
+            this.ate = ate;
+        }
+
+        @Override
+        protected void compute() {
+            if (ate - de <= LIMITE_LEITURA_PARALELA / 4) {
+                for (int i = de; i < ate; i++) {
+                    listas[i] = amigos.apply(proprios[i]);
+                }
+                return;
+            }
+            int meio = (de + ate) >>> 1;
+            invokeAll(new LeituraListas(proprios, listas, de, meio), new LeituraListas(proprios, listas, meio, ate));
+        }
+    }
+
+    /**
+     * Copia um trecho das listas de amigos para as suas posições no array de todos os amigos de amigos.
+     */
+    private static class CopiaListas extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] listas;
+        private final int[] posicoes;
+        private final int[] destino;
+        private final int de;
+        private final int ate;
+
+        CopiaListas(int[][] listas, int[] posicoes, int[] destino, int de, int ate) {
+            this.listas = listas;
+            this.posicoes = posicoes;
+            this.destino = destino;
+            this.de = de;
+            this.ate = ate;
+        }
+
+        @Override
+        protected void compute() {
+            if (ate - de <= 1 || posicoes[ate] - posicoes[de] <= TRECHO * 4) {
+                for (int i = de; i < ate; i++) {
+                    System.arraycopy(listas[i], 0, destino, posicoes[i], listas[i].length);
+                }
+                return;
+            }
+            int meio = (de + ate) >>> 1;
+            invokeAll(new CopiaListas(listas, posicoes, destino, de, meio),
+                    new CopiaListas(listas, posicoes, destino, meio, ate));
+        }
+    }
+
+    /**
+     * Conta as ocorrências de cada ID em um trecho das listas de amigos, dividindo o trecho entre as
+     * partes pela quantidade de IDs; as contagens das partes são somadas no fim.
+     */
+    private static class ContagemDensa extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] listas;
+        private final int[] posicoes;
+        private final int de;
+        private final int ate;
+        private final int universo;
+        private final int partes;
+
+        ContagemDensa(int[][] listas, int[] posicoes, int de, int ate, int universo, int partes) {
+            this.listas = listas;
+            this.posicoes = posicoes;
+            this.de = de;
+            this.ate = ate;
+            this.universo = universo;
+            this.partes = partes;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (partes <= 1 || ate - de <= 1) {
+                int[] contagens = new int[universo];
+                for (int i = de; i < ate; i++) {
+                    for (int id : listas[i]) {
+                        contagens[id]++;
+                    }
+                }
+                return contagens;
+            }
+            // Divide onde a metade dos IDs do trecho é alcançada
+            int metade = (posicoes[de] + posicoes[ate]) >>> 1;
+            int meio = Arrays.binarySearch(posicoes, de, ate + 1, metade);
+            meio = Math.min(ate - 1, Math.max(de + 1, meio >= 0 ? meio : -meio - 1));
+            ContagemDensa esquerda = new ContagemDensa(listas, posicoes, de, meio, universo, partes / 2);
+            esquerda.fork();
+            int[] contagens = new ContagemDensa(listas, posicoes, meio, ate, universo, partes - partes / 2).compute();
+            int[] outras = esquerda.join();
+            for (int id = 0; id < universo; id++) {
+                contagens[id] += outras[id];
+            }
+            return contagens;
+        }
+    }
+
+    /**
+     * Heap mínimo dos melhores candidatos, cada um codificado em um long: a quantidade de amigos em
+     * comum nos 32 bits altos e o complemento do ID nos baixos, para que, no empate, o menor ID vença.
+     */
+    private static class HeapCandidatos {
+        private final long[] chaves;
+        private int tamanho;
+
+        HeapCandidatos(int capacidade) {
+            this.chaves = new long[capacidade];
+        }
+
+        void oferecer(int id, int emComum) {
+            long chave = (long) emComum << 32 | (Integer.MAX_VALUE - id);
+            if (tamanho < chaves.length) {
+                chaves[tamanho] = chave;
+                subir(tamanho++);
+            } else if (chave > chaves[0]) {
+                chaves[0] = chave;
+                descer(0);
+            }
+        }
+
+        Candidatos extrair(boolean completo) {
+            long[] ordenadas = Arrays.copyOf(chaves, tamanho);
+            Arrays.sort(ordenadas);
+            int[] ids = new int[tamanho];
+            int[] emComum = new int[tamanho];
+            for (int i = 0; i < tamanho; i++) {
+                long chave = ordenadas[tamanho - 1 - i];
+                ids[i] = Integer.MAX_VALUE - (int) chave;
+                emComum[i] = (int) (chave >>> 32);
+            }
+            return new Candidatos(ids, emComum, completo);
+        }
+
+        private void subir(int posicao) {
+            while (posicao > 0) {
+                int pai = (posicao - 1) >>> 1;
+                if (chaves[pai] <= chaves[posicao]) {
+                    return;
+                }
+                trocar(pai, posicao);
+                posicao = pai;
+            }
+        }
+
+        private void descer(int posicao) {
+            while (true) {
+                int menor = posicao;
+                int esquerda = 2 * posicao + 1;
+                if (esquerda < tamanho && chaves[esquerda] < chaves[menor]) {
+                    menor = esquerda;
+                }
+                if (esquerda + 1 < tamanho && chaves[esquerda + 1] < chaves[menor]) {
+                    menor = esquerda + 1;
+                }
+                if (menor == posicao) {
+                    return;
+                }
+                trocar(posicao, menor);
+                posicao = menor;
+            }
+        }
+
+        private void trocar(int a, int b) {
+            long temporaria = chaves[a];
+            chaves[a] = chaves[b];
+            chaves[b] = temporaria;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package br.ufal.ic.p2.jackut.grafo;
+
+/**
+ * Candidatos a amigo de um usuário (amigos de amigos que ainda não são seus amigos), do que tem mais
+ * amigos em comum para o que tem menos; empates ficam em ordem de ID.
+ */
+public class Candidatos {
+    private final int[] ids;
+    private final int[] emComum;
+    private final boolean completo;
+
+    Candidatos(int[] ids, int[] emComum, boolean completo) {
+        this.ids = ids;
+        this.emComum = emComum;
+        this.completo = completo;
+    }
+
+    /**
+     * Obtém a quantidade de candidatos.
+     *
+     * @return A quantidade de candidatos.
+     */
+    public int tamanho() {
+        return ids.length;
+    }
+
+    /**
+     * Obtém o ID de um candidato.
+     *
+     * @param posicao A posição do candidato no ranking, a partir de zero.
+     * @return O ID do candidato.
+     */
+    public int getId(int posicao) {
+        return ids[posicao];
+    }
+
+    /**
+     * Obtém a quantidade de amigos em comum com um candidato.
+     *
+     * @param posicao A posição do candidato no ranking, a partir de zero.
+     * @return A quantidade de amigos em comum.
+     */
+    public int getEmComum(int posicao) {
+        return emComum[posicao];
+    }
+
+    /**
+     * Verifica se todos os amigos de amigos estão entre os candidatos, ou se o ranking foi cortado.
+     *
+     * @return true se nenhum candidato ficou de fora.
+     */
+    public boolean isCompleto() {
+        return completo;
+    }
+}
@@ -0,0 +1,300 @@
+package br.ufal.ic.p2.jackut.indice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Consulta sobre os atributos de perfil, avaliada pelo {@link IndicePerfis}.
+ * <p>
+ * Uma consulta é um termo {@code atributo=valor} ou uma combinação de consultas com E ou OU. Na forma
+ * textual, {@code &} é o E, {@code |} é o OU (com precedência menor que o E) e parênteses agrupam
+ * subconsultas; valores com espaços ou com os caracteres {@code &|()} vão entre aspas, com {@code \"}
+ * e {@code \\} como escapes. Por exemplo: {@code cidade=Maceio & (estilo=rock | estilo="musica pop")}.
+ */
+public abstract class Consulta {
+
+    Consulta() {
+    }
+
+    /**
+     * Cria uma consulta pelos usuários que têm um valor em um atributo.
+     *
+     * @param atributo O nome do atributo.
+     * @param valor O valor.
+     * @return A consulta.
+     */
+    public static Consulta igual(String atributo, String valor) {
+        return new Termo(atributo, valor);
+    }
+
+    /**
+     * Cria uma consulta pelos usuários que satisfazem todas as subconsultas.
+     *
+     * @param consultas As subconsultas.
+     * @return A consulta.
+     */
+    public static Consulta e(Consulta... consultas) {
+        return consultas.length == 1 ? consultas[0] : new E(Arrays.asList(consultas));
+    }
+
+    /**
+     * Cria uma consulta pelos usuários que satisfazem ao menos uma das subconsultas.
+     *
+     * @param consultas As subconsultas.
+     * @return A consulta.
+     */
+    public static Consulta ou(Consulta... consultas) {
+        return consultas.length == 1 ? consultas[0] : new Ou(Arrays.asList(consultas));
+    }
+
+    /**
+     * Interpreta uma consulta na forma textual.
+     *
+     * @param texto A consulta.
+     * @return A consulta interpretada.
+     * @throws IllegalArgumentException Se o texto não for uma consulta válida.
+     */
+    public static Consulta interpretar(String texto) {
+        if (texto == null) {
+            throw new IllegalArgumentException("Consulta inválida.");
+        }
+        Interpretador interpretador = new Interpretador(texto);
+        Consulta consulta = interpretador.ou();
+        interpretador.pularEspacos();
+        if (!interpretador.terminou()) {
+            throw new IllegalArgumentException("Consulta inválida.");
+        }
+        return consulta;
+    }
+
+    /**
+     * Avalia a consulta sobre os atributos travados para leitura pelo {@link IndicePerfis#consultar}.
+     * O resultado pode ser uma lista do próprio índice.
+     */
+    abstract ListaIds avaliar(IndicePerfis.Travados indice);
+
+    /**
+     * Estima, sem avaliar a consulta, quantos usuários a satisfazem. Usado para avaliar primeiro as
+     * partes mais seletivas de um E.
+     */
+    abstract int estimar(IndicePerfis.Travados indice);
+
+    /**
+     * Adiciona a um conjunto os atributos usados pela consulta.
+     */
+    abstract void coletarAtributos(Set<String> atributos);
+
+    private static class Termo extends Consulta {
+        private final String atributo;
+        private final String valor;
+
+        Termo(String atributo, String valor) {
+            this.atributo = atributo;
+            this.valor = valor;
+        }
+
+        @Override
+        ListaIds avaliar(IndicePerfis.Travados indice) {
+            return indice.lista(atributo, valor);
+        }
+
+        @Override
+        int estimar(IndicePerfis.Travados indice) {
+            return indice.lista(atributo, valor).tamanho();
+        }
+
+        @Override
+        void coletarAtributos(Set<String> atributos) {
+            atributos.add(atributo);
+        }
+
+        @Override
+        public String toString() {
+            return atributo + "=\"" + valor.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+
+    private static class E extends Consulta {
+        private final List<Consulta> partes;
+
+        E(List<Consulta> partes) {
+            this.partes = partes;
+        }
+
+        @Override
+        void coletarAtributos(Set<String> atributos) {
+            for (Consulta parte : partes) {
+                parte.coletarAtributos(atributos);
+            }
+        }
+
+        @Override
+        ListaIds avaliar(IndicePerfis.Travados indice) {
+            // Começa pela parte mais seletiva; cada interseção só pode diminuir o resultado
+            List<Consulta> ordem = new ArrayList<>(partes);
+            ordem.sort(Comparator.comparingInt(parte -> parte.estimar(indice)));
+            ListaIds resultado = ordem.get(0).avaliar(indice);
+            for (int i = 1; i < ordem.size() && !resultado.isEmpty(); i++) {
+                resultado = resultado.e(ordem.get(i).avaliar(indice));
+            }
+            return resultado;
+        }
+
+        @Override
+        int estimar(IndicePerfis.Travados indice) {
+            int minimo = Integer.MAX_VALUE;
+            for (Consulta parte : partes) {
+                minimo = Math.min(minimo, parte.estimar(indice));
+            }
+            return minimo;
+        }
+
+        @Override
+        public String toString() {
+            return juntar(partes, " & ");
+        }
+    }
+
+    private static class Ou extends Consulta {
+        private final List<Consulta> partes;
+
+        Ou(List<Consulta> partes) {
+            this.partes = partes;
+        }
+
+        @Override
+        void coletarAtributos(Set<String> atributos) {
+            for (Consulta parte : partes) {
+                parte.coletarAtributos(atributos);
+            }
+        }
+
+        @Override
+        ListaIds avaliar(IndicePerfis.Travados indice) {
+            ListaIds resultado = partes.get(0).avaliar(indice);
+            for (int i = 1; i < partes.size(); i++) {
+                resultado = resultado.ou(partes.get(i).avaliar(indice));
+            }
+            return resultado;
+        }
+
+        @Override
+        int estimar(IndicePerfis.Travados indice) {
+            long soma = 0;
+            for (Consulta parte : partes) {
+                soma += parte.estimar(indice);
+            }
+            return (int) Math.min(Integer.MAX_VALUE, soma);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + juntar(partes, " | ") + ")";
+        }
+    }
+
+    private static String juntar(List<Consulta> partes, String separador) {
+        StringBuilder texto = new StringBuilder();
+        for (Consulta parte : partes) {
+            if (texto.length() > 0) {
+                texto.append(separador);
+            }
+            texto.append(parte);
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Interpretador descendente recursivo da forma textual.
+     */
+    private static class Interpretador {
+        private final String texto;
+        private int posicao;
+
+        Interpretador(String texto) {
+            this.texto = texto;
+        }
+
+        Consulta ou() {
+            List<Consulta> partes = new ArrayList<>();
+            partes.add(e());
+            while (consumir('|')) {
+                partes.add(e());
+            }
+            return partes.size() == 1 ? partes.get(0) : new Ou(partes);
+        }
+
+        private Consulta e() {
+            List<Consulta> partes = new ArrayList<>();
+            partes.add(fator());
+            while (consumir('&')) {
+                partes.add(fator());
+            }
+            return partes.size() == 1 ? partes.get(0) : new E(partes);
+        }
+
+        private Consulta fator() {
+            if (consumir('(')) {
+                Consulta consulta = ou();
+                if (!consumir(')')) {
+                    throw new IllegalArgumentException("Consulta inválida.");
+                }
+                return consulta;
+            }
+            String atributo = palavra('=');
+            if (atributo.isEmpty() || !consumir('=')) {
+                throw new IllegalArgumentException("Consulta inválida.");
+            }
+            pularEspacos();
+            String valor = !terminou() && texto.charAt(posicao) == '"' ? citado() : palavra('\0');
+            return new Termo(atributo, valor);
+        }
+
+        private String palavra(char fim) {
+            pularEspacos();
+            int inicio = posicao;
+            while (!terminou() && "&|()\"".indexOf(texto.charAt(posicao)) < 0 && texto.charAt(posicao) != fim) {
+                posicao++;
+            }
+            return texto.substring(inicio, posicao).trim();
+        }
+
+        private String citado() {
+            StringBuilder valor = new StringBuilder();
+            posicao++;
+            while (!terminou()) {
+                char c = texto.charAt(posicao++);
+                if (c == '"') {
+                    return valor.toString();
+                }
+                if (c == '\\' && !terminou()) {
+                    c = texto.charAt(posicao++);
+                }
+                valor.append(c);
+            }
+            throw new IllegalArgumentException("Consulta inválida.");
+        }
+
+        private boolean consumir(char c) {
+            pularEspacos();
+            if (!terminou() && texto.charAt(posicao) == c) {
+                posicao++;
+                return true;
+            }
+            return false;
+        }
+
+        void pularEspacos() {
+            while (!terminou() && Character.isWhitespace(texto.charAt(posicao))) {
+                posicao++;
+            }
+        }
+
+        boolean terminou() {
+            return posicao >= texto.length();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package br.ufal.ic.p2.jackut.indice;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Índice invertido dos atributos de perfil: para cada par (atributo, valor), a lista dos IDs dos
+ * usuários que têm esse valor no atributo.
+ * <p>
+ * Cada atributo tem o seu próprio mapa de valores, protegido por uma trava de leitura e escrita;
+ * assim alterações em atributos diferentes não disputam a mesma trava, e as consultas de um atributo
+ * só esperam pelas alterações desse atributo. Uma consulta é avaliada com as travas de leitura dos
+ * seus atributos adquiridas, diretamente sobre as listas do índice. A avaliação só enxerga os
+ * atributos que ela travou: um atributo criado por uma alteração durante a consulta conta como vazio,
+ * em vez de ser lido sem trava.
+ * <p>
+ * Por padrão todos os atributos são indexados. A propriedade {@code jackut.indice.atributos} pode
+ * restringir o índice a uma lista de atributos separados por vírgula, evitando indexar campos de texto
+ * livre, em que quase todo valor é único.
+ */
+public class IndicePerfis {
+    private static final Set<String> INDEXADOS = lerIndexados();
+    private static final ListaIds VAZIA = new ListaIds();
+
+    private final ConcurrentHashMap<String, Atributo> atributos = new ConcurrentHashMap<>();
+
+    /**
+     * Verifica se um atributo é indexado.
+     *
+     * @param atributo O nome do atributo.
+     * @return true se o atributo é indexado.
+     */
+    public static boolean isIndexado(String atributo) {
+        return INDEXADOS == null || INDEXADOS.contains(atributo);
+    }
+
+    /**
+     * Registra que um usuário tem um valor em um atributo.
+     *
+     * @param atributo O nome do atributo.
+     * @param valor O valor; null é ignorado.
+     * @param id O ID do usuário.
+     */
+    public void adicionar(String atributo, String valor, int id) {
+        trocar(atributo, null, valor, id);
+    }
+
+    /**
+     * Registra a troca do valor de um atributo de um usuário.
+     *
+     * @param atributo O nome do atributo.
+     * @param anterior O valor anterior, ou null se o atributo não estava preenchido.
+     * @param novo O novo valor, ou null se o atributo deixou de estar preenchido.
+     * @param id O ID do usuário.
+     */
+    public void trocar(String atributo, String anterior, String novo, int id) {
+        if (atributo == null || !isIndexado(atributo) || Objects.equals(anterior, novo)) {
+            return;
+        }
+        Atributo indice = this.atributos.computeIfAbsent(atributo, a -> new Atributo());
+        indice.trava.writeLock().lock();
+        try {
+            if (anterior != null) {
+                Object atual = indice.valores.get(anterior);
+                if (atual instanceof ListaIds) {
+                    ListaIds ids = (ListaIds) atual;
+                    if (ids.remover(id) && ids.tamanho() == 1) {
+                        indice.valores.put(anterior, ids.pagina(0, 1)[0]);
+                    }
+                } else if (atual != null && (Integer) atual == id) {
+                    indice.valores.remove(anterior);
+                }
+            }
+            if (novo != null) {
+                Object atual = indice.valores.get(novo);
+                if (atual == null) {
+                    indice.valores.put(novo, id);
+                } else if (atual instanceof ListaIds) {
+                    ((ListaIds) atual).adicionar(id);
+                } else if ((Integer) atual != id) {
+                    ListaIds ids = new ListaIds();
+                    ids.adicionar((Integer) atual);
+                    ids.adicionar(id);
+                    indice.valores.put(novo, ids);
+                }
+            }
+        } finally {
+            indice.trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Avalia uma consulta e lê o seu resultado com as travas de leitura dos atributos envolvidos
+     * adquiridas. As listas do índice são usadas diretamente, sem cópias; por isso o resultado só pode
+     * ser lido dentro da leitura, e não pode ser alterado.
+     *
+     * @param consulta A consulta.
+     * @param leitura Extrai do resultado o que for necessário, como uma página de IDs.
+     * @param <T> O tipo do valor extraído.
+     * @return O valor extraído pela leitura.
+     * @throws IllegalArgumentException Se a consulta usar um atributo não indexado.
+     */
+    public <T> T consultar(Consulta consulta, Function<ListaIds, T> leitura) {
+        // Em ordem de nome; nenhuma escrita adquire mais de uma trava, mas a ordem fixa evita surpresas
+        Set<String> nomes = new TreeSet<>();
+        consulta.coletarAtributos(nomes);
+        Map<String, Atributo> encontrados = new LinkedHashMap<>();
+        for (String nome : nomes) {
+            if (!isIndexado(nome)) {
+                throw new IllegalArgumentException("Atributo não indexado.");
+            }
+            Atributo indice = this.atributos.get(nome);
+            if (indice != null) {
+                encontrados.put(nome, indice);
+            }
+        }
+        List<Atributo> travados = new ArrayList<>(encontrados.size());
+        try {
+            for (Atributo indice : encontrados.values()) {
+                indice.trava.readLock().lock();
+                travados.add(indice);
+            }
+            return leitura.apply(consulta.avaliar(new Travados(encontrados)));
+        } finally {
+            for (Atributo indice : travados) {
+                indice.trava.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove todas as entradas do índice.
+     */
+    public void limpar() {
+        this.atributos.clear();
+    }
+
+    private static Set<String> lerIndexados() {
+        String lista = System.getProperty("jackut.indice.atributos");
+        if (lista == null || lista.isBlank()) {
+            return null;
+        }
+        Set<String> indexados = new HashSet<>();
+        for (String atributo : lista.split(",")) {
+            if (!atributo.isBlank()) {
+                indexados.add(atributo.trim());
+            }
+        }
+        return indexados;
+    }
+
+    /**
+     * Os atributos travados por uma consulta, os únicos que a avaliação dela pode ler.
+     */
+    static final class Travados {
+        private final Map<String, Atributo> atributos;
+
+        private Travados(Map<String, Atributo> atributos) {
+            this.atributos = atributos;
+        }
+
+        /**
+         * Obtém a lista de um valor, que não deve ser alterada.
+         */
+        ListaIds lista(String atributo, String valor) {
+            Atributo indice = this.atributos.get(atributo);
+            Object ids = indice == null ? null : indice.valores.get(valor);
+            if (ids == null) {
+                return VAZIA;
+            }
+            if (ids instanceof ListaIds) {
+                return (ListaIds) ids;
+            }
+            ListaIds unico = new ListaIds();
+            unico.adicionar((Integer) ids);
+            return unico;
+        }
+    }
+
+    /**
+     * Valores de um atributo e a trava que os protege. Um valor de um único usuário, comum em campos
+     * de texto livre, é guardado apenas como o {@link Integer} do ID; a {@link ListaIds} só é criada
+     * quando um segundo usuário passa a ter o mesmo valor.
+     */
+    private static class Atributo {
+        private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+        private final Map<String, Object> valores = new HashMap<>();
+    }
+}
@@ -0,0 +1,468 @@
+package br.ufal.ic.p2.jackut.indice;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto ordenado de IDs de usuários, usado como lista de ocorrências do índice de perfis.
+ * <p>
+ * Os IDs são divididos em blocos de 65.536 valores consecutivos. Um bloco com poucos IDs guarda os
+ * 16 bits baixos em um vetor ordenado; um bloco com mais de {@value #LIMITE_ESPARSO} IDs passa a ser
+ * um mapa de bits de 8 KB. Assim uma lista com um único usuário ocupa poucos bytes, uma com metade
+ * dos usuários ocupa um bit por usuário, e a interseção e a união de duas listas trabalham bloco a
+ * bloco, com operações entre palavras de 64 bits quando os dois blocos são mapas de bits.
+ * <p>
+ * A lista não é thread-safe.
+ */
+public class ListaIds {
+    private static final int LIMITE_ESPARSO = 4096;
+    private static final Bloco[] SEM_BLOCOS = new Bloco[0];
+    private static final char[] SEM_CHAVES = new char[0];
+
+    // Os 16 bits altos dos IDs de cada bloco, em ordem crescente
+    private char[] chaves = SEM_CHAVES;
+    private Bloco[] blocos = SEM_BLOCOS;
+    private int quantidadeBlocos;
+    private int tamanho;
+
+    /**
+     * Obtém a quantidade de IDs na lista.
+     *
+     * @return A quantidade de IDs.
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Verifica se a lista está vazia.
+     *
+     * @return true se não houver IDs.
+     */
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    /**
+     * Verifica se um ID está na lista.
+     *
+     * @param id O ID.
+     * @return true se o ID estiver na lista.
+     */
+    public boolean contem(int id) {
+        int posicao = buscarBloco((char) (id >>> 16));
+        return posicao >= 0 && blocos[posicao].contem((char) id);
+    }
+
+    /**
+     * Adiciona um ID à lista.
+     *
+     * @param id O ID, não negativo.
+     * @return true se o ID não estava na lista.
+     */
+    public boolean adicionar(int id) {
+        char chave = (char) (id >>> 16);
+        int posicao = buscarBloco(chave);
+        if (posicao < 0) {
+            posicao = -posicao - 1;
+            inserirBloco(posicao, chave, new Bloco());
+        }
+        if (blocos[posicao].adicionar((char) id)) {
+            tamanho++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove um ID da lista.
+     *
+     * @param id O ID.
+     * @return true se o ID estava na lista.
+     */
+    public boolean remover(int id) {
+        int posicao = buscarBloco((char) (id >>> 16));
+        if (posicao < 0 || !blocos[posicao].remover((char) id)) {
+            return false;
+        }
+        tamanho--;
+        if (blocos[posicao].tamanho == 0) {
+            removerBloco(posicao);
+        }
+        return true;
+    }
+
+    /**
+     * Calcula a interseção desta lista com outra.
+     *
+     * @param outra A outra lista.
+     * @return Uma nova lista com os IDs presentes nas duas.
+     */
+    public ListaIds e(ListaIds outra) {
+        ListaIds resultado = new ListaIds();
+        int i = 0;
+        int j = 0;
+        while (i < quantidadeBlocos && j < outra.quantidadeBlocos) {
+            if (chaves[i] < outra.chaves[j]) {
+                i++;
+            } else if (chaves[i] > outra.chaves[j]) {
+                j++;
+            } else {
+                Bloco bloco = blocos[i].e(outra.blocos[j]);
+                if (bloco != null) {
+                    resultado.anexarBloco(chaves[i], bloco);
+                }
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Calcula a união desta lista com outra.
+     *
+     * @param outra A outra lista.
+     * @return Uma nova lista com os IDs presentes em qualquer uma das duas.
+     */
+    public ListaIds ou(ListaIds outra) {
+        ListaIds resultado = new ListaIds();
+        int i = 0;
+        int j = 0;
+        while (i < quantidadeBlocos || j < outra.quantidadeBlocos) {
+            if (j == outra.quantidadeBlocos || i < quantidadeBlocos && chaves[i] < outra.chaves[j]) {
+                resultado.anexarBloco(chaves[i], blocos[i].copiar());
+                i++;
+            } else if (i == quantidadeBlocos || chaves[i] > outra.chaves[j]) {
+                resultado.anexarBloco(outra.chaves[j], outra.blocos[j].copiar());
+                j++;
+            } else {
+                resultado.anexarBloco(chaves[i], blocos[i].ou(outra.blocos[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cria uma cópia independente da lista.
+     *
+     * @return A cópia.
+     */
+    public ListaIds copiar() {
+        ListaIds copia = new ListaIds();
+        copia.chaves = Arrays.copyOf(chaves, quantidadeBlocos);
+        copia.blocos = new Bloco[quantidadeBlocos];
+        for (int i = 0; i < quantidadeBlocos; i++) {
+            copia.blocos[i] = blocos[i].copiar();
+        }
+        copia.quantidadeBlocos = quantidadeBlocos;
+        copia.tamanho = tamanho;
+        return copia;
+    }
+
+    /**
+     * Obtém, em ordem crescente, os primeiros IDs a partir de um valor.
+     *
+     * @param desde O menor ID que pode ser retornado.
+     * @param limite A quantidade máxima de IDs.
+     * @return Os IDs encontrados, no máximo {@code limite}.
+     */
+    public int[] pagina(int desde, int limite) {
+        int[] ids = new int[Math.min(limite, tamanho)];
+        int quantidade = 0;
+        int posicao = buscarBloco((char) (desde >>> 16));
+        if (posicao < 0) {
+            posicao = -posicao - 1;
+            desde = 0;
+        }
+        for (int b = posicao; b < quantidadeBlocos && quantidade < ids.length; b++) {
+            int alto = chaves[b] << 16;
+            int minimo = b == posicao ? desde & 0xFFFF : 0;
+            quantidade = blocos[b].coletar(minimo, alto, ids, quantidade);
+        }
+        return quantidade == ids.length ? ids : Arrays.copyOf(ids, quantidade);
+    }
+
+    /**
+     * Percorre os IDs em ordem crescente.
+     *
+     * @param acao A ação executada para cada ID.
+     */
+    public void paraCada(IntConsumer acao) {
+        for (int b = 0; b < quantidadeBlocos; b++) {
+            blocos[b].paraCada(chaves[b] << 16, acao);
+        }
+    }
+
+    private int buscarBloco(char chave) {
+        return Arrays.binarySearch(chaves, 0, quantidadeBlocos, chave);
+    }
+
+    private void inserirBloco(int posicao, char chave, Bloco bloco) {
+        if (quantidadeBlocos == chaves.length) {
+            int capacidade = Math.max(1, quantidadeBlocos * 2);
+            chaves = Arrays.copyOf(chaves, capacidade);
+            blocos = Arrays.copyOf(blocos, capacidade);
+        }
+        System.arraycopy(chaves, posicao, chaves, posicao + 1, quantidadeBlocos - posicao);
+        System.arraycopy(blocos, posicao, blocos, posicao + 1, quantidadeBlocos - posicao);
+        chaves[posicao] = chave;
+        blocos[posicao] = bloco;
+        quantidadeBlocos++;
+    }
+
+    private void removerBloco(int posicao) {
+        System.arraycopy(chaves, posicao + 1, chaves, posicao, quantidadeBlocos - posicao - 1);
+        System.arraycopy(blocos, posicao + 1, blocos, posicao, quantidadeBlocos - posicao - 1);
+        quantidadeBlocos--;
+        blocos[quantidadeBlocos] = null;
+    }
+
+    /**
+     * Anexa um bloco com chave maior que todas as existentes, usado ao montar resultados em ordem.
+     */
+    private void anexarBloco(char chave, Bloco bloco) {
+        inserirBloco(quantidadeBlocos, chave, bloco);
+        tamanho += bloco.tamanho;
+    }
+
+    /**
+     * IDs que compartilham os 16 bits altos: um vetor ordenado dos 16 bits baixos quando há poucos,
+     * ou um mapa de bits quando há muitos.
+     */
+    private static final class Bloco {
+        private static final int PALAVRAS = 1024;
+
+        private char[] valores;
+        private long[] bits;
+        private int tamanho;
+
+        Bloco() {
+            this.valores = new char[1];
+        }
+
+        private Bloco(char[] valores, long[] bits, int tamanho) {
+            this.valores = valores;
+            this.bits = bits;
+            this.tamanho = tamanho;
+        }
+
+        boolean contem(char valor) {
+            if (bits != null) {
+                return (bits[valor >>> 6] & (1L << valor)) != 0;
+            }
+            return Arrays.binarySearch(valores, 0, tamanho, valor) >= 0;
+        }
+
+        boolean adicionar(char valor) {
+            if (bits != null) {
+                long anterior = bits[valor >>> 6];
+                bits[valor >>> 6] = anterior | (1L << valor);
+                if (anterior == bits[valor >>> 6]) {
+                    return false;
+                }
+                tamanho++;
+                return true;
+            }
+            int posicao = Arrays.binarySearch(valores, 0, tamanho, valor);
+            if (posicao >= 0) {
+                return false;
+            }
+            if (tamanho == LIMITE_ESPARSO) {
+                paraBits();
+                return adicionar(valor);
+            }
+            posicao = -posicao - 1;
+            if (tamanho == valores.length) {
+                valores = Arrays.copyOf(valores, Math.min(LIMITE_ESPARSO, tamanho + (tamanho >> 1) + 1));
+            }
+            System.arraycopy(valores, posicao, valores, posicao + 1, tamanho - posicao);
+            valores[posicao] = valor;
+            tamanho++;
+            return true;
+        }
+
+        boolean remover(char valor) {
+            if (bits != null) {
+                long anterior = bits[valor >>> 6];
+                bits[valor >>> 6] = anterior & ~(1L << valor);
+                if (anterior == bits[valor >>> 6]) {
+                    return false;
+                }
+                tamanho--;
+                // Volta a ser um vetor só bem abaixo do limite, para não alternar a cada alteração
+                if (tamanho < LIMITE_ESPARSO / 2) {
+                    paraValores();
+                }
+                return true;
+            }
+            int posicao = Arrays.binarySearch(valores, 0, tamanho, valor);
+            if (posicao < 0) {
+                return false;
+            }
+            System.arraycopy(valores, posicao + 1, valores, posicao, tamanho - posicao - 1);
+            tamanho--;
+            return true;
+        }
+
+        Bloco e(Bloco outro) {
+            if (bits != null && outro.bits != null) {
+                long[] resultado = new long[PALAVRAS];
+                int quantidade = 0;
+                for (int i = 0; i < PALAVRAS; i++) {
+                    resultado[i] = bits[i] & outro.bits[i];
+                    quantidade += Long.bitCount(resultado[i]);
+                }
+                if (quantidade == 0) {
+                    return null;
+                }
+                Bloco bloco = new Bloco(null, resultado, quantidade);
+                if (quantidade <= LIMITE_ESPARSO) {
+                    bloco.paraValores();
+                }
+                return bloco;
+            }
+            // Ao menos um é um vetor: filtra os valores do menor pelo outro
+            Bloco menor = bits == null && (outro.bits != null || tamanho <= outro.tamanho) ? this : outro;
+            Bloco maior = menor == this ? outro : this;
+            char[] resultado = new char[menor.tamanho];
+            int quantidade = 0;
+            if (maior.bits == null && maior.tamanho < menor.tamanho * 32) {
+                // Vetores de tamanhos próximos: uma intercalação linear é mais barata que buscas binárias
+                int i = 0;
+                int j = 0;
+                while (i < menor.tamanho && j < maior.tamanho) {
+                    char a = menor.valores[i];
+                    char b = maior.valores[j];
+                    if (a < b) {
+                        i++;
+                    } else if (a > b) {
+                        j++;
+                    } else {
+                        resultado[quantidade++] = a;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < menor.tamanho; i++) {
+                    if (maior.contem(menor.valores[i])) {
+                        resultado[quantidade++] = menor.valores[i];
+                    }
+                }
+            }
+            return quantidade == 0 ? null : new Bloco(resultado, null, quantidade);
+        }
+
+        Bloco ou(Bloco outro) {
+            if (bits == null && outro.bits == null && tamanho + outro.tamanho <= LIMITE_ESPARSO) {
+                char[] resultado = new char[tamanho + outro.tamanho];
+                int i = 0;
+                int j = 0;
+                int quantidade = 0;
+                while (i < tamanho || j < outro.tamanho) {
+                    if (j == outro.tamanho || i < tamanho && valores[i] < outro.valores[j]) {
+                        resultado[quantidade++] = valores[i++];
+                    } else if (i == tamanho || valores[i] > outro.valores[j]) {
+                        resultado[quantidade++] = outro.valores[j++];
+                    } else {
+                        resultado[quantidade++] = valores[i++];
+                        j++;
+                    }
+                }
+                return new Bloco(resultado, null, quantidade);
+            }
+            long[] resultado = bits != null ? bits.clone() : comoBits();
+            if (outro.bits != null) {
+                for (int i = 0; i < PALAVRAS; i++) {
+                    resultado[i] |= outro.bits[i];
+                }
+            } else {
+                for (int i = 0; i < outro.tamanho; i++) {
+                    resultado[outro.valores[i] >>> 6] |= 1L << outro.valores[i];
+                }
+            }
+            int quantidade = 0;
+            for (long palavra : resultado) {
+                quantidade += Long.bitCount(palavra);
+            }
+            Bloco bloco = new Bloco(null, resultado, quantidade);
+            if (quantidade <= LIMITE_ESPARSO) {
+                bloco.paraValores();
+            }
+            return bloco;
+        }
+
+        Bloco copiar() {
+            return bits != null
+                    ? new Bloco(null, bits.clone(), tamanho)
+                    : new Bloco(Arrays.copyOf(valores, tamanho), null, tamanho);
+        }
+
+        int coletar(int minimo, int alto, int[] destino, int quantidade) {
+            if (bits != null) {
+                for (int palavra = minimo >>> 6; palavra < PALAVRAS && quantidade < destino.length; palavra++) {
+                    long restante = bits[palavra];
+                    if (palavra == minimo >>> 6) {
+                        restante &= -1L << minimo;
+                    }
+                    while (restante != 0 && quantidade < destino.length) {
+                        destino[quantidade++] = alto | (palavra << 6) + Long.numberOfTrailingZeros(restante);
+                        restante &= restante - 1;
+                    }
+                }
+                return quantidade;
+            }
+            int inicio = Arrays.binarySearch(valores, 0, tamanho, (char) minimo);
+            for (int i = inicio < 0 ? -inicio - 1 : inicio; i < tamanho && quantidade < destino.length; i++) {
+                destino[quantidade++] = alto | valores[i];
+            }
+            return quantidade;
+        }
+
+        void paraCada(int alto, IntConsumer acao) {
+            if (bits != null) {
+                for (int palavra = 0; palavra < PALAVRAS; palavra++) {
+                    long restante = bits[palavra];
+                    while (restante != 0) {
+                        acao.accept(alto | (palavra << 6) + Long.numberOfTrailingZeros(restante));
+                        restante &= restante - 1;
+                    }
+                }
+                return;
+            }
+            for (int i = 0; i < tamanho; i++) {
+                acao.accept(alto | valores[i]);
+            }
+        }
+
+        private long[] comoBits() {
+            long[] resultado = new long[PALAVRAS];
+            for (int i = 0; i < tamanho; i++) {
+                resultado[valores[i] >>> 6] |= 1L << valores[i];
+            }
+            return resultado;
+        }
+
+        private void paraBits() {
+            bits = comoBits();
+            valores = null;
+        }
+
+        private void paraValores() {
+            char[] resultado = new char[tamanho];
+            int quantidade = 0;
+            for (int palavra = 0; palavra < PALAVRAS; palavra++) {
+                long restante = bits[palavra];
+                while (restante != 0) {
+                    resultado[quantidade++] = (char) ((palavra << 6) + Long.numberOfTrailingZeros(restante));
+                    restante &= restante - 1;
+                }
+            }
+            valores = resultado;
+            bits = null;
+        }
+    }
+}
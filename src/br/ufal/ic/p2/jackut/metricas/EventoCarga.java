@@ -0,0 +1,29 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR de uma carga do sistema ({@code readSistema}): a leitura do snapshot e a reaplicação do journal.
+ */
+@Name("br.ufal.ic.p2.jackut.Carga")
+@Label("Carga do Jackut")
+@Category({"Jackut", "Persistência"})
+@Description("Leitura de sistema.dat e dos segmentos dos checkpoints incrementais, e reaplicação das alterações do journal")
+public class EventoCarga extends Event {
+    @Label("Bytes do snapshot e dos segmentos")
+    @DataAmount(DataAmount.BYTES)
+    public long bytesSnapshot;
+
+    @Label("Segmentos")
+    public int segmentos;
+
+    @Label("Bytes do journal")
+    @DataAmount(DataAmount.BYTES)
+    public long bytesJournal;
+
+    @Label("Registros reaplicados")
+    public long registrosReaplicados;
+
+    @Label("Carga preguiçosa")
+    public boolean preguicosa;
+}
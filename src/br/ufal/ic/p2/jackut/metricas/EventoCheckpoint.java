@@ -0,0 +1,34 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR de um checkpoint ({@code saveSistema}): a gravação do snapshot completo ou de um segmento
+ * incremental, e a limpeza do journal.
+ */
+@Name("br.ufal.ic.p2.jackut.Checkpoint")
+@Label("Checkpoint do Jackut")
+@Category({"Jackut", "Persistência"})
+@Description("Gravação do snapshot em sistema.dat, ou dos usuários alterados em um segmento, e descarte do journal já incorporado")
+public class EventoCheckpoint extends Event {
+    @Label("Bytes gravados")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Usuários")
+    public int usuarios;
+
+    @Label("Usuários gravados")
+    public int usuariosGravados;
+
+    @Label("Incremental")
+    public boolean incremental;
+
+    @Label("Operações bloqueadas")
+    @Description("Tempo em que as operações sobre usuários ficaram bloqueadas para abrir o snapshot")
+    @Timespan(Timespan.NANOSECONDS)
+    public long bloqueio;
+
+    @Label("LSN do snapshot")
+    public long lsn;
+}
@@ -0,0 +1,23 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR de uma compactação em segundo plano: a mescla da base e dos segmentos dos checkpoints
+ * incrementais em uma nova base.
+ */
+@Name("br.ufal.ic.p2.jackut.Compactacao")
+@Label("Compactação de checkpoints do Jackut")
+@Category({"Jackut", "Persistência"})
+@Description("Mescla de sistema.dat com os segmentos dos checkpoints incrementais em uma nova base")
+public class EventoCompactacao extends Event {
+    @Label("Bytes gravados")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Segmentos compactados")
+    public int segmentos;
+
+    @Label("Usuários")
+    public int usuarios;
+}
@@ -0,0 +1,57 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Versão thread-safe do {@link HistogramaLatencia}, para registrar latências de várias threads sem
+ * travas: cada registro é um incremento atômico na faixa do valor.
+ * <p>
+ * As consultas são feitas sobre uma cópia; registros feitos durante a cópia podem aparecer apenas
+ * em parte dela, o que não tem efeito visível nos percentis.
+ */
+public class HistogramaConcorrente {
+    private final AtomicLongArray contagens = new AtomicLongArray(HistogramaLatencia.FAIXAS);
+    private final LongAdder soma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra um valor.
+     *
+     * @param nanos A latência em nanossegundos; valores negativos contam como zero.
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        contagens.incrementAndGet(HistogramaLatencia.faixa(valor));
+        soma.add(valor);
+        long atual = maximo.get();
+        while (valor > atual && !maximo.compareAndSet(atual, valor)) {
+            atual = maximo.get();
+        }
+    }
+
+    /**
+     * Copia os valores registrados até agora.
+     *
+     * @return Um histograma independente deste.
+     */
+    public HistogramaLatencia copiar() {
+        long[] copia = new long[HistogramaLatencia.FAIXAS];
+        for (int i = 0; i < copia.length; i++) {
+            copia[i] = contagens.get(i);
+        }
+        return new HistogramaLatencia(copia, soma.sum(), maximo.get());
+    }
+
+    /**
+     * Descarta os valores registrados.
+     */
+    public void zerar() {
+        for (int i = 0; i < HistogramaLatencia.FAIXAS; i++) {
+            contagens.set(i, 0);
+        }
+        soma.reset();
+        maximo.set(0);
+    }
+}
@@ -0,0 +1,131 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+/**
+ * Histograma de latências em nanossegundos, com erro relativo de no máximo 1/64 (cerca de 1,6%) em
+ * qualquer escala, de nanossegundos a horas.
+ * <p>
+ * Os valores são agrupados em faixas log-lineares: cada potência de dois é dividida em 64 faixas de
+ * mesma largura, então o histograma inteiro ocupa um vetor fixo de algumas dezenas de KB e registrar
+ * um valor custa apenas um incremento, sem alocação. O histograma não é thread-safe; para registrar de
+ * várias threads, use um por thread e junte-os com {@link #adicionar(HistogramaLatencia)}.
+ */
+public class HistogramaLatencia {
+    private static final int SUBFAIXAS = 64;
+    static final int FAIXAS = 2 * SUBFAIXAS + SUBFAIXAS * 56;
+
+    private final long[] contagens = new long[FAIXAS];
+    private long quantidade;
+    private long soma;
+    private long maximo;
+
+    /**
+     * Cria um histograma vazio.
+     */
+    public HistogramaLatencia() {
+    }
+
+    /**
+     * Cria um histograma a partir das contagens de cada faixa, copiadas de um {@link HistogramaConcorrente}.
+     */
+    HistogramaLatencia(long[] contagens, long soma, long maximo) {
+        System.arraycopy(contagens, 0, this.contagens, 0, FAIXAS);
+        for (long contagem : contagens) {
+            this.quantidade += contagem;
+        }
+        this.soma = soma;
+        this.maximo = maximo;
+    }
+
+    /**
+     * Registra um valor.
+     *
+     * @param nanos A latência em nanossegundos; valores negativos contam como zero.
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        contagens[faixa(valor)]++;
+        quantidade++;
+        soma += valor;
+        maximo = Math.max(maximo, valor);
+    }
+
+    /**
+     * Soma os valores de outro histograma a este.
+     *
+     * @param outro O histograma a ser somado.
+     */
+    public void adicionar(HistogramaLatencia outro) {
+        for (int i = 0; i < FAIXAS; i++) {
+            contagens[i] += outro.contagens[i];
+        }
+        quantidade += outro.quantidade;
+        soma += outro.soma;
+        maximo = Math.max(maximo, outro.maximo);
+    }
+
+    /**
+     * Obtém a quantidade de valores registrados.
+     *
+     * @return A quantidade de valores.
+     */
+    public long getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Obtém a média dos valores registrados.
+     *
+     * @return A média em nanossegundos, ou zero se o histograma estiver vazio.
+     */
+    public double getMedia() {
+        return quantidade == 0 ? 0 : (double) soma / quantidade;
+    }
+
+    /**
+     * Obtém o maior valor registrado.
+     *
+     * @return O maior valor em nanossegundos.
+     */
+    public long getMaximo() {
+        return maximo;
+    }
+
+    /**
+     * Obtém o valor abaixo do qual está a fração informada dos valores registrados.
+     *
+     * @param fracao A fração, entre 0 e 1 (por exemplo, 0.99 para o p99).
+     * @return O limite superior da faixa do percentil, em nanossegundos, ou zero se o histograma estiver vazio.
+     */
+    public long percentil(double fracao) {
+        if (quantidade == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1, (long) Math.ceil(fracao * quantidade));
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            acumulado += contagens[i];
+            if (acumulado >= alvo) {
+                return Math.min(limiteSuperior(i), maximo);
+            }
+        }
+        return maximo;
+    }
+
+    static int faixa(long valor) {
+        if (valor < 2 * SUBFAIXAS) {
+            return (int) valor;
+        }
+        // valor >>> expoente fica em [SUBFAIXAS, 2 * SUBFAIXAS)
+        int expoente = 63 - Long.numberOfLeadingZeros(valor) - 6;
+        return SUBFAIXAS * expoente + (int) (valor >>> expoente);
+    }
+
+    private static long limiteSuperior(int faixa) {
+        if (faixa < 2 * SUBFAIXAS) {
+            return faixa;
+        }
+        int expoente = faixa / SUBFAIXAS - 1;
+        long mantissa = faixa - (long) SUBFAIXAS * expoente;
+        return ((mantissa + 1) << expoente) - 1;
+    }
+}
@@ -0,0 +1,103 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latências, sucessos e falhas por tipo de exceção de uma operação.
+ */
+public class MetricaOperacao implements OperacaoMXBean {
+    private final Operacao operacao;
+    private final HistogramaConcorrente latencias = new HistogramaConcorrente();
+    private final LongAdder sucessos = new LongAdder();
+    private final Map<Class<?>, LongAdder> falhas = new ConcurrentHashMap<>();
+
+    MetricaOperacao(Operacao operacao) {
+        this.operacao = operacao;
+    }
+
+    void registrarLatencia(long nanos) {
+        latencias.registrar(nanos);
+    }
+
+    void contarSucesso() {
+        sucessos.increment();
+    }
+
+    void contarFalha(Throwable erro) {
+        falhas.computeIfAbsent(erro.getClass(), tipo -> new LongAdder()).increment();
+    }
+
+    /**
+     * Obtém a operação medida.
+     *
+     * @return A operação.
+     */
+    public Operacao getOperacao() {
+        return operacao;
+    }
+
+    /**
+     * Copia o histograma de latências das chamadas medidas, incluindo as que falharam.
+     *
+     * @return Uma cópia do histograma.
+     */
+    public HistogramaLatencia getLatencias() {
+        return latencias.copiar();
+    }
+
+    @Override
+    public long getSucessos() {
+        return sucessos.sum();
+    }
+
+    @Override
+    public long getFalhas() {
+        long total = 0;
+        for (LongAdder contador : falhas.values()) {
+            total += contador.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getFalhasPorTipo() {
+        Map<String, Long> porTipo = new TreeMap<>();
+        falhas.forEach((tipo, contador) -> porTipo.merge(tipo.getSimpleName(), contador.sum(), Long::sum));
+        return porTipo;
+    }
+
+    @Override
+    public double getMediaMicros() {
+        return latencias.copiar().getMedia() / 1e3;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latencias.copiar().percentil(0.5) / 1e3;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latencias.copiar().percentil(0.99) / 1e3;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latencias.copiar().percentil(0.999) / 1e3;
+    }
+
+    @Override
+    public double getMaximoMicros() {
+        return latencias.copiar().getMaximo() / 1e3;
+    }
+
+    @Override
+    public void zerar() {
+        latencias.zerar();
+        sucessos.reset();
+        falhas.clear();
+    }
+}
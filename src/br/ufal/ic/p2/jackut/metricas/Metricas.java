@@ -0,0 +1,187 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Métricas das operações da {@code Facade}, compartilhadas por todas as instâncias da execução.
+ * <p>
+ * Cada operação tem um histograma de latências e contadores de sucessos e de falhas por tipo de
+ * exceção, atualizados sem travas. Como ler o relógio custa tanto quanto uma consulta em memória, a
+ * latência das consultas é medida em uma amostra de 1 a cada {@code jackut.metricas.amostragem}
+ * chamadas (16 por padrão, arredondado para uma potência de dois); as alterações, que já pagam a
+ * gravação no journal, são sempre medidas, e os contadores sempre incluem todas as chamadas. As métricas de cada operação são publicadas como um MXBean
+ * ({@link OperacaoMXBean}) e, se a propriedade {@code jackut.metricas.intervalo} for maior que zero,
+ * um relatório em texto é impresso na saída de erro a cada intervalo (em segundos). Com
+ * {@code jackut.metricas=false}, as operações não são medidas.
+ */
+public class Metricas {
+    private static final boolean ATIVAS = !"false".equals(System.getProperty("jackut.metricas"));
+    private static final long INTERVALO_RELATORIO = Long.getLong("jackut.metricas.intervalo", 0);
+
+    // Potência de dois, para sortear com uma máscara
+    private static final int MASCARA_AMOSTRAGEM =
+            Integer.highestOneBit(Math.max(1, Integer.getInteger("jackut.metricas.amostragem", 16))) - 1;
+    private static final long SEM_MEDICAO = Long.MIN_VALUE;
+
+    private final MetricaOperacao[] operacoes;
+
+    private Metricas() {
+        Operacao[] todas = Operacao.values();
+        operacoes = new MetricaOperacao[todas.length];
+        for (Operacao operacao : todas) {
+            operacoes[operacao.ordinal()] = new MetricaOperacao(operacao);
+        }
+    }
+
+    /**
+     * Obtém as métricas da execução, registrando os MXBeans e iniciando o relatório periódico no primeiro uso.
+     *
+     * @return As métricas compartilhadas.
+     */
+    public static Metricas padrao() {
+        return Padrao.INSTANCIA;
+    }
+
+    /**
+     * Executa uma operação que retorna um valor, registrando a sua latência e o seu resultado.
+     *
+     * @param operacao A operação.
+     * @param corpo O código da operação.
+     * @param <T> O tipo do valor retornado.
+     * @return O valor retornado pela operação.
+     */
+    public <T> T medir(Operacao operacao, Supplier<T> corpo) {
+        if (!ATIVAS) {
+            return corpo.get();
+        }
+        MetricaOperacao metrica = operacoes[operacao.ordinal()];
+        long inicio = amostrar(operacao) ? System.nanoTime() : SEM_MEDICAO;
+        try {
+            T resultado = corpo.get();
+            concluir(metrica, inicio, null);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            concluir(metrica, inicio, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Executa uma operação sem retorno, registrando a sua latência e o seu resultado.
+     *
+     * @param operacao A operação.
+     * @param corpo O código da operação.
+     */
+    public void medirAcao(Operacao operacao, Runnable corpo) {
+        if (!ATIVAS) {
+            corpo.run();
+            return;
+        }
+        MetricaOperacao metrica = operacoes[operacao.ordinal()];
+        long inicio = amostrar(operacao) ? System.nanoTime() : SEM_MEDICAO;
+        try {
+            corpo.run();
+            concluir(metrica, inicio, null);
+        } catch (RuntimeException | Error e) {
+            concluir(metrica, inicio, e);
+            throw e;
+        }
+    }
+
+    private static boolean amostrar(Operacao operacao) {
+        return !operacao.isConsulta() || (ThreadLocalRandom.current().nextInt() & MASCARA_AMOSTRAGEM) == 0;
+    }
+
+    private static void concluir(MetricaOperacao metrica, long inicio, Throwable erro) {
+        if (inicio != SEM_MEDICAO) {
+            metrica.registrarLatencia(System.nanoTime() - inicio);
+        }
+        if (erro == null) {
+            metrica.contarSucesso();
+        } else {
+            metrica.contarFalha(erro);
+        }
+    }
+
+    /**
+     * Obtém as métricas de uma operação.
+     *
+     * @param operacao A operação.
+     * @return As métricas da operação.
+     */
+    public MetricaOperacao get(Operacao operacao) {
+        return operacoes[operacao.ordinal()];
+    }
+
+    /**
+     * Monta um relatório em texto com as operações que já foram chamadas.
+     *
+     * @return O relatório, com uma linha por operação.
+     */
+    public String relatorio() {
+        StringBuilder texto = new StringBuilder(String.format("%-20s %10s %8s %9s %9s %9s %9s  %s%n",
+                "operação", "sucessos", "falhas", "p50 µs", "p99 µs", "p999 µs", "máx µs", "falhas por tipo"));
+        for (MetricaOperacao metrica : operacoes) {
+            HistogramaLatencia h = metrica.getLatencias();
+            if (h.getQuantidade() == 0) {
+                continue;
+            }
+            texto.append(String.format("%-20s %,10d %,8d %9.1f %9.1f %9.1f %9.1f  %s%n", metrica.getOperacao().getNome(),
+                    metrica.getSucessos(), metrica.getFalhas(), h.percentil(0.5) / 1e3, h.percentil(0.99) / 1e3,
+                    h.percentil(0.999) / 1e3, h.getMaximo() / 1e3, metrica.getFalhasPorTipo()));
+        }
+        return texto.toString();
+    }
+
+    private void registrarMXBeans() {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        for (MetricaOperacao metrica : operacoes) {
+            try {
+                ObjectName nome = new ObjectName("br.ufal.ic.p2.jackut:type=Operacao,name=" + metrica.getOperacao().getNome());
+                if (!servidor.isRegistered(nome)) {
+                    servidor.registerMBean(metrica, nome);
+                }
+            } catch (JMException e) {
+                // Sem JMX as métricas continuam disponíveis pelo relatório e por get()
+            }
+        }
+    }
+
+    private void iniciarRelatorio() {
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(INTERVALO_RELATORIO * 1000);
+                    System.err.print(relatorio());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "jackut-metricas");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Cria as métricas compartilhadas apenas no primeiro uso.
+     */
+    private static class Padrao {
+        private static final Metricas INSTANCIA = criar();
+
+        private static Metricas criar() {
+            Metricas metricas = new Metricas();
+            if (ATIVAS) {
+                metricas.registrarMXBeans();
+                if (INTERVALO_RELATORIO > 0) {
+                    metricas.iniciarRelatorio();
+                }
+            }
+            return metricas;
+        }
+    }
+}
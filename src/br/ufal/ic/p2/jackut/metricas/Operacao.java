@@ -0,0 +1,72 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+/**
+ * Operações da {@code Facade} medidas pelas {@link Metricas}.
+ */
+public enum Operacao {
+    ZERAR_SISTEMA(false, "zerarSistema"),
+    GET_ATRIBUTO_USUARIO(true, "getAtributoUsuario"),
+    FIND_ATRIBUTO(true, "findAtributo"),
+    CRIAR_USUARIO(false, "criarUsuario"),
+    CRIAR_USUARIOS(false, "criarUsuarios"),
+    IMPORTAR_REDE(false, "importarRede"),
+    EXPORTAR_REDE(true, "exportarRede"),
+    ABRIR_SESSAO(false, "abrirSessao"),
+    TRY_ABRIR_SESSAO(false, "tryAbrirSessao"),
+    EDITAR_PERFIL(false, "editarPerfil"),
+    EH_AMIGO(true, "ehAmigo"),
+    ADICIONAR_AMIGO(false, "adicionarAmigo"),
+    GET_AMIGOS(true, "getAmigos"),
+    LISTAR_AMIGOS(true, "listarAmigos"),
+    PARA_CADA_AMIGO(true, "paraCadaAmigo"),
+    BUSCAR_USUARIOS(true, "buscarUsuarios"),
+    CONTAR_AMIGOS_EM_COMUM(true, "contarAmigosEmComum"),
+    RECOMENDAR_AMIGOS(true, "recomendarAmigos"),
+    ENVIAR_RECADO(false, "enviarRecado"),
+    ENVIAR_RECADOS(false, "enviarRecados"),
+    ENVIAR_RECADO_AMIGOS(false, "enviarRecadoAmigos"),
+    LER_RECADO(false, "lerRecado"),
+    TRY_LER_RECADO(false, "tryLerRecado"),
+    LER_RECADOS(false, "lerRecados"),
+    AGUARDAR_RECADOS(false, "aguardarRecados"),
+    CONTAR_RECADOS(true, "contarRecados"),
+    ESPIAR_RECADO(true, "espiarRecado"),
+    GET_LOGIN_SESSAO(true, "getLoginSessao"),
+    TEM_CONVITE(true, "temConvite"),
+    REGISTRAR_CONVITE_REMOTO(false, "registrarConviteRemoto"),
+    CONFIRMAR_AMIZADE_REMOTA(false, "confirmarAmizadeRemota"),
+    RECEBER_RECADO(false, "receberRecado"),
+    GET_ULTIMO_LSN(true, "getUltimoLsn"),
+    AGUARDAR_LSN(true, "aguardarLsn"),
+    GET_ATRASO_REPLICACAO(true, "getAtrasoReplicacao"),
+    GET_ATRASO_REPLICACAO_REGISTROS(true, "getAtrasoReplicacaoRegistros"),
+    SAVE_SISTEMA(false, "saveSistema"),
+    READ_SISTEMA(false, "readSistema"),
+    ENCERRAR_SISTEMA(false, "encerrarSistema");
+
+    private final boolean consulta;
+    private final String nome;
+
+    Operacao(boolean consulta, String nome) {
+        this.consulta = consulta;
+        this.nome = nome;
+    }
+
+    /**
+     * Verifica se a operação apenas consulta o sistema, sem alterá-lo.
+     *
+     * @return true para operações somente leitura.
+     */
+    public boolean isConsulta() {
+        return consulta;
+    }
+
+    /**
+     * Obtém o nome do método da {@code Facade} correspondente à operação.
+     *
+     * @return O nome do método.
+     */
+    public String getNome() {
+        return nome;
+    }
+}
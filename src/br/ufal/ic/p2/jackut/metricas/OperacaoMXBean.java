@@ -0,0 +1,57 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import java.util.Map;
+
+/**
+ * Métricas de uma operação da {@code Facade} expostas por JMX, com o nome
+ * {@code br.ufal.ic.p2.jackut:type=Operacao,name=<operação>}. Os valores são acumulados desde o
+ * início da execução ou desde a última chamada a {@link #zerar()}. As latências das consultas são
+ * amostradas (veja {@link Metricas}); os contadores incluem todas as chamadas.
+ */
+public interface OperacaoMXBean {
+
+    /**
+     * @return A quantidade de chamadas que terminaram sem exceção.
+     */
+    long getSucessos();
+
+    /**
+     * @return A quantidade de chamadas que lançaram exceção.
+     */
+    long getFalhas();
+
+    /**
+     * @return A quantidade de falhas por tipo de exceção, pelo nome simples da classe.
+     */
+    Map<String, Long> getFalhasPorTipo();
+
+    /**
+     * @return A latência média das chamadas medidas, em microssegundos, incluindo as falhas.
+     */
+    double getMediaMicros();
+
+    /**
+     * @return A mediana da latência, em microssegundos.
+     */
+    double getP50Micros();
+
+    /**
+     * @return O percentil 99 da latência, em microssegundos.
+     */
+    double getP99Micros();
+
+    /**
+     * @return O percentil 99,9 da latência, em microssegundos.
+     */
+    double getP999Micros();
+
+    /**
+     * @return A maior latência registrada, em microssegundos.
+     */
+    double getMaximoMicros();
+
+    /**
+     * Descarta os valores acumulados.
+     */
+    void zerar();
+}
@@ -0,0 +1,197 @@
+package br.ufal.ic.p2.jackut.migracao;
+
+import br.ufal.ic.p2.jackut.entities.ConjuntoIds;
+import br.ufal.ic.p2.jackut.entities.Usuario;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Escrita e leitura do formato {@link FormatoMigracao#CSV}. Na leitura, amigos ou convites
+ * consecutivos do mesmo usuário são agrupados em um único {@link RegistroMigracao}.
+ */
+final class Csv {
+
+    private Csv() {
+    }
+
+    static void escrever(Usuario usuario, IntFunction<String> logins, StringBuilder saida) {
+        String login = usuario.getLogin();
+        linha(saida, "usuario", login, usuario.getSenha(), usuario.getNome());
+        usuario.paraCadaAtributo((atributo, valor) -> linha(saida, "atributo", login, atributo, valor));
+        ids(saida, "amigo", login, usuario.getAmigos(), logins);
+        ids(saida, "convite", login, usuario.getConvitesAmizade(), logins);
+        usuario.getRecados().paraCada(recado -> linha(saida, "recado", login, recado));
+    }
+
+    private static void ids(StringBuilder saida, String tipo, String login, ConjuntoIds ids, IntFunction<String> logins) {
+        for (int i = 0; i < ids.tamanho(); i++) {
+            linha(saida, tipo, login, logins.apply(ids.get(i)));
+        }
+    }
+
+    private static void linha(StringBuilder saida, String tipo, String... campos) {
+        saida.append(tipo);
+        for (String campo : campos) {
+            saida.append(',');
+            campo(campo, saida);
+        }
+        saida.append('\n');
+    }
+
+    private static void campo(String valor, StringBuilder saida) {
+        if (valor == null) {
+            return;
+        }
+        boolean aspas = valor.isEmpty();
+        for (int i = 0; i < valor.length() && !aspas; i++) {
+            char c = valor.charAt(i);
+            aspas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!aspas) {
+            saida.append(valor);
+            return;
+        }
+        saida.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                saida.append('"');
+            }
+            saida.append(c);
+        }
+        saida.append('"');
+    }
+
+    static int ler(String texto, Consumer<RegistroMigracao> destino) {
+        List<String> campos = new ArrayList<>(4);
+        StringBuilder valor = new StringBuilder();
+        RegistroMigracao anterior = null;
+        int registros = 0;
+        int posicao = 0;
+        while (posicao < texto.length()) {
+            campos.clear();
+            posicao = lerRegistro(texto, posicao, campos, valor);
+            if (campos.size() == 1 && campos.get(0) == null) {
+                // Linha em branco
+                registros++;
+                continue;
+            }
+            RegistroMigracao registro = interpretar(campos, registros, anterior);
+            if (registro != anterior) {
+                if (anterior != null) {
+                    destino.accept(anterior);
+                }
+                anterior = registro;
+            }
+            registros++;
+        }
+        if (anterior != null) {
+            destino.accept(anterior);
+        }
+        return registros;
+    }
+
+    /**
+     * Interpreta os campos de um registro. Um amigo ou convite do mesmo usuário do registro anterior é
+     * acrescentado a ele, que é devolvido.
+     */
+    private static RegistroMigracao interpretar(List<String> campos, int linha, RegistroMigracao anterior) {
+        String tipo = campos.get(0);
+        int esperados;
+        switch (tipo == null ? "" : tipo) {
+            case "usuario":
+            case "atributo":
+                esperados = 4;
+                break;
+            case "amigo":
+            case "convite":
+            case "recado":
+                esperados = 3;
+                break;
+            default:
+                return RegistroMigracao.invalido(linha, "Tipo de registro desconhecido: " + tipo + ".");
+        }
+        if (campos.size() != esperados) {
+            return RegistroMigracao.invalido(linha, "Registro inválido: " + esperados + " campos esperados.");
+        }
+
+        String login = campos.get(1);
+        boolean amigo = tipo.equals("amigo");
+        if ((amigo || tipo.equals("convite")) && anterior != null && anterior.erro == null
+                && anterior.login != null && anterior.login.equals(login)
+                && anterior.linha + (amigo ? anterior.amigos.size() : anterior.convites.size()) == linha
+                && (amigo ? anterior.convites.isEmpty() : anterior.amigos.isEmpty())) {
+            (amigo ? anterior.amigos : anterior.convites).add(campos.get(2));
+            return anterior;
+        }
+
+        RegistroMigracao registro = new RegistroMigracao(linha, 1);
+        registro.login = login;
+        switch (tipo) {
+            case "usuario":
+                registro.cadastro = true;
+                registro.senha = campos.get(2);
+                registro.nome = campos.get(3);
+                break;
+            case "atributo":
+                registro.atributos.add(campos.get(2));
+                registro.atributos.add(campos.get(3));
+                break;
+            case "amigo":
+                registro.amigos.add(campos.get(2));
+                break;
+            case "convite":
+                registro.convites.add(campos.get(2));
+                break;
+            default:
+                registro.recados.add(campos.get(2));
+        }
+        return registro;
+    }
+
+    /**
+     * Lê os campos de um registro, até a quebra de linha fora de aspas.
+     *
+     * @return A posição logo depois do registro.
+     */
+    private static int lerRegistro(String texto, int posicao, List<String> campos, StringBuilder valor) {
+        while (true) {
+            if (posicao < texto.length() && texto.charAt(posicao) == '"') {
+                valor.setLength(0);
+                posicao++;
+                while (posicao < texto.length()) {
+                    char c = texto.charAt(posicao++);
+                    if (c == '"') {
+                        if (posicao < texto.length() && texto.charAt(posicao) == '"') {
+                            posicao++;
+                        } else {
+                            break;
+                        }
+                    }
+                    valor.append(c);
+                }
+                campos.add(valor.toString());
+                // Qualquer coisa entre a aspa final e o separador é ignorada
+                while (posicao < texto.length() && ",\n".indexOf(texto.charAt(posicao)) < 0) {
+                    posicao++;
+                }
+            } else {
+                int inicio = posicao;
+                while (posicao < texto.length() && ",\n".indexOf(texto.charAt(posicao)) < 0) {
+                    posicao++;
+                }
+                int fim = posicao > inicio && texto.charAt(posicao - 1) == '\r' ? posicao - 1 : posicao;
+                campos.add(fim > inicio ? texto.substring(inicio, fim) : null);
+            }
+            if (posicao >= texto.length()) {
+                return posicao;
+            }
+            if (texto.charAt(posicao++) == '\n') {
+                return posicao;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package br.ufal.ic.p2.jackut.migracao;
+
+import br.ufal.ic.p2.jackut.entities.SnapshotSistema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exporta a rede de um {@link SnapshotSistema} para um arquivo em {@link FormatoMigracao}, que pode ser
+ * importado de volta com {@link ImportadorRede}.
+ */
+public class ExportadorRede {
+
+    private ExportadorRede() {
+    }
+
+    /**
+     * Exporta os usuários do snapshot em ordem de ID, com seus atributos, amigos, convites pendentes e
+     * recados não lidos. As referências a usuários de outras partições não são exportadas. As
+     * operações continuam enquanto o snapshot é exportado.
+     *
+     * @param snapshot O snapshot, completo.
+     * @param formato O formato do arquivo.
+     * @param destino O fluxo de saída; não é fechado por este método.
+     * @return A quantidade de usuários exportados.
+     * @throws IOException Se a gravação falhar.
+     */
+    public static int exportar(SnapshotSistema snapshot, FormatoMigracao formato, OutputStream destino)
+            throws IOException {
+        Writer saida = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8), 1 << 16);
+        StringBuilder registros = new StringBuilder(1024);
+        int[] exportados = {0};
+        try {
+            snapshot.paraCada(usuario -> {
+                if (usuario == null || usuario.isRemoto()) {
+                    return;
+                }
+                registros.setLength(0);
+                formato.escrever(usuario, snapshot::getLogin, registros);
+                try {
+                    saida.append(registros);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exportados[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        saida.flush();
+        return exportados[0];
+    }
+}
@@ -0,0 +1,119 @@
+package br.ufal.ic.p2.jackut.migracao;
+
+import br.ufal.ic.p2.jackut.entities.Usuario;
+
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Formatos dos arquivos de importação e exportação da rede.
+ * <p>
+ * Em {@link #JSONL}, cada linha é um objeto com um usuário completo:
+ * <pre>
+ * {"login":"jpsauve","senha":"sauvejp","nome":"Jacques Sauve","atributos":{"cidadeNatal":"Natal"},
+ *  "amigos":["oabath"],"convites":["jdoe"],"recados":["Oi!"]}
+ * </pre>
+ * Em {@link #CSV}, cada registro traz um único item, identificado pelo primeiro campo, e os itens de um
+ * usuário vêm depois do seu cadastro:
+ * <pre>
+ * usuario,jpsauve,sauvejp,Jacques Sauve
+ * atributo,jpsauve,cidadeNatal,Natal
+ * amigo,jpsauve,oabath
+ * convite,jpsauve,jdoe
+ * recado,jpsauve,Oi!
+ * </pre>
+ * Os campos seguem a RFC 4180 (aspas duplas em volta de campos com vírgula, aspas ou quebra de linha);
+ * um campo vazio sem aspas é nulo, e {@code ""} é a string vazia.
+ * <p>
+ * Nos dois formatos, as listas de amigos, convites e recados de cada usuário estão na ordem em que
+ * foram formadas, e cada amizade aparece nos dois usuários.
+ */
+public enum FormatoMigracao {
+    JSONL {
+        @Override
+        void escrever(Usuario usuario, IntFunction<String> logins, StringBuilder saida) {
+            Jsonl.escrever(usuario, logins, saida);
+        }
+
+        @Override
+        int fimUltimoRegistro(byte[] dados, int tamanho) {
+            for (int i = tamanho - 1; i >= 0; i--) {
+                if (dados[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int ler(String texto, Consumer<RegistroMigracao> destino) {
+            return Jsonl.ler(texto, destino);
+        }
+    },
+    CSV {
+        @Override
+        void escrever(Usuario usuario, IntFunction<String> logins, StringBuilder saida) {
+            Csv.escrever(usuario, logins, saida);
+        }
+
+        @Override
+        int fimUltimoRegistro(byte[] dados, int tamanho) {
+            // Uma quebra de linha entre aspas faz parte do campo; cada par de aspas escapadas ("")
+            // inverte o estado duas vezes, então basta contar as aspas
+            boolean entreAspas = false;
+            int fim = -1;
+            for (int i = 0; i < tamanho; i++) {
+                if (dados[i] == '"') {
+                    entreAspas = !entreAspas;
+                } else if (dados[i] == '\n' && !entreAspas) {
+                    fim = i + 1;
+                }
+            }
+            return fim;
+        }
+
+        @Override
+        int ler(String texto, Consumer<RegistroMigracao> destino) {
+            return Csv.ler(texto, destino);
+        }
+    };
+
+    /**
+     * Escolhe o formato pela extensão do arquivo: ".csv" para CSV, e JSONL para qualquer outra.
+     *
+     * @param arquivo O nome do arquivo.
+     * @return O formato.
+     */
+    public static FormatoMigracao doArquivo(String arquivo) {
+        return arquivo.toLowerCase().endsWith(".csv") ? CSV : JSONL;
+    }
+
+    /**
+     * Acrescenta a uma saída os registros de um usuário, terminados por quebra de linha.
+     *
+     * @param usuario O usuário.
+     * @param logins Traduz os IDs dos amigos e convites em logins.
+     * @param saida A saída.
+     */
+    abstract void escrever(Usuario usuario, IntFunction<String> logins, StringBuilder saida);
+
+    /**
+     * Encontra o fim do último registro completo de um trecho do arquivo que começa no início de um
+     * registro.
+     *
+     * @param dados O trecho, em UTF-8.
+     * @param tamanho A quantidade de bytes válidos.
+     * @return A posição logo depois do último registro completo, ou -1 se não houver nenhum.
+     */
+    abstract int fimUltimoRegistro(byte[] dados, int tamanho);
+
+    /**
+     * Lê os registros de um trecho com registros completos. Registros vizinhos do mesmo tipo e do
+     * mesmo usuário podem ser agrupados em um só.
+     *
+     * @param texto O trecho.
+     * @param destino Recebe os registros, em ordem.
+     * @return A quantidade de registros físicos (linhas) lidos, incluindo os inválidos.
+     */
+    abstract int ler(String texto, Consumer<RegistroMigracao> destino);
+}
@@ -0,0 +1,397 @@
+package br.ufal.ic.p2.jackut.migracao;
+
+import br.ufal.ic.p2.jackut.entities.ConjuntoIds;
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.entities.Usuario;
+import br.ufal.ic.p2.jackut.exceptions.InvalidUserDataException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Importa a rede de um arquivo em {@link FormatoMigracao}, escrevendo direto nas estruturas do
+ * {@link Sistema}.
+ * <p>
+ * O arquivo é lido em blocos de registros completos, e a leitura e validação de cada bloco é feita em
+ * paralelo pelas threads da importação; os blocos lidos são aplicados ao sistema em ordem, um a um,
+ * pela thread que importa. O arquivo é percorrido duas vezes: na primeira, são criados os usuários,
+ * com seus atributos e recados; na segunda, com todos os logins já cadastrados, as threads traduzem
+ * os logins dos amigos e convites em IDs e os IDs são acrescentados aos usuários.
+ * <p>
+ * Amigos e convites só podem ser usuários da própria importação, e cada amizade deve aparecer nos dois
+ * usuários, como na exportação. Depois da segunda passada, as amizades são conferidas nos usuários
+ * importados; se alguma aparecer em apenas um dos usuários, ou um par for ao mesmo tempo amigo e
+ * convite, uma terceira passada pelo arquivo desfaz esses itens e registra a falha de cada um, para que
+ * a importação nunca deixe uma amizade de um lado só. As alterações não passam pelo journal: a importação deve ser feita com
+ * todas as operações bloqueadas por {@link Sistema#travarTudo()}, seguida de um checkpoint antes de
+ * liberá-las.
+ */
+public class ImportadorRede {
+    private static final int TAMANHO_BLOCO = 4 * 1024 * 1024;
+
+    private final Sistema sistema;
+    private final FormatoMigracao formato;
+    private final int threads;
+    private final int primeiroId;
+    private final List<Usuario> importados = new ArrayList<>();
+    private final Set<Long> cadastrosRecusados = new HashSet<>();
+    private final ResultadoImportacao resultado = new ResultadoImportacao();
+
+    /**
+     * Cria um importador.
+     *
+     * @param sistema O sistema que recebe a importação.
+     * @param formato O formato do arquivo.
+     * @param threads A quantidade de threads que leem os blocos do arquivo.
+     */
+    public ImportadorRede(Sistema sistema, FormatoMigracao formato, int threads) {
+        this.sistema = sistema;
+        this.formato = formato;
+        this.threads = Math.max(1, threads);
+        this.primeiroId = sistema.getQuantidadeUsuarios();
+    }
+
+    /**
+     * Importa a rede de um arquivo. Um importador só deve ser usado uma vez.
+     *
+     * @param arquivo O arquivo.
+     * @return O resultado da importação, com as falhas dos itens que não puderam ser importados.
+     * @throws IOException Se o arquivo não puder ser lido.
+     */
+    public ResultadoImportacao importar(File arquivo) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads, tarefa -> {
+            Thread thread = new Thread(tarefa, "jackut-importacao");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            percorrer(arquivo, executor, registros -> registros, this::aplicarCadastros);
+            percorrer(arquivo, executor, this::resolverAmizades, this::aplicarAmizades);
+            if (contarInconsistencias() > 0) {
+                percorrer(arquivo, executor, this::resolverAmizades, this::desfazerInconsistencias);
+            }
+        } finally {
+            executor.shutdownNow();
+            this.sistema.concluirImportacao();
+        }
+        return this.resultado;
+    }
+
+    /**
+     * Percorre o arquivo em blocos, lendo e preparando cada bloco nas threads da importação e
+     * aplicando os blocos em ordem na thread atual. No máximo duas vezes a quantidade de threads de
+     * blocos ficam em memória ao mesmo tempo.
+     */
+    private void percorrer(File arquivo, ExecutorService executor, UnaryOperator<List<RegistroMigracao>> preparar,
+                           Consumer<Bloco> aplicar) throws IOException {
+        ArrayDeque<Future<Bloco>> pendentes = new ArrayDeque<>();
+        long base = 0;
+        try (InputStream entrada = new FileInputStream(arquivo)) {
+            byte[] buffer = new byte[TAMANHO_BLOCO];
+            int cheio = 0;
+            while (true) {
+                int lidos = entrada.read(buffer, cheio, buffer.length - cheio);
+                if (lidos < 0) {
+                    if (cheio > 0) {
+                        pendentes.add(executor.submit(ler(Arrays.copyOf(buffer, cheio), preparar)));
+                    }
+                    break;
+                }
+                cheio += lidos;
+                if (cheio < buffer.length) {
+                    continue;
+                }
+
+                int fim = this.formato.fimUltimoRegistro(buffer, cheio);
+                if (fim < 0) {
+                    // Um único registro maior que o buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+                pendentes.add(executor.submit(ler(Arrays.copyOf(buffer, fim), preparar)));
+                System.arraycopy(buffer, fim, buffer, 0, cheio - fim);
+                cheio -= fim;
+                while (pendentes.size() >= 2 * this.threads) {
+                    base = concluir(pendentes.poll(), base, aplicar);
+                }
+            }
+            while (!pendentes.isEmpty()) {
+                base = concluir(pendentes.poll(), base, aplicar);
+            }
+        } finally {
+            pendentes.forEach(futuro -> futuro.cancel(true));
+        }
+    }
+
+    private Callable<Bloco> ler(byte[] dados, UnaryOperator<List<RegistroMigracao>> preparar) {
+        return () -> {
+            Bloco bloco = new Bloco();
+            List<RegistroMigracao> registros = new ArrayList<>();
+            bloco.registros = this.formato.ler(new String(dados, StandardCharsets.UTF_8), registros::add);
+            bloco.lidos = preparar.apply(registros);
+            return bloco;
+        };
+    }
+
+    /**
+     * Aguarda a leitura de um bloco e o aplica.
+     *
+     * @return A quantidade de registros físicos lidos até o fim do bloco.
+     */
+    private static long concluir(Future<Bloco> futuro, long base, Consumer<Bloco> aplicar)
+            throws InterruptedIOException {
+        Bloco bloco;
+        try {
+            bloco = futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Importação interrompida");
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            if (causa instanceof Error) {
+                throw (Error) causa;
+            }
+            throw new IllegalStateException(causa);
+        }
+        bloco.base = base;
+        aplicar.accept(bloco);
+        return base + bloco.registros;
+    }
+
+    /**
+     * Primeira passada: cria os usuários e define os atributos e recados de cada registro.
+     */
+    private void aplicarCadastros(Bloco bloco) {
+        for (RegistroMigracao registro : bloco.lidos) {
+            long numero = bloco.base + registro.linha + 1;
+            if (registro.erro != null) {
+                this.resultado.registrarFalha(numero, null, registro.erro);
+                continue;
+            }
+            if (!registro.cadastro && registro.atributos.isEmpty() && registro.recados.isEmpty()) {
+                // Só amigos ou convites, importados na segunda passada
+                continue;
+            }
+
+            Usuario usuario;
+            if (registro.cadastro) {
+                try {
+                    usuario = this.sistema.importarUsuario(registro.login, registro.senha, registro.nome);
+                } catch (InvalidUserDataException e) {
+                    this.cadastrosRecusados.add(numero);
+                    this.resultado.registrarFalha(numero, registro.login, e.getMessage());
+                    continue;
+                }
+                if (usuario == null) {
+                    this.cadastrosRecusados.add(numero);
+                    this.resultado.registrarFalha(numero, registro.login, "Conta com esse nome já existe.");
+                    continue;
+                }
+                this.importados.add(usuario);
+                this.resultado.usuarios++;
+            } else {
+                usuario = importado(this.sistema.getIdUsuario(registro.login));
+                if (usuario == null) {
+                    this.resultado.registrarFalha(numero, registro.login, naoImportado(registro.login));
+                    continue;
+                }
+            }
+
+            for (int i = 0; i < registro.atributos.size(); i += 2) {
+                String atributo = registro.atributos.get(i);
+                if (atributo == null) {
+                    this.resultado.registrarFalha(numero, registro.login, "Atributo inválido.");
+                    continue;
+                }
+                this.sistema.importarAtributo(usuario, atributo, registro.atributos.get(i + 1));
+                this.resultado.atributos++;
+            }
+            for (String recado : registro.recados) {
+                if (recado == null) {
+                    this.resultado.registrarFalha(numero, registro.login, "Recado inválido.");
+                    continue;
+                }
+                usuario.adicionarRecado(recado);
+                this.resultado.recados++;
+            }
+        }
+    }
+
+    /**
+     * Segunda passada, nas threads da importação: traduz os logins dos registros com amigos ou convites
+     * em IDs. O mapa de logins não muda durante esta passada e pode ser lido por várias threads.
+     */
+    private List<RegistroMigracao> resolverAmizades(List<RegistroMigracao> registros) {
+        List<RegistroMigracao> comAmizades = new ArrayList<>();
+        for (RegistroMigracao registro : registros) {
+            if (registro.erro != null || (registro.amigos.isEmpty() && registro.convites.isEmpty())) {
+                continue;
+            }
+            registro.idUsuario = this.sistema.getIdUsuario(registro.login);
+            registro.idsAmigos = resolver(registro.amigos);
+            registro.idsConvites = resolver(registro.convites);
+            comAmizades.add(registro);
+        }
+        return comAmizades;
+    }
+
+    private int[] resolver(List<String> logins) {
+        int[] ids = new int[logins.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = this.sistema.getIdUsuario(logins.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Segunda passada, na thread que importa: acrescenta os amigos e convites aos usuários.
+     */
+    private void aplicarAmizades(Bloco bloco) {
+        for (RegistroMigracao registro : bloco.lidos) {
+            long numero = bloco.base + registro.linha + 1;
+            if (registro.cadastro && this.cadastrosRecusados.contains(numero)) {
+                // A falha já foi registrada na primeira passada
+                continue;
+            }
+            Usuario usuario = importado(registro.idUsuario);
+            if (usuario == null) {
+                this.resultado.registrarFalha(numero, registro.login, naoImportado(registro.login));
+                continue;
+            }
+
+            for (int i = 0; i < registro.idsAmigos.length; i++) {
+                String amigo = registro.amigos.get(i);
+                if (verificarAmizade(usuario, registro.idsAmigos[i], amigo, numero + (long) registro.passo * i)) {
+                    usuario.adicionarAmigo(registro.idsAmigos[i]);
+                    this.resultado.amigos++;
+                }
+            }
+            for (int i = 0; i < registro.idsConvites.length; i++) {
+                String remetente = registro.convites.get(i);
+                if (verificarAmizade(usuario, registro.idsConvites[i], remetente, numero + (long) registro.passo * i)) {
+                    usuario.adicionarConviteAmizade(registro.idsConvites[i]);
+                    this.resultado.convites++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Conta as amizades dos usuários importados que não aparecem no outro usuário e os convites entre
+     * usuários que já são amigos. Os amigos e convites dos usuários importados são sempre usuários da
+     * própria importação.
+     */
+    private long contarInconsistencias() {
+        long inconsistencias = 0;
+        for (Usuario usuario : this.importados) {
+            ConjuntoIds amigos = usuario.getAmigos();
+            for (int i = 0; i < amigos.tamanho(); i++) {
+                if (!importado(amigos.get(i)).getAmigos().contem(usuario.getId())) {
+                    inconsistencias++;
+                }
+            }
+            ConjuntoIds convites = usuario.getConvitesAmizade();
+            for (int i = 0; i < convites.tamanho(); i++) {
+                if (saoAmigos(usuario, convites.get(i))) {
+                    inconsistencias++;
+                }
+            }
+        }
+        return inconsistencias;
+    }
+
+    /**
+     * Terceira passada, só quando há inconsistências: desfaz as amizades que aparecem em apenas um dos
+     * usuários e os convites entre amigos, registrando a falha no registro que os listou.
+     */
+    private void desfazerInconsistencias(Bloco bloco) {
+        for (RegistroMigracao registro : bloco.lidos) {
+            long numero = bloco.base + registro.linha + 1;
+            Usuario usuario = importado(registro.idUsuario);
+            if (usuario == null || (registro.cadastro && this.cadastrosRecusados.contains(numero))) {
+                continue;
+            }
+
+            for (int i = 0; i < registro.idsAmigos.length; i++) {
+                int id = registro.idsAmigos[i];
+                Usuario amigo = importado(id);
+                if (amigo != null && usuario.getAmigos().contem(id) && !amigo.getAmigos().contem(usuario.getId())) {
+                    usuario.removerAmigo(id);
+                    this.resultado.amigos--;
+                    this.resultado.registrarFalha(numero + (long) registro.passo * i, registro.amigos.get(i),
+                            "Amizade não aparece no outro usuário.");
+                }
+            }
+            for (int i = 0; i < registro.idsConvites.length; i++) {
+                int id = registro.idsConvites[i];
+                if (usuario.getConvitesAmizade().contem(id) && saoAmigos(usuario, id)) {
+                    usuario.removerConviteAmizade(id);
+                    this.resultado.convites--;
+                    this.resultado.registrarFalha(numero + (long) registro.passo * i, registro.convites.get(i),
+                            "Usuário já está adicionado como amigo.");
+                }
+            }
+        }
+    }
+
+    private boolean saoAmigos(Usuario usuario, int id) {
+        Usuario outro = importado(id);
+        return usuario.getAmigos().contem(id) || (outro != null && outro.getAmigos().contem(usuario.getId()));
+    }
+
+    private boolean verificarAmizade(Usuario usuario, int id, String login, long numero) {
+        if (importado(id) == null) {
+            this.resultado.registrarFalha(numero, login, naoImportado(login));
+            return false;
+        }
+        if (id == usuario.getId()) {
+            this.resultado.registrarFalha(numero, login, "Usuário não pode adicionar a si mesmo como amigo.");
+            return false;
+        }
+        return true;
+    }
+
+    private Usuario importado(int id) {
+        int posicao = id - this.primeiroId;
+        return posicao >= 0 && posicao < this.importados.size() ? this.importados.get(posicao) : null;
+    }
+
+    private String naoImportado(String login) {
+        return this.sistema.getIdUsuario(login) < 0 ? "Usuário não cadastrado." : "Usuário não faz parte da importação.";
+    }
+
+    /**
+     * Um bloco do arquivo, já lido.
+     */
+    private static class Bloco {
+        /**
+         * Quantidade de registros físicos do bloco, inclusive os inválidos e as linhas em branco.
+         */
+        int registros;
+        List<RegistroMigracao> lidos;
+        /**
+         * Quantidade de registros físicos dos blocos anteriores, preenchida ao aplicar o bloco.
+         */
+        long base;
+    }
+}
@@ -0,0 +1,341 @@
+package br.ufal.ic.p2.jackut.migracao;
+
+import br.ufal.ic.p2.jackut.entities.ConjuntoIds;
+import br.ufal.ic.p2.jackut.entities.Usuario;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Escrita e leitura do formato {@link FormatoMigracao#JSONL}. O leitor entende JSON em geral, mas só
+ * aproveita os campos de um usuário; campos desconhecidos são ignorados.
+ */
+final class Jsonl {
+    private final String texto;
+    private final int fim;
+    private int posicao;
+
+    private Jsonl(String texto, int inicio, int fim) {
+        this.texto = texto;
+        this.posicao = inicio;
+        this.fim = fim;
+    }
+
+    static void escrever(Usuario usuario, IntFunction<String> logins, StringBuilder saida) {
+        saida.append("{\"login\":");
+        string(usuario.getLogin(), saida);
+        saida.append(",\"senha\":");
+        string(usuario.getSenha(), saida);
+        saida.append(",\"nome\":");
+        string(usuario.getNome(), saida);
+        if (usuario.getQuantidadeAtributos() > 0) {
+            saida.append(",\"atributos\":{");
+            int inicio = saida.length();
+            usuario.paraCadaAtributo((atributo, valor) -> {
+                if (saida.length() > inicio) {
+                    saida.append(',');
+                }
+                string(atributo, saida);
+                saida.append(':');
+                string(valor, saida);
+            });
+            saida.append('}');
+        }
+        ids("amigos", usuario.getAmigos(), logins, saida);
+        ids("convites", usuario.getConvitesAmizade(), logins, saida);
+        if (!usuario.getRecados().isEmpty()) {
+            saida.append(",\"recados\":[");
+            int inicio = saida.length();
+            usuario.getRecados().paraCada(recado -> {
+                if (saida.length() > inicio) {
+                    saida.append(',');
+                }
+                string(recado, saida);
+            });
+            saida.append(']');
+        }
+        saida.append("}\n");
+    }
+
+    private static void ids(String campo, ConjuntoIds ids, IntFunction<String> logins, StringBuilder saida) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        saida.append(",\"").append(campo).append("\":[");
+        for (int i = 0; i < ids.tamanho(); i++) {
+            if (i > 0) {
+                saida.append(',');
+            }
+            string(logins.apply(ids.get(i)), saida);
+        }
+        saida.append(']');
+    }
+
+    private static void string(String valor, StringBuilder saida) {
+        if (valor == null) {
+            saida.append("null");
+            return;
+        }
+        saida.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"':
+                    saida.append("\\\"");
+                    break;
+                case '\\':
+                    saida.append("\\\\");
+                    break;
+                case '\n':
+                    saida.append("\\n");
+                    break;
+                case '\r':
+                    saida.append("\\r");
+                    break;
+                case '\t':
+                    saida.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        saida.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        saida.append(c);
+                    }
+            }
+        }
+        saida.append('"');
+    }
+
+    static int ler(String texto, Consumer<RegistroMigracao> destino) {
+        int linhas = 0;
+        int inicio = 0;
+        while (inicio < texto.length()) {
+            int quebra = texto.indexOf('\n', inicio);
+            int fim = quebra >= 0 ? quebra : texto.length();
+            Jsonl leitor = new Jsonl(texto, inicio, fim);
+            leitor.pularEspacos();
+            if (leitor.posicao < fim) {
+                destino.accept(leitor.lerUsuario(linhas));
+            }
+            linhas++;
+            inicio = fim + 1;
+        }
+        return linhas;
+    }
+
+    private RegistroMigracao lerUsuario(int linha) {
+        RegistroMigracao registro = new RegistroMigracao(linha, 0);
+        registro.cadastro = true;
+        try {
+            esperar('{');
+            if (!consumir('}')) {
+                do {
+                    String campo = lerString();
+                    esperar(':');
+                    switch (campo == null ? "" : campo) {
+                        case "login":
+                            registro.login = lerString();
+                            break;
+                        case "senha":
+                            registro.senha = lerString();
+                            break;
+                        case "nome":
+                            registro.nome = lerString();
+                            break;
+                        case "atributos":
+                            lerAtributos(registro.atributos);
+                            break;
+                        case "amigos":
+                            lerLista(registro.amigos);
+                            break;
+                        case "convites":
+                            lerLista(registro.convites);
+                            break;
+                        case "recados":
+                            lerLista(registro.recados);
+                            break;
+                        default:
+                            pularValor();
+                    }
+                } while (consumir(','));
+                esperar('}');
+            }
+            pularEspacos();
+            if (posicao != fim) {
+                throw erro("conteúdo depois do objeto");
+            }
+            return registro;
+        } catch (IllegalArgumentException e) {
+            return RegistroMigracao.invalido(linha, "Registro inválido: " + e.getMessage() + ".");
+        }
+    }
+
+    private void lerAtributos(List<String> atributos) {
+        esperar('{');
+        if (consumir('}')) {
+            return;
+        }
+        do {
+            atributos.add(lerString());
+            esperar(':');
+            atributos.add(lerString());
+        } while (consumir(','));
+        esperar('}');
+    }
+
+    private void lerLista(List<String> lista) {
+        esperar('[');
+        if (consumir(']')) {
+            return;
+        }
+        do {
+            lista.add(lerString());
+        } while (consumir(','));
+        esperar(']');
+    }
+
+    /**
+     * Lê uma string ou null.
+     */
+    private String lerString() {
+        pularEspacos();
+        if (texto.startsWith("null", posicao) && posicao + 4 <= fim) {
+            posicao += 4;
+            return null;
+        }
+        if (posicao >= fim || texto.charAt(posicao) != '"') {
+            throw erro("string esperada");
+        }
+        posicao++;
+        int inicio = posicao;
+        // Caminho rápido: sem escapes, a string é um trecho do texto
+        while (posicao < fim) {
+            char c = texto.charAt(posicao);
+            if (c == '"') {
+                return texto.substring(inicio, posicao++);
+            }
+            if (c == '\\') {
+                break;
+            }
+            posicao++;
+        }
+        StringBuilder valor = new StringBuilder(posicao - inicio + 16);
+        valor.append(texto, inicio, posicao);
+        while (posicao < fim) {
+            char c = texto.charAt(posicao++);
+            if (c == '"') {
+                return valor.toString();
+            }
+            if (c != '\\') {
+                valor.append(c);
+                continue;
+            }
+            if (posicao >= fim) {
+                break;
+            }
+            char escape = texto.charAt(posicao++);
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    valor.append(escape);
+                    break;
+                case 'b':
+                    valor.append('\b');
+                    break;
+                case 'f':
+                    valor.append('\f');
+                    break;
+                case 'n':
+                    valor.append('\n');
+                    break;
+                case 'r':
+                    valor.append('\r');
+                    break;
+                case 't':
+                    valor.append('\t');
+                    break;
+                case 'u':
+                    if (posicao + 4 > fim) {
+                        throw erro("escape incompleto");
+                    }
+                    try {
+                        valor.append((char) Integer.parseInt(texto.substring(posicao, posicao + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw erro("escape inválido");
+                    }
+                    posicao += 4;
+                    break;
+                default:
+                    throw erro("escape inválido");
+            }
+        }
+        throw erro("string sem fim");
+    }
+
+    /**
+     * Pula um valor JSON qualquer, de um campo desconhecido.
+     */
+    private void pularValor() {
+        pularEspacos();
+        if (posicao >= fim) {
+            throw erro("valor esperado");
+        }
+        char c = texto.charAt(posicao);
+        if (c == '"') {
+            lerString();
+        } else if (c == '{' || c == '[') {
+            char fecha = c == '{' ? '}' : ']';
+            posicao++;
+            if (consumir(fecha)) {
+                return;
+            }
+            do {
+                if (c == '{') {
+                    lerString();
+                    esperar(':');
+                }
+                pularValor();
+            } while (consumir(','));
+            esperar(fecha);
+        } else {
+            int inicio = posicao;
+            while (posicao < fim && "{}[],: \t\r".indexOf(texto.charAt(posicao)) < 0) {
+                posicao++;
+            }
+            if (posicao == inicio) {
+                throw erro("valor esperado");
+            }
+        }
+    }
+
+    private void esperar(char c) {
+        if (!consumir(c)) {
+            throw erro("'" + c + "' esperado");
+        }
+    }
+
+    private boolean consumir(char c) {
+        pularEspacos();
+        if (posicao < fim && texto.charAt(posicao) == c) {
+            posicao++;
+            return true;
+        }
+        return false;
+    }
+
+    private void pularEspacos() {
+        while (posicao < fim) {
+            char c = texto.charAt(posicao);
+            if (c != ' ' && c != '\t' && c != '\r') {
+                return;
+            }
+            posicao++;
+        }
+    }
+
+    private IllegalArgumentException erro(String mensagem) {
+        return new IllegalArgumentException(mensagem);
+    }
+}
@@ -0,0 +1,53 @@
+package br.ufal.ic.p2.jackut.migracao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Um registro lido de um arquivo de migração: em JSONL, um usuário completo; em CSV, o cadastro de um
+ * usuário, um atributo, um recado, ou uma sequência de amigos ou convites consecutivos do mesmo
+ * usuário.
+ */
+final class RegistroMigracao {
+    /**
+     * Posição do primeiro registro físico (linha) dentro do bloco, a partir de zero.
+     */
+    final int linha;
+    /**
+     * Quantas linhas separam dois amigos ou convites consecutivos: 0 em JSONL, em que estão todos na
+     * mesma linha, e 1 em CSV.
+     */
+    final int passo;
+    String login;
+    boolean cadastro;
+    String senha;
+    String nome;
+    final List<String> atributos = new ArrayList<>(0);
+    final List<String> amigos = new ArrayList<>(0);
+    final List<String> convites = new ArrayList<>(0);
+    final List<String> recados = new ArrayList<>(0);
+    String erro;
+
+    // Preenchidos na resolução das amizades
+    int idUsuario = -1;
+    int[] idsAmigos;
+    int[] idsConvites;
+
+    RegistroMigracao(int linha, int passo) {
+        this.linha = linha;
+        this.passo = passo;
+    }
+
+    /**
+     * Cria um registro que não pôde ser lido.
+     *
+     * @param linha A posição do registro no bloco.
+     * @param erro A mensagem do erro.
+     * @return O registro.
+     */
+    static RegistroMigracao invalido(int linha, String erro) {
+        RegistroMigracao registro = new RegistroMigracao(linha, 0);
+        registro.erro = erro;
+        return registro;
+    }
+}
@@ -0,0 +1,150 @@
+package br.ufal.ic.p2.jackut.migracao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de uma importação da rede. Um item inválido não interrompe a importação; a falha é
+ * registrada com a posição do registro no arquivo e a mensagem do erro, e os demais itens são
+ * importados. Só as primeiras {@value #LIMITE_FALHAS} falhas são guardadas, mas todas são contadas.
+ */
+public class ResultadoImportacao {
+    /**
+     * Quantidade máxima de falhas guardadas.
+     */
+    public static final int LIMITE_FALHAS = 1000;
+
+    private final List<Falha> falhas = new ArrayList<>();
+    private long quantidadeFalhas;
+    long usuarios;
+    long atributos;
+    long amigos;
+    long convites;
+    long recados;
+
+    void registrarFalha(long registro, String item, String mensagem) {
+        quantidadeFalhas++;
+        if (falhas.size() < LIMITE_FALHAS) {
+            falhas.add(new Falha(registro, item, mensagem));
+        }
+    }
+
+    /**
+     * Obtém a quantidade de usuários criados.
+     *
+     * @return A quantidade de usuários.
+     */
+    public long getUsuarios() {
+        return usuarios;
+    }
+
+    /**
+     * Obtém a quantidade de atributos de perfil definidos.
+     *
+     * @return A quantidade de atributos.
+     */
+    public long getAtributos() {
+        return atributos;
+    }
+
+    /**
+     * Obtém a quantidade de amigos adicionados. Cada amizade é contada nos dois usuários.
+     *
+     * @return A quantidade de amigos.
+     */
+    public long getAmigos() {
+        return amigos;
+    }
+
+    /**
+     * Obtém a quantidade de convites de amizade pendentes importados.
+     *
+     * @return A quantidade de convites.
+     */
+    public long getConvites() {
+        return convites;
+    }
+
+    /**
+     * Obtém a quantidade de recados não lidos importados.
+     *
+     * @return A quantidade de recados.
+     */
+    public long getRecados() {
+        return recados;
+    }
+
+    /**
+     * Obtém a quantidade total de falhas, inclusive as que não foram guardadas.
+     *
+     * @return A quantidade de falhas.
+     */
+    public long getQuantidadeFalhas() {
+        return quantidadeFalhas;
+    }
+
+    /**
+     * Obtém as primeiras falhas da importação. As falhas de amigos e convites vêm depois das demais,
+     * porque eles são importados em uma segunda passada pelo arquivo.
+     *
+     * @return Uma lista somente leitura com as falhas.
+     */
+    public List<Falha> getFalhas() {
+        return Collections.unmodifiableList(falhas);
+    }
+
+    @Override
+    public String toString() {
+        return usuarios + " usuários, " + atributos + " atributos, " + amigos + " amigos, " + convites
+                + " convites, " + recados + " recados, " + quantidadeFalhas + " falhas";
+    }
+
+    /**
+     * Falha de um item da importação.
+     */
+    public static class Falha {
+        private final long registro;
+        private final String item;
+        private final String mensagem;
+
+        Falha(long registro, String item, String mensagem) {
+            this.registro = registro;
+            this.item = item;
+            this.mensagem = mensagem;
+        }
+
+        /**
+         * Obtém a posição do registro no arquivo, a partir de 1. Se nenhum campo tiver quebras de
+         * linha, é o número da linha.
+         *
+         * @return A posição do registro.
+         */
+        public long getRegistro() {
+            return registro;
+        }
+
+        /**
+         * Obtém o item que falhou, como o login do usuário ou do amigo.
+         *
+         * @return O item, ou null se o registro não pôde ser lido.
+         */
+        public String getItem() {
+            return item;
+        }
+
+        /**
+         * Obtém a mensagem do erro.
+         *
+         * @return A mensagem.
+         */
+        public String getMensagem() {
+            return mensagem;
+        }
+
+        @Override
+        public String toString() {
+            return registro + " (" + item + "): " + mensagem;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package br.ufal.ic.p2.jackut.particoes;
+
+import br.ufal.ic.p2.jackut.exceptions.FriendshipException;
+import br.ufal.ic.p2.jackut.exceptions.ConnectionException;
+import br.ufal.ic.p2.jackut.exceptions.UserNotFoundException;
+import br.ufal.ic.p2.jackut.servidor.ConexoesJackut;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Roteador do modo particionado: oferece as operações de usuário da {@code Facade} sobre um conjunto
+ * de partições, cada uma um {@code ServidorJackut} com o seu próprio {@code Sistema} e os seus
+ * próprios arquivos de persistência.
+ * <p>
+ * Cada usuário pertence à partição escolhida pelo hash do seu login, e cada operação é enviada à
+ * partição do usuário que ela afeta. Os tokens de sessão levam o número da partição que os emitiu
+ * ({@code "2:token"}), de modo que as operações com sessão não precisam de nenhuma consulta extra.
+ * <p>
+ * Amizades e recados entre usuários de partições diferentes seguem um protocolo próprio:
+ * <ul>
+ *     <li>{@code adicionarAmigo}: se o usuário da sessão tem um convite pendente do outro, a amizade
+ *     é confirmada primeiro na partição do outro e depois na do usuário. As duas confirmações são
+ *     idempotentes, e o convite só é descartado na segunda, que é repetida algumas vezes, com espera
+ *     crescente, se a partição não responder. Se o roteador cair ou as tentativas se esgotarem, a
+ *     amizade fica confirmada apenas na partição do outro, e {@code adicionarAmigo} de qualquer um
+ *     dos dois a completa: o usuário da sessão ainda tem o convite pendente, e o outro já o tem como
+ *     amigo, o que o roteador verifica antes de registrar um convite. Nenhuma partição guarda a
+ *     intenção da confirmação para refazê-la sozinha na recuperação, porque a partição não conhece as
+ *     demais; o par incompleto só é completado pela próxima tentativa de um dos dois. Nos demais
+ *     casos, o convite é registrado na partição do outro, que faz as mesmas verificações de uma
+ *     partição única.</li>
+ *     <li>{@code enviarRecado}: a sessão é verificada na partição do remetente, e o recado é entregue
+ *     na partição do destinatário.</li>
+ * </ul>
+ * Cada partição guarda uma referência sem senha para os usuários de outras partições com quem os
+ * seus usuários têm amizades ou convites, e assim {@code ehAmigo} e {@code getAmigos} são respondidos
+ * pela partição do usuário, sem consultar as demais.
+ * <p>
+ * As partições são informadas pela propriedade {@code jackut.particoes}, como
+ * {@code localhost:7001,localhost:7002}, e a ordem delas define o particionamento: ela não pode mudar
+ * depois que houver usuários. As operações entre partições não são autenticadas, então as partições
+ * são iniciadas como servidores internos ({@code jackut.servidor.internas=true}), os únicos que as
+ * aceitam, e devem ser acessíveis apenas pelos roteadores. O roteador é thread-safe e mantém um
+ * conjunto de conexões por partição.
+ */
+public class RoteadorJackut implements Closeable {
+    private static final int TENTATIVAS_CONFIRMACAO = 3;
+    private static final long ESPERA_CONFIRMACAO_MILLIS = 50;
+
+    private final ConexoesJackut[] particoes;
+
+    /**
+     * Cria o roteador sobre as partições da propriedade {@code jackut.particoes}.
+     */
+    public RoteadorJackut() {
+        this(lerEnderecos(System.getProperty("jackut.particoes", "localhost:7000")));
+    }
+
+    /**
+     * Cria o roteador sobre as partições informadas.
+     *
+     * @param enderecos Os endereços das partições, na ordem do particionamento.
+     */
+    public RoteadorJackut(List<InetSocketAddress> enderecos) {
+        if (enderecos.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma partição informada.");
+        }
+        this.particoes = new ConexoesJackut[enderecos.size()];
+        for (int i = 0; i < particoes.length; i++) {
+            particoes[i] = new ConexoesJackut(enderecos.get(i));
+        }
+    }
+
+    /**
+     * Obtém a quantidade de partições.
+     *
+     * @return A quantidade de partições.
+     */
+    public int getQuantidadeParticoes() {
+        return particoes.length;
+    }
+
+    /**
+     * Obtém a partição de um usuário.
+     *
+     * @param login O login do usuário.
+     * @return O número da partição, a partir de zero.
+     */
+    public int particao(String login) {
+        if (login == null) {
+            return 0;
+        }
+        int hash = login.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), particoes.length);
+    }
+
+    /**
+     * Reseta todas as partições.
+     */
+    public void zerarSistema() {
+        for (ConexoesJackut particao : particoes) {
+            particao.chamar("zerarSistema");
+        }
+    }
+
+    /**
+     * Cria um usuário na sua partição.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @param nome O nome do usuário.
+     */
+    public void criarUsuario(String login, String senha, String nome) {
+        particaoDe(login).chamar("criarUsuario", login, senha, nome);
+    }
+
+    /**
+     * Abre uma sessão na partição do usuário.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @return O token da sessão, prefixado pelo número da partição.
+     */
+    public String abrirSessao(String login, String senha) {
+        int numero = particao(login);
+        return numero + ":" + particoes[numero].chamar("abrirSessao", login, senha);
+    }
+
+    /**
+     * Obtém o valor de um atributo de um usuário.
+     *
+     * @param login O login do usuário.
+     * @param atributo O nome do atributo.
+     * @return O valor do atributo.
+     */
+    public String getAtributoUsuario(String login, String atributo) {
+        return particaoDe(login).chamar("getAtributoUsuario", login, atributo);
+    }
+
+    /**
+     * Edita o perfil do usuário de uma sessão.
+     *
+     * @param id O token da sessão, emitido por este roteador.
+     * @param atributo O nome do atributo.
+     * @param valor O novo valor do atributo.
+     */
+    public void editarPerfil(String id, String atributo, String valor) {
+        Sessao sessao = new Sessao(id);
+        particoes[sessao.particao].chamar("editarPerfil", sessao.token, atributo, valor);
+    }
+
+    /**
+     * Verifica se dois usuários são amigos, na partição do primeiro.
+     *
+     * @param login O login do usuário.
+     * @param amigo O login do amigo.
+     * @return true se os usuários são amigos.
+     */
+    public boolean ehAmigo(String login, String amigo) {
+        return Boolean.parseBoolean(particaoDe(login).chamar("ehAmigo", login, amigo));
+    }
+
+    /**
+     * Obtém a lista de amigos de um usuário, na partição dele.
+     *
+     * @param login O login do usuário.
+     * @return Os logins dos amigos, formatados como na {@code Facade}.
+     */
+    public String getAmigos(String login) {
+        return particaoDe(login).chamar("getAmigos", login);
+    }
+
+    /**
+     * Adiciona um amigo ao usuário de uma sessão, ou aceita o convite pendente do amigo.
+     *
+     * @param id O token da sessão, emitido por este roteador.
+     * @param amigo O login do amigo.
+     */
+    public void adicionarAmigo(String id, String amigo) {
+        Sessao sessao = new Sessao(id);
+        ConexoesJackut propria = particoes[sessao.particao];
+        int numeroAmigo = particao(amigo);
+        if (numeroAmigo == sessao.particao) {
+            propria.chamar("adicionarAmigo", sessao.token, amigo);
+            return;
+        }
+
+        String login = propria.chamar("getLoginSessao", sessao.token);
+        ConexoesJackut doAmigo = particoes[numeroAmigo];
+        if (Boolean.parseBoolean(propria.chamar("temConvite", login, amigo))) {
+            doAmigo.chamar("confirmarAmizadeRemota", amigo, login);
+            confirmar(propria, login, amigo);
+            return;
+        }
+
+        if (Boolean.parseBoolean(propria.chamar("ehAmigo", login, amigo))
+                && Boolean.parseBoolean(doAmigo.chamar("temConvite", amigo, login))) {
+            // O outro aceitou o convite, mas a confirmação não chegou à partição dele
+            confirmar(doAmigo, amigo, login);
+            throw new FriendshipException("Usuário já está adicionado como amigo.");
+        }
+        doAmigo.chamar("registrarConviteRemoto", amigo, login);
+    }
+
+    /**
+     * Confirma a amizade na partição de um usuário, tentando de novo, com espera crescente, se a
+     * partição não responder.
+     */
+    private static void confirmar(ConexoesJackut particao, String login, String amigo) {
+        for (int tentativa = 1; ; tentativa++) {
+            try {
+                particao.chamar("confirmarAmizadeRemota", login, amigo);
+                return;
+            } catch (ConnectionException e) {
+                if (tentativa == TENTATIVAS_CONFIRMACAO) {
+                    throw new FriendshipException("Amizade confirmada apenas em parte; repita a operação.");
+                }
+            }
+            try {
+                Thread.sleep(ESPERA_CONFIRMACAO_MILLIS * tentativa);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FriendshipException("Amizade confirmada apenas em parte; repita a operação.");
+            }
+        }
+    }
+
+    /**
+     * Envia um recado do usuário de uma sessão para outro usuário.
+     *
+     * @param id O token da sessão, emitido por este roteador.
+     * @param destinatario O login do destinatário.
+     * @param recado O conteúdo do recado.
+     */
+    public void enviarRecado(String id, String destinatario, String recado) {
+        Sessao sessao = new Sessao(id);
+        ConexoesJackut propria = particoes[sessao.particao];
+        int numeroDestinatario = particao(destinatario);
+        if (numeroDestinatario == sessao.particao) {
+            propria.chamar("enviarRecado", sessao.token, destinatario, recado);
+            return;
+        }
+
+        // Um usuário nunca está em duas partições, então o recado não é para o próprio remetente
+        String remetente = propria.chamar("getLoginSessao", sessao.token);
+        particoes[numeroDestinatario].chamar("receberRecado", remetente, destinatario, recado);
+    }
+
+    /**
+     * Lê o recado mais antigo do usuário de uma sessão.
+     *
+     * @param id O token da sessão, emitido por este roteador.
+     * @return O conteúdo do recado.
+     */
+    public String lerRecado(String id) {
+        Sessao sessao = new Sessao(id);
+        return particoes[sessao.particao].chamar("lerRecado", sessao.token);
+    }
+
+    /**
+     * Grava o estado de todas as partições.
+     */
+    public void saveSistema() {
+        for (ConexoesJackut particao : particoes) {
+            particao.chamar("saveSistema");
+        }
+    }
+
+    /**
+     * Grava o estado de todas as partições e fecha as conexões do roteador. As partições continuam em
+     * execução; cada uma é encerrada pelo seu próprio processo.
+     */
+    public void encerrarSistema() {
+        saveSistema();
+        close();
+    }
+
+    @Override
+    public void close() {
+        for (ConexoesJackut particao : particoes) {
+            particao.close();
+        }
+    }
+
+    private ConexoesJackut particaoDe(String login) {
+        return particoes[particao(login)];
+    }
+
+    private static List<InetSocketAddress> lerEnderecos(String lista) {
+        List<InetSocketAddress> enderecos = new ArrayList<>();
+        for (String endereco : lista.split(",")) {
+            String[] partes = endereco.trim().split(":");
+            enderecos.add(new InetSocketAddress(partes[0], Integer.parseInt(partes[1])));
+        }
+        return enderecos;
+    }
+
+    /**
+     * Token de sessão do roteador: o número da partição e o token emitido por ela.
+     */
+    private class Sessao {
+        private final int particao;
+        private final String token;
+
+        Sessao(String id) {
+            int separador = id == null ? -1 : id.indexOf(':');
+            if (separador <= 0) {
+                throw UserNotFoundException.NAO_CADASTRADO;
+            }
+            try {
+                this.particao = Integer.parseInt(id.substring(0, separador));
+            } catch (NumberFormatException e) {
+                throw UserNotFoundException.NAO_CADASTRADO;
+            }
+            if (particao < 0 || particao >= particoes.length) {
+                throw UserNotFoundException.NAO_CADASTRADO;
+            }
+            this.token = id.substring(separador + 1);
+        }
+    }
+}
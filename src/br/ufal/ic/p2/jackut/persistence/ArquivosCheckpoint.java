@@ -0,0 +1,462 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.entities.SnapshotSistema;
+import br.ufal.ic.p2.jackut.entities.Usuario;
+import br.ufal.ic.p2.jackut.metricas.EventoCompactacao;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Os arquivos de checkpoint de um sistema: uma base com todos os usuários ("sistema.dat"), um segmento
+ * para cada checkpoint incremental ("sistema.000001.seg", ...) e um manifesto ("sistema.manifesto")
+ * que lista, em ordem, os arquivos válidos e o LSN de cada um.
+ * <p>
+ * Um checkpoint incremental grava apenas os usuários criados ou alterados desde o anterior, de modo que
+ * o tempo e os bytes gravados acompanham a quantidade de alterações, e não o tamanho do sistema. A carga
+ * mescla a base com os segmentos, prevalecendo a versão mais recente de cada usuário. Quando os
+ * segmentos se acumulam (pelo menos {@code jackut.checkpoint.segmentos} arquivos, ou mais bytes que
+ * metade da base), eles podem ser compactados em segundo plano ({@link #compactarEmSegundoPlano()}): a
+ * base e os segmentos são percorridos juntos, usuário por usuário, e gravados em uma nova base, sem
+ * bloquear as operações nem os checkpoints seguintes.
+ * <p>
+ * Cada arquivo só passa a valer quando um manifesto que o lista é movido atomicamente para o lugar do
+ * anterior. Segmentos que não estão no manifesto são sobras de um checkpoint interrompido e são
+ * apagados na abertura. Se a compactação for interrompida depois de substituir a base e antes de
+ * gravar o manifesto, os segmentos compactados ainda são listados e reaplicados sobre a nova base, o
+ * que não altera o resultado. Sem manifesto, "sistema.dat" sozinho é a base, em qualquer um dos
+ * formatos aceitos por {@link LeitorSnapshot}.
+ * <p>
+ * Formato do manifesto (texto):
+ * <pre>
+ * jackut-manifesto 1
+ * base sistema.dat [lsn]
+ * segmento sistema.000001.seg [lsn]
+ * </pre>
+ */
+public class ArquivosCheckpoint implements Closeable {
+    private static final String CABECALHO_MANIFESTO = "jackut-manifesto 1";
+    private static final int LIMITE_SEGMENTOS = Integer.getInteger("jackut.checkpoint.segmentos", 8);
+
+    private final File base;
+    private final File manifesto;
+    private final String prefixo;
+
+    // Protegidos pelo monitor do objeto
+    private final List<Segmento> segmentos = new ArrayList<>();
+    private boolean baseIncremental;
+    private long lsnBase;
+    private int proximoSegmento = 1;
+    private long geracaoBase;
+    private Thread compactacao;
+
+    private ArquivosCheckpoint(File base) {
+        this.base = base;
+        String nome = base.getName();
+        this.prefixo = nome.contains(".") ? nome.substring(0, nome.lastIndexOf('.')) : nome;
+        this.manifesto = new File(base.getParentFile(), prefixo + ".manifesto");
+    }
+
+    /**
+     * Abre os arquivos de checkpoint de um sistema, lendo o manifesto e apagando os segmentos que não
+     * constam nele.
+     *
+     * @param base O arquivo da base, como "sistema.dat"; os demais ficam no mesmo diretório.
+     * @return Os arquivos de checkpoint, possivelmente ainda inexistentes.
+     * @throws IOException Se o manifesto não puder ser lido ou listar um arquivo inexistente.
+     */
+    public static ArquivosCheckpoint abrir(File base) throws IOException {
+        ArquivosCheckpoint arquivos = new ArquivosCheckpoint(base);
+        if (arquivos.manifesto.exists()) {
+            arquivos.lerManifesto();
+        } else if (base.exists()) {
+            arquivos.lerCabecalhoBase();
+        }
+        arquivos.apagarSobras();
+        return arquivos;
+    }
+
+    private void lerManifesto() throws IOException {
+        List<String> linhas = Files.readAllLines(manifesto.toPath(), StandardCharsets.UTF_8);
+        if (linhas.isEmpty() || !linhas.get(0).equals(CABECALHO_MANIFESTO)) {
+            throw new IOException("Manifesto de checkpoint corrompido");
+        }
+        for (String linha : linhas.subList(1, linhas.size())) {
+            String[] campos = linha.split(" ");
+            if (campos.length != 3) {
+                throw new IOException("Manifesto de checkpoint corrompido");
+            }
+            File arquivo = new File(base.getParentFile(), campos[1]);
+            if (!arquivo.exists()) {
+                throw new IOException("Arquivo de checkpoint ausente: " + campos[1]);
+            }
+            long lsn = Long.parseLong(campos[2]);
+            if (campos[0].equals("base")) {
+                lsnBase = lsn;
+                baseIncremental = true;
+            } else if (campos[0].equals("segmento")) {
+                segmentos.add(new Segmento(arquivo, lsn));
+                proximoSegmento = Math.max(proximoSegmento, numeroSegmento(arquivo.getName()) + 1);
+            } else {
+                throw new IOException("Manifesto de checkpoint corrompido");
+            }
+        }
+    }
+
+    /**
+     * Verifica se uma base gravada antes dos checkpoints incrementais já pode receber segmentos, o
+     * que exige o formato binário versão 2.
+     */
+    private void lerCabecalhoBase() throws IOException {
+        if (LeitorSnapshot.ehFormatoLegado(base)) {
+            return;
+        }
+        try {
+            CursorSnapshot cursor = CursorSnapshot.abrir(base);
+            baseIncremental = !cursor.isSegmento();
+            lsnBase = cursor.getUltimoLsn();
+        } catch (IOException e) {
+            // Versão 1, sem índices: só é lida por completo, e o próximo checkpoint grava uma base nova
+        }
+    }
+
+    private void apagarSobras() {
+        Set<File> validos = new HashSet<>();
+        for (Segmento segmento : segmentos) {
+            validos.add(segmento.arquivo);
+        }
+        File[] arquivos = base.getAbsoluteFile().getParentFile().listFiles();
+        if (arquivos == null) {
+            return;
+        }
+        for (File arquivo : arquivos) {
+            if (numeroSegmento(arquivo.getName()) > 0 && !validos.contains(new File(base.getParentFile(), arquivo.getName()))) {
+                arquivo.delete();
+            }
+        }
+        new File(base.getPath() + ".compactado").delete();
+    }
+
+    /**
+     * Obtém o número de um arquivo de segmento deste sistema.
+     *
+     * @return O número, ou 0 se o nome não for de um segmento.
+     */
+    private int numeroSegmento(String nome) {
+        if (!nome.startsWith(prefixo + ".") || !nome.endsWith(".seg")) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(nome.substring(prefixo.length() + 1, nome.length() - 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Verifica se há uma base gravada.
+     *
+     * @return true se a base existir.
+     */
+    public boolean existe() {
+        return base.exists();
+    }
+
+    /**
+     * Obtém o total de bytes da base e dos segmentos.
+     *
+     * @return A quantidade de bytes.
+     */
+    public synchronized long getBytes() {
+        long bytes = base.length();
+        for (Segmento segmento : segmentos) {
+            bytes += segmento.arquivo.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Obtém a quantidade de segmentos ainda não compactados.
+     *
+     * @return A quantidade de segmentos.
+     */
+    public synchronized int getQuantidadeSegmentos() {
+        return segmentos.size();
+    }
+
+    /**
+     * Verifica se o próximo checkpoint precisa gravar uma base completa, porque ainda não há base ou
+     * porque ela está em um formato que não aceita segmentos.
+     *
+     * @return true se um checkpoint incremental não for possível.
+     */
+    public synchronized boolean exigeCompleto() {
+        return !baseIncremental || !base.exists();
+    }
+
+    /**
+     * Verifica se os segmentos acumulados já justificam uma compactação.
+     *
+     * @return true se os segmentos devem ser compactados.
+     */
+    public synchronized boolean precisaCompactar() {
+        if (segmentos.isEmpty()) {
+            return false;
+        }
+        long bytesSegmentos = 0;
+        for (Segmento segmento : segmentos) {
+            bytesSegmentos += segmento.arquivo.length();
+        }
+        return segmentos.size() >= LIMITE_SEGMENTOS || bytesSegmentos * 2 >= base.length();
+    }
+
+    /**
+     * Carrega o sistema da base e dos segmentos.
+     *
+     * @param preguicosa true para mapear a base em memória e decodificar os seus usuários só quando
+     * acessados; os usuários dos segmentos são mantidos em memória.
+     * @return O sistema carregado, ou null se não houver base.
+     * @throws IOException Se algum arquivo não puder ser lido ou estiver corrompido.
+     */
+    public synchronized Sistema carregar(boolean preguicosa) throws IOException {
+        if (!base.exists()) {
+            return null;
+        }
+        long ultimoLsn = ultimoLsn();
+
+        SnapshotMapeado mapeado = preguicosa ? SnapshotMapeado.abrir(base) : null;
+        Sistema sistema;
+        if (mapeado != null) {
+            sistema = new Sistema();
+            sistema.setOrigem(mapeado);
+            Iterator<Usuario> alterados = CursorSnapshot.mesclar(abrirSegmentos(segmentos.size()));
+            while (alterados.hasNext()) {
+                sistema.restaurarUsuario(alterados.next());
+            }
+        } else if (segmentos.isEmpty()) {
+            return LeitorSnapshot.carregar(base);
+        } else {
+            List<CursorSnapshot> cursores = abrirSegmentos(segmentos.size());
+            cursores.add(0, CursorSnapshot.abrir(base));
+            sistema = new Sistema();
+            Iterator<Usuario> usuarios = CursorSnapshot.mesclar(cursores);
+            while (usuarios.hasNext()) {
+                sistema.restaurarUsuario(usuarios.next());
+            }
+        }
+        sistema.setUltimoLsn(ultimoLsn);
+        return sistema;
+    }
+
+    /**
+     * Obtém o LSN da última alteração contida na base e nos segmentos.
+     */
+    private long ultimoLsn() {
+        return segmentos.isEmpty() ? lsnBase : segmentos.get(segmentos.size() - 1).lsn;
+    }
+
+    private List<CursorSnapshot> abrirSegmentos(int quantidade) throws IOException {
+        List<CursorSnapshot> cursores = new ArrayList<>();
+        for (Segmento segmento : segmentos.subList(0, quantidade)) {
+            cursores.add(CursorSnapshot.abrir(segmento.arquivo));
+        }
+        return cursores;
+    }
+
+    /**
+     * Grava uma base completa, substituindo a base e os segmentos anteriores.
+     *
+     * @param snapshot Um snapshot com todos os usuários do sistema.
+     * @return A quantidade de bytes gravados.
+     * @throws IOException Se a gravação falhar; nesse caso os arquivos anteriores continuam valendo.
+     */
+    public synchronized long gravarCompleto(SnapshotSistema snapshot) throws IOException {
+        File temporario = new File(base.getPath() + ".tmp");
+        long bytes;
+        try (FileOutputStream saida = new FileOutputStream(temporario)) {
+            bytes = EscritorSnapshot.escrever(snapshot, saida);
+            saida.getFD().sync();
+        }
+        Files.move(temporario.toPath(), base.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        List<Segmento> anteriores = new ArrayList<>(segmentos);
+        segmentos.clear();
+        lsnBase = snapshot.getUltimoLsn();
+        baseIncremental = true;
+        geracaoBase++;
+        gravarManifesto();
+        for (Segmento segmento : anteriores) {
+            segmento.arquivo.delete();
+        }
+        return bytes;
+    }
+
+    /**
+     * Grava em um novo segmento os usuários alterados desde o último checkpoint. Só deve ser chamado
+     * quando {@link #exigeCompleto()} for falso.
+     *
+     * @param snapshot Um snapshot parcial, com os usuários alterados.
+     * @return A quantidade de bytes gravados.
+     * @throws IOException Se a gravação falhar; nesse caso os arquivos anteriores continuam valendo.
+     */
+    public synchronized long gravarSegmento(SnapshotSistema snapshot) throws IOException {
+        if (snapshot.getQuantidade() == 0 && snapshot.getUltimoLsn() == ultimoLsn()) {
+            return 0;
+        }
+        File arquivo = new File(base.getParentFile(), String.format("%s.%06d.seg", prefixo, proximoSegmento++));
+        long bytes;
+        try (FileOutputStream saida = new FileOutputStream(arquivo)) {
+            bytes = EscritorSnapshot.escrever(snapshot, saida);
+            saida.getFD().sync();
+        } catch (IOException e) {
+            arquivo.delete();
+            throw e;
+        }
+
+        segmentos.add(new Segmento(arquivo, snapshot.getUltimoLsn()));
+        try {
+            gravarManifesto();
+        } catch (IOException e) {
+            segmentos.remove(segmentos.size() - 1);
+            arquivo.delete();
+            throw e;
+        }
+        return bytes;
+    }
+
+    /**
+     * Grava o manifesto em um arquivo temporário e o move atomicamente para o lugar do anterior.
+     */
+    private void gravarManifesto() throws IOException {
+        File temporario = new File(manifesto.getPath() + ".tmp");
+        try (FileOutputStream saida = new FileOutputStream(temporario)) {
+            Writer escritor = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8));
+            escritor.write(CABECALHO_MANIFESTO + "\n");
+            escritor.write("base " + base.getName() + " " + lsnBase + "\n");
+            for (Segmento segmento : segmentos) {
+                escritor.write("segmento " + segmento.arquivo.getName() + " " + segmento.lsn + "\n");
+            }
+            escritor.flush();
+            saida.getFD().sync();
+        }
+        Files.move(temporario.toPath(), manifesto.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Inicia a compactação dos segmentos atuais em uma thread própria, se nenhuma estiver em andamento.
+     * Os checkpoints seguintes continuam gravando segmentos, que são mantidos depois da nova base.
+     */
+    public synchronized void compactarEmSegundoPlano() {
+        if (compactacao != null && compactacao.isAlive()) {
+            return;
+        }
+        compactacao = new Thread(this::compactar, "jackut-compactacao");
+        compactacao.setDaemon(true);
+        compactacao.start();
+    }
+
+    /**
+     * Mescla a base e os segmentos existentes no início em uma nova base. Se a compactação falhar, ou
+     * se um checkpoint completo substituir a base enquanto ela ocorre, o resultado é descartado.
+     */
+    private void compactar() {
+        EventoCompactacao evento = new EventoCompactacao();
+        evento.begin();
+
+        long geracao;
+        List<Segmento> compactados;
+        List<CursorSnapshot> cursores;
+        synchronized (this) {
+            geracao = geracaoBase;
+            compactados = new ArrayList<>(segmentos);
+            if (compactados.isEmpty()) {
+                return;
+            }
+            try {
+                cursores = abrirSegmentos(compactados.size());
+                cursores.add(0, CursorSnapshot.abrir(base));
+            } catch (IOException e) {
+                return;
+            }
+        }
+
+        File temporario = new File(base.getPath() + ".compactado");
+        try {
+            int maiorId = -1;
+            for (CursorSnapshot cursor : cursores) {
+                maiorId = Math.max(maiorId, cursor.getMaiorId());
+            }
+            long lsn = compactados.get(compactados.size() - 1).lsn;
+            try (FileOutputStream saida = new FileOutputStream(temporario)) {
+                evento.bytes = EscritorSnapshot.escrever(CursorSnapshot.mesclar(cursores), maiorId + 1, lsn, saida);
+                saida.getFD().sync();
+            }
+
+            synchronized (this) {
+                if (geracao != geracaoBase) {
+                    return;
+                }
+                Files.move(temporario.toPath(), base.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                segmentos.subList(0, compactados.size()).clear();
+                lsnBase = lsn;
+                geracaoBase++;
+                gravarManifesto();
+            }
+            for (Segmento segmento : compactados) {
+                segmento.arquivo.delete();
+            }
+            evento.segmentos = compactados.size();
+            evento.usuarios = maiorId + 1;
+            evento.commit();
+        } catch (IOException | RuntimeException e) {
+            // Os segmentos continuam valendo e a compactação é tentada de novo depois do próximo checkpoint
+        } finally {
+            temporario.delete();
+        }
+    }
+
+    /**
+     * Aguarda o fim da compactação em andamento, se houver.
+     */
+    @Override
+    public void close() {
+        Thread atual;
+        synchronized (this) {
+            atual = compactacao;
+        }
+        if (atual == null) {
+            return;
+        }
+        boolean interrompida = false;
+        while (atual.isAlive()) {
+            try {
+                atual.join();
+            } catch (InterruptedException e) {
+                interrompida = true;
+            }
+        }
+        if (interrompida) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Um segmento listado no manifesto e o LSN da última alteração contida nele.
+     */
+    private static class Segmento {
+        final File arquivo;
+        final long lsn;
+
+        Segmento(File arquivo, long lsn) {
+            this.arquivo = arquivo;
+            this.lsn = lsn;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import br.ufal.ic.p2.jackut.entities.Usuario;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Percorre, em ordem de ID, os usuários de um snapshot binário versão 2 ou de um segmento de
+ * checkpoint incremental, mapeados em memória. Cada usuário só é decodificado quando pedido, de modo
+ * que a base e os segmentos podem ser mesclados sem que o sistema inteiro fique em memória.
+ */
+final class CursorSnapshot {
+    private final MappedByteBuffer buffer;
+    private final boolean segmento;
+    private final long ultimoLsn;
+    private final int quantidade;
+    private final long offsetIndiceStrings;
+    private final long offsetIndiceUsuarios;
+    private int lidos;
+    private int proximoOffset = FormatoSnapshot.TAMANHO_CABECALHO;
+    private int id = -1;
+    private int inicioRegistro;
+
+    private CursorSnapshot(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        int limite = buffer.limit();
+        this.segmento = (buffer.getShort(6) & FormatoSnapshot.FLAG_SEGMENTO) != 0;
+        this.ultimoLsn = buffer.getLong(8);
+        this.quantidade = buffer.getInt(16);
+        this.offsetIndiceStrings = buffer.getLong(limite - 20);
+        this.offsetIndiceUsuarios = buffer.getLong(limite - 12);
+    }
+
+    /**
+     * Mapeia um snapshot ou segmento e posiciona o cursor antes do primeiro usuário.
+     *
+     * @param arquivo O arquivo.
+     * @return O cursor.
+     * @throws IOException Se o arquivo não puder ser mapeado, estiver corrompido ou não estiver na versão 2.
+     */
+    static CursorSnapshot abrir(File arquivo) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+            buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        if (LeitorSnapshot.validarCabecalho(buffer) != FormatoSnapshot.VERSAO) {
+            throw new IOException("Versão de snapshot não suportada");
+        }
+        return new CursorSnapshot(buffer);
+    }
+
+    /**
+     * Verifica se o arquivo é um segmento, com apenas alguns usuários.
+     *
+     * @return true para um segmento, false para um snapshot completo.
+     */
+    boolean isSegmento() {
+        return segmento;
+    }
+
+    /**
+     * Obtém o LSN da última alteração contida no arquivo.
+     *
+     * @return O LSN.
+     */
+    long getUltimoLsn() {
+        return ultimoLsn;
+    }
+
+    /**
+     * Obtém o maior ID de usuário contido no arquivo.
+     *
+     * @return O ID, ou -1 se o arquivo não tiver usuários.
+     */
+    int getMaiorId() {
+        if (quantidade == 0) {
+            return -1;
+        }
+        if (!segmento) {
+            return quantidade - 1;
+        }
+        ByteBuffer leitura = buffer.duplicate();
+        leitura.position((int) offsetUsuario(quantidade - 1) + 4);
+        return FormatoSnapshot.lerVarint(leitura);
+    }
+
+    /**
+     * Passa para o próximo usuário.
+     *
+     * @return false se não houver mais usuários.
+     */
+    boolean avancar() {
+        if (lidos == quantidade) {
+            id = Integer.MAX_VALUE;
+            return false;
+        }
+        ByteBuffer leitura = buffer.duplicate();
+        leitura.position(proximoOffset);
+        int tamanho = leitura.getInt();
+        proximoOffset += 4 + tamanho;
+        id = segmento ? FormatoSnapshot.lerVarint(leitura) : lidos;
+        inicioRegistro = leitura.position();
+        lidos++;
+        return true;
+    }
+
+    /**
+     * Obtém o ID do usuário atual.
+     *
+     * @return O ID, ou {@link Integer#MAX_VALUE} depois do último usuário.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Decodifica o usuário atual.
+     *
+     * @return O usuário.
+     */
+    Usuario getUsuario() {
+        ByteBuffer leitura = buffer.duplicate();
+        leitura.position(inicioRegistro);
+        return LeitorSnapshot.lerUsuario(leitura, id, this::string);
+    }
+
+    /**
+     * Mescla cursores ainda não posicionados, do mais antigo para o mais recente: cada ID presente em
+     * algum deles aparece uma única vez, em ordem, na versão do cursor mais recente que o contém.
+     *
+     * @param cursores Os cursores, do mais antigo para o mais recente.
+     * @return Os usuários mesclados.
+     */
+    static Iterator<Usuario> mesclar(List<CursorSnapshot> cursores) {
+        for (CursorSnapshot cursor : cursores) {
+            cursor.avancar();
+        }
+        return new Iterator<Usuario>() {
+            @Override
+            public boolean hasNext() {
+                for (CursorSnapshot cursor : cursores) {
+                    if (cursor.id != Integer.MAX_VALUE) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public Usuario next() {
+                int menor = Integer.MAX_VALUE;
+                CursorSnapshot escolhido = null;
+                for (CursorSnapshot cursor : cursores) {
+                    if (cursor.id <= menor && cursor.id != Integer.MAX_VALUE) {
+                        menor = cursor.id;
+                        escolhido = cursor;
+                    }
+                }
+                if (escolhido == null) {
+                    throw new NoSuchElementException();
+                }
+                Usuario usuario = escolhido.getUsuario();
+                for (CursorSnapshot cursor : cursores) {
+                    if (cursor.id == menor) {
+                        cursor.avancar();
+                    }
+                }
+                return usuario;
+            }
+        };
+    }
+
+    private long offsetUsuario(int posicao) {
+        return buffer.getLong((int) (offsetIndiceUsuarios + 8L * posicao));
+    }
+
+    private String string(int id) {
+        if (id == 0) {
+            return null;
+        }
+        int offset = (int) buffer.getLong((int) (offsetIndiceStrings + 8L * (id - 1)));
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
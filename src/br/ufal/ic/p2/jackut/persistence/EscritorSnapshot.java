@@ -0,0 +1,187 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import br.ufal.ic.p2.jackut.entities.ConjuntoIds;
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.entities.SnapshotSistema;
+import br.ufal.ic.p2.jackut.entities.Usuario;
+import br.ufal.ic.p2.jackut.recados.CaixaRecados;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Grava o estado do sistema no formato binário descrito em {@link FormatoSnapshot}.
+ * Cada string distinta é gravada uma única vez na tabela de strings, e os conjuntos de
+ * amigos e convites são gravados como listas de posições de usuários. Os usuários são gravados
+ * em ordem de ID, de modo que a posição de cada um no arquivo é o próprio ID. Um segmento de
+ * checkpoint incremental grava apenas os usuários alterados, cada um precedido do seu ID.
+ */
+public class EscritorSnapshot {
+    private final Map<String, Integer> idsStrings = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final ByteArrayOutputStream registro = new ByteArrayOutputStream(256);
+    private long[] offsetsUsuarios;
+    private int gravados;
+    private long escritos;
+
+    /**
+     * Grava o snapshot do sistema. As operações sobre usuários devem estar bloqueadas durante a
+     * gravação; para gravar sem bloqueá-las, use {@link #escrever(SnapshotSistema, OutputStream)}.
+     *
+     * @param sistema O sistema a ser gravado.
+     * @param destino O fluxo de saída; não é fechado por este método.
+     * @return A quantidade de bytes gravados.
+     * @throws IOException Se a gravação falhar.
+     */
+    public static long escrever(Sistema sistema, OutputStream destino) throws IOException {
+        Collection<Usuario> usuarios = sistema.getUsuarios();
+        return new EscritorSnapshot().gravar(usuarios::forEach, usuarios.size(), sistema.getUltimoLsn(), false, destino);
+    }
+
+    /**
+     * Grava um snapshot do sistema, completo ou, se ele for parcial, como um segmento de checkpoint
+     * incremental. As operações continuam enquanto o snapshot é gravado.
+     *
+     * @param snapshot O snapshot.
+     * @param destino O fluxo de saída; não é fechado por este método.
+     * @return A quantidade de bytes gravados.
+     * @throws IOException Se a gravação falhar.
+     */
+    public static long escrever(SnapshotSistema snapshot, OutputStream destino) throws IOException {
+        return new EscritorSnapshot().gravar(snapshot::paraCada, snapshot.getQuantidade(), snapshot.getUltimoLsn(),
+                snapshot.isParcial(), destino);
+    }
+
+    /**
+     * Grava um snapshot completo a partir de usuários já ordenados por ID, sem lacunas.
+     *
+     * @param usuarios Os usuários, do ID 0 em diante.
+     * @param quantidade A quantidade de usuários.
+     * @param ultimoLsn O LSN da última alteração contida nos usuários.
+     * @param destino O fluxo de saída; não é fechado por este método.
+     * @return A quantidade de bytes gravados.
+     * @throws IOException Se a gravação falhar.
+     */
+    public static long escrever(Iterator<Usuario> usuarios, int quantidade, long ultimoLsn, OutputStream destino)
+            throws IOException {
+        return new EscritorSnapshot().gravar(usuarios::forEachRemaining, quantidade, ultimoLsn, false, destino);
+    }
+
+    /**
+     * Grava o arquivo. Os usuários são entregues, em ordem, pela fonte, que pode manter a trava de cada
+     * um adquirida enquanto ele é codificado.
+     */
+    private long gravar(Consumer<Consumer<Usuario>> fonte, int quantidade, long ultimoLsn, boolean segmento,
+                        OutputStream destino) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(destino, 1 << 16));
+        out.writeInt(FormatoSnapshot.MAGICO);
+        out.writeShort(FormatoSnapshot.VERSAO);
+        out.writeShort(segmento ? FormatoSnapshot.FLAG_SEGMENTO : 0);
+        out.writeLong(ultimoLsn);
+        out.writeInt(quantidade);
+
+        this.offsetsUsuarios = new long[quantidade];
+        this.escritos = FormatoSnapshot.TAMANHO_CABECALHO;
+        try {
+            fonte.accept(usuario -> gravarUsuario(usuario, segmento, out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (this.gravados != quantidade) {
+            throw new IOException("Quantidade de usuários diferente da informada");
+        }
+
+        long offsetStrings = escritos;
+        long[] offsetsStrings = new long[strings.size()];
+        out.writeInt(strings.size());
+        escritos += 4;
+        for (int i = 0; i < offsetsStrings.length; i++) {
+            offsetsStrings[i] = escritos;
+            byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            escritos += 4 + bytes.length;
+        }
+
+        long offsetIndiceStrings = escritos;
+        for (long offset : offsetsStrings) {
+            out.writeLong(offset);
+        }
+        escritos += 8L * offsetsStrings.length;
+
+        long offsetIndiceUsuarios = escritos;
+        for (long offset : offsetsUsuarios) {
+            out.writeLong(offset);
+        }
+        escritos += 8L * offsetsUsuarios.length;
+
+        out.writeLong(offsetStrings);
+        out.writeLong(offsetIndiceStrings);
+        out.writeLong(offsetIndiceUsuarios);
+        out.writeInt(FormatoSnapshot.MAGICO);
+        out.flush();
+        return escritos + FormatoSnapshot.TAMANHO_RODAPE;
+    }
+
+    private void gravarUsuario(Usuario usuario, boolean segmento, DataOutputStream out) {
+        if (gravados == offsetsUsuarios.length) {
+            throw new UncheckedIOException(new IOException("Quantidade de usuários diferente da informada"));
+        }
+        offsetsUsuarios[gravados++] = escritos;
+        registro.reset();
+        if (segmento) {
+            FormatoSnapshot.escreverVarint(registro, usuario.getId());
+        }
+        codificarUsuario(usuario, registro);
+        try {
+            out.writeInt(registro.size());
+            registro.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        escritos += 4 + registro.size();
+    }
+
+    private void codificarUsuario(Usuario usuario, ByteArrayOutputStream out) {
+        FormatoSnapshot.escreverVarint(out, idString(usuario.getLogin()));
+        FormatoSnapshot.escreverVarint(out, idString(usuario.getSenha()));
+        FormatoSnapshot.escreverVarint(out, idString(usuario.getNome()));
+
+        FormatoSnapshot.escreverVarint(out, usuario.getQuantidadeAtributos());
+        usuario.paraCadaAtributo((atributo, valor) -> {
+            FormatoSnapshot.escreverVarint(out, idString(atributo));
+            FormatoSnapshot.escreverVarint(out, idString(valor));
+        });
+
+        codificarIds(usuario.getAmigos(), out);
+        codificarIds(usuario.getConvitesAmizade(), out);
+
+        CaixaRecados recados = usuario.getRecados();
+        FormatoSnapshot.escreverVarint(out, recados.tamanho());
+        recados.paraCada(recado -> FormatoSnapshot.escreverVarint(out, idString(recado)));
+    }
+
+    private static void codificarIds(ConjuntoIds ids, ByteArrayOutputStream out) {
+        FormatoSnapshot.escreverVarint(out, ids.tamanho());
+        ids.paraCada(id -> FormatoSnapshot.escreverVarint(out, id));
+    }
+
+    /**
+     * Obtém o identificador de uma string na tabela, adicionando-a se necessário.
+     * O identificador 0 é reservado para null.
+     */
+    private int idString(String valor) {
+        if (valor == null) {
+            return 0;
+        }
+        Integer id = idsStrings.get(valor);
+        if (id == null) {
+            strings.add(valor);
+            id = strings.size();
+            idsStrings.put(valor, id);
+        }
+        return id;
+    }
+}
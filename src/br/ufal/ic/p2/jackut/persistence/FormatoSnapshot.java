@@ -0,0 +1,71 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Constantes e rotinas de codificação do formato binário do snapshot ("sistema.dat").
+ * <p>
+ * Layout da versão 2:
+ * <pre>
+ * cabeçalho:         [magico int][versao short][flags short][ultimoLsn long][quantidadeUsuarios int]
+ * usuários:          quantidadeUsuarios × [tamanho int][registro]
+ * strings:           [quantidadeStrings int] quantidadeStrings × [tamanho int][bytes UTF-8]
+ * índice strings:    quantidadeStrings × [offset long]
+ * índice usuários:   quantidadeUsuarios × [offset long]
+ * rodapé:            [offsetStrings long][offsetIndiceStrings long][offsetIndiceUsuarios long][magico int]
+ * </pre>
+ * Cada registro de usuário guarda apenas referências (varint) para a tabela de strings e,
+ * para amigos e convites, as posições dos usuários correspondentes no próprio arquivo.
+ * Os índices permitem localizar uma string ou um usuário sem ler o arquivo inteiro
+ * (veja {@link SnapshotMapeado}). A versão 1 não tinha os índices, e seu rodapé
+ * continha apenas {@code [offsetStrings long][magico int]}.
+ * <p>
+ * Um segmento de checkpoint incremental (veja {@link ArquivosCheckpoint}) usa o mesmo layout com o
+ * flag {@link #FLAG_SEGMENTO}: ele contém apenas alguns usuários, em ordem de ID, e cada registro
+ * começa com o ID do usuário (varint), já que a posição no arquivo deixa de coincidir com ele.
+ */
+final class FormatoSnapshot {
+    static final int MAGICO = 0x4A4B5453;
+    static final short VERSAO = 2;
+    static final short VERSAO_SEM_INDICES = 1;
+    static final int TAMANHO_CABECALHO = 20;
+    static final int TAMANHO_RODAPE = 28;
+    static final int TAMANHO_RODAPE_SEM_INDICES = 12;
+    static final short FLAG_SEGMENTO = 1;
+
+    private FormatoSnapshot() {
+    }
+
+    /**
+     * Escreve um inteiro não negativo com codificação de tamanho variável (7 bits por byte).
+     *
+     * @param out O destino.
+     * @param valor O valor a ser escrito.
+     */
+    static void escreverVarint(ByteArrayOutputStream out, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            out.write((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        out.write(valor);
+    }
+
+    /**
+     * Lê um inteiro escrito com {@link #escreverVarint(ByteArrayOutputStream, int)}.
+     *
+     * @param buffer A origem, posicionada no início do valor.
+     * @return O valor lido.
+     */
+    static int lerVarint(ByteBuffer buffer) {
+        int valor = 0;
+        int deslocamento = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            valor |= (b & 0x7F) << deslocamento;
+            deslocamento += 7;
+        } while ((b & 0x80) != 0);
+        return valor;
+    }
+}
@@ -0,0 +1,450 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import br.ufal.ic.p2.jackut.exceptions.SystemSaveException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Journal append-only com as alterações feitas no sistema desde o último checkpoint.
+ * <p>
+ * Cada registro é gravado como {@code [tamanho][lsn][tipo][argumentos][crc32]}, de forma que o custo
+ * de escrita depende apenas do tamanho da alteração. As gravações são feitas com group commit: a
+ * primeira thread que chama {@link #commit()} grava e sincroniza tudo o que foi anexado até então,
+ * e as demais apenas aguardam o fsync desse lote.
+ * <p>
+ * Cada lote sincronizado pode ser entregue, já codificado, a um ouvinte (por exemplo, para ser
+ * enviado às réplicas), na mesma ordem em que os lotes chegam ao disco.
+ * <p>
+ * Se a gravação de um lote falhar, as alterações dele já estão aplicadas em memória, mas não em disco,
+ * e depois de um fsync com erro não há como saber o que chegou ao disco. O journal passa então a
+ * recusar novas alterações, commits e truncamentos, para que nenhum LSN posterior seja informado como
+ * durável; o lote é removido do arquivo, se possível, e o sistema deve ser lido de novo.
+ */
+public class Journal implements Closeable {
+    private final File arquivo;
+    private FileChannel canal;
+    private final ReentrantLock trava = new ReentrantLock();
+    private final Condition sincronizado = trava.newCondition();
+    private final ByteArrayOutputStream pendente = new ByteArrayOutputStream();
+    private long proximoLsn;
+    private long ultimoAnexado;
+    private long ultimoDuravel;
+    private long tamanho;
+    private boolean sincronizando;
+    // Uma gravação falhou e o journal não aceita mais nada
+    private boolean falhou;
+    private volatile ObjLongConsumer<byte[]> ouvinte;
+
+    private Journal(File arquivo, FileChannel canal, long proximoLsn, long tamanho) {
+        this.arquivo = arquivo;
+        this.canal = canal;
+        this.proximoLsn = proximoLsn;
+        this.ultimoAnexado = proximoLsn - 1;
+        this.ultimoDuravel = proximoLsn - 1;
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Abre o journal, reproduzindo os registros posteriores ao último checkpoint.
+     * Um registro incompleto ou corrompido no fim do arquivo (escrita interrompida por uma queda)
+     * é descartado, assim como tudo o que vier depois dele.
+     *
+     * @param arquivo O arquivo do journal.
+     * @param lsnCheckpoint O LSN do último registro já contido no snapshot.
+     * @param reproducao Recebe, em ordem, cada registro com LSN maior que o do checkpoint.
+     * @return O journal aberto para novas gravações.
+     * @throws SystemSaveException Se o arquivo não puder ser lido ou aberto.
+     */
+    public static Journal abrir(File arquivo, long lsnCheckpoint, Consumer<RegistroJournal> reproducao) {
+        long fimValido = 0;
+        long maiorLsn = lsnCheckpoint;
+
+        if (arquivo.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(arquivo)))) {
+                long comprimento = arquivo.length();
+                RegistroLido lido;
+                while ((lido = lerRegistro(in, comprimento - fimValido)) != null) {
+                    fimValido += lido.bytes;
+                    RegistroJournal registro = lido.registro;
+                    if (registro.getLsn() > lsnCheckpoint) {
+                        reproducao.accept(registro);
+                    }
+                    maiorLsn = Math.max(maiorLsn, registro.getLsn());
+                }
+            } catch (IOException e) {
+                throw new SystemSaveException("Erro ao ler o journal");
+            }
+        }
+
+        try {
+            FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            canal.truncate(fimValido);
+            canal.position(fimValido);
+            return new Journal(arquivo, canal, maiorLsn + 1, fimValido);
+        } catch (IOException e) {
+            throw new SystemSaveException("Erro ao abrir o journal");
+        }
+    }
+
+    /**
+     * Anexa um registro ao journal. O registro só é garantido em disco após {@link #commit()}.
+     *
+     * @param tipo O tipo da operação.
+     * @param argumentos Os argumentos da operação.
+     * @return O LSN atribuído ao registro.
+     * @throws SystemSaveException Se uma gravação anterior tiver falhado.
+     */
+    public long anexar(TipoRegistro tipo, String... argumentos) {
+        trava.lock();
+        try {
+            verificarFalha();
+            long lsn = proximoLsn++;
+            byte[] dados = codificar(lsn, tipo, argumentos);
+            pendente.write(dados, 0, dados.length);
+            tamanho += dados.length;
+            ultimoAnexado = lsn;
+            return lsn;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Garante que todos os registros anexados até o momento da chamada estão em disco.
+     * Chamadas concorrentes são agrupadas em um único fsync.
+     *
+     * @throws SystemSaveException Se a gravação falhar, agora ou em uma chamada anterior.
+     */
+    public void commit() {
+        trava.lock();
+        try {
+            long alvo = ultimoAnexado;
+            while (ultimoDuravel < alvo) {
+                verificarFalha();
+                if (sincronizando) {
+                    sincronizado.awaitUninterruptibly();
+                    continue;
+                }
+                gravarPendentes();
+            }
+            verificarFalha();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Descarta os registros já contidos em um checkpoint. Registros com LSN maior que o
+     * informado são preservados em um novo arquivo, que substitui o atual atomicamente.
+     *
+     * @param lsnCheckpoint O LSN do último registro contido no snapshot salvo.
+     * @throws SystemSaveException Se o journal não puder ser reescrito ou uma gravação tiver falhado.
+     */
+    public void truncarAte(long lsnCheckpoint) {
+        trava.lock();
+        try {
+            while (sincronizando) {
+                sincronizado.awaitUninterruptibly();
+            }
+            verificarFalha();
+            if (ultimoDuravel < ultimoAnexado) {
+                gravarPendentes();
+            }
+
+            if (ultimoAnexado <= lsnCheckpoint) {
+                canal.truncate(0);
+                canal.position(0);
+                canal.force(true);
+                tamanho = 0;
+                return;
+            }
+
+            File temporario = new File(arquivo.getPath() + ".tmp");
+            long preservados = 0;
+            long restante = canal.size();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(arquivo)));
+                 FileOutputStream out = new FileOutputStream(temporario)) {
+                RegistroLido lido;
+                while ((lido = lerRegistro(in, restante)) != null) {
+                    restante -= lido.bytes;
+                    RegistroJournal registro = lido.registro;
+                    if (registro.getLsn() > lsnCheckpoint) {
+                        byte[] dados = codificar(registro.getLsn(), registro.getTipo(), argumentosDe(registro));
+                        out.write(dados);
+                        preservados += dados.length;
+                    }
+                }
+                out.getFD().sync();
+            }
+
+            canal.close();
+            Files.move(temporario.toPath(), arquivo.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.WRITE);
+            canal.position(preservados);
+            tamanho = preservados;
+        } catch (IOException e) {
+            throw new SystemSaveException("Erro ao truncar o journal");
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Define quem recebe cada lote de registros logo depois de ele ser sincronizado em disco. O
+     * ouvinte é chamado por uma thread de cada vez, na ordem dos LSNs, e não deve bloquear.
+     *
+     * @param ouvinte Recebe os registros codificados do lote e o LSN do último deles, ou null para
+     * não entregar os lotes.
+     */
+    public void setOuvinte(ObjLongConsumer<byte[]> ouvinte) {
+        this.ouvinte = ouvinte;
+    }
+
+    /**
+     * Obtém o LSN do último registro já sincronizado em disco.
+     *
+     * @return O LSN, ou o do checkpoint se nenhum registro tiver sido gravado desde a abertura.
+     */
+    public long getUltimoDuravel() {
+        trava.lock();
+        try {
+            return ultimoDuravel;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Decodifica um lote de registros entregue ao ouvinte.
+     *
+     * @param dados Os registros codificados.
+     * @return Os registros, em ordem.
+     * @throws SystemSaveException Se o lote estiver incompleto ou corrompido.
+     */
+    public static List<RegistroJournal> decodificar(byte[] dados) {
+        List<RegistroJournal> registros = new ArrayList<>();
+        long restante = dados.length;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(dados))) {
+            while (restante > 0) {
+                RegistroLido lido = lerRegistro(in, restante);
+                if (lido == null) {
+                    throw new SystemSaveException("Lote de registros corrompido");
+                }
+                restante -= lido.bytes;
+                registros.add(lido.registro);
+            }
+        } catch (IOException e) {
+            throw new SystemSaveException("Lote de registros corrompido");
+        }
+        return registros;
+    }
+
+    /**
+     * Obtém o tamanho atual do journal, incluindo registros ainda não sincronizados.
+     *
+     * @return O tamanho em bytes.
+     */
+    public long tamanho() {
+        trava.lock();
+        try {
+            return tamanho;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Sincroniza os registros pendentes e fecha o arquivo do journal. Depois de uma falha de gravação,
+     * apenas fecha o arquivo, com os registros já duráveis.
+     */
+    @Override
+    public void close() {
+        trava.lock();
+        try {
+            if (!falhou) {
+                commit();
+            }
+        } finally {
+            trava.unlock();
+        }
+        try {
+            canal.close();
+        } catch (IOException e) {
+            throw new SystemSaveException("Erro ao fechar o journal");
+        }
+    }
+
+    /**
+     * Grava e sincroniza o lote pendente. Deve ser chamado com a trava adquirida; a trava é
+     * liberada durante a escrita para que outras threads continuem anexando registros. Se a gravação
+     * falhar, o journal passa a recusar tudo (veja a descrição da classe).
+     */
+    private void gravarPendentes() {
+        sincronizando = true;
+        long lote = ultimoAnexado;
+        byte[] registros = pendente.toByteArray();
+        ByteBuffer dados = ByteBuffer.wrap(registros);
+        pendente.reset();
+        boolean sucesso = false;
+        long inicio = -1;
+
+        trava.unlock();
+        try {
+            inicio = canal.position();
+            while (dados.hasRemaining()) {
+                canal.write(dados);
+            }
+            canal.force(false);
+            sucesso = true;
+            // Ainda com a gravação marcada em andamento, então os lotes são entregues em ordem
+            ObjLongConsumer<byte[]> atual = ouvinte;
+            if (atual != null) {
+                atual.accept(registros, lote);
+            }
+        } catch (IOException e) {
+            descartarLote(inicio);
+            throw new SystemSaveException("Erro ao gravar o journal");
+        } finally {
+            trava.lock();
+            sincronizando = false;
+            if (sucesso) {
+                ultimoDuravel = lote;
+            } else {
+                falhou = true;
+            }
+            sincronizado.signalAll();
+        }
+    }
+
+    /**
+     * Tenta remover do arquivo o que foi escrito de um lote que falhou, para que ele não seja
+     * reproduzido quando o sistema for lido de novo.
+     */
+    private void descartarLote(long inicio) {
+        if (inicio < 0) {
+            return;
+        }
+        try {
+            canal.truncate(inicio);
+            canal.force(false);
+        } catch (IOException e) {
+            // O arquivo também não aceita o truncamento; o journal já está inutilizável
+        }
+    }
+
+    private void verificarFalha() {
+        if (falhou) {
+            throw new SystemSaveException("Journal inutilizável depois de uma falha de gravação");
+        }
+    }
+
+    private static String[] argumentosDe(RegistroJournal registro) {
+        String[] argumentos = new String[registro.getQuantidadeArgumentos()];
+        for (int i = 0; i < argumentos.length; i++) {
+            argumentos[i] = registro.getArgumento(i);
+        }
+        return argumentos;
+    }
+
+    private static byte[] codificar(long lsn, TipoRegistro tipo, String[] argumentos) {
+        try {
+            ByteArrayOutputStream corpo = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(corpo);
+            out.writeLong(lsn);
+            out.writeByte(tipo.getCodigo());
+            out.writeShort(argumentos.length);
+            for (String argumento : argumentos) {
+                if (argumento == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] bytes = argumento.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(corpo.toByteArray());
+
+            ByteArrayOutputStream registro = new ByteArrayOutputStream(corpo.size() + 8);
+            DataOutputStream saida = new DataOutputStream(registro);
+            saida.writeInt(corpo.size() + 4);
+            corpo.writeTo(saida);
+            saida.writeInt((int) crc.getValue());
+            return registro.toByteArray();
+        } catch (IOException e) {
+            throw new SystemSaveException("Erro ao gravar o journal");
+        }
+    }
+
+    /**
+     * Lê o próximo registro do journal.
+     *
+     * @param restante A quantidade de bytes ainda não lidos do arquivo.
+     * @return O registro lido, ou null no fim do arquivo ou em um registro incompleto ou corrompido.
+     */
+    private static RegistroLido lerRegistro(DataInputStream in, long restante) throws IOException {
+        int tamanhoRegistro;
+        try {
+            tamanhoRegistro = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (tamanhoRegistro < 15 || tamanhoRegistro > restante - 4) {
+            return null;
+        }
+
+        byte[] dados = new byte[tamanhoRegistro];
+        try {
+            in.readFully(dados);
+        } catch (EOFException e) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(dados, 0, dados.length - 4);
+        ByteBuffer buffer = ByteBuffer.wrap(dados);
+        if (buffer.getInt(dados.length - 4) != (int) crc.getValue()) {
+            return null;
+        }
+
+        long lsn = buffer.getLong();
+        TipoRegistro tipo = TipoRegistro.deCodigo(buffer.get());
+        if (tipo == null) {
+            return null;
+        }
+        String[] argumentos = new String[buffer.getShort()];
+        for (int i = 0; i < argumentos.length; i++) {
+            int tamanhoArgumento = buffer.getInt();
+            if (tamanhoArgumento >= 0) {
+                argumentos[i] = new String(dados, buffer.position(), tamanhoArgumento, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + tamanhoArgumento);
+            }
+        }
+        return new RegistroLido(new RegistroJournal(lsn, tipo, argumentos), tamanhoRegistro + 4);
+    }
+
+    private static class RegistroLido {
+        private final RegistroJournal registro;
+        private final int bytes;
+
+        private RegistroLido(RegistroJournal registro, int bytes) {
+            this.registro = registro;
+            this.bytes = bytes;
+        }
+    }
+}
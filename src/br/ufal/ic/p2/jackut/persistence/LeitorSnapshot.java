@@ -0,0 +1,155 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.entities.Usuario;
+import br.ufal.ic.p2.jackut.persistence.legado.LeitorLegado;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+/**
+ * Lê um snapshot gravado por {@link EscritorSnapshot}. Arquivos no formato antigo
+ * (serialização Java) são reconhecidos e lidos por {@link LeitorLegado}.
+ */
+public class LeitorSnapshot {
+    private static final int MAGICO_SERIALIZACAO_JAVA = 0xACED;
+
+    private LeitorSnapshot() {
+    }
+
+    /**
+     * Carrega o sistema a partir de um arquivo de snapshot, em qualquer um dos formatos suportados.
+     *
+     * @param arquivo O arquivo do snapshot.
+     * @return O sistema carregado.
+     * @throws IOException Se o arquivo não puder ser lido ou estiver corrompido.
+     */
+    public static Sistema carregar(File arquivo) throws IOException {
+        if (ehFormatoLegado(arquivo)) {
+            return LeitorLegado.ler(arquivo);
+        }
+
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+            return ler(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    /**
+     * Verifica se o arquivo está no formato antigo, gravado com serialização Java.
+     *
+     * @param arquivo O arquivo do snapshot.
+     * @return true se o arquivo foi gravado com ObjectOutputStream.
+     * @throws IOException Se o arquivo não puder ser lido.
+     */
+    public static boolean ehFormatoLegado(File arquivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(arquivo))) {
+            return arquivo.length() >= 2 && in.readUnsignedShort() == MAGICO_SERIALIZACAO_JAVA;
+        }
+    }
+
+    /**
+     * Lê o sistema a partir do conteúdo completo de um snapshot binário.
+     *
+     * @param buffer O conteúdo do arquivo.
+     * @return O sistema lido.
+     * @throws IOException Se o conteúdo estiver corrompido ou em uma versão desconhecida.
+     */
+    public static Sistema ler(ByteBuffer buffer) throws IOException {
+        int limite = buffer.limit();
+        short versao = validarCabecalho(buffer);
+        if ((buffer.getShort(6) & FormatoSnapshot.FLAG_SEGMENTO) != 0) {
+            throw new IOException("O arquivo é um segmento de checkpoint, não um snapshot completo");
+        }
+        int rodape = versao == FormatoSnapshot.VERSAO_SEM_INDICES
+                ? FormatoSnapshot.TAMANHO_RODAPE_SEM_INDICES : FormatoSnapshot.TAMANHO_RODAPE;
+
+        long ultimoLsn = buffer.getLong(8);
+        int quantidadeUsuarios = buffer.getInt(16);
+        String[] strings = lerStrings(buffer, (int) buffer.getLong(limite - rodape));
+
+        Sistema sistema = new Sistema();
+        buffer.position(FormatoSnapshot.TAMANHO_CABECALHO);
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            buffer.getInt();
+            sistema.restaurarUsuario(lerUsuario(buffer, i, id -> strings[id]));
+        }
+        sistema.setUltimoLsn(ultimoLsn);
+        return sistema;
+    }
+
+    /**
+     * Verifica a assinatura e a versão de um snapshot binário.
+     *
+     * @param buffer O conteúdo do arquivo.
+     * @return A versão do formato.
+     * @throws IOException Se o conteúdo estiver corrompido ou em uma versão desconhecida.
+     */
+    static short validarCabecalho(ByteBuffer buffer) throws IOException {
+        int limite = buffer.limit();
+        if (limite < FormatoSnapshot.TAMANHO_CABECALHO + FormatoSnapshot.TAMANHO_RODAPE_SEM_INDICES
+                || buffer.getInt(0) != FormatoSnapshot.MAGICO
+                || buffer.getInt(limite - 4) != FormatoSnapshot.MAGICO) {
+            throw new IOException("Snapshot corrompido");
+        }
+
+        short versao = buffer.getShort(4);
+        if (versao < FormatoSnapshot.VERSAO_SEM_INDICES || versao > FormatoSnapshot.VERSAO) {
+            throw new IOException("Versão de snapshot não suportada");
+        }
+        return versao;
+    }
+
+    private static String[] lerStrings(ByteBuffer buffer, int offset) {
+        buffer.position(offset);
+        String[] strings = new String[buffer.getInt() + 1];
+        for (int i = 1; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    /**
+     * Decodifica um registro de usuário.
+     *
+     * Amigos e convites são gravados como posições de usuários no arquivo, que coincidem com os seus IDs.
+     *
+     * @param buffer O conteúdo do arquivo, posicionado no início do registro (após o tamanho).
+     * @param id A posição do registro no arquivo, usada como ID do usuário.
+     * @param strings Resolve um identificador da tabela de strings.
+     * @return O usuário decodificado.
+     */
+    static Usuario lerUsuario(ByteBuffer buffer, int id, IntFunction<String> strings) {
+        String login = strings.apply(FormatoSnapshot.lerVarint(buffer));
+        String senha = strings.apply(FormatoSnapshot.lerVarint(buffer));
+        String nome = strings.apply(FormatoSnapshot.lerVarint(buffer));
+        Usuario usuario = new Usuario(id, login, senha, nome);
+
+        int atributos = FormatoSnapshot.lerVarint(buffer);
+        for (int i = 0; i < atributos; i++) {
+            String atributo = strings.apply(FormatoSnapshot.lerVarint(buffer));
+            usuario.setAtributo(atributo, strings.apply(FormatoSnapshot.lerVarint(buffer)));
+        }
+
+        int amigos = FormatoSnapshot.lerVarint(buffer);
+        for (int i = 0; i < amigos; i++) {
+            usuario.adicionarAmigo(FormatoSnapshot.lerVarint(buffer));
+        }
+
+        int convites = FormatoSnapshot.lerVarint(buffer);
+        for (int i = 0; i < convites; i++) {
+            usuario.adicionarConviteAmizade(FormatoSnapshot.lerVarint(buffer));
+        }
+
+        int recados = FormatoSnapshot.lerVarint(buffer);
+        for (int i = 0; i < recados; i++) {
+            usuario.adicionarRecado(strings.apply(FormatoSnapshot.lerVarint(buffer)));
+        }
+        return usuario;
+    }
+}
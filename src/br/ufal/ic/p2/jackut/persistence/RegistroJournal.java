@@ -0,0 +1,61 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+/**
+ * Representa um registro do journal: uma alteração aplicada ao sistema, identificada
+ * por um número de sequência (LSN) crescente.
+ */
+public class RegistroJournal {
+    private final long lsn;
+    private final TipoRegistro tipo;
+    private final String[] argumentos;
+
+    /**
+     * Construtor da classe RegistroJournal.
+     *
+     * @param lsn O número de sequência do registro.
+     * @param tipo O tipo da operação.
+     * @param argumentos Os argumentos da operação.
+     */
+    public RegistroJournal(long lsn, TipoRegistro tipo, String... argumentos) {
+        this.lsn = lsn;
+        this.tipo = tipo;
+        this.argumentos = argumentos;
+    }
+
+    /**
+     * Obtém o número de sequência do registro.
+     *
+     * @return O LSN do registro.
+     */
+    public long getLsn() {
+        return lsn;
+    }
+
+    /**
+     * Obtém o tipo da operação registrada.
+     *
+     * @return O tipo do registro.
+     */
+    public TipoRegistro getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Obtém um argumento da operação.
+     *
+     * @param indice A posição do argumento.
+     * @return O valor do argumento.
+     */
+    public String getArgumento(int indice) {
+        return argumentos[indice];
+    }
+
+    /**
+     * Obtém a quantidade de argumentos da operação.
+     *
+     * @return O número de argumentos.
+     */
+    public int getQuantidadeArgumentos() {
+        return argumentos.length;
+    }
+}
@@ -0,0 +1,173 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import br.ufal.ic.p2.jackut.entities.Usuario;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot mapeado em memória, usado no modo de carga preguiçosa.
+ * <p>
+ * Ao abrir o arquivo, apenas o índice login → posição é construído; cada {@link Usuario} só é
+ * decodificado na primeira vez em que é acessado. Os usuários decodificados ficam em um cache de
+ * {@link SoftReference}, de modo que os que não foram alterados podem ser descartados pelo coletor
+ * quando a memória ficar escassa e voltam a ser lidos do mapeamento no próximo acesso.
+ */
+public class SnapshotMapeado {
+    private final MappedByteBuffer buffer;
+    private final long ultimoLsn;
+    private final long offsetIndiceStrings;
+    private final long offsetIndiceUsuarios;
+    private final String[] logins;
+    private final Map<String, Integer> posicoes;
+    private final Map<String, SoftReference<Usuario>> cache = new ConcurrentHashMap<>();
+
+    private SnapshotMapeado(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        int limite = buffer.limit();
+        this.ultimoLsn = buffer.getLong(8);
+        this.offsetIndiceStrings = buffer.getLong(limite - 20);
+        this.offsetIndiceUsuarios = buffer.getLong(limite - 12);
+
+        int quantidadeUsuarios = buffer.getInt(16);
+        this.logins = new String[quantidadeUsuarios];
+        this.posicoes = new HashMap<>(quantidadeUsuarios * 4 / 3 + 1);
+        ByteBuffer leitura = buffer.duplicate();
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            leitura.position((int) offsetUsuario(i) + 4);
+            logins[i] = string(FormatoSnapshot.lerVarint(leitura));
+            posicoes.put(logins[i], i);
+        }
+    }
+
+    /**
+     * Mapeia um arquivo de snapshot em memória.
+     *
+     * @param arquivo O arquivo do snapshot.
+     * @return O snapshot mapeado, ou null se o arquivo estiver em um formato sem índices
+     * (formato legado ou binário versão 1), que só pode ser carregado por completo.
+     * @throws IOException Se o arquivo não puder ser mapeado ou estiver corrompido.
+     */
+    public static SnapshotMapeado abrir(File arquivo) throws IOException {
+        if (LeitorSnapshot.ehFormatoLegado(arquivo)) {
+            return null;
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+            buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        if (LeitorSnapshot.validarCabecalho(buffer) != FormatoSnapshot.VERSAO) {
+            return null;
+        }
+        if ((buffer.getShort(6) & FormatoSnapshot.FLAG_SEGMENTO) != 0) {
+            throw new IOException("O arquivo é um segmento de checkpoint, não um snapshot completo");
+        }
+        return new SnapshotMapeado(buffer);
+    }
+
+    /**
+     * Obtém o LSN da última alteração contida no snapshot.
+     *
+     * @return O LSN do checkpoint.
+     */
+    public long getUltimoLsn() {
+        return ultimoLsn;
+    }
+
+    /**
+     * Verifica se o snapshot contém um usuário.
+     *
+     * @param login O login do usuário.
+     * @return true se o usuário estiver no snapshot.
+     */
+    public boolean contem(String login) {
+        return posicoes.containsKey(login);
+    }
+
+    /**
+     * Obtém a posição de um usuário no snapshot, que também é o seu ID.
+     *
+     * @param login O login do usuário.
+     * @return A posição do usuário, ou -1 se ele não estiver no snapshot.
+     */
+    public int posicao(String login) {
+        Integer posicao = posicoes.get(login);
+        return posicao != null ? posicao : -1;
+    }
+
+    /**
+     * Obtém os logins de todos os usuários do snapshot.
+     *
+     * @return Os logins, na ordem do arquivo (ou seja, indexados pelo ID do usuário).
+     */
+    public List<String> getLogins() {
+        return Collections.unmodifiableList(Arrays.asList(logins));
+    }
+
+    /**
+     * Obtém um usuário do snapshot, decodificando-o se ainda não estiver no cache.
+     *
+     * @param login O login do usuário.
+     * @return O usuário, ou null se ele não estiver no snapshot.
+     */
+    public Usuario obter(String login) {
+        SoftReference<Usuario> referencia = cache.get(login);
+        Usuario usuario = referencia != null ? referencia.get() : null;
+        if (usuario == null) {
+            usuario = ler(login);
+            if (usuario != null) {
+                cache.put(login, new SoftReference<>(usuario));
+            }
+        }
+        return usuario;
+    }
+
+    /**
+     * Decodifica um usuário do snapshot sem guardá-lo no cache.
+     *
+     * @param login O login do usuário.
+     * @return O usuário, ou null se ele não estiver no snapshot.
+     */
+    public Usuario ler(String login) {
+        Integer posicao = posicoes.get(login);
+        if (posicao == null) {
+            return null;
+        }
+
+        ByteBuffer leitura = buffer.duplicate();
+        leitura.position((int) offsetUsuario(posicao) + 4);
+        return LeitorSnapshot.lerUsuario(leitura, posicao, this::string);
+    }
+
+    /**
+     * Remove um usuário do cache, por exemplo depois que ele passa a ser mantido pelo sistema.
+     *
+     * @param login O login do usuário.
+     */
+    public void liberar(String login) {
+        cache.remove(login);
+    }
+
+    private long offsetUsuario(int posicao) {
+        return buffer.getLong((int) (offsetIndiceUsuarios + 8L * posicao));
+    }
+
+    private String string(int id) {
+        if (id == 0) {
+            return null;
+        }
+        int offset = (int) buffer.getLong((int) (offsetIndiceStrings + 8L * (id - 1)));
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,48 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+/**
+ * Tipos de registro gravados no journal do sistema.
+ * Cada tipo corresponde a uma operação que altera o estado do {@link br.ufal.ic.p2.jackut.entities.Sistema}.
+ */
+public enum TipoRegistro {
+    CRIAR_USUARIO(1),
+    EDITAR_PERFIL(2),
+    ADICIONAR_AMIGO(3),
+    ENVIAR_RECADO(4),
+    LER_RECADO(5),
+    ZERAR_SISTEMA(6),
+    REGISTRAR_CONVITE_REMOTO(7),
+    CONFIRMAR_AMIZADE_REMOTA(8),
+    RECEBER_RECADO(9),
+    LER_RECADOS(10);
+
+    private final byte codigo;
+
+    TipoRegistro(int codigo) {
+        this.codigo = (byte) codigo;
+    }
+
+    /**
+     * Obtém o código gravado em disco para este tipo.
+     *
+     * @return O código do tipo.
+     */
+    public byte getCodigo() {
+        return codigo;
+    }
+
+    /**
+     * Obtém o tipo correspondente a um código lido do disco.
+     *
+     * @param codigo O código lido.
+     * @return O tipo correspondente, ou null se o código for desconhecido.
+     */
+    public static TipoRegistro deCodigo(byte codigo) {
+        for (TipoRegistro tipo : values()) {
+            if (tipo.codigo == codigo) {
+                return tipo;
+            }
+        }
+        return null;
+    }
+}
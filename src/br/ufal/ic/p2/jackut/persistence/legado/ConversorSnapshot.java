@@ -0,0 +1,123 @@
+package br.ufal.ic.p2.jackut.persistence.legado;
+
+import br.ufal.ic.p2.jackut.persistence.EscritorSnapshot;
+import br.ufal.ic.p2.jackut.persistence.LeitorSnapshot;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Converte um "sistema.dat" do formato antigo (serialização Java) para o formato binário
+ * e compara o tamanho do arquivo e o tempo de carga dos dois formatos.
+ * <p>
+ * Uso:
+ * <pre>
+ * java br.ufal.ic.p2.jackut.persistence.legado.ConversorSnapshot [arquivo]
+ * java br.ufal.ic.p2.jackut.persistence.legado.ConversorSnapshot --sintetico usuarios amigosPorUsuario
+ * </pre>
+ * No primeiro modo o arquivo é convertido no lugar, e o original é mantido com a extensão ".legado".
+ * No segundo, uma rede sintética é gravada nos dois formatos em arquivos temporários apenas para medição.
+ */
+public class ConversorSnapshot {
+    private static final int REPETICOES = 5;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--sintetico")) {
+            int usuarios = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+            int amigos = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+            compararSintetico(usuarios, amigos);
+            return;
+        }
+
+        File arquivo = new File(args.length > 0 ? args[0] : "sistema.dat");
+        if (!LeitorSnapshot.ehFormatoLegado(arquivo)) {
+            System.out.println(arquivo + " já está no formato binário.");
+            return;
+        }
+
+        File convertido = new File(arquivo.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(convertido)) {
+            EscritorSnapshot.escrever(LeitorLegado.ler(arquivo), out);
+            out.getFD().sync();
+        }
+        comparar(arquivo, convertido);
+
+        Files.copy(arquivo.toPath(), new File(arquivo.getPath() + ".legado").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.move(convertido.toPath(), arquivo.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println(arquivo + " convertido; original mantido em " + arquivo.getPath() + ".legado");
+    }
+
+    private static void compararSintetico(int quantidadeUsuarios, int amigosPorUsuario) throws IOException {
+        File legado = File.createTempFile("jackut-legado", ".dat");
+        File binario = File.createTempFile("jackut-binario", ".dat");
+        legado.deleteOnExit();
+        binario.deleteOnExit();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(legado)))) {
+            out.writeObject(gerarRede(quantidadeUsuarios, amigosPorUsuario));
+        }
+        try (FileOutputStream out = new FileOutputStream(binario)) {
+            EscritorSnapshot.escrever(LeitorLegado.ler(legado), out);
+        }
+
+        System.out.printf("Rede sintética: %d usuários, %d amigos por usuário%n", quantidadeUsuarios, amigosPorUsuario);
+        comparar(legado, binario);
+    }
+
+    private static void comparar(File legado, File binario) throws IOException {
+        long tempoLegado = Long.MAX_VALUE;
+        long tempoBinario = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICOES; i++) {
+            long inicio = System.nanoTime();
+            LeitorLegado.ler(legado);
+            tempoLegado = Math.min(tempoLegado, System.nanoTime() - inicio);
+
+            inicio = System.nanoTime();
+            LeitorSnapshot.carregar(binario);
+            tempoBinario = Math.min(tempoBinario, System.nanoTime() - inicio);
+        }
+
+        System.out.printf("%-22s %14s %14s%n", "formato", "bytes", "carga (ms)");
+        System.out.printf("%-22s %14d %14.1f%n", "serialização Java", legado.length(), tempoLegado / 1e6);
+        System.out.printf("%-22s %14d %14.1f%n", "binário", binario.length(), tempoBinario / 1e6);
+    }
+
+    private static Sistema gerarRede(int quantidadeUsuarios, int amigosPorUsuario) {
+        Random random = new Random(42);
+        String[] estadosCivis = {"solteiro(a)", "casado(a)", "divorciado(a)"};
+        Sistema sistema = new Sistema();
+        sistema.usuarios = new HashMap<>();
+        sistema.sessoes = new HashMap<>();
+        sistema.nextSessionId = 1;
+
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            Usuario usuario = new Usuario();
+            usuario.login = "usuario" + i;
+            usuario.senha = "senha" + i;
+            usuario.nome = "Usuario " + i;
+            usuario.atributos = new HashMap<>();
+            usuario.atributos.put("estadoCivil", estadosCivis[i % estadosCivis.length]);
+            usuario.atributos.put("cidadeNatal", "Cidade " + (i % 100));
+            usuario.amigos = new LinkedHashSet<>();
+            usuario.convitesAmizade = new LinkedHashSet<>();
+            usuario.recados = new LinkedList<>();
+            usuario.recados.add("Bem-vindo ao Jackut!");
+            sistema.usuarios.put(usuario.login, usuario);
+        }
+
+        for (Usuario usuario : sistema.usuarios.values()) {
+            while (usuario.amigos.size() < amigosPorUsuario && quantidadeUsuarios > amigosPorUsuario) {
+                Usuario amigo = sistema.usuarios.get("usuario" + random.nextInt(quantidadeUsuarios));
+                if (amigo != usuario) {
+                    usuario.amigos.add(amigo.login);
+                    amigo.amigos.add(usuario.login);
+                }
+            }
+        }
+        return sistema;
+    }
+}
@@ -0,0 +1,85 @@
+package br.ufal.ic.p2.jackut.persistence.legado;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lê um "sistema.dat" gravado com serialização Java pelas versões anteriores do Jackut.
+ * As classes do arquivo são resolvidas para os espelhos deste pacote e depois convertidas
+ * para as entidades atuais.
+ */
+public class LeitorLegado {
+    private static final String PACOTE_ENTIDADES = "br.ufal.ic.p2.jackut.entities.";
+
+    private LeitorLegado() {
+    }
+
+    /**
+     * Lê um arquivo no formato antigo.
+     *
+     * @param arquivo O arquivo a ser lido.
+     * @return O sistema convertido para as entidades atuais.
+     * @throws IOException Se o arquivo não puder ser lido.
+     */
+    public static br.ufal.ic.p2.jackut.entities.Sistema ler(File arquivo) throws IOException {
+        Sistema legado;
+        try (ObjectInputStream in = new EntradaLegada(new BufferedInputStream(new FileInputStream(arquivo)))) {
+            legado = (Sistema) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Formato legado desconhecido", e);
+        }
+        return converter(legado);
+    }
+
+    private static br.ufal.ic.p2.jackut.entities.Sistema converter(Sistema legado) {
+        br.ufal.ic.p2.jackut.entities.Sistema sistema = new br.ufal.ic.p2.jackut.entities.Sistema();
+
+        // Os IDs são atribuídos na ordem de iteração do mapa antigo, antes de converter as amizades
+        Map<String, Integer> ids = new HashMap<>();
+        for (String login : legado.usuarios.keySet()) {
+            ids.put(login, ids.size());
+        }
+
+        for (Usuario antigo : legado.usuarios.values()) {
+            br.ufal.ic.p2.jackut.entities.Usuario usuario = new br.ufal.ic.p2.jackut.entities.Usuario(
+                    ids.get(antigo.login), antigo.login, antigo.senha, antigo.nome);
+            for (Map.Entry<String, String> atributo : antigo.atributos.entrySet()) {
+                usuario.setAtributo(atributo.getKey(), atributo.getValue());
+            }
+            for (String amigo : antigo.amigos) {
+                usuario.adicionarAmigo(ids.get(amigo));
+            }
+            for (String convite : antigo.convitesAmizade) {
+                usuario.adicionarConviteAmizade(ids.get(convite));
+            }
+            for (String recado : antigo.recados) {
+                usuario.adicionarRecado(recado);
+            }
+            sistema.restaurarUsuario(usuario);
+        }
+
+        sistema.setUltimoLsn(legado.ultimoLsn);
+        return sistema;
+    }
+
+    /**
+     * ObjectInputStream que troca as classes Sistema e Usuario originais pelos espelhos legados.
+     */
+    private static class EntradaLegada extends ObjectInputStream {
+        EntradaLegada(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (desc.getName().equals(PACOTE_ENTIDADES + "Sistema")) {
+                return Sistema.class;
+            }
+            if (desc.getName().equals(PACOTE_ENTIDADES + "Usuario")) {
+                return Usuario.class;
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
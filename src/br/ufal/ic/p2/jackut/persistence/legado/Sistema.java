@@ -0,0 +1,17 @@
+package br.ufal.ic.p2.jackut.persistence.legado;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Espelho da classe Sistema no formato antigo do "sistema.dat" (serialização Java).
+ * Mantém o mesmo nome simples, os mesmos campos e o mesmo serialVersionUID da classe original,
+ * para que arquivos antigos possam ser lidos mesmo depois que a classe original mudar.
+ */
+class Sistema implements Serializable {
+    Map<String, Usuario> usuarios;
+    Map<String, String> sessoes;
+    int nextSessionId;
+    long ultimoLsn;
+    private static final long serialVersionUID = 1L;
+}
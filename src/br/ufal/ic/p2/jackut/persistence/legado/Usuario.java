@@ -0,0 +1,20 @@
+package br.ufal.ic.p2.jackut.persistence.legado;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Espelho da classe Usuario no formato antigo do "sistema.dat" (serialização Java).
+ */
+class Usuario implements Serializable {
+    String login;
+    String senha;
+    String nome;
+    Map<String, String> atributos;
+    Set<String> convitesAmizade;
+    Set<String> amigos;
+    Queue<String> recados;
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,216 @@
+package br.ufal.ic.p2.jackut.recados;
+
+import br.ufal.ic.p2.jackut.exceptions.SystemSaveException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Gerencia os arquivos de segmento compartilhados por todas as caixas de recados.
+ * <p>
+ * Os blocos derramados pelas caixas são anexados ao segmento ativo; quando ele atinge o tamanho
+ * configurado, outro passa a ser o ativo. Um segmento cujos recados já foram todos lidos é reciclado:
+ * fica em uma pequena reserva para ser reescrito, e os que excedem a reserva são apagados. Assim o
+ * espaço em disco acompanha apenas os recados ainda não lidos.
+ * <p>
+ * Os segmentos são apenas uma extensão da memória: o estado durável dos recados continua sendo o
+ * snapshot e o journal. Por isso cada execução usa um diretório novo, criado na primeira vez que uma
+ * caixa derrama recados e apagado ao final da execução. O diretório base e o tamanho dos segmentos
+ * podem ser configurados pelas propriedades {@code jackut.recados.diretorio} e
+ * {@code jackut.recados.segmento} (em bytes).
+ */
+class ArmazemSegmentos {
+    private static final long TAMANHO_SEGMENTO = Long.getLong("jackut.recados.segmento", 8L * 1024 * 1024);
+    private static final int SEGMENTOS_RESERVA = 2;
+
+    private final File diretorio;
+    private final Set<Segmento> segmentos = new HashSet<>();
+    private final Deque<Segmento> reserva = new ArrayDeque<>();
+    private Segmento ativo;
+    private int proximoNumero;
+
+    private ArmazemSegmentos(File diretorio) {
+        this.diretorio = diretorio;
+    }
+
+    /**
+     * Obtém o armazém usado por todas as caixas de recados, criando o seu diretório se necessário.
+     *
+     * @return O armazém compartilhado.
+     */
+    static ArmazemSegmentos padrao() {
+        return Padrao.INSTANCIA;
+    }
+
+    /**
+     * Grava um bloco de recados no segmento ativo.
+     *
+     * @param recados Os recados, em ordem.
+     * @return A localização do bloco gravado.
+     */
+    synchronized Trecho derramar(Collection<String> recados) {
+        ByteBuffer bloco = codificar(recados);
+        try {
+            if (ativo != null && ativo.isVazio()) {
+                // Nenhum recado do segmento ativo está por ler; ele volta a ser escrito do início
+                ativo.reciclar();
+            } else if (ativo == null || ativo.getPosicao() >= TAMANHO_SEGMENTO) {
+                trocarAtivo();
+            }
+            int tamanho = bloco.remaining();
+            long offset = ativo.anexar(bloco, recados.size());
+            return new Trecho(ativo, offset, tamanho, recados.size());
+        } catch (IOException e) {
+            throw new SystemSaveException("Erro ao gravar recados em disco");
+        }
+    }
+
+    /**
+     * Lê os recados de um bloco e o libera, para esta caixa, do seu segmento.
+     *
+     * @param trecho O bloco a ser lido.
+     * @param destino Recebe os recados, em ordem.
+     */
+    synchronized void carregar(Trecho trecho, Consumer<String> destino) {
+        percorrer(trecho, destino);
+        descartar(trecho);
+    }
+
+    /**
+     * Lê os recados de um bloco sem liberá-lo.
+     *
+     * @param trecho O bloco a ser lido.
+     * @param destino Recebe os recados, em ordem.
+     */
+    synchronized void percorrer(Trecho trecho, Consumer<String> destino) {
+        ByteBuffer bloco;
+        try {
+            bloco = trecho.getSegmento().ler(trecho.getOffset(), trecho.getTamanho());
+        } catch (IOException e) {
+            throw new SystemSaveException("Erro ao ler recados do disco");
+        }
+        for (int i = 0; i < trecho.getQuantidade(); i++) {
+            int tamanho = bloco.getInt();
+            if (tamanho < 0) {
+                destino.accept(null);
+                continue;
+            }
+            destino.accept(new String(bloco.array(), bloco.position(), tamanho, StandardCharsets.UTF_8));
+            bloco.position(bloco.position() + tamanho);
+        }
+    }
+
+    /**
+     * Registra mais uma caixa que usa um bloco, que só é liberado depois que todas o descartarem.
+     *
+     * @param trecho O bloco compartilhado.
+     * @return O mesmo bloco.
+     */
+    synchronized Trecho compartilhar(Trecho trecho) {
+        trecho.referencias++;
+        return trecho;
+    }
+
+    /**
+     * Libera um bloco cujos recados foram lidos ou não são mais necessários para uma das caixas que o
+     * usam. O bloco sai do segmento quando a última delas o descarta.
+     *
+     * @param trecho O bloco a ser liberado.
+     */
+    synchronized void descartar(Trecho trecho) {
+        if (--trecho.referencias > 0) {
+            return;
+        }
+        Segmento segmento = trecho.getSegmento();
+        if (segmento.liberar(trecho.getQuantidade()) && segmento != ativo) {
+            reciclar(segmento);
+        }
+    }
+
+    /**
+     * Obtém a quantidade de arquivos de segmento existentes, incluindo os da reserva.
+     *
+     * @return A quantidade de segmentos.
+     */
+    synchronized int getQuantidadeSegmentos() {
+        return segmentos.size();
+    }
+
+    private void trocarAtivo() throws IOException {
+        Segmento anterior = ativo;
+        ativo = reserva.isEmpty() ? novoSegmento() : reserva.poll();
+        if (anterior != null && anterior.isVazio()) {
+            reciclar(anterior);
+        }
+    }
+
+    private Segmento novoSegmento() throws IOException {
+        Segmento segmento = new Segmento(new File(diretorio, "segmento-" + proximoNumero++ + ".dat"));
+        segmentos.add(segmento);
+        return segmento;
+    }
+
+    private void reciclar(Segmento segmento) {
+        if (reserva.size() < SEGMENTOS_RESERVA) {
+            segmento.reciclar();
+            reserva.add(segmento);
+        } else {
+            segmentos.remove(segmento);
+            segmento.apagar();
+        }
+    }
+
+    private synchronized void apagarTudo() {
+        for (Segmento segmento : segmentos) {
+            segmento.apagar();
+        }
+        segmentos.clear();
+        diretorio.delete();
+    }
+
+    private static ByteBuffer codificar(Collection<String> recados) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            for (String recado : recados) {
+                if (recado == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                byte[] utf8 = recado.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Cria o armazém compartilhado apenas no primeiro uso.
+     */
+    private static class Padrao {
+        private static final ArmazemSegmentos INSTANCIA = criar();
+
+        private static ArmazemSegmentos criar() {
+            File base = new File(System.getProperty("jackut.recados.diretorio", System.getProperty("java.io.tmpdir")));
+            try {
+                base.mkdirs();
+                File diretorio = Files.createTempDirectory(base.toPath(), "jackut-recados").toFile();
+                ArmazemSegmentos armazem = new ArmazemSegmentos(diretorio);
+                Runtime.getRuntime().addShutdownHook(new Thread(armazem::apagarTudo, "jackut-recados"));
+                return armazem;
+            } catch (IOException e) {
+                throw new SystemSaveException("Erro ao criar o diretório de recados");
+            }
+        }
+    }
+}
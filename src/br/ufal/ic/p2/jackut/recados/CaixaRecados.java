@@ -0,0 +1,265 @@
+package br.ufal.ic.p2.jackut.recados;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Caixa de recados não lidos de um usuário, em ordem de chegada.
+ * <p>
+ * Apenas o início da fila (os próximos recados a serem lidos) e o fim (os que acabaram de chegar)
+ * ficam em memória. Quando o fim ultrapassa {@code jackut.recados.memoria} recados ou
+ * {@code jackut.recados.bytes} bytes, ele é derramado como um bloco nos segmentos do
+ * {@link ArmazemSegmentos}; os blocos são lidos de volta, um de cada vez, à medida que o início da
+ * fila se esvazia. Assim o heap ocupado por uma caixa é limitado, por mais recados que ela acumule.
+ * <p>
+ * A quantidade máxima de recados não lidos por usuário é definida pela propriedade
+ * {@code jackut.recados.cota}. A caixa não é thread-safe; o {@code Sistema} só a acessa com a trava
+ * do usuário adquirida.
+ */
+public class CaixaRecados {
+    private static final int LIMITE_MEMORIA = Integer.getInteger("jackut.recados.memoria", 256);
+    private static final long LIMITE_BYTES = Long.getLong("jackut.recados.bytes", 256L * 1024);
+    private static final int COTA = Integer.getInteger("jackut.recados.cota", Integer.MAX_VALUE);
+    private static final Cleaner LIMPADOR = Cleaner.create();
+    // ArrayDeque não aceita null; recados nulos são guardados como esta instância
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String NULO = new String();
+
+    private final Deque<String> inicio = new ArrayDeque<>();
+    private final Deque<String> fim = new ArrayDeque<>();
+    private Derramados derramados;
+    private long bytesFim;
+    private int tamanho;
+
+    /**
+     * Obtém a quantidade de recados não lidos.
+     *
+     * @return A quantidade de recados na caixa.
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Verifica se a caixa está vazia.
+     *
+     * @return true se não houver recados não lidos.
+     */
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    /**
+     * Verifica se a caixa atingiu a cota de recados não lidos.
+     *
+     * @return true se a caixa não pode receber mais recados.
+     */
+    public boolean isCheia() {
+        return tamanho >= COTA;
+    }
+
+    /**
+     * Adiciona um recado ao fim da caixa, derramando o fim em disco se ele ficar grande demais.
+     *
+     * @param recado O recado.
+     */
+    public void adicionar(String recado) {
+        tamanho++;
+        if (recado == null) {
+            recado = NULO;
+        }
+        if (fim.isEmpty() && (derramados == null || derramados.isEmpty()) && inicio.size() < LIMITE_MEMORIA) {
+            inicio.add(recado);
+            return;
+        }
+
+        fim.add(recado);
+        bytesFim += 4 + (long) recado.length() * 3;
+        if (fim.size() >= LIMITE_MEMORIA || bytesFim >= LIMITE_BYTES) {
+            derramar();
+        }
+    }
+
+    /**
+     * Retira o recado mais antigo da caixa.
+     *
+     * @return O recado, ou null se a caixa estiver vazia.
+     */
+    public String poll() {
+        if (tamanho == 0) {
+            return null;
+        }
+        prepararInicio();
+        tamanho--;
+        String recado = inicio.poll();
+        return recado == NULO ? null : recado;
+    }
+
+    /**
+     * Retira até uma quantidade de recados do início da caixa, em ordem.
+     *
+     * @param maximo A quantidade máxima de recados.
+     * @param destino Recebe os recados retirados.
+     * @return A quantidade de recados retirados.
+     */
+    public int poll(int maximo, Consumer<String> destino) {
+        int retirados = 0;
+        while (retirados < maximo && tamanho > 0) {
+            prepararInicio();
+            int lote = Math.min(maximo - retirados, inicio.size());
+            for (int i = 0; i < lote; i++) {
+                String recado = inicio.poll();
+                destino.accept(recado == NULO ? null : recado);
+            }
+            tamanho -= lote;
+            retirados += lote;
+        }
+        return retirados;
+    }
+
+    /**
+     * Obtém o recado mais antigo da caixa, sem retirá-lo.
+     *
+     * @return O recado, ou null se a caixa estiver vazia.
+     */
+    public String peek() {
+        if (tamanho == 0) {
+            return null;
+        }
+        prepararInicio();
+        String recado = inicio.peek();
+        return recado == NULO ? null : recado;
+    }
+
+    /**
+     * Garante que o início da fila tenha recados, trazendo o próximo bloco do disco ou, se não houver
+     * blocos, os recados do fim. Só é chamado com a caixa não vazia.
+     */
+    private void prepararInicio() {
+        if (!inicio.isEmpty()) {
+            return;
+        }
+        if (derramados != null && !derramados.isEmpty()) {
+            derramados.carregarProximo(inicio);
+        } else {
+            inicio.addAll(fim);
+            fim.clear();
+            bytesFim = 0;
+        }
+    }
+
+    /**
+     * Percorre os recados em ordem, sem retirá-los. Os blocos em disco são lidos um de cada vez.
+     *
+     * @param acao A ação executada para cada recado.
+     */
+    public void paraCada(Consumer<String> acao) {
+        Consumer<String> desembrulhar = recado -> acao.accept(recado == NULO ? null : recado);
+        inicio.forEach(desembrulhar);
+        if (derramados != null) {
+            derramados.percorrer(acao);
+        }
+        fim.forEach(desembrulhar);
+    }
+
+    /**
+     * Obtém uma cópia independente da caixa. Apenas o início e o fim em memória são copiados; os
+     * blocos em disco não mudam depois de gravados e passam a ser compartilhados com a cópia, sem
+     * leitura nem gravação, até que cada caixa os leia ou seja descartada.
+     *
+     * @return A cópia.
+     */
+    public CaixaRecados copiar() {
+        CaixaRecados copia = new CaixaRecados();
+        copia.inicio.addAll(inicio);
+        copia.fim.addAll(fim);
+        copia.bytesFim = bytesFim;
+        copia.tamanho = tamanho;
+        if (derramados != null && !derramados.isEmpty()) {
+            copia.derramados = derramados.compartilhar();
+            LIMPADOR.register(copia, copia.derramados);
+        }
+        return copia;
+    }
+
+    /**
+     * Libera os blocos em disco de uma caixa que não será mais usada, como uma cópia já gravada, sem
+     * esperar que ela seja coletada.
+     */
+    public void liberar() {
+        if (derramados != null) {
+            derramados.run();
+        }
+    }
+
+    /**
+     * Obtém a quantidade de arquivos de segmento em disco, compartilhados por todas as caixas.
+     *
+     * @return A quantidade de segmentos.
+     */
+    public static int getSegmentosEmDisco() {
+        return ArmazemSegmentos.padrao().getQuantidadeSegmentos();
+    }
+
+    private void derramar() {
+        if (derramados == null) {
+            derramados = new Derramados();
+            // Se a caixa for descartada com blocos em disco (por exemplo, ao zerar o sistema),
+            // os blocos são liberados quando ela for coletada
+            LIMPADOR.register(this, derramados);
+        }
+        List<String> bloco = new ArrayList<>(fim.size());
+        for (String recado : fim) {
+            bloco.add(recado == NULO ? null : recado);
+        }
+        derramados.anexar(ArmazemSegmentos.padrao().derramar(bloco));
+        fim.clear();
+        bytesFim = 0;
+    }
+
+    /**
+     * Blocos em disco de uma caixa. Fica separado da caixa para poder liberá-los depois que ela
+     * for coletada.
+     */
+    private static class Derramados implements Runnable {
+        private final Deque<Trecho> trechos = new ArrayDeque<>();
+
+        synchronized boolean isEmpty() {
+            return trechos.isEmpty();
+        }
+
+        synchronized void anexar(Trecho trecho) {
+            trechos.add(trecho);
+        }
+
+        synchronized void carregarProximo(Deque<String> destino) {
+            ArmazemSegmentos.padrao().carregar(trechos.poll(), recado -> destino.add(recado == null ? NULO : recado));
+        }
+
+        synchronized Derramados compartilhar() {
+            Derramados copia = new Derramados();
+            for (Trecho trecho : trechos) {
+                copia.trechos.add(ArmazemSegmentos.padrao().compartilhar(trecho));
+            }
+            return copia;
+        }
+
+        synchronized void percorrer(Consumer<String> acao) {
+            for (Trecho trecho : trechos) {
+                ArmazemSegmentos.padrao().percorrer(trecho, acao);
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            for (Trecho trecho : trechos) {
+                ArmazemSegmentos.padrao().descartar(trecho);
+            }
+            trechos.clear();
+        }
+    }
+}
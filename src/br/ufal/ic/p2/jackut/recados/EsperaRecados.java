@@ -0,0 +1,181 @@
+package br.ufal.ic.p2.jackut.recados;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Leitores esperando recados, por login, para que a entrega de um recado acorde quem espera por ele
+ * em vez de o leitor consultar a caixa em laço.
+ * <p>
+ * A verificação da caixa é feita com o monitor da espera do login adquirido, e a notificação também,
+ * depois que o recado já está na caixa; assim um recado entregue entre a verificação e a espera não é
+ * perdido. Quem notifica não deve estar com a trava do usuário adquirida, porque a verificação a
+ * adquire dentro do monitor. Sem leitores esperando, notificar custa uma consulta a um mapa vazio.
+ * <p>
+ * Um leitor também pode esperar sem ocupar uma thread ({@link #estacionar}): a espera fica registrada
+ * no login e é concluída pela notificação ou, no fim do prazo, por uma única thread de prazos
+ * compartilhada pelo processo.
+ */
+public class EsperaRecados {
+    private static final ScheduledThreadPoolExecutor PRAZOS = criarPrazos();
+
+    private final ConcurrentHashMap<String, Espera> esperas = new ConcurrentHashMap<>();
+
+    /**
+     * Espera até que a condição seja verdadeira, verificando-a de novo a cada notificação do login.
+     *
+     * @param login O login do leitor.
+     * @param esperaNanos O tempo máximo de espera, em nanossegundos.
+     * @param chegou Verifica se há recados na caixa do leitor.
+     * @return true se a condição for verdadeira, false se o tempo acabou antes.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public boolean aguardar(String login, long esperaNanos, BooleanSupplier chegou) throws InterruptedException {
+        Espera espera = esperas.compute(login, (chave, atual) -> {
+            Espera registrada = atual != null ? atual : new Espera();
+            registrada.leitores++;
+            return registrada;
+        });
+        try {
+            long prazo = System.nanoTime() + esperaNanos;
+            synchronized (espera) {
+                while (!chegou.getAsBoolean()) {
+                    long restante = prazo - System.nanoTime();
+                    if (restante <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(espera, restante);
+                }
+                return true;
+            }
+        } finally {
+            esperas.computeIfPresent(login, (chave, atual) -> --atual.leitores == 0 ? null : atual);
+        }
+    }
+
+    /**
+     * Espera, sem ocupar a thread que chama, até que a condição seja verdadeira, verificando-a de novo
+     * a cada notificação do login.
+     * <p>
+     * O resultado é concluído pela thread que notifica ou pela thread de prazos, que não devem fazer
+     * trabalho demorado nele; quem precisar ler a caixa em seguida deve continuar em outro executor.
+     *
+     * @param login O login do leitor.
+     * @param esperaNanos O tempo máximo de espera, em nanossegundos.
+     * @param chegou Verifica se há recados na caixa do leitor.
+     * @return Conclui com true quando a condição for verdadeira, ou com false se o tempo acabar antes.
+     */
+    public CompletableFuture<Boolean> estacionar(String login, long esperaNanos, BooleanSupplier chegou) {
+        Estacionada estacionada = new Estacionada(chegou);
+        Espera espera = esperas.compute(login, (chave, atual) -> {
+            Espera registrada = atual != null ? atual : new Espera();
+            registrada.leitores++;
+            return registrada;
+        });
+        synchronized (espera) {
+            if (chegou.getAsBoolean()) {
+                estacionada.resultado.complete(true);
+            } else {
+                espera.estacionadas.add(estacionada);
+                estacionada.prazo = PRAZOS.schedule(() -> expirar(login, espera, estacionada), esperaNanos,
+                        TimeUnit.NANOSECONDS);
+            }
+        }
+        if (estacionada.resultado.isDone()) {
+            liberar(login);
+        }
+        return estacionada.resultado;
+    }
+
+    /**
+     * Acorda os leitores que esperam recados de um login.
+     *
+     * @param login O login do destinatário.
+     */
+    public void notificar(String login) {
+        if (esperas.isEmpty()) {
+            return;
+        }
+        Espera espera = esperas.get(login);
+        if (espera == null) {
+            return;
+        }
+        List<Estacionada> concluidas = null;
+        synchronized (espera) {
+            espera.notifyAll();
+            for (Iterator<Estacionada> estacionadas = espera.estacionadas.iterator(); estacionadas.hasNext(); ) {
+                Estacionada estacionada = estacionadas.next();
+                if (estacionada.chegou.getAsBoolean()) {
+                    estacionadas.remove();
+                    if (concluidas == null) {
+                        concluidas = new ArrayList<>(1);
+                    }
+                    concluidas.add(estacionada);
+                }
+            }
+        }
+        if (concluidas != null) {
+            // Concluídas fora do monitor, porque as continuações podem ler a caixa
+            for (Estacionada estacionada : concluidas) {
+                estacionada.prazo.cancel(false);
+                liberar(login);
+                estacionada.resultado.complete(true);
+            }
+        }
+    }
+
+    private void expirar(String login, Espera espera, Estacionada estacionada) {
+        synchronized (espera) {
+            if (!espera.estacionadas.remove(estacionada)) {
+                // A notificação chegou primeiro
+                return;
+            }
+        }
+        liberar(login);
+        estacionada.resultado.complete(false);
+    }
+
+    private void liberar(String login) {
+        esperas.computeIfPresent(login, (chave, atual) -> --atual.leitores == 0 ? null : atual);
+    }
+
+    private static ScheduledThreadPoolExecutor criarPrazos() {
+        ScheduledThreadPoolExecutor prazos = new ScheduledThreadPoolExecutor(1, tarefa -> {
+            Thread thread = new Thread(tarefa, "jackut-prazos-recados");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Esperas concluídas pela notificação não deixam o prazo ocupando a fila
+        prazos.setRemoveOnCancelPolicy(true);
+        return prazos;
+    }
+
+    /**
+     * Leitores de um login; a contagem é protegida pelo mapa, e o monitor é o da espera, que também
+     * protege as esperas estacionadas.
+     */
+    private static class Espera {
+        int leitores;
+        final List<Estacionada> estacionadas = new ArrayList<>(1);
+    }
+
+    /**
+     * Uma espera sem thread: a condição, o resultado e o prazo que a conclui se nenhum recado chegar.
+     */
+    private static class Estacionada {
+        final BooleanSupplier chegou;
+        final CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+        ScheduledFuture<?> prazo;
+
+        Estacionada(BooleanSupplier chegou) {
+            this.chegou = chegou;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package br.ufal.ic.p2.jackut.recados;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Arquivo de segmento onde os recados derramados das caixas são gravados, apenas por anexação.
+ * <p>
+ * Cada recado é gravado como {@code [tamanho][utf8]}. O segmento conta quantos dos recados gravados
+ * ainda não foram lidos; quando essa contagem chega a zero, o {@link ArmazemSegmentos} pode reciclar
+ * o arquivo, que volta a ser escrito desde o início.
+ */
+class Segmento {
+    private final File arquivo;
+    private final FileChannel canal;
+    private long posicao;
+    private long vivos;
+
+    Segmento(File arquivo) throws IOException {
+        this.arquivo = arquivo;
+        this.canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Anexa um bloco de recados já codificado.
+     *
+     * @param bloco Os recados codificados.
+     * @param quantidade A quantidade de recados no bloco.
+     * @return O offset do bloco no arquivo.
+     */
+    long anexar(ByteBuffer bloco, int quantidade) throws IOException {
+        long inicio = posicao;
+        while (bloco.hasRemaining()) {
+            posicao += canal.write(bloco, posicao);
+        }
+        vivos += quantidade;
+        return inicio;
+    }
+
+    /**
+     * Lê um bloco gravado anteriormente.
+     *
+     * @param offset O offset do bloco.
+     * @param tamanho O tamanho do bloco, em bytes.
+     * @return O conteúdo do bloco, pronto para leitura.
+     */
+    ByteBuffer ler(long offset, int tamanho) throws IOException {
+        ByteBuffer bloco = ByteBuffer.allocate(tamanho);
+        while (bloco.hasRemaining()) {
+            if (canal.read(bloco, offset + bloco.position()) < 0) {
+                throw new IOException("Segmento de recados truncado: " + arquivo);
+            }
+        }
+        return bloco.flip();
+    }
+
+    /**
+     * Registra que recados do segmento foram lidos ou descartados.
+     *
+     * @param quantidade A quantidade de recados.
+     * @return true se não restar nenhum recado por ler no segmento.
+     */
+    boolean liberar(int quantidade) {
+        vivos -= quantidade;
+        return vivos == 0;
+    }
+
+    long getPosicao() {
+        return posicao;
+    }
+
+    boolean isVazio() {
+        return vivos == 0;
+    }
+
+    /**
+     * Prepara o segmento para ser reescrito desde o início.
+     */
+    void reciclar() {
+        posicao = 0;
+        vivos = 0;
+    }
+
+    /**
+     * Fecha e apaga o arquivo do segmento.
+     */
+    void apagar() {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            // o arquivo será apagado de qualquer forma
+        }
+        arquivo.delete();
+    }
+}
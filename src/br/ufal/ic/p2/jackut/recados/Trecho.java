@@ -0,0 +1,38 @@
+package br.ufal.ic.p2.jackut.recados;
+
+/**
+ * Localização de um bloco de recados derramado em um {@link Segmento}.
+ * <p>
+ * O bloco não muda depois de gravado, então cópias de uma caixa podem compartilhá-lo; a contagem de
+ * caixas que o usam, protegida pelo {@link ArmazemSegmentos}, decide quando ele é liberado do segmento.
+ */
+class Trecho {
+    private final Segmento segmento;
+    private final long offset;
+    private final int tamanho;
+    private final int quantidade;
+    int referencias = 1;
+
+    Trecho(Segmento segmento, long offset, int tamanho, int quantidade) {
+        this.segmento = segmento;
+        this.offset = offset;
+        this.tamanho = tamanho;
+        this.quantidade = quantidade;
+    }
+
+    Segmento getSegmento() {
+        return segmento;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    int getTamanho() {
+        return tamanho;
+    }
+
+    int getQuantidade() {
+        return quantidade;
+    }
+}
@@ -0,0 +1,209 @@
+package br.ufal.ic.p2.jackut.replicacao;
+
+import br.ufal.ic.p2.jackut.exceptions.ConnectionException;
+import br.ufal.ic.p2.jackut.servidor.ConexoesJackut;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cliente de um primário e das suas réplicas, cada um um {@code ServidorJackut}: as escritas vão para
+ * o primário, e as consultas são distribuídas entre as réplicas em rodízio.
+ * <p>
+ * Com a leitura das próprias escritas ativada, o cliente obtém o LSN do primário depois de cada
+ * escrita, e uma consulta só é respondida por uma réplica que já aplicou esse LSN: se a réplica ainda
+ * não o aplicou, ela o aguarda por até {@code jackut.replicacao.espera} milissegundos, e se o tempo
+ * acabar a consulta vai para o primário. O LSN aplicado por cada réplica é lembrado, então enquanto o
+ * cliente não escreve as consultas não têm custo extra. A garantia vale para as escritas feitas por
+ * este cliente, de qualquer thread. Uma réplica inacessível também tem as suas consultas respondidas
+ * pelo primário.
+ * <p>
+ * O cliente é thread-safe e mantém um conjunto de conexões por servidor.
+ */
+public class ClienteReplicado implements Closeable {
+    private final ConexoesJackut primario;
+    private final Replica[] replicas;
+    private final boolean lerPropriasEscritas;
+    private final AtomicLong lsnExigido = new AtomicLong();
+    private final AtomicInteger proxima = new AtomicInteger();
+
+    /**
+     * Cria o cliente.
+     *
+     * @param primario O endereço do servidor primário.
+     * @param replicas Os endereços dos servidores das réplicas; sem réplicas, tudo vai para o primário.
+     * @param lerPropriasEscritas true para que as consultas sempre vejam as escritas deste cliente.
+     */
+    public ClienteReplicado(InetSocketAddress primario, List<InetSocketAddress> replicas, boolean lerPropriasEscritas) {
+        this.primario = new ConexoesJackut(primario);
+        this.replicas = new Replica[replicas.size()];
+        for (int i = 0; i < this.replicas.length; i++) {
+            this.replicas[i] = new Replica(replicas.get(i));
+        }
+        this.lerPropriasEscritas = lerPropriasEscritas;
+    }
+
+    /**
+     * Reseta o sistema do primário, e com ele o das réplicas. O primário deve ser um servidor interno
+     * ({@code jackut.servidor.internas=true}).
+     */
+    public void zerarSistema() {
+        escrever("zerarSistema");
+    }
+
+    /**
+     * Cria um novo usuário.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @param nome O nome do usuário.
+     */
+    public void criarUsuario(String login, String senha, String nome) {
+        escrever("criarUsuario", login, senha, nome);
+    }
+
+    /**
+     * Abre uma sessão no primário.
+     *
+     * @param login O login do usuário.
+     * @param senha A senha do usuário.
+     * @return O token da sessão.
+     */
+    public String abrirSessao(String login, String senha) {
+        return primario.chamar("abrirSessao", login, senha);
+    }
+
+    /**
+     * Obtém o valor de um atributo de um usuário, em uma réplica.
+     *
+     * @param login O login do usuário.
+     * @param atributo O nome do atributo.
+     * @return O valor do atributo.
+     */
+    public String getAtributoUsuario(String login, String atributo) {
+        return consultar("getAtributoUsuario", login, atributo);
+    }
+
+    /**
+     * Edita o perfil de um usuário.
+     *
+     * @param id O token da sessão do usuário.
+     * @param atributo O nome do atributo.
+     * @param valor O novo valor do atributo.
+     */
+    public void editarPerfil(String id, String atributo, String valor) {
+        escrever("editarPerfil", id, atributo, valor);
+    }
+
+    /**
+     * Verifica, em uma réplica, se dois usuários são amigos.
+     *
+     * @param login O login do usuário.
+     * @param amigo O login do outro usuário.
+     * @return true se eles são amigos.
+     */
+    public boolean ehAmigo(String login, String amigo) {
+        return Boolean.parseBoolean(consultar("ehAmigo", login, amigo));
+    }
+
+    /**
+     * Adiciona um amigo, ou convida o usuário para ser amigo.
+     *
+     * @param id O token da sessão do usuário.
+     * @param amigo O login do amigo.
+     */
+    public void adicionarAmigo(String id, String amigo) {
+        escrever("adicionarAmigo", id, amigo);
+    }
+
+    /**
+     * Obtém a lista de amigos de um usuário, em uma réplica.
+     *
+     * @param login O login do usuário.
+     * @return Os logins dos amigos, como em {@code {a,b}}.
+     */
+    public String getAmigos(String login) {
+        return consultar("getAmigos", login);
+    }
+
+    /**
+     * Envia um recado.
+     *
+     * @param id O token da sessão do remetente.
+     * @param destinatario O login do destinatário.
+     * @param recado O conteúdo do recado.
+     */
+    public void enviarRecado(String id, String destinatario, String recado) {
+        escrever("enviarRecado", id, destinatario, recado);
+    }
+
+    /**
+     * Lê, no primário, o recado mais antigo do usuário da sessão, retirando-o da caixa.
+     *
+     * @param id O token da sessão do usuário.
+     * @return O recado.
+     */
+    public String lerRecado(String id) {
+        return escrever("lerRecado", id);
+    }
+
+    /**
+     * Obtém a quantidade de réplicas.
+     *
+     * @return A quantidade de réplicas.
+     */
+    public int getQuantidadeReplicas() {
+        return replicas.length;
+    }
+
+    private String escrever(String metodo, String... argumentos) {
+        String resultado = primario.chamar(metodo, argumentos);
+        if (lerPropriasEscritas && replicas.length > 0) {
+            lsnExigido.accumulateAndGet(Long.parseLong(primario.chamar("getUltimoLsn")), Math::max);
+        }
+        return resultado;
+    }
+
+    private String consultar(String metodo, String... argumentos) {
+        if (replicas.length == 0) {
+            return primario.chamar(metodo, argumentos);
+        }
+        Replica replica = replicas[Math.floorMod(proxima.getAndIncrement(), replicas.length)];
+        try {
+            long exigido = lsnExigido.get();
+            if (replica.lsnVisto.get() < exigido) {
+                long aplicado = Long.parseLong(replica.conexoes.chamar("aguardarLsn", Long.toString(exigido)));
+                replica.lsnVisto.accumulateAndGet(aplicado, Math::max);
+                if (aplicado < exigido) {
+                    return primario.chamar(metodo, argumentos);
+                }
+            }
+            return replica.conexoes.chamar(metodo, argumentos);
+        } catch (ConnectionException e) {
+            return primario.chamar(metodo, argumentos);
+        }
+    }
+
+    @Override
+    public void close() {
+        primario.close();
+        for (Replica replica : replicas) {
+            replica.conexoes.close();
+        }
+    }
+
+    /**
+     * Uma réplica e o maior LSN que ela já informou ter aplicado.
+     */
+    private static class Replica {
+        final ConexoesJackut conexoes;
+        final AtomicLong lsnVisto = new AtomicLong(-1);
+
+        Replica(InetSocketAddress endereco) {
+            this.conexoes = new ConexoesJackut(endereco);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package br.ufal.ic.p2.jackut.replicacao;
+
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.entities.SnapshotSistema;
+import br.ufal.ic.p2.jackut.persistence.EscritorSnapshot;
+import br.ufal.ic.p2.jackut.persistence.Journal;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Lado primário da replicação: envia às réplicas, pela rede, cada lote de registros do journal logo
+ * depois de ele ser sincronizado em disco.
+ * <p>
+ * Ao se conectar, a réplica informa o primário que acompanhava e o LSN do último registro que
+ * recebeu. Se for este mesmo primário e os lotes seguintes ainda estiverem retidos em memória (até
+ * {@code jackut.replicacao.retencao} bytes), ela recebe só esses lotes; senão recebe antes um
+ * snapshot do sistema, gravado com as operações em andamento, como em um checkpoint.
+ * Cada réplica tem a sua fila de envio e a sua thread; uma réplica que acumula mais de
+ * {@code jackut.replicacao.fila} mensagens sem ler é desconectada e volta a se conectar quando
+ * puder, sem atrasar o primário nem as demais. A cada {@code jackut.replicacao.pulso} milissegundos
+ * sem lotes, as réplicas recebem um pulso com o último LSN publicado e o horário do primário, que
+ * usam para medir o próprio atraso.
+ * <p>
+ * As mensagens do primário começam com um byte de tipo: {@code [1][lsn][horario][tamanho][snapshot]},
+ * {@code [2][ultimo lsn][horario][tamanho][registros]} (no formato do journal) e
+ * {@code [3][lsn][horario]}.
+ */
+public class PublicadorReplicacao implements Closeable {
+    static final byte SNAPSHOT = 1;
+    static final byte LOTE = 2;
+    static final byte PULSO = 3;
+
+    private static final long RETENCAO = Long.getLong("jackut.replicacao.retencao", 16L * 1024 * 1024);
+    private static final int LIMITE_FILA = Integer.getInteger("jackut.replicacao.fila", 16_384);
+    private static final long INTERVALO_PULSO = Long.getLong("jackut.replicacao.pulso", 100);
+
+    private final Supplier<Sistema> sistema;
+    private final ServerSocket servidor;
+    private volatile long id = ThreadLocalRandom.current().nextLong();
+    private final List<Seguidor> seguidores = new CopyOnWriteArrayList<>();
+    private final Thread aceitador;
+    private final Thread pulsador;
+    private volatile boolean ativo = true;
+
+    // Protegidos pelo monitor do publicador
+    private final ArrayDeque<Lote> retidos = new ArrayDeque<>();
+    private long bytesRetidos;
+    private long ultimoPublicado;
+    private long ultimoEnvio;
+
+    /**
+     * Abre a porta de replicação e começa a aceitar réplicas.
+     *
+     * @param sistema Fornece o sistema atual, de onde são gravados os snapshots.
+     * @param journal O journal atual; os lotes são publicados a partir do seu último LSN em disco.
+     * @param porta A porta TCP, ou 0 para uma porta livre qualquer.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public PublicadorReplicacao(Supplier<Sistema> sistema, Journal journal, int porta) throws IOException {
+        this.sistema = sistema;
+        this.servidor = new ServerSocket();
+        this.servidor.setReuseAddress(true);
+        this.servidor.bind(new InetSocketAddress(porta));
+        acompanhar(journal);
+
+        this.aceitador = new Thread(this::aceitar, "jackut-replicacao-aceitador");
+        this.aceitador.setDaemon(true);
+        this.aceitador.start();
+        this.pulsador = new Thread(this::pulsar, "jackut-replicacao-pulso");
+        this.pulsador.setDaemon(true);
+        this.pulsador.start();
+    }
+
+    /**
+     * Passa a publicar os lotes de um journal, por exemplo depois que o sistema for lido novamente
+     * do disco. Os LSNs continuam a sequência do journal anterior.
+     *
+     * @param journal O journal.
+     */
+    public synchronized void acompanhar(Journal journal) {
+        ultimoPublicado = Math.max(ultimoPublicado, journal.getUltimoDuravel());
+        journal.setOuvinte(this::publicar);
+    }
+
+    /**
+     * Desconecta as réplicas e faz com que cada uma receba um snapshot ao se conectar de novo, em vez
+     * dos lotes retidos, depois de uma alteração do sistema que não passou pelo journal, como uma
+     * importação. Deve ser chamado com as operações sobre usuários bloqueadas.
+     */
+    public synchronized void reenviarSnapshots() {
+        id = ThreadLocalRandom.current().nextLong();
+        retidos.clear();
+        bytesRetidos = 0;
+        for (Seguidor seguidor : seguidores) {
+            seguidor.fechar();
+        }
+    }
+
+    /**
+     * Obtém a porta em que as réplicas se conectam.
+     *
+     * @return A porta TCP.
+     */
+    public int getPorta() {
+        return servidor.getLocalPort();
+    }
+
+    /**
+     * Obtém a quantidade de réplicas conectadas.
+     *
+     * @return A quantidade de réplicas.
+     */
+    public int getQuantidadeReplicas() {
+        return seguidores.size();
+    }
+
+    /**
+     * Envia um lote de registros sincronizado às réplicas. Chamado pelo journal.
+     */
+    private synchronized void publicar(byte[] registros, long ultimoLsn) {
+        Lote lote = new Lote(ultimoPublicado + 1, ultimoLsn, System.currentTimeMillis(), registros);
+        ultimoPublicado = ultimoLsn;
+        ultimoEnvio = lote.horario;
+
+        retidos.add(lote);
+        bytesRetidos += registros.length;
+        while (bytesRetidos > RETENCAO && retidos.size() > 1) {
+            bytesRetidos -= retidos.poll().registros.length;
+        }
+        for (Seguidor seguidor : seguidores) {
+            seguidor.enfileirar(lote);
+        }
+    }
+
+    private void pulsar() {
+        while (ativo) {
+            try {
+                Thread.sleep(INTERVALO_PULSO);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                long agora = System.currentTimeMillis();
+                if (agora - ultimoEnvio < INTERVALO_PULSO) {
+                    continue;
+                }
+                Lote pulso = new Lote(ultimoPublicado + 1, ultimoPublicado, agora, null);
+                ultimoEnvio = agora;
+                for (Seguidor seguidor : seguidores) {
+                    seguidor.enfileirar(pulso);
+                }
+            }
+        }
+    }
+
+    private void aceitar() {
+        while (ativo) {
+            try {
+                Socket socket = servidor.accept();
+                socket.setTcpNoDelay(true);
+                Thread thread = new Thread(() -> atender(socket), "jackut-replicacao-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Fechamento do publicador, ou falta momentânea de descritores
+            }
+        }
+    }
+
+    /**
+     * Sincroniza uma réplica e depois envia os lotes da sua fila até a conexão cair.
+     */
+    private void atender(Socket socket) {
+        Seguidor seguidor = new Seguidor(socket);
+        File snapshot = null;
+        try {
+            DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            long idAcompanhado = entrada.readLong();
+            long lsnRecebido = entrada.readLong();
+
+            long lsnSnapshot = -1;
+            long horarioSnapshot = 0;
+            if (idAcompanhado != id || !retomar(seguidor, lsnRecebido)) {
+                snapshot = Files.createTempFile("jackut-replicacao", ".dat").toFile();
+                horarioSnapshot = System.currentTimeMillis();
+                lsnSnapshot = gravarSnapshot(seguidor, snapshot);
+            }
+
+            saida.writeLong(id);
+            if (snapshot != null) {
+                saida.writeByte(SNAPSHOT);
+                saida.writeLong(lsnSnapshot);
+                saida.writeLong(horarioSnapshot);
+                saida.writeLong(snapshot.length());
+                Files.copy(snapshot.toPath(), saida);
+                snapshot.delete();
+                snapshot = null;
+            }
+            saida.flush();
+
+            while (ativo) {
+                Lote lote = seguidor.fila.take();
+                if (lote == Lote.FIM) {
+                    break;
+                }
+                escrever(lote, saida);
+                if (seguidor.fila.isEmpty()) {
+                    saida.flush();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // A réplica se desconectou ou foi desconectada; ela se conecta de novo quando puder
+        } finally {
+            seguidores.remove(seguidor);
+            seguidor.fechar();
+            if (snapshot != null) {
+                snapshot.delete();
+            }
+        }
+    }
+
+    /**
+     * Registra a réplica para receber os lotes posteriores ao LSN informado, se eles ainda estiverem
+     * retidos.
+     *
+     * @return false se a réplica precisa de um snapshot.
+     */
+    private synchronized boolean retomar(Seguidor seguidor, long lsnRecebido) {
+        if (lsnRecebido < 0 || lsnRecebido > ultimoPublicado) {
+            return false;
+        }
+        if (lsnRecebido < ultimoPublicado && (retidos.isEmpty() || retidos.peek().primeiroLsn > lsnRecebido + 1)) {
+            return false;
+        }
+        // Os lotes retidos entram na fila sem o limite, que vale só para os novos
+        for (Lote lote : retidos) {
+            if (lote.ultimoLsn > lsnRecebido) {
+                seguidor.fila.add(lote);
+            }
+        }
+        seguidores.add(seguidor);
+        return true;
+    }
+
+    /**
+     * Abre um snapshot do sistema com as operações sobre usuários bloqueadas e registra a réplica antes
+     * de liberá-las, de modo que ela recebe todos os lotes posteriores ao snapshot, que é gravado em
+     * seguida com as operações em andamento. Lotes anteriores que ainda estavam a caminho do disco
+     * também são enviados, e a réplica os ignora pelo LSN.
+     *
+     * @return O LSN do snapshot.
+     */
+    private long gravarSnapshot(Seguidor seguidor, File arquivo) throws IOException {
+        Sistema atual = sistema.get();
+        SnapshotSistema snapshot;
+        atual.travarTudo();
+        try {
+            snapshot = atual.abrirSnapshot(null);
+            synchronized (this) {
+                seguidores.add(seguidor);
+            }
+        } finally {
+            atual.destravarTudo();
+        }
+        try (snapshot; FileOutputStream saida = new FileOutputStream(arquivo)) {
+            EscritorSnapshot.escrever(snapshot, saida);
+            return snapshot.getUltimoLsn();
+        }
+    }
+
+    private static void escrever(Lote lote, DataOutputStream saida) throws IOException {
+        if (lote.registros == null) {
+            saida.writeByte(PULSO);
+            saida.writeLong(lote.ultimoLsn);
+            saida.writeLong(lote.horario);
+            return;
+        }
+        saida.writeByte(LOTE);
+        saida.writeLong(lote.ultimoLsn);
+        saida.writeLong(lote.horario);
+        saida.writeInt(lote.registros.length);
+        saida.write(lote.registros);
+    }
+
+    /**
+     * Para de aceitar réplicas e desconecta as conectadas. O journal deixa de ser acompanhado na
+     * próxima vez que o sistema for lido do disco.
+     */
+    @Override
+    public void close() {
+        ativo = false;
+        try {
+            servidor.close();
+        } catch (IOException e) {
+            // O publicador já está sendo encerrado
+        }
+        pulsador.interrupt();
+        for (Seguidor seguidor : seguidores) {
+            seguidor.fechar();
+        }
+    }
+
+    /**
+     * Um lote de registros publicado, ou um pulso (sem registros).
+     */
+    private static class Lote {
+        static final Lote FIM = new Lote(0, 0, 0, null);
+
+        final long primeiroLsn;
+        final long ultimoLsn;
+        final long horario;
+        final byte[] registros;
+
+        Lote(long primeiroLsn, long ultimoLsn, long horario, byte[] registros) {
+            this.primeiroLsn = primeiroLsn;
+            this.ultimoLsn = ultimoLsn;
+            this.horario = horario;
+            this.registros = registros;
+        }
+    }
+
+    /**
+     * Uma réplica conectada e a sua fila de envio.
+     */
+    private class Seguidor {
+        final Socket socket;
+        final BlockingQueue<Lote> fila = new LinkedBlockingQueue<>();
+
+        Seguidor(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Coloca um lote na fila. Chamado com o monitor do publicador adquirido.
+         */
+        void enfileirar(Lote lote) {
+            if (fila.size() >= LIMITE_FILA) {
+                seguidores.remove(this);
+                fechar();
+                return;
+            }
+            fila.add(lote);
+        }
+
+        void fechar() {
+            fila.add(Lote.FIM);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // A réplica já está sendo descartada
+            }
+        }
+    }
+}
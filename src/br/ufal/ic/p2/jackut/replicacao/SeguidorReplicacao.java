@@ -0,0 +1,295 @@
+package br.ufal.ic.p2.jackut.replicacao;
+
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.persistence.Journal;
+import br.ufal.ic.p2.jackut.persistence.LeitorSnapshot;
+import br.ufal.ic.p2.jackut.persistence.RegistroJournal;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Lado réplica da replicação: recebe os lotes de registros do {@link PublicadorReplicacao} do primário
+ * e os aplica, em ordem, a um {@link Sistema} em memória.
+ * <p>
+ * Uma thread lê as mensagens do primário e as coloca em uma fila; outra aplica os registros e libera
+ * quem aguarda um LSN. Assim, a quantidade de registros recebidos e ainda não aplicados é o atraso da
+ * réplica em registros, e o horário do primário na última mensagem aplicada dá o atraso em tempo: a
+ * réplica reflete o primário como ele estava no máximo {@link #getAtrasoMillis()} milissegundos
+ * atrás (com relógios do mesmo host, ou sincronizados). Se a conexão cair, a réplica continua
+ * respondendo com o estado que tem e volta a se conectar, retomando do último LSN recebido.
+ * <p>
+ * A réplica não grava nada em disco: ao ser iniciada, ela recebe um snapshot do primário.
+ */
+public class SeguidorReplicacao implements Closeable {
+    private static final int CAPACIDADE_FILA = 1024;
+    private static final long ESPERA_RECONEXAO = 500;
+
+    private final InetSocketAddress primario;
+    private final Consumer<Sistema> instalar;
+    private final BlockingQueue<Mensagem> fila = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+    private final Thread leitora;
+    private final Thread aplicadora;
+    private volatile boolean ativo = true;
+    private volatile Socket socket;
+    private volatile boolean conectada;
+
+    // Usados apenas pela thread leitora
+    private long idPrimario;
+    private long lsnRecebido = -1;
+
+    private volatile Sistema sistema;
+    private volatile long lsnPrimario = -1;
+    private volatile long lsnAplicado = -1;
+    private volatile long horarioAplicado;
+    private final Object aplicacao = new Object();
+
+    /**
+     * Cria a réplica e começa a acompanhar o primário.
+     *
+     * @param primario O endereço de replicação do primário.
+     * @param instalar Recebe cada sistema recebido em um snapshot, que passa a ser o sistema consultado
+     * pela réplica; os lotes seguintes são aplicados a ele.
+     */
+    public SeguidorReplicacao(InetSocketAddress primario, Consumer<Sistema> instalar) {
+        this.primario = primario;
+        this.instalar = instalar;
+        this.leitora = new Thread(this::ler, "jackut-replica-leitura");
+        this.leitora.setDaemon(true);
+        this.aplicadora = new Thread(this::aplicar, "jackut-replica-aplicacao");
+        this.aplicadora.setDaemon(true);
+    }
+
+    /**
+     * Inicia as threads de leitura e de aplicação.
+     */
+    public void iniciar() {
+        leitora.start();
+        aplicadora.start();
+    }
+
+    /**
+     * Obtém o LSN do último registro aplicado.
+     *
+     * @return O LSN, ou -1 se a réplica ainda não recebeu nenhum snapshot.
+     */
+    public long getLsnAplicado() {
+        return lsnAplicado;
+    }
+
+    /**
+     * Obtém o LSN do último registro publicado pelo primário de que a réplica tem notícia.
+     *
+     * @return O LSN, ou -1 se a réplica ainda não recebeu nada do primário.
+     */
+    public long getLsnPrimario() {
+        return lsnPrimario;
+    }
+
+    /**
+     * Obtém a quantidade de registros já publicados pelo primário e ainda não aplicados.
+     *
+     * @return O atraso em registros.
+     */
+    public long getAtrasoRegistros() {
+        return Math.max(0, lsnPrimario - lsnAplicado);
+    }
+
+    /**
+     * Obtém há quanto tempo, no máximo, o primário estava no estado que a réplica reflete.
+     *
+     * @return O atraso em milissegundos, ou -1 se a réplica ainda não recebeu nenhum snapshot.
+     */
+    public long getAtrasoMillis() {
+        return lsnAplicado < 0 ? -1 : Math.max(0, System.currentTimeMillis() - horarioAplicado);
+    }
+
+    /**
+     * Verifica se a réplica está conectada ao primário.
+     *
+     * @return true se a conexão estiver aberta.
+     */
+    public boolean isConectada() {
+        return conectada;
+    }
+
+    /**
+     * Aguarda a aplicação de um registro.
+     *
+     * @param lsn O LSN do registro.
+     * @param esperaMillis O tempo máximo de espera.
+     * @return O LSN do último registro aplicado, que é menor que o aguardado se o tempo acabar.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public long aguardar(long lsn, long esperaMillis) throws InterruptedException {
+        if (lsnAplicado >= lsn) {
+            return lsnAplicado;
+        }
+        long limite = System.nanoTime() + esperaMillis * 1_000_000L;
+        synchronized (aplicacao) {
+            long restante;
+            while (lsnAplicado < lsn && (restante = limite - System.nanoTime()) > 0) {
+                aplicacao.wait(Math.max(1, restante / 1_000_000L));
+            }
+            return lsnAplicado;
+        }
+    }
+
+    /**
+     * Lê as mensagens do primário, voltando a se conectar sempre que a conexão cair.
+     */
+    private void ler() {
+        while (ativo) {
+            try (Socket conexao = new Socket()) {
+                conexao.setTcpNoDelay(true);
+                conexao.connect(primario, 5_000);
+                socket = conexao;
+                receber(conexao);
+            } catch (IOException e) {
+                // O primário está indisponível; a réplica continua com o estado que tem
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                conectada = false;
+            }
+            if (ativo) {
+                try {
+                    Thread.sleep(ESPERA_RECONEXAO);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receber(Socket conexao) throws IOException, InterruptedException {
+        DataOutputStream saida = new DataOutputStream(conexao.getOutputStream());
+        saida.writeLong(idPrimario);
+        saida.writeLong(lsnRecebido);
+        saida.flush();
+
+        DataInputStream entrada = new DataInputStream(new BufferedInputStream(conexao.getInputStream(), 1 << 16));
+        idPrimario = entrada.readLong();
+        conectada = true;
+        while (ativo) {
+            byte tipo = entrada.readByte();
+            long lsn = entrada.readLong();
+            if (tipo == PublicadorReplicacao.SNAPSHOT) {
+                long horario = entrada.readLong();
+                fila.put(new Mensagem(lsn, horario, receberSnapshot(entrada), null));
+                // O snapshot substitui o estado anterior, que pode ter vindo de outro primário
+                lsnRecebido = lsn;
+                lsnPrimario = lsn;
+                continue;
+            } else if (tipo == PublicadorReplicacao.LOTE) {
+                long horario = entrada.readLong();
+                byte[] registros = new byte[entrada.readInt()];
+                entrada.readFully(registros);
+                fila.put(new Mensagem(lsn, horario, null, Journal.decodificar(registros)));
+            } else if (tipo == PublicadorReplicacao.PULSO) {
+                fila.put(new Mensagem(lsn, entrada.readLong(), null, null));
+            } else {
+                throw new IOException("Mensagem de replicação desconhecida: " + tipo);
+            }
+            lsnRecebido = Math.max(lsnRecebido, lsn);
+            lsnPrimario = Math.max(lsnPrimario, lsn);
+        }
+    }
+
+    private Sistema receberSnapshot(DataInputStream entrada) throws IOException {
+        long tamanho = entrada.readLong();
+        File arquivo = Files.createTempFile("jackut-replica", ".dat").toFile();
+        try {
+            try (OutputStream saida = new BufferedOutputStream(new FileOutputStream(arquivo), 1 << 16)) {
+                byte[] buffer = new byte[1 << 16];
+                while (tamanho > 0) {
+                    int lidos = entrada.read(buffer, 0, (int) Math.min(buffer.length, tamanho));
+                    if (lidos < 0) {
+                        throw new EOFException();
+                    }
+                    saida.write(buffer, 0, lidos);
+                    tamanho -= lidos;
+                }
+            }
+            return LeitorSnapshot.carregar(arquivo);
+        } finally {
+            arquivo.delete();
+        }
+    }
+
+    /**
+     * Aplica as mensagens da fila, em ordem. Registros já contidos no sistema (com LSN menor ou igual
+     * ao aplicado) são ignorados.
+     */
+    private void aplicar() {
+        while (true) {
+            Mensagem mensagem;
+            try {
+                mensagem = fila.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (mensagem.sistema != null) {
+                sistema = mensagem.sistema;
+                instalar.accept(sistema);
+            } else if (mensagem.registros != null && sistema != null) {
+                for (RegistroJournal registro : mensagem.registros) {
+                    if (registro.getLsn() > lsnAplicado) {
+                        sistema.aplicar(registro);
+                    }
+                }
+            }
+            if (sistema == null) {
+                continue;
+            }
+
+            synchronized (aplicacao) {
+                lsnAplicado = mensagem.sistema != null ? mensagem.lsn : Math.max(lsnAplicado, mensagem.lsn);
+                horarioAplicado = mensagem.horario;
+                aplicacao.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Para de acompanhar o primário. O sistema continua disponível para consultas.
+     */
+    @Override
+    public void close() {
+        ativo = false;
+        Socket atual = socket;
+        if (atual != null) {
+            try {
+                atual.close();
+            } catch (IOException e) {
+                // A conexão já está sendo encerrada
+            }
+        }
+        leitora.interrupt();
+        aplicadora.interrupt();
+    }
+
+    /**
+     * Uma mensagem do primário: um snapshot, um lote de registros ou um pulso.
+     */
+    private static class Mensagem {
+        final long lsn;
+        final long horario;
+        final Sistema sistema;
+        final List<RegistroJournal> registros;
+
+        Mensagem(long lsn, long horario, Sistema sistema, List<RegistroJournal> registros) {
+            this.lsn = lsn;
+            this.horario = horario;
+            this.sistema = sistema;
+            this.registros = registros;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package br.ufal.ic.p2.jackut.scripts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Um comando de script no formato do EasyAccept, como
+ * {@code id1=abrirSessao login=jpsauve senha=sauvejp} ou
+ * {@code expect "Jacques Sauve" getAtributoUsuario login=jpsauve atributo=nome}.
+ * <p>
+ * Os argumentos são passados ao método na ordem em que aparecem; os nomes servem apenas para
+ * documentação. Um argumento sem valor ({@code login=}) vale null, e um entre aspas vazias
+ * ({@code nome=""}) vale a string vazia. Referências a variáveis ({@code ${id1}}) só são resolvidas
+ * na execução.
+ */
+public class Comando {
+
+    /**
+     * O que o comando verifica sobre o resultado do método.
+     */
+    public enum Tipo {
+        /**
+         * Apenas executa o método; uma exceção é uma falha.
+         */
+        EXECUTAR,
+        /**
+         * O método deve retornar o valor esperado.
+         */
+        EXPECT,
+        /**
+         * O método deve lançar uma exceção com a mensagem esperada.
+         */
+        EXPECT_ERROR
+    }
+
+    private final Tipo tipo;
+    private final String variavel;
+    private final String esperado;
+    private final String metodo;
+    private final List<String> nomes;
+    private final List<String> valores;
+
+    Comando(Tipo tipo, String variavel, String esperado, String metodo, List<String> nomes, List<String> valores) {
+        this.tipo = tipo;
+        this.variavel = variavel;
+        this.esperado = esperado;
+        this.metodo = metodo;
+        this.nomes = Collections.unmodifiableList(nomes);
+        this.valores = Collections.unmodifiableList(valores);
+    }
+
+    /**
+     * Obtém o tipo do comando.
+     *
+     * @return O tipo do comando.
+     */
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Obtém a variável que recebe o resultado do comando, como {@code id1} em {@code id1=abrirSessao ...}.
+     *
+     * @return O nome da variável, ou null se o resultado não for guardado.
+     */
+    public String getVariavel() {
+        return variavel;
+    }
+
+    /**
+     * Obtém o valor ou a mensagem de erro esperados.
+     *
+     * @return O valor esperado, ou null para comandos do tipo {@link Tipo#EXECUTAR}.
+     */
+    public String getEsperado() {
+        return esperado;
+    }
+
+    /**
+     * Obtém o nome do método executado pelo comando.
+     *
+     * @return O nome do método.
+     */
+    public String getMetodo() {
+        return metodo;
+    }
+
+    /**
+     * Obtém os nomes dos argumentos, na ordem em que aparecem.
+     *
+     * @return Uma lista somente leitura; um argumento sem nome aparece como null.
+     */
+    public List<String> getNomes() {
+        return nomes;
+    }
+
+    /**
+     * Obtém os valores dos argumentos, na ordem em que aparecem.
+     *
+     * @return Uma lista somente leitura com os valores, ainda com as referências a variáveis.
+     */
+    public List<String> getValores() {
+        return valores;
+    }
+
+    /**
+     * Cria uma cópia do comando com os valores dos argumentos e o valor esperado transformados.
+     * Valores null não são passados à transformação.
+     *
+     * @param transformacao A transformação aplicada a cada valor.
+     * @return O novo comando.
+     */
+    public Comando transformar(UnaryOperator<String> transformacao) {
+        List<String> novos = new ArrayList<>(valores.size());
+        for (String valor : valores) {
+            novos.add(valor == null ? null : transformacao.apply(valor));
+        }
+        return new Comando(tipo, variavel, esperado == null ? null : transformacao.apply(esperado), metodo, nomes, novos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder();
+        if (tipo == Tipo.EXPECT) {
+            texto.append("expect \"").append(esperado).append("\" ");
+        } else if (tipo == Tipo.EXPECT_ERROR) {
+            texto.append("expectError \"").append(esperado).append("\" ");
+        }
+        if (variavel != null) {
+            texto.append(variavel).append('=');
+        }
+        texto.append(metodo);
+        for (int i = 0; i < valores.size(); i++) {
+            texto.append(' ');
+            if (nomes.get(i) != null) {
+                texto.append(nomes.get(i)).append('=');
+            }
+            if (valores.get(i) != null) {
+                texto.append('"').append(valores.get(i)).append('"');
+            }
+        }
+        return texto.toString();
+    }
+}
@@ -0,0 +1,207 @@
+package br.ufal.ic.p2.jackut.scripts;
+
+import br.ufal.ic.p2.jackut.exceptions.ScriptException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Executa comandos de script sobre um objeto, normalmente a {@code Facade}, com a mesma semântica do
+ * EasyAccept: o método é encontrado pelo nome e pela quantidade de argumentos, os argumentos são
+ * passados na ordem em que aparecem e o resultado é comparado pela sua representação em texto.
+ * <p>
+ * Cada executor tem as suas próprias variáveis, então scripts executados em paralelo por executores
+ * diferentes não interferem entre si. Um executor não é thread-safe.
+ */
+public class ExecutorScript {
+    private static final ClassValue<Map<String, Method>> METODOS = new ClassValue<>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> classe) {
+            Map<String, Method> metodos = new HashMap<>();
+            for (Method metodo : classe.getMethods()) {
+                if (!Modifier.isStatic(metodo.getModifiers())) {
+                    metodos.put(chave(metodo.getName(), metodo.getParameterCount()), metodo);
+                }
+            }
+            return metodos;
+        }
+    };
+
+    private final Object alvo;
+    private final Map<String, String> variaveis = new HashMap<>();
+
+    /**
+     * Cria um executor para o objeto informado.
+     *
+     * @param alvo O objeto cujos métodos são chamados pelos comandos.
+     */
+    public ExecutorScript(Object alvo) {
+        this.alvo = alvo;
+    }
+
+    /**
+     * Executa um comando, verifica o resultado esperado e guarda o resultado na variável do comando.
+     *
+     * @param comando O comando.
+     * @return O resultado do método em texto, ou null se ele não retornar nada ou se a exceção esperada
+     * for lançada.
+     * @throws ScriptException Se o método não existir ou se o resultado for diferente do esperado.
+     */
+    public String executar(Comando comando) {
+        String resultado;
+        try {
+            resultado = chamar(comando);
+        } catch (ScriptException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return verificarErro(comando, e);
+        }
+        return verificar(comando, resultado);
+    }
+
+    /**
+     * Conclui um comando cujo método foi chamado fora do executor, como uma chamada que termina depois:
+     * guarda o resultado na variável do comando e o verifica como {@link #executar}, ou, para comandos
+     * do tipo {@link Comando.Tipo#EXECUTAR}, como {@link #chamar}.
+     *
+     * @param comando O comando.
+     * @param retorno O retorno do método, se ele não falhou.
+     * @param erro A exceção lançada pelo método, ou null se ele não falhou.
+     * @return O resultado do método em texto, ou null se ele não retornar nada ou se a exceção esperada
+     * for lançada.
+     * @throws ScriptException Se o resultado for diferente do esperado.
+     * @throws RuntimeException A exceção do método, em comandos do tipo {@link Comando.Tipo#EXECUTAR}.
+     */
+    public String concluir(Comando comando, Object retorno, RuntimeException erro) {
+        if (erro != null) {
+            if (comando.getTipo() == Comando.Tipo.EXECUTAR) {
+                throw erro;
+            }
+            return verificarErro(comando, erro);
+        }
+        String resultado = retorno == null ? null : retorno.toString();
+        if (comando.getVariavel() != null) {
+            variaveis.put(comando.getVariavel(), resultado);
+        }
+        return comando.getTipo() == Comando.Tipo.EXECUTAR ? resultado : verificar(comando, resultado);
+    }
+
+    private String verificarErro(Comando comando, RuntimeException e) {
+        if (comando.getTipo() == Comando.Tipo.EXPECT_ERROR && Objects.equals(comando.getEsperado(), e.getMessage())) {
+            return null;
+        }
+        throw new ScriptException("Erro inesperado em " + comando + ": " + e.getMessage());
+    }
+
+    private String verificar(Comando comando, String resultado) {
+        if (comando.getTipo() == Comando.Tipo.EXPECT_ERROR) {
+            throw new ScriptException("Era esperado o erro \"" + comando.getEsperado() + "\" em " + comando);
+        }
+        if (comando.getTipo() == Comando.Tipo.EXPECT && !Objects.equals(comando.getEsperado(), resultado)) {
+            throw new ScriptException("Esperado \"" + comando.getEsperado() + "\", obtido \"" + resultado + "\" em " + comando);
+        }
+        return resultado;
+    }
+
+    /**
+     * Chama o método de um comando e guarda o resultado na variável do comando, sem verificar o
+     * resultado esperado. Uma exceção lançada pelo método é repassada como está.
+     *
+     * @param comando O comando.
+     * @return O resultado do método em texto, ou null se ele não retornar nada.
+     * @throws ScriptException Se o método não existir ou não puder ser chamado.
+     * @throws RuntimeException A exceção lançada pelo método.
+     */
+    public String chamar(Comando comando) {
+        Method metodo = METODOS.get(alvo.getClass()).get(chave(comando.getMetodo(), comando.getValores().size()));
+        if (metodo == null) {
+            throw new ScriptException("Comando desconhecido: " + comando.getMetodo());
+        }
+        Object[] argumentos = argumentos(metodo, comando.getValores());
+
+        String resultado;
+        try {
+            Object retorno = metodo.invoke(alvo, argumentos);
+            resultado = retorno == null ? null : retorno.toString();
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ScriptException("Erro inesperado em " + comando + ": " + e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new ScriptException("Comando inacessível: " + comando.getMetodo());
+        }
+
+        if (comando.getVariavel() != null) {
+            variaveis.put(comando.getVariavel(), resultado);
+        }
+        return resultado;
+    }
+
+    /**
+     * Substitui as referências {@code ${nome}} pelos valores das variáveis. Referências a variáveis
+     * ainda não definidas são mantidas como estão, como no EasyAccept.
+     *
+     * @param valor O valor com as referências.
+     * @return O valor resolvido.
+     */
+    public String resolver(String valor) {
+        if (valor == null || valor.indexOf("${") < 0) {
+            return valor;
+        }
+        StringBuilder resolvido = new StringBuilder();
+        int posicao = 0;
+        while (true) {
+            int inicio = valor.indexOf("${", posicao);
+            int fim = inicio < 0 ? -1 : valor.indexOf('}', inicio);
+            if (fim < 0) {
+                return resolvido.append(valor, posicao, valor.length()).toString();
+            }
+            String nome = valor.substring(inicio + 2, fim);
+            resolvido.append(valor, posicao, inicio);
+            if (variaveis.containsKey(nome)) {
+                resolvido.append(variaveis.get(nome));
+            } else {
+                resolvido.append(valor, inicio, fim + 1);
+            }
+            posicao = fim + 1;
+        }
+    }
+
+    private Object[] argumentos(Method metodo, List<String> valores) {
+        Class<?>[] tipos = metodo.getParameterTypes();
+        Object[] argumentos = new Object[tipos.length];
+        for (int i = 0; i < tipos.length; i++) {
+            String valor = resolver(valores.get(i));
+            if (tipos[i] == int.class) {
+                try {
+                    argumentos[i] = Integer.parseInt(valor);
+                } catch (NumberFormatException e) {
+                    throw new ScriptException("Número inválido: " + valor);
+                }
+            } else if (tipos[i] == long.class) {
+                try {
+                    argumentos[i] = Long.parseLong(valor);
+                } catch (NumberFormatException e) {
+                    throw new ScriptException("Número inválido: " + valor);
+                }
+            } else if (tipos[i] == boolean.class) {
+                argumentos[i] = Boolean.parseBoolean(valor);
+            } else if (tipos[i] == String.class) {
+                argumentos[i] = valor;
+            } else {
+                throw new ScriptException("Comando sem suporte em scripts: " + metodo.getName());
+            }
+        }
+        return argumentos;
+    }
+
+    private static String chave(String nome, int quantidadeArgumentos) {
+        return nome + "/" + quantidadeArgumentos;
+    }
+}
@@ -0,0 +1,163 @@
+package br.ufal.ic.p2.jackut.scripts;
+
+import br.ufal.ic.p2.jackut.exceptions.ScriptException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interpreta scripts no formato do EasyAccept, como os de {@code tests/}.
+ * <p>
+ * Cada linha é um comando; linhas em branco e linhas começadas por {@code #} são ignoradas. Um valor
+ * pode estar entre aspas para conter espaços.
+ */
+public class LeitorScript {
+
+    /**
+     * Lê todos os comandos de um arquivo de script.
+     *
+     * @param arquivo O arquivo do script.
+     * @return Os comandos, na ordem do arquivo.
+     * @throws IOException Se ocorrer um erro de leitura.
+     * @throws ScriptException Se alguma linha não puder ser interpretada.
+     */
+    public static List<Comando> ler(File arquivo) throws IOException {
+        List<Comando> comandos = new ArrayList<>();
+        int numero = 0;
+        for (String linha : Files.readAllLines(arquivo.toPath(), StandardCharsets.UTF_8)) {
+            numero++;
+            try {
+                Comando comando = lerLinha(linha);
+                if (comando != null) {
+                    comandos.add(comando);
+                }
+            } catch (ScriptException e) {
+                throw new ScriptException(arquivo.getName() + ":" + numero + ": " + e.getMessage());
+            }
+        }
+        return comandos;
+    }
+
+    /**
+     * Interpreta uma linha de script.
+     *
+     * @param linha A linha.
+     * @return O comando, ou null se a linha estiver em branco ou for um comentário.
+     * @throws ScriptException Se a linha não puder ser interpretada.
+     */
+    public static Comando lerLinha(String linha) {
+        String texto = linha.trim();
+        if (texto.isEmpty() || texto.startsWith("#")) {
+            return null;
+        }
+
+        List<String> tokens = separar(texto);
+        int posicao = 0;
+        Comando.Tipo tipo = Comando.Tipo.EXECUTAR;
+        String esperado = null;
+        if (tokens.get(0).equals("expect") || tokens.get(0).equals("expectError")) {
+            if (tokens.size() < 3) {
+                throw new ScriptException("Comando incompleto: " + texto);
+            }
+            tipo = tokens.get(0).equals("expect") ? Comando.Tipo.EXPECT : Comando.Tipo.EXPECT_ERROR;
+            esperado = valor(tokens.get(1));
+            posicao = 2;
+        }
+
+        String metodo = tokens.get(posicao++);
+        String variavel = null;
+        int igual = metodo.indexOf('=');
+        if (igual >= 0) {
+            variavel = metodo.substring(0, igual);
+            metodo = metodo.substring(igual + 1);
+        }
+        if (metodo.isEmpty() || metodo.indexOf('"') >= 0) {
+            throw new ScriptException("Comando inválido: " + texto);
+        }
+
+        List<String> nomes = new ArrayList<>();
+        List<String> valores = new ArrayList<>();
+        for (; posicao < tokens.size(); posicao++) {
+            String token = tokens.get(posicao);
+            int separador = separadorArgumento(token);
+            nomes.add(separador < 0 ? null : token.substring(0, separador));
+            valores.add(valor(separador < 0 ? token : token.substring(separador + 1)));
+        }
+        return new Comando(tipo, variavel, esperado, metodo, nomes, valores);
+    }
+
+    /**
+     * Separa a linha em tokens nos espaços fora de aspas, mantendo as aspas nos tokens.
+     */
+    private static List<String> separar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (entreAspas && c == '\\' && i + 1 < texto.length()) {
+                atual.append(c).append(texto.charAt(++i));
+                continue;
+            }
+            if (c == '"') {
+                entreAspas = !entreAspas;
+            } else if (Character.isWhitespace(c) && !entreAspas) {
+                if (atual.length() > 0) {
+                    tokens.add(atual.toString());
+                    atual.setLength(0);
+                }
+                continue;
+            }
+            atual.append(c);
+        }
+        if (entreAspas) {
+            throw new ScriptException("Aspas não fechadas: " + texto);
+        }
+        if (atual.length() > 0) {
+            tokens.add(atual.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Encontra o '=' que separa o nome do valor de um argumento, ignorando os que estão entre aspas.
+     */
+    private static int separadorArgumento(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '"') {
+                return -1;
+            }
+            if (c == '=') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove as aspas de um valor e os escapes dentro delas. Um valor vazio sem aspas vale null.
+     */
+    private static String valor(String bruto) {
+        if (bruto.isEmpty()) {
+            return null;
+        }
+        StringBuilder valor = new StringBuilder(bruto.length());
+        boolean entreAspas = false;
+        for (int i = 0; i < bruto.length(); i++) {
+            char c = bruto.charAt(i);
+            if (c == '"') {
+                entreAspas = !entreAspas;
+            } else if (entreAspas && c == '\\' && i + 1 < bruto.length()) {
+                valor.append(bruto.charAt(++i));
+            } else {
+                valor.append(c);
+            }
+        }
+        return valor.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package br.ufal.ic.p2.jackut.servidor;
+
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.exceptions.ConnectionException;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conexão bloqueante com um {@link ServidorJackut}, usada para chamar as operações da {@code Facade}
+ * remota pelo protocolo de linhas, como fazem o roteador do modo particionado e o cliente das réplicas.
+ * <p>
+ * Cada chamada envia um comando com os argumentos entre aspas (ou vazios, para null) e espera a sua
+ * resposta. Uma resposta {@code ERRO} é lançada como {@link JackutException} com a mesma mensagem;
+ * falhas de rede são lançadas como {@link ConnectionException}, e depois delas a conexão não é mais
+ * usada. A conexão não é thread-safe.
+ */
+public class ClienteJackut implements Closeable {
+    private static final int TEMPO_CONEXAO = 5_000;
+
+    private final InetSocketAddress endereco;
+    private final Socket socket;
+    private final BufferedReader entrada;
+    private final Writer saida;
+    private boolean quebrada;
+
+    /**
+     * Abre a conexão com um servidor.
+     *
+     * @param endereco O endereço do servidor.
+     * @throws ConnectionException Se o servidor não puder ser alcançado.
+     */
+    public ClienteJackut(InetSocketAddress endereco) {
+        this.endereco = endereco;
+        try {
+            this.socket = new Socket();
+            this.socket.setTcpNoDelay(true);
+            this.socket.connect(endereco, TEMPO_CONEXAO);
+            this.entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.saida = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new ConnectionException("Servidor indisponível: " + endereco);
+        }
+    }
+
+    /**
+     * Chama uma operação do servidor.
+     *
+     * @param metodo O nome da operação na {@code Facade}.
+     * @param argumentos Os argumentos, na ordem da operação.
+     * @return O valor retornado, ou null se a operação não retornar valor.
+     * @throws JackutException Com a mensagem do erro, se a operação falhar no servidor.
+     * @throws ConnectionException Se o servidor não puder ser alcançado.
+     */
+    public String chamar(String metodo, String... argumentos) {
+        StringBuilder comando = new StringBuilder(metodo);
+        for (int i = 0; i < argumentos.length; i++) {
+            comando.append(" a").append(i).append('=');
+            if (argumentos[i] != null) {
+                citar(argumentos[i], comando);
+            }
+        }
+
+        String resposta;
+        try {
+            saida.write(comando.append('\n').toString());
+            saida.flush();
+            resposta = entrada.readLine();
+        } catch (IOException e) {
+            quebrada = true;
+            throw new ConnectionException("Servidor indisponível: " + endereco);
+        }
+        if (resposta == null) {
+            quebrada = true;
+            throw new ConnectionException("Servidor fechou a conexão: " + endereco);
+        }
+        if (resposta.equals("OK")) {
+            return null;
+        }
+        if (resposta.startsWith("OK ")) {
+            return desescapar(resposta.substring(3));
+        }
+        if (resposta.startsWith("ERRO ")) {
+            throw new JackutException(desescapar(resposta.substring(5)));
+        }
+        quebrada = true;
+        throw new ConnectionException("Resposta inválida do servidor " + endereco + ": " + resposta);
+    }
+
+    /**
+     * Verifica se a conexão ainda pode ser usada.
+     *
+     * @return false depois de uma falha de rede.
+     */
+    public boolean isUtilizavel() {
+        return !quebrada;
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // a conexão já não será usada
+        }
+    }
+
+    private static void citar(String valor, StringBuilder destino) {
+        if (valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Quebras de linha não podem ser enviadas ao servidor.");
+        }
+        destino.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"' || c == '\\') {
+                destino.append('\\');
+            }
+            destino.append(c);
+        }
+        destino.append('"');
+    }
+
+    /**
+     * Desfaz os escapes {@code \n}, {@code \r} e {@code \\} das respostas do servidor.
+     */
+    private static String desescapar(String valor) {
+        if (valor.indexOf('\\') < 0) {
+            return valor;
+        }
+        StringBuilder resultado = new StringBuilder(valor.length());
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '\\' && i + 1 < valor.length()) {
+                char proximo = valor.charAt(++i);
+                resultado.append(proximo == 'n' ? '\n' : proximo == 'r' ? '\r' : proximo);
+            } else {
+                resultado.append(c);
+            }
+        }
+        return resultado.toString();
+    }
+}
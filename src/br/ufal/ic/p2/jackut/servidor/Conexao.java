@@ -0,0 +1,377 @@
+package br.ufal.ic.p2.jackut.servidor;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.exceptions.ScriptException;
+import br.ufal.ic.p2.jackut.scripts.Comando;
+import br.ufal.ic.p2.jackut.scripts.ExecutorScript;
+import br.ufal.ic.p2.jackut.scripts.LeitorScript;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Uma conexão de cliente do {@link ServidorJackut}.
+ * <p>
+ * O laço de eventos lê os bytes do socket e separa as linhas, que entram na fila de comandos da
+ * conexão. Os comandos são executados por um trabalhador do servidor, um de cada vez e na ordem de
+ * chegada, e todas as respostas produzidas de uma vez são enviadas com uma única escrita. Se o
+ * cliente enviar comandos mais rápido do que eles são executados, a leitura da conexão é suspensa
+ * até a fila se esvaziar.
+ * <p>
+ * Um {@code aguardarRecados} com a caixa vazia não ocupa o trabalhador durante a espera: a conexão
+ * fica estacionada, sem executar os comandos seguintes, até a chegada de um recado ou o fim do prazo,
+ * e então envia a resposta e volta a ser agendada. Assim leitores ociosos não esgotam os trabalhadores.
+ */
+class Conexao {
+    private static final int LIMITE_LINHA = 1 << 20;
+    private static final int LIMITE_PENDENTES = 4096;
+    /**
+     * As operações dos usuários, as únicas aceitas por padrão. As demais operações da {@code Facade},
+     * inclusive as criadas depois, só chegam à rede se forem incluídas aqui.
+     */
+    static final Set<String> OPERACOES_USUARIOS = Set.of(
+            "criarUsuario", "abrirSessao", "tryAbrirSessao", "getAtributoUsuario", "findAtributo", "editarPerfil",
+            "ehAmigo", "adicionarAmigo", "getAmigos", "listarAmigos", "buscarUsuarios", "contarAmigosEmComum",
+            "recomendarAmigos", "enviarRecado", "enviarRecadoAmigos", "lerRecado", "tryLerRecado", "lerRecados",
+            "aguardarRecados", "contarRecados", "espiarRecado",
+            "getUltimoLsn", "aguardarLsn", "getAtrasoReplicacao", "getAtrasoReplicacaoRegistros");
+
+    /**
+     * As operações sem autenticação usadas entre o roteador do modo particionado e as partições, e as
+     * que zeram ou salvam o sistema inteiro, aceitas apenas por servidores internos.
+     */
+    static final Set<String> OPERACOES_INTERNAS = Set.of(
+            "zerarSistema", "saveSistema", "getLoginSessao", "temConvite", "registrarConviteRemoto",
+            "confirmarAmizadeRemota", "receberRecado");
+    private static final String AGUARDAR_RECADOS = "aguardarRecados";
+    private static final int LIMITE_BUFFERS_SAIDA = 128;
+    private static final byte[] FIM_LINHA = {'\n'};
+
+    private final SocketChannel canal;
+    private final SelectionKey chave;
+    private final Executor trabalhadores;
+    private final ReservaBuffers reserva;
+    private final Facade facade;
+    private final ExecutorScript executor;
+    private final Set<String> permitidos;
+
+    // Usados apenas pelo laço de eventos
+    private byte[] linhaParcial = new byte[256];
+    private int tamanhoParcial;
+
+    private final Queue<String> pendentes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger quantidadePendentes = new AtomicInteger();
+    private final AtomicBoolean agendada = new AtomicBoolean();
+    private volatile boolean leituraSuspensa;
+    // Um aguardarRecados esperando um recado; os comandos seguintes esperam a sua resposta
+    private volatile boolean estacionada;
+    private volatile boolean fechada;
+
+    // Protegidos pelo monitor da conexão: o buffer sendo preenchido e os já prontos para envio
+    private ByteBuffer montagem;
+    private final ArrayDeque<ByteBuffer> saida = new ArrayDeque<>();
+    private volatile boolean fecharAposEnvio;
+
+    Conexao(SocketChannel canal, SelectionKey chave, Facade facade, Set<String> permitidos, Executor trabalhadores,
+            ReservaBuffers reserva) {
+        this.canal = canal;
+        this.chave = chave;
+        this.trabalhadores = trabalhadores;
+        this.reserva = reserva;
+        this.facade = facade;
+        this.executor = new ExecutorScript(facade);
+        this.permitidos = permitidos;
+    }
+
+    /**
+     * Separa as linhas completas dos bytes lidos e as coloca na fila de comandos. Chamado pelo laço
+     * de eventos.
+     *
+     * @param lidos Os bytes lidos do socket.
+     * @return false se a conexão enviou uma linha longa demais e deve ser fechada.
+     */
+    boolean receber(ByteBuffer lidos) {
+        boolean novas = false;
+        while (lidos.hasRemaining()) {
+            byte b = lidos.get();
+            if (b == '\n') {
+                int tamanho = tamanhoParcial > 0 && linhaParcial[tamanhoParcial - 1] == '\r' ? tamanhoParcial - 1 : tamanhoParcial;
+                pendentes.add(new String(linhaParcial, 0, tamanho, StandardCharsets.UTF_8));
+                quantidadePendentes.incrementAndGet();
+                tamanhoParcial = 0;
+                novas = true;
+                continue;
+            }
+            if (tamanhoParcial == LIMITE_LINHA) {
+                return false;
+            }
+            if (tamanhoParcial == linhaParcial.length) {
+                linhaParcial = Arrays.copyOf(linhaParcial, Math.min(LIMITE_LINHA, linhaParcial.length * 2));
+            }
+            linhaParcial[tamanhoParcial++] = b;
+        }
+
+        if (novas) {
+            if (quantidadePendentes.get() >= LIMITE_PENDENTES) {
+                leituraSuspensa = true;
+                chave.interestOpsAnd(~SelectionKey.OP_READ);
+            }
+            agendar();
+        }
+        return true;
+    }
+
+    private void agendar() {
+        if (agendada.compareAndSet(false, true)) {
+            try {
+                trabalhadores.execute(this::processar);
+            } catch (RejectedExecutionException e) {
+                // O servidor está sendo encerrado
+                fechar();
+            }
+        }
+    }
+
+    /**
+     * Executa os comandos pendentes e envia as respostas. Chamado por um trabalhador.
+     */
+    private void processar() {
+        String linha;
+        while (!fechada && !fecharAposEnvio && !estacionada && !isSaidaCheia() && (linha = pendentes.poll()) != null) {
+            quantidadePendentes.decrementAndGet();
+            String resposta = executar(linha);
+            if (resposta != null) {
+                anexar(resposta);
+            }
+        }
+        enviar();
+
+        if (leituraSuspensa && !fechada && quantidadePendentes.get() < LIMITE_PENDENTES) {
+            leituraSuspensa = false;
+            try {
+                chave.interestOpsOr(SelectionKey.OP_READ);
+                chave.selector().wakeup();
+            } catch (CancelledKeyException e) {
+                // A conexão foi fechada pelo laço de eventos ou pelo encerramento do servidor
+            }
+        }
+        agendada.set(false);
+        // Um comando pode ter chegado depois do último poll e antes de liberar o agendamento
+        if (!pendentes.isEmpty() && !estacionada && !isSaidaCheia()) {
+            agendar();
+        }
+    }
+
+    /**
+     * Executa um {@code aguardarRecados} sem ocupar o trabalhador. Se a resposta não estiver pronta, a
+     * conexão fica estacionada até que ela esteja.
+     *
+     * @return A resposta, ou null se a conexão foi estacionada.
+     */
+    private String aguardarRecados(Comando comando) {
+        List<String> valores = comando.getValores();
+        int maximo = numero(valores.get(1), Integer::parseInt);
+        long esperaMillis = numero(valores.get(2), Long::parseLong);
+        CompletableFuture<List<String>> recados;
+        try {
+            recados = facade.aguardarRecados(executor.resolver(valores.get(0)), maximo, esperaMillis, trabalhadores);
+        } catch (RuntimeException e) {
+            recados = CompletableFuture.failedFuture(e);
+        }
+        if (recados.isDone()) {
+            return concluir(comando, recados);
+        }
+        estacionada = true;
+        CompletableFuture<List<String>> estacionados = recados;
+        estacionados.whenComplete((lidos, erro) -> retomar(concluir(comando, estacionados)));
+        return null;
+    }
+
+    private String concluir(Comando comando, CompletableFuture<List<String>> recados) {
+        List<String> lidos = null;
+        RuntimeException erro = null;
+        try {
+            lidos = recados.join();
+        } catch (CompletionException e) {
+            erro = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        try {
+            String resultado = executor.concluir(comando, lidos, erro);
+            return resultado == null ? "OK" : "OK " + escapar(resultado);
+        } catch (RuntimeException e) {
+            return "ERRO " + escapar(String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Envia a resposta do comando estacionado e volta a executar os comandos seguintes.
+     */
+    private void retomar(String resposta) {
+        anexar(resposta);
+        estacionada = false;
+        enviar();
+        if (!pendentes.isEmpty()) {
+            agendar();
+        }
+    }
+
+    private <T> T numero(String valor, Function<String, T> conversao) {
+        String resolvido = executor.resolver(valor);
+        try {
+            return conversao.apply(resolvido);
+        } catch (NumberFormatException e) {
+            throw new ScriptException("Número inválido: " + resolvido);
+        }
+    }
+
+    /**
+     * Verifica se o cliente não está lendo as respostas; nesse caso a execução dos comandos pendentes
+     * é adiada até que a saída seja enviada.
+     */
+    private synchronized boolean isSaidaCheia() {
+        return saida.size() >= LIMITE_BUFFERS_SAIDA;
+    }
+
+    /**
+     * Executa uma linha e monta a resposta: "OK", "OK valor" ou "ERRO mensagem". Quebras de linha e
+     * barras invertidas no valor ou na mensagem são escapadas como {@code \n}, {@code \r} e {@code \\}.
+     *
+     * @return A resposta, ou null para linhas em branco e comentários.
+     */
+    private String executar(String linha) {
+        try {
+            Comando comando = LeitorScript.lerLinha(linha);
+            if (comando == null) {
+                return null;
+            }
+            if (comando.getMetodo().equals("quit")) {
+                fecharAposEnvio = true;
+                return "OK";
+            }
+            if (!permitidos.contains(comando.getMetodo())) {
+                throw new ScriptException("Comando não permitido pela rede: " + comando.getMetodo());
+            }
+            if (comando.getMetodo().equals(AGUARDAR_RECADOS) && comando.getValores().size() == 3) {
+                return aguardarRecados(comando);
+            }
+            String resultado = comando.getTipo() == Comando.Tipo.EXECUTAR ? executor.chamar(comando) : executor.executar(comando);
+            return resultado == null ? "OK" : "OK " + escapar(resultado);
+        } catch (RuntimeException e) {
+            return "ERRO " + escapar(String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Codifica uma linha de resposta nos buffers de saída.
+     */
+    private synchronized void anexar(String resposta) {
+        colocar(resposta.getBytes(StandardCharsets.UTF_8));
+        colocar(FIM_LINHA);
+    }
+
+    private void colocar(byte[] bytes) {
+        int posicao = 0;
+        while (posicao < bytes.length) {
+            if (montagem == null) {
+                montagem = reserva.obter();
+            }
+            int quantidade = Math.min(montagem.remaining(), bytes.length - posicao);
+            montagem.put(bytes, posicao, quantidade);
+            posicao += quantidade;
+            if (!montagem.hasRemaining()) {
+                saida.add(montagem.flip());
+                montagem = null;
+            }
+        }
+    }
+
+    /**
+     * Envia as respostas acumuladas com uma escrita agrupada. O que o socket não aceitar agora fica
+     * para quando ele estiver pronto para escrita, avisado pelo laço de eventos.
+     */
+    synchronized void enviar() {
+        if (fechada) {
+            return;
+        }
+        if (montagem != null && montagem.position() > 0) {
+            saida.add(montagem.flip());
+            montagem = null;
+        }
+        try {
+            if (!saida.isEmpty()) {
+                canal.write(saida.toArray(new ByteBuffer[0]));
+                while (!saida.isEmpty() && !saida.peekFirst().hasRemaining()) {
+                    reserva.devolver(saida.pollFirst());
+                }
+            }
+        } catch (IOException e) {
+            fechar();
+            return;
+        }
+
+        if (saida.isEmpty()) {
+            if (fecharAposEnvio) {
+                fechar();
+                return;
+            }
+            if ((chave.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                chave.interestOpsAnd(~SelectionKey.OP_WRITE);
+                // A execução pode ter sido adiada enquanto a saída estava cheia
+                if (!pendentes.isEmpty()) {
+                    agendar();
+                }
+            }
+        } else {
+            chave.interestOpsOr(SelectionKey.OP_WRITE);
+            chave.selector().wakeup();
+        }
+    }
+
+    /**
+     * Fecha a conexão e devolve os buffers de saída à reserva.
+     */
+    synchronized void fechar() {
+        if (fechada) {
+            return;
+        }
+        fechada = true;
+        chave.cancel();
+        try {
+            canal.close();
+        } catch (IOException e) {
+            // A conexão já está sendo descartada
+        }
+        for (ByteBuffer buffer : saida) {
+            reserva.devolver(buffer);
+        }
+        saida.clear();
+        if (montagem != null) {
+            reserva.devolver(montagem);
+            montagem = null;
+        }
+    }
+
+    private static String escapar(String texto) {
+        if (texto.indexOf('\n') < 0 && texto.indexOf('\\') < 0 && texto.indexOf('\r') < 0) {
+            return texto;
+        }
+        return texto.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
@@ -0,0 +1,71 @@
+package br.ufal.ic.p2.jackut.servidor;
+
+import br.ufal.ic.p2.jackut.exceptions.ConnectionException;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Conjunto de conexões livres com um {@link ServidorJackut}. Cada chamada usa uma conexão livre, ou
+ * abre outra se não houver; depois de uma falha de rede a conexão é descartada. É thread-safe.
+ */
+public class ConexoesJackut implements Closeable {
+    private final InetSocketAddress endereco;
+    private final ConcurrentLinkedQueue<ClienteJackut> livres = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Cria o conjunto de conexões com um servidor. As conexões são abertas à medida que forem
+     * necessárias.
+     *
+     * @param endereco O endereço do servidor.
+     */
+    public ConexoesJackut(InetSocketAddress endereco) {
+        this.endereco = endereco;
+    }
+
+    /**
+     * Obtém o endereço do servidor.
+     *
+     * @return O endereço.
+     */
+    public InetSocketAddress getEndereco() {
+        return endereco;
+    }
+
+    /**
+     * Chama uma operação do servidor por uma das conexões livres.
+     *
+     * @param metodo O nome da operação na {@code Facade}.
+     * @param argumentos Os argumentos, na ordem da operação.
+     * @return O valor retornado, ou null se a operação não retornar valor.
+     * @throws JackutException Com a mensagem do erro, se a operação falhar no servidor.
+     * @throws ConnectionException Se o servidor não puder ser alcançado.
+     */
+    public String chamar(String metodo, String... argumentos) {
+        ClienteJackut cliente = livres.poll();
+        if (cliente == null) {
+            cliente = new ClienteJackut(endereco);
+        }
+        try {
+            return cliente.chamar(metodo, argumentos);
+        } finally {
+            if (cliente.isUtilizavel()) {
+                livres.add(cliente);
+            } else {
+                cliente.close();
+            }
+        }
+    }
+
+    /**
+     * Fecha as conexões livres.
+     */
+    @Override
+    public void close() {
+        for (ClienteJackut cliente; (cliente = livres.poll()) != null; ) {
+            cliente.close();
+        }
+    }
+}
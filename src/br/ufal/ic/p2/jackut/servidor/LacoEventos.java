@@ -0,0 +1,138 @@
+package br.ufal.ic.p2.jackut.servidor;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Thread que atende um grupo de conexões com um seletor: lê os comandos que chegam e termina o envio
+ * das respostas que não couberam no socket de uma vez. A execução dos comandos fica com os
+ * trabalhadores do servidor, então um comando lento não atrasa as outras conexões do laço.
+ */
+class LacoEventos implements Runnable {
+    private final Selector seletor;
+    private final Facade facade;
+    private final Set<String> permitidos;
+    private final Executor trabalhadores;
+    private final ReservaBuffers reserva;
+    // Usado apenas pela thread do laço; os bytes são convertidos em linhas antes da próxima leitura
+    private final ByteBuffer leitura = ByteBuffer.allocateDirect(64 * 1024);
+    private volatile boolean ativo = true;
+
+    LacoEventos(Facade facade, Set<String> permitidos, Executor trabalhadores, ReservaBuffers reserva) throws IOException {
+        this.seletor = Selector.open();
+        this.facade = facade;
+        this.permitidos = permitidos;
+        this.trabalhadores = trabalhadores;
+        this.reserva = reserva;
+    }
+
+    /**
+     * Passa a atender uma conexão recém-aceita. Pode ser chamado de qualquer thread.
+     *
+     * @param canal O canal da conexão.
+     * @throws IOException Se o canal não puder ser configurado.
+     */
+    void adicionar(SocketChannel canal) throws IOException {
+        canal.configureBlocking(false);
+        canal.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+        // Registrada sem interesse até a conexão estar anexada, para o laço nunca a ver sem ela
+        SelectionKey chave = canal.register(seletor, 0);
+        chave.attach(new Conexao(canal, chave, facade, permitidos, trabalhadores, reserva));
+        chave.interestOps(SelectionKey.OP_READ);
+        seletor.wakeup();
+    }
+
+    /**
+     * Obtém a quantidade de conexões atendidas pelo laço.
+     *
+     * @return A quantidade de conexões abertas.
+     */
+    int getQuantidadeConexoes() {
+        return seletor.keys().size();
+    }
+
+    @Override
+    public void run() {
+        while (ativo) {
+            try {
+                seletor.select();
+            } catch (IOException e) {
+                break;
+            }
+            Iterator<SelectionKey> prontas = seletor.selectedKeys().iterator();
+            while (prontas.hasNext()) {
+                SelectionKey chave = prontas.next();
+                prontas.remove();
+                Conexao conexao = (Conexao) chave.attachment();
+                try {
+                    if (chave.isReadable()) {
+                        ler(chave, conexao);
+                    }
+                    if (chave.isValid() && chave.isWritable()) {
+                        conexao.enviar();
+                    }
+                } catch (CancelledKeyException e) {
+                    conexao.fechar();
+                }
+            }
+        }
+
+        for (SelectionKey chave : seletor.keys()) {
+            Conexao conexao = (Conexao) chave.attachment();
+            if (conexao != null) {
+                conexao.fechar();
+            } else {
+                // Aceita durante o encerramento, antes de ser anexada
+                try {
+                    chave.channel().close();
+                } catch (IOException e) {
+                    // A conexão já está sendo descartada
+                }
+            }
+        }
+        try {
+            seletor.close();
+        } catch (IOException e) {
+            // O laço já terminou
+        }
+    }
+
+    private void ler(SelectionKey chave, Conexao conexao) {
+        SocketChannel canal = (SocketChannel) chave.channel();
+        int lidos;
+        do {
+            leitura.clear();
+            try {
+                lidos = canal.read(leitura);
+            } catch (IOException e) {
+                lidos = -1;
+            }
+            if (lidos < 0) {
+                conexao.fechar();
+                return;
+            }
+            leitura.flip();
+            if (!conexao.receber(leitura)) {
+                conexao.fechar();
+                return;
+            }
+        } while (lidos == leitura.capacity());
+    }
+
+    /**
+     * Encerra o laço e fecha as suas conexões.
+     */
+    void parar() {
+        ativo = false;
+        seletor.wakeup();
+    }
+}
@@ -0,0 +1,42 @@
+package br.ufal.ic.p2.jackut.servidor;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserva de buffers diretos de tamanho fixo usados para montar as respostas.
+ * <p>
+ * As respostas são codificadas diretamente em memória fora do heap, então a escrita no socket não
+ * precisa copiá-las para um buffer temporário. Os buffers voltam para a reserva depois de enviados;
+ * os que excedem o limite da reserva são deixados para o coletor.
+ */
+class ReservaBuffers {
+    static final int TAMANHO = 8 * 1024;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> livres = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger quantidadeLivres = new AtomicInteger();
+    private final int maximoLivres;
+
+    ReservaBuffers(int maximoLivres) {
+        this.maximoLivres = maximoLivres;
+    }
+
+    ByteBuffer obter() {
+        ByteBuffer buffer = livres.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(TAMANHO);
+        }
+        quantidadeLivres.decrementAndGet();
+        return buffer;
+    }
+
+    void devolver(ByteBuffer buffer) {
+        if (quantidadeLivres.incrementAndGet() <= maximoLivres) {
+            buffer.clear();
+            livres.add(buffer);
+        } else {
+            quantidadeLivres.decrementAndGet();
+        }
+    }
+}
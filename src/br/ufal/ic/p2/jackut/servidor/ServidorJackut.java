@@ -0,0 +1,215 @@
+package br.ufal.ic.p2.jackut.servidor;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor TCP que expõe a {@link Facade} por um protocolo de linhas.
+ * <p>
+ * Cada linha enviada pelo cliente é um comando na sintaxe dos scripts do EasyAccept, como
+ * {@code criarUsuario login=jpsauve senha=sauvejp nome="Jacques Sauve"} ou
+ * {@code id1=abrirSessao login=jpsauve senha=sauvejp}, e cada comando recebe uma linha de resposta, na
+ * mesma ordem: {@code OK}, {@code OK valor} ou {@code ERRO mensagem}. As variáveis, como {@code ${id1}},
+ * valem apenas na conexão que as definiu. O cliente pode enviar vários comandos sem esperar as
+ * respostas; as respostas dos comandos que chegaram juntos são enviadas juntas. {@code quit} fecha a
+ * conexão.
+ * <p>
+ * Só são aceitas pela rede as operações dos usuários, listadas explicitamente; as demais operações da
+ * {@code Facade}, como as que encerram, leem, importam ou exportam o sistema inteiro, recebem um erro.
+ * Um servidor interno ({@code jackut.servidor.internas=true}) aceita também as operações sem
+ * autenticação usadas pelo roteador do modo particionado e as que zeram ou salvam o sistema; ele deve
+ * ser acessível apenas pelos roteadores e pelas ferramentas de administração.
+ * <p>
+ * As conexões são atendidas por laços de eventos com seletores NIO ({@code jackut.servidor.lacos},
+ * um por processador por padrão), e os comandos são executados por um grupo de trabalhadores
+ * ({@code jackut.servidor.trabalhadores}), dimensionado para que a espera pela gravação do journal
+ * de alguns comandos não impeça a execução dos demais. A espera de {@code aguardarRecados}, cujo prazo
+ * é escolhido pelo cliente, não ocupa um trabalhador: a conexão fica estacionada até a resposta.
+ * <p>
+ * Com a propriedade {@code jackut.replicacao.porta}, o servidor publica o seu journal para réplicas
+ * nessa porta. Com {@code jackut.replicacao.primario} ({@code host:porta} de replicação do primário),
+ * o servidor é uma réplica somente leitura, e o diretório não é usado.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.servidor.ServidorJackut [porta] [diretorio]}
+ */
+public class ServidorJackut implements Closeable {
+    private static final int LACOS = Integer.getInteger("jackut.servidor.lacos", Runtime.getRuntime().availableProcessors());
+    private static final int TRABALHADORES = Integer.getInteger("jackut.servidor.trabalhadores",
+            Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+    private final Facade facade;
+    private final ServerSocketChannel servidor;
+    private final ExecutorService trabalhadores;
+    private final List<LacoEventos> lacos = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final ReservaBuffers reserva = new ReservaBuffers(4096);
+    private volatile boolean ativo = true;
+
+    /**
+     * Abre o servidor na porta informada e começa a aceitar conexões.
+     *
+     * @param facade A fachada que executa os comandos.
+     * @param porta A porta TCP, ou 0 para uma porta livre qualquer.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public ServidorJackut(Facade facade, int porta) throws IOException {
+        this(facade, porta, false);
+    }
+
+    /**
+     * Abre o servidor na porta informada e começa a aceitar conexões, aceitando ou não as operações
+     * internas.
+     *
+     * @param facade A fachada que executa os comandos.
+     * @param porta A porta TCP, ou 0 para uma porta livre qualquer.
+     * @param internas true para aceitar também as operações internas, como em uma partição.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public ServidorJackut(Facade facade, int porta, boolean internas) throws IOException {
+        this.facade = facade;
+        this.servidor = ServerSocketChannel.open();
+        this.servidor.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.servidor.bind(new InetSocketAddress(porta), 4096);
+
+        AtomicInteger numero = new AtomicInteger();
+        this.trabalhadores = Executors.newFixedThreadPool(TRABALHADORES, tarefa -> {
+            Thread thread = new Thread(tarefa, "jackut-trabalhador-" + numero.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Set<String> permitidos = new HashSet<>(Conexao.OPERACOES_USUARIOS);
+        if (internas) {
+            permitidos.addAll(Conexao.OPERACOES_INTERNAS);
+        }
+        permitidos = Set.copyOf(permitidos);
+        for (int i = 0; i < LACOS; i++) {
+            LacoEventos laco = new LacoEventos(facade, permitidos, trabalhadores, reserva);
+            lacos.add(laco);
+            threads.add(iniciar(laco, "jackut-laco-" + i));
+        }
+        threads.add(iniciar(this::aceitar, "jackut-aceitador"));
+    }
+
+    /**
+     * Obtém a porta em que o servidor está aceitando conexões.
+     *
+     * @return A porta TCP.
+     */
+    public int getPorta() {
+        return servidor.socket().getLocalPort();
+    }
+
+    /**
+     * Obtém a quantidade de conexões abertas.
+     *
+     * @return A quantidade de conexões.
+     */
+    public int getQuantidadeConexoes() {
+        int total = 0;
+        for (LacoEventos laco : lacos) {
+            total += laco.getQuantidadeConexoes();
+        }
+        return total;
+    }
+
+    /**
+     * Para de aceitar conexões, fecha as conexões abertas e aguarda os comandos em execução. A
+     * {@link Facade} não é encerrada.
+     */
+    @Override
+    public void close() {
+        ativo = false;
+        try {
+            servidor.close();
+        } catch (IOException e) {
+            // O servidor já está sendo encerrado
+        }
+        for (LacoEventos laco : lacos) {
+            laco.parar();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        trabalhadores.shutdown();
+        try {
+            trabalhadores.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void aceitar() {
+        int proximo = 0;
+        while (ativo) {
+            SocketChannel canal;
+            try {
+                canal = servidor.accept();
+            } catch (IOException e) {
+                // Fechamento do servidor, ou falta momentânea de descritores
+                continue;
+            }
+            try {
+                lacos.get(proximo).adicionar(canal);
+                proximo = (proximo + 1) % lacos.size();
+            } catch (IOException | CancelledKeyException | ClosedSelectorException e) {
+                // As exceções não verificadas vêm de um laço que está sendo encerrado
+                try {
+                    canal.close();
+                } catch (IOException ignorada) {
+                    // A conexão é descartada de qualquer forma
+                }
+            }
+        }
+    }
+
+    private static Thread iniciar(Runnable tarefa, String nome) {
+        Thread thread = new Thread(tarefa, nome);
+        thread.start();
+        return thread;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int porta = args.length > 0 ? Integer.parseInt(args[0]) : 7000;
+        File diretorio = new File(args.length > 1 ? args[1] : ".");
+        String primario = System.getProperty("jackut.replicacao.primario");
+        Integer portaReplicacao = Integer.getInteger("jackut.replicacao.porta");
+
+        Facade facade;
+        if (primario != null) {
+            String[] partes = primario.split(":");
+            facade = Facade.replica(new InetSocketAddress(partes[0], Integer.parseInt(partes[1])));
+        } else {
+            facade = new Facade(diretorio);
+            if (portaReplicacao != null) {
+                System.out.println("Jackut publicando o journal na porta " + facade.publicarReplicacao(portaReplicacao));
+            }
+        }
+        ServidorJackut servidor = new ServidorJackut(facade, porta, Boolean.getBoolean("jackut.servidor.internas"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.close();
+            facade.encerrarSistema();
+        }, "jackut-encerramento"));
+        System.out.println("Jackut aceitando conexões na porta " + servidor.getPorta());
+    }
+}
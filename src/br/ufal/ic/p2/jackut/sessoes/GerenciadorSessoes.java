@@ -0,0 +1,216 @@
+package br.ufal.ic.p2.jackut.sessoes;
+
+import java.lang.ref.WeakReference;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Armazena as sessões abertas e emite os seus tokens.
+ * <p>
+ * Cada token tem 128 bits aleatórios gerados por {@link SecureRandom}, codificados em Base64. A
+ * validação é uma consulta a um {@link ConcurrentHashMap}, sem travas. As sessões expiram por
+ * ociosidade e por duração máxima; a remoção das expiradas é feita por uma {@link RodaExpiracao},
+ * avançada por uma thread de limpeza compartilhada e também pelas próprias chamadas a
+ * {@link #abrir(String)}. Se a roda estiver muito atrasada, quem abre uma sessão espera a limpeza
+ * terminar, de modo que uma rajada de logins não consegue acumular sessões vencidas mais rápido do
+ * que elas são removidas. Além disso, o total de sessões é limitado: ao ultrapassar o limite, as
+ * sessões mais próximas de expirar são encerradas.
+ * <p>
+ * Os limites podem ser configurados pelas propriedades {@code jackut.sessao.ociosidade} e
+ * {@code jackut.sessao.duracao} (em milissegundos) e {@code jackut.sessao.maximo}.
+ */
+public class GerenciadorSessoes {
+    private static final long OCIOSIDADE = Long.getLong("jackut.sessao.ociosidade", 30L * 60 * 1000);
+    private static final long DURACAO_MAXIMA = Long.getLong("jackut.sessao.duracao", 12L * 60 * 60 * 1000);
+    private static final int MAXIMO = Integer.getInteger("jackut.sessao.maximo", 1_000_000);
+    private static final int POSICOES_RODA = 1024;
+    private static final int BYTES_TOKEN = 16;
+
+    private static final ThreadLocal<SecureRandom> ALEATORIO = ThreadLocal.withInitial(SecureRandom::new);
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final ScheduledExecutorService LIMPEZA = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "jackut-sessoes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Sessao> sessoes = new ConcurrentHashMap<>();
+    private final ReentrantLock travaRoda = new ReentrantLock();
+    private final RodaExpiracao roda;
+    private final long ociosidade;
+    private final long duracaoMaxima;
+    private final int maximo;
+
+    /**
+     * Construtor da classe GerenciadorSessoes, com os limites configurados nas propriedades do sistema.
+     */
+    public GerenciadorSessoes() {
+        this(OCIOSIDADE, DURACAO_MAXIMA, MAXIMO);
+    }
+
+    /**
+     * Construtor da classe GerenciadorSessoes.
+     *
+     * @param ociosidade O tempo máximo sem acessos antes de a sessão expirar, em milissegundos.
+     * @param duracaoMaxima O tempo máximo de vida de uma sessão, em milissegundos.
+     * @param maximo A quantidade máxima de sessões abertas ao mesmo tempo.
+     */
+    public GerenciadorSessoes(long ociosidade, long duracaoMaxima, int maximo) {
+        this.ociosidade = ociosidade;
+        this.duracaoMaxima = duracaoMaxima;
+        this.maximo = maximo;
+        // Uma volta da roda cobre o prazo inicial das sessões, que assim não precisam ser reagendadas
+        // a menos que tenham sido usadas
+        long resolucao = Math.max(1, (Math.min(ociosidade, duracaoMaxima) + POSICOES_RODA - 1) / POSICOES_RODA);
+        this.roda = new RodaExpiracao(POSICOES_RODA, resolucao, agora());
+        agendarLimpeza(this, resolucao);
+    }
+
+    /**
+     * Abre uma sessão para um usuário já autenticado.
+     *
+     * @param login O login do usuário.
+     * @return O token da nova sessão.
+     */
+    public String abrir(String login) {
+        long agora = agora();
+        String token = gerarToken();
+        Sessao sessao = new Sessao(token, login, agora, duracaoMaxima);
+        sessoes.put(token, sessao);
+        roda.agendar(sessao, sessao.prazo(ociosidade));
+
+        long atraso = roda.atraso(agora);
+        if (sessoes.size() > maximo || atraso > roda.getTamanho() / 16) {
+            expirar(true);
+        } else if (atraso > 0) {
+            expirar(false);
+        }
+        return token;
+    }
+
+    /**
+     * Obtém o login do dono de uma sessão válida, registrando o acesso.
+     *
+     * @param token O token da sessão.
+     * @return O login do usuário, ou null se a sessão não existir ou já tiver expirado.
+     */
+    public String resolver(String token) {
+        if (token == null) {
+            return null;
+        }
+        Sessao sessao = sessoes.get(token);
+        if (sessao == null) {
+            return null;
+        }
+
+        long agora = agora();
+        if (sessao.prazo(ociosidade) <= agora) {
+            sessoes.remove(token, sessao);
+            return null;
+        }
+        sessao.tocar(agora, roda.getResolucao());
+        return sessao.getLogin();
+    }
+
+    /**
+     * Encerra uma sessão.
+     *
+     * @param token O token da sessão.
+     * @return true se a sessão existia.
+     */
+    public boolean encerrar(String token) {
+        return token != null && sessoes.remove(token) != null;
+    }
+
+    /**
+     * Encerra todas as sessões.
+     */
+    public void limpar() {
+        travaRoda.lock();
+        try {
+            sessoes.clear();
+            roda.limpar();
+        } finally {
+            travaRoda.unlock();
+        }
+    }
+
+    /**
+     * Obtém a quantidade de sessões abertas, incluindo as expiradas que ainda não foram removidas.
+     *
+     * @return A quantidade de sessões.
+     */
+    public int quantidade() {
+        return sessoes.size();
+    }
+
+    /**
+     * Remove as sessões expiradas e, se o limite tiver sido ultrapassado, as mais próximas de expirar.
+     * Se outra thread já estiver fazendo a limpeza, retorna imediatamente.
+     */
+    public void expirar() {
+        expirar(false);
+    }
+
+    private void expirar(boolean aguardar) {
+        if (aguardar) {
+            travaRoda.lock();
+        } else if (!travaRoda.tryLock()) {
+            return;
+        }
+        try {
+            long agora = agora();
+            roda.avancar(agora, sessao -> {
+                if (sessoes.get(sessao.getToken()) != sessao) {
+                    return;
+                }
+                long prazo = sessao.prazo(ociosidade);
+                if (prazo <= agora) {
+                    sessoes.remove(sessao.getToken(), sessao);
+                } else {
+                    roda.agendar(sessao, prazo);
+                }
+            });
+
+            if (sessoes.size() > maximo) {
+                roda.despejar(sessao -> {
+                    sessoes.remove(sessao.getToken(), sessao);
+                    return sessoes.size() > maximo;
+                });
+            }
+        } finally {
+            travaRoda.unlock();
+        }
+    }
+
+    private static String gerarToken() {
+        byte[] bytes = new byte[BYTES_TOKEN];
+        ALEATORIO.get().nextBytes(bytes);
+        return CODIFICADOR.encodeToString(bytes);
+    }
+
+    private static long agora() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    /**
+     * Agenda a limpeza periódica na thread compartilhada. A tarefa guarda apenas uma referência fraca
+     * ao gerenciador e se cancela quando ele deixa de ser usado.
+     */
+    private static void agendarLimpeza(GerenciadorSessoes gerenciador, long resolucao) {
+        WeakReference<GerenciadorSessoes> referencia = new WeakReference<>(gerenciador);
+        long intervalo = Math.max(resolucao, 100);
+        CompletableFuture<ScheduledFuture<?>> agendamento = new CompletableFuture<>();
+        agendamento.complete(LIMPEZA.scheduleWithFixedDelay(() -> {
+            GerenciadorSessoes atual = referencia.get();
+            if (atual == null) {
+                agendamento.thenAccept(tarefa -> tarefa.cancel(false));
+                return;
+            }
+            atual.expirar();
+        }, intervalo, intervalo, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,124 @@
+package br.ufal.ic.p2.jackut.sessoes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Roda temporizadora (hashed timing wheel) que agenda a verificação de expiração das sessões.
+ * <p>
+ * O tempo é dividido em ticks de {@code resolucao} milissegundos, e cada sessão fica na posição
+ * correspondente ao tick do seu prazo. Avançar a roda custa apenas as posições percorridas e as
+ * sessões contidas nelas, nunca uma varredura de todas as sessões. Prazos além de uma volta da roda
+ * são simplesmente reagendados quando a sua posição é visitada antes da hora.
+ * <p>
+ * O agendamento pode ser feito por qualquer thread; o avanço deve ser feito por uma thread de cada vez.
+ */
+class RodaExpiracao {
+    private final List<Queue<Sessao>> posicoes;
+    private final int mascara;
+    private final long resolucao;
+    private volatile long tickAtual;
+
+    /**
+     * Construtor da classe RodaExpiracao.
+     *
+     * @param tamanho A quantidade mínima de posições; é arredondada para a próxima potência de dois.
+     * @param resolucao A duração de um tick, em milissegundos.
+     * @param agora O instante inicial, em milissegundos.
+     */
+    RodaExpiracao(int tamanho, long resolucao, long agora) {
+        int quantidade = Integer.highestOneBit(Math.max(1, tamanho - 1)) << 1;
+        this.posicoes = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            this.posicoes.add(new ConcurrentLinkedQueue<>());
+        }
+        this.mascara = quantidade - 1;
+        this.resolucao = resolucao;
+        this.tickAtual = agora / resolucao;
+    }
+
+    long getResolucao() {
+        return resolucao;
+    }
+
+    /**
+     * Agenda a verificação de uma sessão para o tick do prazo informado.
+     *
+     * @param sessao A sessão.
+     * @param prazo O instante em que a sessão deve ser verificada, em milissegundos.
+     */
+    void agendar(Sessao sessao, long prazo) {
+        long tick = Math.max(prazo / resolucao, tickAtual + 1);
+        posicoes.get((int) (tick & mascara)).add(sessao);
+    }
+
+    /**
+     * Obtém a quantidade de ticks vencidos que ainda não foram processados.
+     *
+     * @param agora O instante atual, em milissegundos.
+     * @return O atraso da roda, em ticks; zero se ela não precisa avançar.
+     */
+    long atraso(long agora) {
+        return Math.max(0, agora / resolucao - tickAtual);
+    }
+
+    int getTamanho() {
+        return posicoes.size();
+    }
+
+    /**
+     * Avança a roda até o instante atual, entregando as sessões das posições percorridas.
+     *
+     * @param agora O instante atual, em milissegundos.
+     * @param verificar Recebe cada sessão encontrada; as que ainda não expiraram devem ser
+     * reagendadas pelo chamador, por meio de {@link #agendar(Sessao, long)}.
+     */
+    void avancar(long agora, Consumer<Sessao> verificar) {
+        long destino = agora / resolucao;
+        long inicio = tickAtual + 1;
+        // Depois de uma volta completa, todas as posições já foram visitadas
+        long fim = Math.min(destino, inicio + mascara);
+        List<Sessao> retiradas = new ArrayList<>();
+        for (long tick = inicio; tick <= fim; tick++) {
+            Queue<Sessao> posicao = posicoes.get((int) (tick & mascara));
+            for (Sessao sessao; (sessao = posicao.poll()) != null; ) {
+                retiradas.add(sessao);
+            }
+        }
+        tickAtual = Math.max(tickAtual, destino);
+        for (Sessao sessao : retiradas) {
+            verificar.accept(sessao);
+        }
+    }
+
+    /**
+     * Retira sessões na ordem aproximada dos seus prazos, a partir do tick atual, até que
+     * {@code continuar} devolva false. Usado para liberar espaço quando o limite de sessões é atingido.
+     *
+     * @param continuar Recebe cada sessão retirada e devolve true se outras devem ser retiradas.
+     */
+    void despejar(Predicate<Sessao> continuar) {
+        long inicio = tickAtual + 1;
+        for (long tick = inicio; tick <= inicio + mascara; tick++) {
+            Queue<Sessao> posicao = posicoes.get((int) (tick & mascara));
+            for (Sessao sessao; (sessao = posicao.poll()) != null; ) {
+                if (!continuar.test(sessao)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove todos os agendamentos.
+     */
+    void limpar() {
+        for (Queue<Sessao> posicao : posicoes) {
+            posicao.clear();
+        }
+    }
+}
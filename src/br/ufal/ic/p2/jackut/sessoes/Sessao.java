@@ -0,0 +1,60 @@
+package br.ufal.ic.p2.jackut.sessoes;
+
+/**
+ * Uma sessão aberta por um usuário.
+ * <p>
+ * O instante do último acesso é atualizado sem travas; como ele só é usado para calcular a
+ * expiração por ociosidade, basta que a escrita seja visível às outras threads.
+ */
+class Sessao {
+    private final String token;
+    private final String login;
+    private final long expiraEm;
+    private volatile long ultimoAcesso;
+
+    /**
+     * Construtor da classe Sessao.
+     *
+     * @param token O token que identifica a sessão.
+     * @param login O login do usuário dono da sessão.
+     * @param agora O instante de abertura, em milissegundos.
+     * @param duracaoMaxima A duração máxima da sessão, independentemente de uso, em milissegundos.
+     */
+    Sessao(String token, String login, long agora, long duracaoMaxima) {
+        this.token = token;
+        this.login = login;
+        this.expiraEm = agora + duracaoMaxima;
+        this.ultimoAcesso = agora;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    String getLogin() {
+        return login;
+    }
+
+    /**
+     * Registra um acesso à sessão. Acessos dentro da mesma janela de resolução não geram escrita,
+     * para evitar disputa pela linha de cache em sessões muito usadas.
+     *
+     * @param agora O instante do acesso, em milissegundos.
+     * @param resolucao A resolução da roda de expiração, em milissegundos.
+     */
+    void tocar(long agora, long resolucao) {
+        if (agora - ultimoAcesso >= resolucao) {
+            ultimoAcesso = agora;
+        }
+    }
+
+    /**
+     * Calcula o instante em que a sessão expira, considerando a ociosidade e a duração máxima.
+     *
+     * @param ociosidade O tempo máximo sem acessos, em milissegundos.
+     * @return O instante de expiração, em milissegundos.
+     */
+    long prazo(long ociosidade) {
+        return Math.min(ultimoAcesso + ociosidade, expiraEm);
+    }
+}
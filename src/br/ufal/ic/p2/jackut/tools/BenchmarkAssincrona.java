@@ -0,0 +1,173 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.atores.FacadeAssincrona;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.metricas.HistogramaLatencia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
+
+/**
+ * Compara a vazão da {@link Facade} síncrona com a da {@link FacadeAssincrona} sobre a mesma carga.
+ * <p>
+ * Cria uma {@code Facade} em um diretório temporário com os usuários informados, cada um com um
+ * atributo e amigo do seguinte. Durante o tempo informado, cada cliente executa uma mistura de 30%
+ * {@code getAtributoUsuario}, 20% {@code getAmigos}, 20% {@code editarPerfil}, 20% {@code enviarRecado}
+ * e 10% {@code adicionarAmigo} com pares aleatórios: primeiro chamando a {@code Facade} e esperando cada
+ * operação, depois pela API assíncrona, com até {@code emVoo} operações pendentes por cliente. São
+ * mostrados a vazão e os percentis de latência, da chamada até o resultado, de cada fase.
+ * <p>
+ * A quantidade de threads dos atores é a propriedade {@code jackut.atores.threads}.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.BenchmarkAssincrona [usuarios] [clientes] [segundos] [emVoo]},
+ * por exemplo {@code 100000 64 10 32}.
+ */
+public class BenchmarkAssincrona {
+    private static final String SENHA = "senha";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int clientes = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int emVoo = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+
+        File diretorio = Files.createTempDirectory("jackut-atores").toFile();
+        Facade facade = new Facade(diretorio);
+        FacadeAssincrona assincrona = new FacadeAssincrona(facade);
+        try {
+            facade.zerarSistema();
+            String[] sessoes = popular(facade, usuarios);
+            facade.saveSistema();
+
+            System.out.printf("%-10s %12s %9s %9s %9s%n", "api", "operações/s", "p50 µs", "p99 µs", "máx ms");
+            medir("síncrona", sessoes, clientes, segundos, (sorteio, aleatorio) -> {
+                executar(facade, sessoes, sorteio, aleatorio);
+                return CompletableFuture.completedFuture(null);
+            }, 1);
+            medir("assíncrona", sessoes, clientes, segundos,
+                    (sorteio, aleatorio) -> executar(assincrona, sessoes, sorteio, aleatorio), emVoo);
+        } finally {
+            assincrona.encerrarSistema().join();
+            File[] arquivos = diretorio.listFiles();
+            if (arquivos != null) {
+                for (File arquivo : arquivos) {
+                    Files.deleteIfExists(arquivo.toPath());
+                }
+            }
+            Files.deleteIfExists(diretorio.toPath());
+        }
+    }
+
+    /**
+     * Cria os usuários, abre uma sessão para cada um, preenche um atributo e torna cada usuário amigo
+     * do seguinte.
+     */
+    private static String[] popular(Facade facade, int usuarios) {
+        facade.criarUsuarios(IntStream.range(0, usuarios)
+                .mapToObj(i -> new String[]{"carga" + i, SENHA, "Carga " + i}));
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            sessoes[i] = facade.abrirSessao("carga" + i, SENHA);
+            facade.editarPerfil(sessoes[i], "cidade", "cidade" + i % 100);
+        }
+        for (int i = 0; i + 1 < usuarios; i++) {
+            facade.adicionarAmigo(sessoes[i], "carga" + (i + 1));
+            facade.adicionarAmigo(sessoes[i + 1], "carga" + i);
+        }
+        return sessoes;
+    }
+
+    private static void executar(Facade facade, String[] sessoes, int sorteio, SplittableRandom aleatorio) {
+        int usuario = aleatorio.nextInt(sessoes.length);
+        String outro = "carga" + aleatorio.nextInt(sessoes.length);
+        if (sorteio < 3) {
+            facade.getAtributoUsuario("carga" + usuario, "cidade");
+        } else if (sorteio < 5) {
+            facade.getAmigos("carga" + usuario);
+        } else if (sorteio < 7) {
+            facade.editarPerfil(sessoes[usuario], "cidade", "cidade" + aleatorio.nextInt(100));
+        } else if (sorteio < 9) {
+            facade.enviarRecado(sessoes[usuario], outro, "oi");
+        } else {
+            facade.adicionarAmigo(sessoes[usuario], outro);
+        }
+    }
+
+    private static CompletableFuture<?> executar(FacadeAssincrona facade, String[] sessoes, int sorteio,
+                                                 SplittableRandom aleatorio) {
+        int usuario = aleatorio.nextInt(sessoes.length);
+        String outro = "carga" + aleatorio.nextInt(sessoes.length);
+        if (sorteio < 3) {
+            return facade.getAtributoUsuario("carga" + usuario, "cidade");
+        } else if (sorteio < 5) {
+            return facade.getAmigos("carga" + usuario);
+        } else if (sorteio < 7) {
+            return facade.editarPerfil(sessoes[usuario], "cidade", "cidade" + aleatorio.nextInt(100));
+        } else if (sorteio < 9) {
+            return facade.enviarRecado(sessoes[usuario], outro, "oi");
+        }
+        return facade.adicionarAmigo(sessoes[usuario], outro);
+    }
+
+    /**
+     * Uma operação da carga; as falhas esperadas, como amizades repetidas, também contam como operações.
+     */
+    private interface Carga {
+        CompletableFuture<?> executar(int sorteio, SplittableRandom aleatorio);
+    }
+
+    private static void medir(String nome, String[] sessoes, int clientes, int segundos, Carga carga,
+                              int emVoo) throws InterruptedException {
+        HistogramaLatencia latencias = new HistogramaLatencia();
+        long inicioMedicao = System.nanoTime() + 1_000_000_000L;
+        long fim = inicioMedicao + segundos * 1_000_000_000L;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clientes; c++) {
+            SplittableRandom aleatorio = new SplittableRandom(c);
+            Thread thread = new Thread(() -> {
+                HistogramaLatencia locais = new HistogramaLatencia();
+                Semaphore pendentes = new Semaphore(emVoo);
+                long agora;
+                while ((agora = System.nanoTime()) < fim) {
+                    pendentes.acquireUninterruptibly();
+                    long inicio = agora;
+                    CompletableFuture<?> futuro;
+                    try {
+                        futuro = carga.executar(aleatorio.nextInt(10), aleatorio);
+                    } catch (JackutException e) {
+                        futuro = CompletableFuture.completedFuture(null);
+                    }
+                    futuro.whenComplete((resultado, erro) -> {
+                        if (inicio >= inicioMedicao) {
+                            synchronized (locais) {
+                                locais.registrar(System.nanoTime() - inicio);
+                            }
+                        }
+                        pendentes.release();
+                    });
+                }
+                pendentes.acquireUninterruptibly(emVoo);
+                synchronized (latencias) {
+                    latencias.adicionar(locais);
+                }
+            }, "cliente-" + c);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("%-10s %,12.0f %9.1f %9.1f %9.1f%n", nome, latencias.getQuantidade() / (double) segundos,
+                latencias.percentil(0.5) / 1e3, latencias.percentil(0.99) / 1e3, latencias.getMaximo() / 1e6);
+    }
+}
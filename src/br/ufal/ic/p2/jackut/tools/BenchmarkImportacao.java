@@ -0,0 +1,118 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.migracao.FormatoMigracao;
+import br.ufal.ic.p2.jackut.migracao.ResultadoImportacao;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Mede a importação e a exportação da rede inteira ({@code importarRede} e {@code exportarRede}).
+ * <p>
+ * Gera, em um diretório temporário, um arquivo com os usuários informados, cada um com dois atributos,
+ * um recado e amigo dos {@code grau / 2} usuários seguintes e anteriores (em círculo), de modo que a
+ * rede tem {@code usuarios * grau / 2} amizades. O arquivo é importado em uma {@link Facade} vazia,
+ * incluindo o checkpoint que torna a importação durável, e a rede é exportada de volta para outro
+ * arquivo. São mostrados o tempo e a vazão de cada etapa.
+ * <p>
+ * A quantidade de threads da importação é a propriedade {@code jackut.importacao.threads}.
+ * <p>
+ * Uso: {@code java -Xmx<N>g br.ufal.ic.p2.jackut.tools.BenchmarkImportacao [usuarios] [grau] [jsonl|csv] [threads]},
+ * por exemplo {@code 1000000 20 csv 8}.
+ */
+public class BenchmarkImportacao {
+
+    public static void main(String[] args) throws IOException {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int grau = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        FormatoMigracao formato = args.length > 2 ? FormatoMigracao.valueOf(args[2].toUpperCase()) : FormatoMigracao.JSONL;
+        if (args.length > 3) {
+            System.setProperty("jackut.importacao.threads", args[3]);
+        }
+
+        File diretorio = Files.createTempDirectory("jackut-importacao").toFile();
+        String extensao = "." + formato.name().toLowerCase();
+        File entrada = new File(diretorio, "rede" + extensao);
+        File saida = new File(diretorio, "exportada" + extensao);
+        Facade facade = null;
+        try {
+            long inicio = System.nanoTime();
+            gerar(entrada, formato, usuarios, grau / 2);
+            System.out.printf("arquivo: %d usuários, %d amizades, %.1f MB, gerado em %.1f s%n", usuarios,
+                    (long) usuarios * (grau / 2), entrada.length() / 1e6, (System.nanoTime() - inicio) / 1e9);
+
+            facade = new Facade(diretorio);
+            facade.zerarSistema();
+            inicio = System.nanoTime();
+            ResultadoImportacao resultado = facade.importarRede(entrada.getPath());
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            System.out.printf("importação: %.1f s, %.0f usuários/s, %.0f amigos/s (%s)%n", segundos,
+                    resultado.getUsuarios() / segundos, resultado.getAmigos() / segundos, resultado);
+            resultado.getFalhas().stream().limit(5).forEach(falha -> System.out.println("  " + falha));
+
+            inicio = System.nanoTime();
+            int exportados = facade.exportarRede(saida.getPath());
+            segundos = (System.nanoTime() - inicio) / 1e9;
+            System.out.printf("exportação: %.1f s, %.0f usuários/s, %.1f MB%n", segundos, exportados / segundos,
+                    saida.length() / 1e6);
+        } finally {
+            if (facade != null) {
+                facade.encerrarSistema();
+            }
+            File[] arquivos = diretorio.listFiles();
+            if (arquivos != null) {
+                for (File arquivo : arquivos) {
+                    Files.deleteIfExists(arquivo.toPath());
+                }
+            }
+            Files.deleteIfExists(diretorio.toPath());
+        }
+    }
+
+    /**
+     * Gera o arquivo da rede, em que o usuário {@code i} é amigo de {@code i ± 1 .. i ± vizinhos}.
+     */
+    private static void gerar(File arquivo, FormatoMigracao formato, int usuarios, int vizinhos) throws IOException {
+        try (Writer saida = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(arquivo),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            StringBuilder linha = new StringBuilder(256);
+            for (int i = 0; i < usuarios; i++) {
+                linha.setLength(0);
+                String login = "usuario" + i;
+                String cidade = "Cidade " + (i % 1_000);
+                String recado = "Olá, " + login + "!";
+                if (formato == FormatoMigracao.JSONL) {
+                    linha.append("{\"login\":\"").append(login).append("\",\"senha\":\"senha\",\"nome\":\"Usuário ")
+                            .append(i).append("\",\"atributos\":{\"cidadeNatal\":\"").append(cidade)
+                            .append("\",\"filhos\":\"").append(i % 4).append("\"},\"amigos\":[");
+                    for (int d = 1; d <= vizinhos; d++) {
+                        linha.append(d > 1 ? ",\"usuario" : "\"usuario").append(vizinho(i, d, usuarios))
+                                .append("\",\"usuario").append(vizinho(i, -d, usuarios)).append('"');
+                    }
+                    linha.append("],\"recados\":[\"").append(recado).append("\"]}\n");
+                } else {
+                    linha.append("usuario,").append(login).append(",senha,Usuário ").append(i).append('\n');
+                    linha.append("atributo,").append(login).append(",cidadeNatal,").append(cidade).append('\n');
+                    linha.append("atributo,").append(login).append(",filhos,").append(i % 4).append('\n');
+                    for (int d = 1; d <= vizinhos; d++) {
+                        linha.append("amigo,").append(login).append(",usuario").append(vizinho(i, d, usuarios)).append('\n');
+                        linha.append("amigo,").append(login).append(",usuario").append(vizinho(i, -d, usuarios)).append('\n');
+                    }
+                    linha.append("recado,").append(login).append(",\"").append(recado).append("\"\n");
+                }
+                saida.append(linha);
+            }
+        }
+    }
+
+    private static int vizinho(int usuario, int distancia, int usuarios) {
+        return Math.floorMod(usuario + distancia, usuarios);
+    }
+}
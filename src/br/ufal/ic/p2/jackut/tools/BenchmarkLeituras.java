@@ -0,0 +1,158 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.metricas.HistogramaLatencia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Mede a latência das consultas enquanto outras threads alteram sem parar os mesmos usuários, para
+ * comparar as leituras das versões publicadas dos usuários com as leituras que adquirem a trava.
+ * <p>
+ * Cria uma {@link Facade} em um diretório temporário com os usuários informados, dos quais os
+ * {@code populares} primeiros são amigos de {@code amigos} usuários cada um. Durante o tempo informado,
+ * as threads de escrita alternam {@code editarPerfil} de um popular com novas amizades dele (o convite e
+ * a confirmação), de modo que a lista de amigos formatada de cada popular é invalidada o tempo todo, e as
+ * threads de leitura executam {@code getAmigos}, {@code getAtributoUsuario} e {@code ehAmigo} sobre os
+ * populares. São mostrados a vazão e os percentis de latência das leituras e das escritas.
+ * <p>
+ * Com {@code versionadas} igual a {@code false}, as consultas adquirem a trava do usuário durante toda a
+ * leitura ({@code jackut.leituras.versionadas=false}); a comparação é feita executando a ferramenta uma
+ * vez em cada modo.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.BenchmarkLeituras [usuarios] [populares] [amigos] [leitoras] [escritoras] [segundos] [versionadas]},
+ * por exemplo {@code 200000 16 10000 6 2 10 false}.
+ */
+public class BenchmarkLeituras {
+    private static final String SENHA = "senha";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int populares = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int amigos = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int leitoras = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        int escritoras = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+        int segundos = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+        boolean versionadas = args.length <= 6 || Boolean.parseBoolean(args[6]);
+        System.setProperty("jackut.leituras.versionadas", Boolean.toString(versionadas));
+
+        File diretorio = Files.createTempDirectory("jackut-leituras").toFile();
+        Facade facade = new Facade(diretorio);
+        try {
+            facade.zerarSistema();
+            String[] sessoes = popular(facade, usuarios, populares, amigos);
+            facade.saveSistema();
+            medir(facade, sessoes, populares, amigos, leitoras, escritoras, segundos, versionadas);
+        } finally {
+            facade.encerrarSistema();
+            File[] arquivos = diretorio.listFiles();
+            if (arquivos != null) {
+                for (File arquivo : arquivos) {
+                    Files.deleteIfExists(arquivo.toPath());
+                }
+            }
+            Files.deleteIfExists(diretorio.toPath());
+        }
+    }
+
+    /**
+     * Cria os usuários, abre uma sessão para cada um e torna cada popular amigo dos {@code amigos}
+     * usuários seguintes a ele (em círculo, sem contar os populares).
+     */
+    private static String[] popular(Facade facade, int usuarios, int populares, int amigos) {
+        facade.criarUsuarios(IntStream.range(0, usuarios)
+                .mapToObj(i -> new String[]{"carga" + i, SENHA, "Carga " + i}));
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            sessoes[i] = facade.abrirSessao("carga" + i, SENHA);
+        }
+        for (int p = 0; p < populares; p++) {
+            facade.editarPerfil(sessoes[p], "cidade", "cidade" + p);
+            for (int a = 1; a <= amigos; a++) {
+                int amigo = comum(p * amigos + a, usuarios, populares);
+                if (!facade.ehAmigo("carga" + p, "carga" + amigo)) {
+                    facade.adicionarAmigo(sessoes[amigo], "carga" + p);
+                    facade.adicionarAmigo(sessoes[p], "carga" + amigo);
+                }
+            }
+        }
+        return sessoes;
+    }
+
+    private static int comum(long posicao, int usuarios, int populares) {
+        return populares + (int) (posicao % (usuarios - populares));
+    }
+
+    private static void medir(Facade facade, String[] sessoes, int populares, int amigos, int leitoras,
+                              int escritoras, int segundos, boolean versionadas) throws InterruptedException {
+        int usuarios = sessoes.length;
+        HistogramaLatencia leituras = new HistogramaLatencia();
+        HistogramaLatencia escritas = new HistogramaLatencia();
+        // Os próximos usuários comuns a fazer amizade com um popular, depois dos que já são amigos dele
+        AtomicInteger proximo = new AtomicInteger();
+        long inicioMedicao = System.nanoTime() + 1_000_000_000L;
+        long fim = inicioMedicao + segundos * 1_000_000_000L;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < leitoras + escritoras; t++) {
+            boolean escritora = t < escritoras;
+            SplittableRandom aleatorio = new SplittableRandom(t);
+            Thread thread = new Thread(() -> {
+                HistogramaLatencia locais = new HistogramaLatencia();
+                long agora;
+                while ((agora = System.nanoTime()) < fim) {
+                    int popular = aleatorio.nextInt(populares);
+                    int sorteio = aleatorio.nextInt(4);
+                    try {
+                        if (escritora && sorteio == 0) {
+                            facade.editarPerfil(sessoes[popular], "cidade", "cidade" + aleatorio.nextInt(100));
+                        } else if (escritora) {
+                            int novo = comum((long) populares * amigos + proximo.getAndIncrement(), usuarios, populares);
+                            facade.adicionarAmigo(sessoes[novo], "carga" + popular);
+                            facade.adicionarAmigo(sessoes[popular], "carga" + novo);
+                        } else if (sorteio <= 1) {
+                            facade.getAmigos("carga" + popular);
+                        } else if (sorteio == 2) {
+                            facade.getAtributoUsuario("carga" + popular, "cidade");
+                        } else {
+                            facade.ehAmigo("carga" + popular, "carga" + aleatorio.nextInt(usuarios));
+                        }
+                    } catch (JackutException e) {
+                        continue;
+                    }
+                    if (agora >= inicioMedicao) {
+                        locais.registrar(System.nanoTime() - agora);
+                    }
+                }
+                HistogramaLatencia total = escritora ? escritas : leituras;
+                synchronized (total) {
+                    total.adicionar(locais);
+                }
+            }, (escritora ? "escrita-" : "leitura-") + t);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("leituras %s%n", versionadas ? "versionadas (sem trava)" : "com a trava do usuário");
+        System.out.printf("%-9s %12s %9s %9s %9s %9s%n", "", "operações/s", "p50 µs", "p99 µs", "p99,9 µs", "máx ms");
+        imprimir("leituras", leituras, segundos);
+        imprimir("escritas", escritas, segundos);
+    }
+
+    private static void imprimir(String nome, HistogramaLatencia latencias, int segundos) {
+        System.out.printf("%-9s %,12.0f %9.1f %9.1f %9.1f %9.1f%n", nome, latencias.getQuantidade() / (double) segundos,
+                latencias.percentil(0.5) / 1e3, latencias.percentil(0.99) / 1e3, latencias.percentil(0.999) / 1e3,
+                latencias.getMaximo() / 1e6);
+    }
+}
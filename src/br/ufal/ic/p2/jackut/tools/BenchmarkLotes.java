@@ -0,0 +1,100 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.entities.ResultadoLote;
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.persistence.Journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Compara a vazão das operações em lote com a de uma chamada por item.
+ * <p>
+ * Cada cenário roda sobre um {@link Sistema} com journal em um diretório temporário, confirmando as
+ * alterações da mesma forma que a {@code Facade}: uma confirmação (fsync) por chamada no laço, e uma
+ * por lote nas operações em lote.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.BenchmarkLotes [usuarios] [destinatarios]}
+ */
+public class BenchmarkLotes {
+    private static Journal journalAtual;
+
+    public static void main(String[] args) throws IOException {
+        int quantidadeUsuarios = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int quantidadeDestinatarios = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        File diretorio = Files.createTempDirectory("jackut-lotes").toFile();
+
+        try {
+            // Criação de usuários
+            Sistema sistema = novoSistema(diretorio, "laco-criacao");
+            long inicio = System.nanoTime();
+            for (int i = 0; i < quantidadeUsuarios; i++) {
+                sistema.criarUsuario("usuario" + i, "senha", "Usuario " + i);
+                confirmar();
+            }
+            imprimir("criarUsuario (laço)", quantidadeUsuarios, inicio);
+
+            sistema = novoSistema(diretorio, "lote-criacao");
+            inicio = System.nanoTime();
+            ResultadoLote criacao = sistema.criarUsuarios(IntStream.range(0, quantidadeUsuarios)
+                    .mapToObj(i -> new String[]{"usuario" + i, "senha", "Usuario " + i}).iterator());
+            confirmar();
+            imprimir("criarUsuarios (lote)", criacao.getSucessos(), inicio);
+
+            // Envio de recados; o sistema do lote já tem os usuários criados
+            List<String> destinatarios = new ArrayList<>();
+            for (int i = 1; i <= quantidadeDestinatarios; i++) {
+                destinatarios.add("usuario" + i);
+            }
+            String id = sistema.abrirSessao("usuario0", "senha");
+
+            inicio = System.nanoTime();
+            for (String destinatario : destinatarios) {
+                sistema.enviarRecado(id, destinatario, "Recado para todos");
+                confirmar();
+            }
+            imprimir("enviarRecado (laço)", destinatarios.size(), inicio);
+
+            inicio = System.nanoTime();
+            ResultadoLote envio = sistema.enviarRecados(id, destinatarios, "Recado para todos");
+            confirmar();
+            imprimir("enviarRecados (lote)", envio.getSucessos(), inicio);
+
+            ResultadoLote comFalhas = sistema.enviarRecados(id, Arrays.asList("usuario1", "inexistente", "usuario0"),
+                    "Recado com falhas");
+            confirmar();
+            System.out.println("Lote com destinatários inválidos: " + comFalhas + " " + comFalhas.getFalhas());
+        } finally {
+            journalAtual.close();
+            for (File arquivo : diretorio.listFiles()) {
+                arquivo.delete();
+            }
+            diretorio.delete();
+        }
+    }
+
+    private static Sistema novoSistema(File diretorio, String nome) {
+        if (journalAtual != null) {
+            journalAtual.close();
+        }
+        Sistema sistema = new Sistema();
+        journalAtual = Journal.abrir(new File(diretorio, nome + ".journal"), 0, registro -> {
+        });
+        sistema.setJournal(journalAtual);
+        return sistema;
+    }
+
+    private static void confirmar() {
+        journalAtual.commit();
+    }
+
+    private static void imprimir(String cenario, int itens, long inicio) {
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("%-22s %,8d itens em %7.3f s (%,.0f itens/s)%n", cenario, itens, segundos, itens / segundos);
+    }
+}
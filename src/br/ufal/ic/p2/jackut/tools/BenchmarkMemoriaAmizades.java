@@ -0,0 +1,110 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.entities.ConjuntoIds;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compara o consumo de memória por aresta de amizade entre o layout antigo
+ * ({@code LinkedHashSet<String>} de logins por usuário) e o atual ({@link ConjuntoIds} por usuário).
+ * <p>
+ * Gera um grafo sintético em que cada usuário tem aproximadamente {@code grau} amigos e mede a
+ * diferença de heap ocupado antes e depois de montar apenas as estruturas de amizade. Os logins são
+ * criados antes da primeira medição, já que existem nos dois layouts.
+ * <p>
+ * Uso: {@code java -Xmx<N>g br.ufal.ic.p2.jackut.tools.BenchmarkMemoriaAmizades [usuarios] [grau] [antigo|novo]}
+ * <br>O layout antigo com 1.000.000 de usuários e grau 100 precisa de um heap de vários gigabytes.
+ */
+public class BenchmarkMemoriaAmizades {
+    private static final long SEMENTE = 42;
+
+    public static void main(String[] args) {
+        int quantidadeUsuarios = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int grau = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        boolean antigo = args.length > 2 && args[2].equals("antigo");
+
+        String[] logins = new String[quantidadeUsuarios];
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            logins[i] = "usuario" + i;
+        }
+
+        long antes = heapOcupado();
+        Object grafo = antigo ? montarAntigo(logins, grau) : montarNovo(quantidadeUsuarios, grau);
+        long depois = heapOcupado();
+
+        long arestas = contarArestas(grafo);
+        System.out.printf("layout %s: %d usuários, %d arestas, %.1f MB, %.1f bytes/aresta%n",
+                antigo ? "antigo" : "novo", quantidadeUsuarios, arestas,
+                (depois - antes) / 1e6, (double) (depois - antes) / arestas);
+    }
+
+    private static List<Set<String>> montarAntigo(String[] logins, int grau) {
+        List<Set<String>> amigos = new ArrayList<>(logins.length);
+        for (int i = 0; i < logins.length; i++) {
+            amigos.add(new LinkedHashSet<>());
+        }
+        gerarArestas(logins.length, grau, (a, b) -> {
+            amigos.get(a).add(logins[b]);
+            amigos.get(b).add(logins[a]);
+        });
+        return amigos;
+    }
+
+    private static ConjuntoIds[] montarNovo(int quantidadeUsuarios, int grau) {
+        ConjuntoIds[] amigos = new ConjuntoIds[quantidadeUsuarios];
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            amigos[i] = new ConjuntoIds();
+        }
+        gerarArestas(quantidadeUsuarios, grau, (a, b) -> {
+            amigos[a].adicionar(b);
+            amigos[b].adicionar(a);
+        });
+        return amigos;
+    }
+
+    /**
+     * Gera arestas aleatórias reproduzíveis; cada usuário inicia {@code grau / 2} amizades,
+     * resultando em um grau médio próximo de {@code grau}.
+     */
+    private static void gerarArestas(int quantidadeUsuarios, int grau, Aresta aresta) {
+        Random random = new Random(SEMENTE);
+        for (int a = 0; a < quantidadeUsuarios; a++) {
+            for (int j = 0; j < grau / 2; j++) {
+                int b = random.nextInt(quantidadeUsuarios);
+                if (b != a) {
+                    aresta.adicionar(a, b);
+                }
+            }
+        }
+    }
+
+    private static long contarArestas(Object grafo) {
+        long total = 0;
+        if (grafo instanceof ConjuntoIds[]) {
+            for (ConjuntoIds amigos : (ConjuntoIds[]) grafo) {
+                total += amigos.tamanho();
+            }
+        } else {
+            for (Object amigos : (List<?>) grafo) {
+                total += ((Set<?>) amigos).size();
+            }
+        }
+        return total;
+    }
+
+    private static long heapOcupado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private interface Aresta {
+        void adicionar(int a, int b);
+    }
+}
@@ -0,0 +1,69 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.entities.AtributosPerfil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compara o consumo de memória dos atributos de perfil entre o layout antigo
+ * ({@code HashMap<String, String>} por usuário) e o atual ({@link AtributosPerfil} por usuário).
+ * <p>
+ * Cada usuário recebe os mesmos atributos de um perfil típico: estado civil, cidade natal, idiomas,
+ * aniversário e filhos, com valores sorteados entre poucas opções, e uma descrição única. Nomes e
+ * valores são criados como strings novas para cada usuário, como chegam pelo {@code editarPerfil}, e
+ * a medição é a diferença de heap ocupado antes e depois de montar apenas os atributos.
+ * <p>
+ * Uso: {@code java -Xmx<N>g br.ufal.ic.p2.jackut.tools.BenchmarkMemoriaAtributos [usuarios] [antigo|novo]}
+ */
+public class BenchmarkMemoriaAtributos {
+    private static final long SEMENTE = 42;
+    private static final String[] ESTADOS_CIVIS = {"solteiro", "casado", "divorciado", "viúvo", "namorando"};
+    private static final String[] IDIOMAS = {"português", "português, inglês", "português, espanhol", "inglês"};
+
+    public static void main(String[] args) {
+        int quantidadeUsuarios = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        boolean antigo = args.length > 1 && args[1].equals("antigo");
+
+        long antes = heapOcupado();
+        Object[] perfis = new Object[quantidadeUsuarios];
+        Random random = new Random(SEMENTE);
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            if (antigo) {
+                Map<String, String> atributos = new HashMap<>();
+                gerarPerfil(i, random, atributos::put);
+                perfis[i] = atributos;
+            } else {
+                AtributosPerfil atributos = new AtributosPerfil();
+                gerarPerfil(i, random, atributos::definir);
+                perfis[i] = atributos;
+            }
+        }
+        long depois = heapOcupado();
+
+        System.out.printf("layout %s: %d usuários, %.1f MB, %.1f bytes/usuário%n", antigo ? "antigo" : "novo",
+                perfis.length, (depois - antes) / 1e6, (double) (depois - antes) / perfis.length);
+    }
+
+    private static void gerarPerfil(int usuario, Random random, Atributo atributo) {
+        atributo.definir(new String("estadoCivil"), new String(ESTADOS_CIVIS[random.nextInt(ESTADOS_CIVIS.length)]));
+        atributo.definir(new String("cidadeNatal"), "Cidade " + random.nextInt(1_000));
+        atributo.definir(new String("idiomas"), new String(IDIOMAS[random.nextInt(IDIOMAS.length)]));
+        atributo.definir(new String("aniversario"), (1 + random.nextInt(28)) + "/" + (1 + random.nextInt(12)));
+        atributo.definir(new String("filhos"), Integer.toString(random.nextInt(4)));
+        atributo.definir(new String("descricao"), "Olá, eu sou o usuário " + usuario);
+    }
+
+    private static long heapOcupado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private interface Atributo {
+        void definir(String nome, String valor);
+    }
+}
@@ -0,0 +1,136 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.exceptions.ConnectionException;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.metricas.HistogramaLatencia;
+import br.ufal.ic.p2.jackut.particoes.RoteadorJackut;
+import br.ufal.ic.p2.jackut.servidor.ServidorJackut;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mede como a vazão do Jackut escala com a quantidade de partições, todas no mesmo host.
+ * <p>
+ * Para cada quantidade de partições, inicia um processo do {@link ServidorJackut} por partição, cada
+ * um com seu diretório temporário, e usa um {@link RoteadorJackut} para criar os usuários e uma
+ * amizade entre cada usuário e o seguinte (a maioria entre partições diferentes). Em seguida, as
+ * threads executam durante o tempo informado 40% {@code getAtributoUsuario}, 30% {@code ehAmigo},
+ * 20% {@code enviarRecado} e 10% {@code adicionarAmigo}, este último com pares aleatórios.
+ * Convites repetidos e amizades já existentes são contados como recusados, não como erros.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.BenchmarkParticoes [particoes] [threads] [segundos] [usuarios]},
+ * por exemplo {@code 1,2,4 16 10 10000}.
+ */
+public class BenchmarkParticoes {
+    private static final String SENHA = "senha";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String[] listaParticoes = (args.length > 0 ? args[0] : "1,2,4").split(",");
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int usuarios = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+
+        System.out.printf("%9s %12s %10s %9s %9s %9s %7s%n", "partições", "operações/s", "p50 µs", "p99 µs", "máx µs",
+                "recusadas", "erros");
+        for (String quantidade : listaParticoes) {
+            List<ProcessoServidor> particoes = new ArrayList<>();
+            try {
+                List<InetSocketAddress> enderecos = new ArrayList<>();
+                for (int i = 0; i < Integer.parseInt(quantidade.trim()); i++) {
+                    ProcessoServidor particao = new ProcessoServidor("jackut.servidor.internas=true");
+                    particoes.add(particao);
+                    enderecos.add(particao.getEndereco());
+                }
+                try (RoteadorJackut roteador = new RoteadorJackut(enderecos)) {
+                    String[] sessoes = popular(roteador, usuarios);
+                    medir(roteador, enderecos.size(), sessoes, threads, segundos);
+                }
+            } finally {
+                for (ProcessoServidor particao : particoes) {
+                    particao.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cria os usuários, abre uma sessão para cada um e torna cada usuário amigo do seguinte.
+     */
+    private static String[] popular(RoteadorJackut roteador, int usuarios) {
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            roteador.criarUsuario("carga" + i, SENHA, "Carga " + i);
+            sessoes[i] = roteador.abrirSessao("carga" + i, SENHA);
+            roteador.editarPerfil(sessoes[i], "cidade", "cidade" + i % 100);
+        }
+        for (int i = 0; i + 1 < usuarios; i++) {
+            roteador.adicionarAmigo(sessoes[i], "carga" + (i + 1));
+            roteador.adicionarAmigo(sessoes[i + 1], "carga" + i);
+        }
+        return sessoes;
+    }
+
+    private static void medir(RoteadorJackut roteador, int quantidadeParticoes, String[] sessoes, int threads,
+                              int segundos) throws InterruptedException {
+        int usuarios = sessoes.length;
+        HistogramaLatencia latencias = new HistogramaLatencia();
+        AtomicLong recusadas = new AtomicLong();
+        AtomicLong erros = new AtomicLong();
+        long inicioMedicao = System.nanoTime() + 1_000_000_000L;
+        long fim = inicioMedicao + segundos * 1_000_000_000L;
+
+        List<Thread> trabalhadoras = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom aleatorio = new SplittableRandom(t);
+            Thread thread = new Thread(() -> {
+                HistogramaLatencia locais = new HistogramaLatencia();
+                long recusadasLocais = 0;
+                long errosLocais = 0;
+                long agora;
+                while ((agora = System.nanoTime()) < fim) {
+                    int usuario = aleatorio.nextInt(usuarios);
+                    int outro = aleatorio.nextInt(usuarios);
+                    int sorteio = aleatorio.nextInt(100);
+                    try {
+                        if (sorteio < 40) {
+                            roteador.getAtributoUsuario("carga" + usuario, "cidade");
+                        } else if (sorteio < 70) {
+                            roteador.ehAmigo("carga" + usuario, "carga" + outro);
+                        } else if (sorteio < 90) {
+                            roteador.enviarRecado(sessoes[usuario], "carga" + outro, "Recado de carga" + usuario);
+                        } else {
+                            roteador.adicionarAmigo(sessoes[usuario], "carga" + outro);
+                        }
+                    } catch (ConnectionException e) {
+                        errosLocais++;
+                        continue;
+                    } catch (JackutException e) {
+                        recusadasLocais++;
+                    }
+                    if (agora >= inicioMedicao) {
+                        locais.registrar(System.nanoTime() - agora);
+                    }
+                }
+                synchronized (latencias) {
+                    latencias.adicionar(locais);
+                }
+                recusadas.addAndGet(recusadasLocais);
+                erros.addAndGet(errosLocais);
+            }, "carga-" + t);
+            thread.start();
+            trabalhadoras.add(thread);
+        }
+        for (Thread thread : trabalhadoras) {
+            thread.join();
+        }
+
+        System.out.printf("%,9d %,12.0f %10.1f %9.1f %9.1f %,9d %,7d%n", quantidadeParticoes,
+                latencias.getQuantidade() / (double) segundos, latencias.percentil(0.5) / 1e3,
+                latencias.percentil(0.99) / 1e3, latencias.getMaximo() / 1e3, recusadas.get(), erros.get());
+    }
+}
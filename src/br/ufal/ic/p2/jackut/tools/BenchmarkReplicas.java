@@ -0,0 +1,199 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.exceptions.ConnectionException;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.metricas.HistogramaLatencia;
+import br.ufal.ic.p2.jackut.replicacao.ClienteReplicado;
+import br.ufal.ic.p2.jackut.servidor.ConexoesJackut;
+import br.ufal.ic.p2.jackut.servidor.ServidorJackut;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mede como a vazão de consultas do Jackut escala com a quantidade de réplicas, todas no mesmo host.
+ * <p>
+ * Inicia um processo do {@link ServidorJackut} como primário, publicando o journal, e um processo para
+ * cada réplica. Os usuários, com uma amizade entre cada um e o seguinte, são criados no primário. Em
+ * seguida, para cada quantidade de réplicas, as threads executam durante o tempo informado uma
+ * escrita para cada 20 consultas: {@code editarPerfil} no primário, e {@code getAtributoUsuario},
+ * {@code ehAmigo} e {@code getAmigos} distribuídas entre as réplicas (com zero réplicas, tudo vai para
+ * o primário). Ao mesmo tempo, o atraso de cada réplica é consultado a cada 50 ms, e o maior atraso
+ * observado é mostrado.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.BenchmarkReplicas [replicas] [threads] [segundos] [usuarios] [lerPropriasEscritas]},
+ * por exemplo {@code 0,1,2,4 16 10 10000 false}.
+ */
+public class BenchmarkReplicas {
+    private static final String SENHA = "senha";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String[] listaReplicas = (args.length > 0 ? args[0] : "0,1,2,4").split(",");
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int usuarios = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        boolean lerPropriasEscritas = args.length > 4 && Boolean.parseBoolean(args[4]);
+
+        int maximo = 0;
+        for (String quantidade : listaReplicas) {
+            maximo = Math.max(maximo, Integer.parseInt(quantidade.trim()));
+        }
+
+        List<ProcessoServidor> processos = new ArrayList<>();
+        try {
+            ProcessoServidor primario = new ProcessoServidor("jackut.replicacao.porta=0");
+            processos.add(primario);
+            InetSocketAddress replicacao = primario.getEnderecoReplicacao();
+            List<InetSocketAddress> replicas = new ArrayList<>();
+            for (int i = 0; i < maximo; i++) {
+                ProcessoServidor replica = new ProcessoServidor("jackut.replicacao.primario="
+                        + replicacao.getHostString() + ":" + replicacao.getPort());
+                processos.add(replica);
+                replicas.add(replica.getEndereco());
+            }
+
+            String[] sessoes = popular(primario.getEndereco(), usuarios);
+            aguardarReplicas(primario.getEndereco(), replicas);
+
+            System.out.printf("%8s %12s %10s %9s %9s %10s %11s%n", "réplicas", "consultas/s", "p50 µs", "p99 µs",
+                    "escritas/s", "erros", "atraso máx");
+            for (String quantidade : listaReplicas) {
+                List<InetSocketAddress> usadas = replicas.subList(0, Integer.parseInt(quantidade.trim()));
+                try (ClienteReplicado cliente = new ClienteReplicado(primario.getEndereco(), usadas, lerPropriasEscritas)) {
+                    medir(cliente, usadas, sessoes, threads, segundos);
+                }
+            }
+        } finally {
+            Collections.reverse(processos);
+            for (ProcessoServidor processo : processos) {
+                processo.close();
+            }
+        }
+    }
+
+    /**
+     * Cria os usuários no primário, abre uma sessão para cada um e torna cada usuário amigo do seguinte.
+     */
+    private static String[] popular(InetSocketAddress primario, int usuarios) {
+        String[] sessoes = new String[usuarios];
+        try (ClienteReplicado cliente = new ClienteReplicado(primario, Collections.emptyList(), false)) {
+            for (int i = 0; i < usuarios; i++) {
+                cliente.criarUsuario("carga" + i, SENHA, "Carga " + i);
+                sessoes[i] = cliente.abrirSessao("carga" + i, SENHA);
+                cliente.editarPerfil(sessoes[i], "cidade", "cidade" + i % 100);
+            }
+            for (int i = 0; i + 1 < usuarios; i++) {
+                cliente.adicionarAmigo(sessoes[i], "carga" + (i + 1));
+                cliente.adicionarAmigo(sessoes[i + 1], "carga" + i);
+            }
+        }
+        return sessoes;
+    }
+
+    /**
+     * Aguarda até que todas as réplicas tenham aplicado tudo o que foi escrito no primário.
+     */
+    private static void aguardarReplicas(InetSocketAddress primario, List<InetSocketAddress> replicas) {
+        try (ConexoesJackut conexoes = new ConexoesJackut(primario)) {
+            String lsn = conexoes.chamar("getUltimoLsn");
+            for (InetSocketAddress endereco : replicas) {
+                try (ConexoesJackut replica = new ConexoesJackut(endereco)) {
+                    while (Long.parseLong(replica.chamar("aguardarLsn", lsn)) < Long.parseLong(lsn)) {
+                        // Cada chamada aguarda até jackut.replicacao.espera milissegundos
+                    }
+                }
+            }
+        }
+    }
+
+    private static void medir(ClienteReplicado cliente, List<InetSocketAddress> replicas, String[] sessoes,
+                              int threads, int segundos) throws InterruptedException {
+        int usuarios = sessoes.length;
+        HistogramaLatencia latencias = new HistogramaLatencia();
+        AtomicLong escritas = new AtomicLong();
+        AtomicLong erros = new AtomicLong();
+        AtomicLong atrasoMaximo = new AtomicLong();
+        long inicioMedicao = System.nanoTime() + 1_000_000_000L;
+        long fim = inicioMedicao + segundos * 1_000_000_000L;
+
+        List<Thread> trabalhadoras = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom aleatorio = new SplittableRandom(t);
+            Thread thread = new Thread(() -> {
+                HistogramaLatencia locais = new HistogramaLatencia();
+                long escritasLocais = 0;
+                long errosLocais = 0;
+                long agora;
+                while ((agora = System.nanoTime()) < fim) {
+                    int usuario = aleatorio.nextInt(usuarios);
+                    int sorteio = aleatorio.nextInt(21);
+                    boolean escrita = sorteio == 0;
+                    try {
+                        if (escrita) {
+                            cliente.editarPerfil(sessoes[usuario], "cidade", "cidade" + aleatorio.nextInt(100));
+                        } else if (sorteio <= 8) {
+                            cliente.getAtributoUsuario("carga" + usuario, "cidade");
+                        } else if (sorteio <= 16) {
+                            cliente.ehAmigo("carga" + usuario, "carga" + aleatorio.nextInt(usuarios));
+                        } else {
+                            cliente.getAmigos("carga" + usuario);
+                        }
+                    } catch (JackutException e) {
+                        errosLocais++;
+                        continue;
+                    }
+                    if (agora < inicioMedicao) {
+                        continue;
+                    }
+                    if (escrita) {
+                        escritasLocais++;
+                    } else {
+                        locais.registrar(System.nanoTime() - agora);
+                    }
+                }
+                synchronized (latencias) {
+                    latencias.adicionar(locais);
+                }
+                escritas.addAndGet(escritasLocais);
+                erros.addAndGet(errosLocais);
+            }, "carga-" + t);
+            thread.start();
+            trabalhadoras.add(thread);
+        }
+
+        Thread observadora = new Thread(() -> observarAtraso(replicas, fim, atrasoMaximo), "atraso");
+        observadora.start();
+        for (Thread thread : trabalhadoras) {
+            thread.join();
+        }
+        observadora.join();
+
+        System.out.printf("%,8d %,12.0f %10.1f %9.1f %,9.0f %,10d %8d ms%n", replicas.size(),
+                latencias.getQuantidade() / (double) segundos, latencias.percentil(0.5) / 1e3,
+                latencias.percentil(0.99) / 1e3, escritas.get() / (double) segundos, erros.get(), atrasoMaximo.get());
+    }
+
+    private static void observarAtraso(List<InetSocketAddress> replicas, long fim, AtomicLong atrasoMaximo) {
+        List<ConexoesJackut> conexoes = new ArrayList<>();
+        for (InetSocketAddress replica : replicas) {
+            conexoes.add(new ConexoesJackut(replica));
+        }
+        try {
+            while (System.nanoTime() < fim) {
+                for (ConexoesJackut replica : conexoes) {
+                    atrasoMaximo.accumulateAndGet(Long.parseLong(replica.chamar("getAtrasoReplicacao")), Math::max);
+                }
+                Thread.sleep(50);
+            }
+        } catch (ConnectionException | InterruptedException e) {
+            // A medição termina de qualquer forma
+        } finally {
+            conexoes.forEach(ConexoesJackut::close);
+        }
+    }
+}
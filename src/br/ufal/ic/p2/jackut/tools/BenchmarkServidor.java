@@ -0,0 +1,247 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.metricas.HistogramaLatencia;
+import br.ufal.ic.p2.jackut.servidor.ServidorJackut;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Mede a vazão e a latência do {@link ServidorJackut} com quantidades crescentes de conexões
+ * simultâneas.
+ * <p>
+ * Todas as conexões são atendidas por uma única thread com um seletor NIO. Cada conexão abre uma
+ * sessão e mantém sempre a quantidade informada de comandos em andamento (pipelining): 45%
+ * {@code getAtributoUsuario}, 45% {@code ehAmigo} e 10% {@code editarPerfil}. A latência de cada
+ * comando vai do envio até a chegada da resposta. Sem endereço, o servidor é iniciado neste mesmo
+ * processo, sobre um sistema em um diretório temporário.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.BenchmarkServidor [conexoes] [segundos] [profundidade] [host:porta]},
+ * por exemplo {@code 10,100,1000,5000 5 8}.
+ */
+public class BenchmarkServidor {
+    private static final String SENHA = "senha";
+
+    public static void main(String[] args) throws IOException {
+        String[] listaConexoes = (args.length > 0 ? args[0] : "10,100,1000,5000").split(",");
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int profundidade = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        int maximo = 0;
+        for (String quantidade : listaConexoes) {
+            maximo = Math.max(maximo, Integer.parseInt(quantidade.trim()));
+        }
+
+        File diretorio = null;
+        Facade facade = null;
+        ServidorJackut servidor = null;
+        InetSocketAddress endereco;
+        if (args.length > 3) {
+            String[] partes = args[3].split(":");
+            endereco = new InetSocketAddress(partes[0], Integer.parseInt(partes[1]));
+        } else {
+            diretorio = Files.createTempDirectory("jackut-servidor").toFile();
+            facade = new Facade(diretorio);
+            servidor = new ServidorJackut(facade, 0);
+            endereco = new InetSocketAddress("127.0.0.1", servidor.getPorta());
+        }
+
+        try {
+            criarUsuarios(endereco, maximo);
+            System.out.printf("%9s %12s %10s %9s %9s %9s %7s%n", "conexões", "comandos/s", "p50 µs", "p99 µs", "p999 µs", "máx µs", "erros");
+            for (String quantidade : listaConexoes) {
+                medir(endereco, Integer.parseInt(quantidade.trim()), maximo, segundos, profundidade);
+            }
+        } finally {
+            if (servidor != null) {
+                servidor.close();
+                facade.encerrarSistema();
+                for (File arquivo : diretorio.listFiles()) {
+                    arquivo.delete();
+                }
+                diretorio.delete();
+            }
+        }
+    }
+
+    /**
+     * Cria os usuários usados pelas conexões, todos enviados de uma vez por uma única conexão.
+     */
+    private static void criarUsuarios(InetSocketAddress endereco, int quantidade) throws IOException {
+        try (SocketChannel canal = SocketChannel.open(endereco)) {
+            StringBuilder comandos = new StringBuilder();
+            for (int i = 0; i < quantidade; i++) {
+                comandos.append("criarUsuario login=carga").append(i).append(" senha=").append(SENHA)
+                        .append(" nome=\"Carga ").append(i).append("\"\n");
+            }
+            ByteBuffer envio = ByteBuffer.wrap(comandos.toString().getBytes(StandardCharsets.UTF_8));
+            ByteBuffer recebidos = ByteBuffer.allocate(64 * 1024);
+            int respostas = 0;
+            while (respostas < quantidade) {
+                if (envio.hasRemaining()) {
+                    canal.write(envio);
+                }
+                recebidos.clear();
+                if (canal.read(recebidos) < 0) {
+                    throw new IOException("Conexão fechada pelo servidor");
+                }
+                for (int i = 0; i < recebidos.position(); i++) {
+                    if (recebidos.get(i) == '\n') {
+                        respostas++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void medir(InetSocketAddress endereco, int quantidade, int usuarios, int segundos, int profundidade)
+            throws IOException {
+        Selector seletor = Selector.open();
+        List<Cliente> clientes = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            SocketChannel canal = SocketChannel.open(endereco);
+            canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            canal.configureBlocking(false);
+            Cliente cliente = new Cliente(canal, i, usuarios, profundidade);
+            canal.register(seletor, SelectionKey.OP_READ, cliente);
+            clientes.add(cliente);
+            cliente.iniciar();
+        }
+
+        HistogramaLatencia latencias = new HistogramaLatencia();
+        long agora = System.nanoTime();
+        long inicioMedicao = agora + 1_000_000_000L;
+        long fim = inicioMedicao + segundos * 1_000_000_000L;
+        while ((agora = System.nanoTime()) < fim) {
+            seletor.select(100);
+            Iterator<SelectionKey> prontas = seletor.selectedKeys().iterator();
+            while (prontas.hasNext()) {
+                SelectionKey chave = prontas.next();
+                prontas.remove();
+                Cliente cliente = (Cliente) chave.attachment();
+                if (chave.isReadable()) {
+                    cliente.receber(agora >= inicioMedicao ? latencias : null);
+                }
+                cliente.enviar(chave);
+            }
+        }
+
+        long erros = 0;
+        for (Cliente cliente : clientes) {
+            erros += cliente.erros;
+            cliente.canal.close();
+        }
+        seletor.close();
+        System.out.printf("%,9d %,12.0f %10.1f %9.1f %9.1f %9.1f %,7d%n", quantidade, latencias.getQuantidade() / (double) segundos,
+                latencias.percentil(0.5) / 1e3, latencias.percentil(0.99) / 1e3, latencias.percentil(0.999) / 1e3,
+                latencias.getMaximo() / 1e3, erros);
+    }
+
+    /**
+     * Uma conexão do cliente, com os instantes de envio dos comandos ainda sem resposta.
+     */
+    private static class Cliente {
+        private final SocketChannel canal;
+        private final int usuario;
+        private final int usuarios;
+        private final long[] enviados;
+        private final SplittableRandom sorteio;
+        private final ByteBuffer leitura = ByteBuffer.allocateDirect(16 * 1024);
+        private ByteBuffer pendente = ByteBuffer.allocate(0);
+        private int primeiro;
+        private int emAndamento;
+        private boolean inicioLinha = true;
+        private boolean sessaoAberta;
+        private long erros;
+
+        Cliente(SocketChannel canal, int indice, int usuarios, int profundidade) {
+            this.canal = canal;
+            this.usuario = indice % usuarios;
+            this.usuarios = usuarios;
+            this.enviados = new long[profundidade + 1];
+            this.sorteio = new SplittableRandom(indice);
+        }
+
+        void iniciar() throws IOException {
+            registrarEnvio();
+            escrever("id=abrirSessao login=carga" + usuario + " senha=" + SENHA + "\n");
+        }
+
+        void receber(HistogramaLatencia latencias) throws IOException {
+            leitura.clear();
+            if (canal.read(leitura) < 0) {
+                throw new IOException("Conexão fechada pelo servidor");
+            }
+            leitura.flip();
+            long agora = System.nanoTime();
+            while (leitura.hasRemaining()) {
+                byte b = leitura.get();
+                if (inicioLinha && b == 'E') {
+                    erros++;
+                }
+                inicioLinha = b == '\n';
+                if (inicioLinha) {
+                    long enviado = enviados[primeiro];
+                    primeiro = (primeiro + 1) % enviados.length;
+                    emAndamento--;
+                    sessaoAberta = true;
+                    if (latencias != null) {
+                        latencias.registrar(agora - enviado);
+                    }
+                }
+            }
+        }
+
+        void enviar(SelectionKey chave) throws IOException {
+            if (pendente.hasRemaining()) {
+                canal.write(pendente);
+            }
+            if (!pendente.hasRemaining() && sessaoAberta) {
+                StringBuilder comandos = new StringBuilder();
+                while (emAndamento < enviados.length - 1) {
+                    registrarEnvio();
+                    comandos.append(proximoComando());
+                }
+                if (comandos.length() > 0) {
+                    escrever(comandos.toString());
+                }
+            }
+            chave.interestOps(pendente.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        private void registrarEnvio() {
+            enviados[(primeiro + emAndamento) % enviados.length] = System.nanoTime();
+            emAndamento++;
+        }
+
+        private String proximoComando() {
+            int sorteado = sorteio.nextInt(100);
+            int outro = sorteio.nextInt(usuarios);
+            if (sorteado < 45) {
+                return "getAtributoUsuario login=carga" + outro + " atributo=nome\n";
+            }
+            if (sorteado < 90) {
+                return "ehAmigo login=carga" + usuario + " amigo=carga" + outro + "\n";
+            }
+            return "editarPerfil id=${id} atributo=status valor=" + outro + "\n";
+        }
+
+        private void escrever(String comandos) throws IOException {
+            pendente = ByteBuffer.wrap(comandos.getBytes(StandardCharsets.UTF_8));
+            canal.write(pendente);
+        }
+    }
+}
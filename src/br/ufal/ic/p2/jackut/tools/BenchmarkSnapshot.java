@@ -0,0 +1,153 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.metricas.HistogramaLatencia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Mede a latência das operações do Jackut enquanto checkpoints são gravados, para mostrar que a
+ * gravação do snapshot não bloqueia as operações.
+ * <p>
+ * Cria uma {@link Facade} em um diretório temporário, com os usuários informados, cada um com alguns
+ * atributos e amigo do seguinte, e grava o primeiro checkpoint. Em seguida, as threads executam
+ * durante o tempo informado uma mistura de {@code editarPerfil}, {@code enviarRecado},
+ * {@code getAtributoUsuario} e {@code getAmigos}, primeiro sem checkpoints e depois com uma thread
+ * chamando {@code saveSistema} sem parar. Para cada fase, são mostrados a vazão e os percentis de
+ * latência das operações, e, na segunda, a quantidade e a duração média dos checkpoints.
+ * <p>
+ * Com {@code incremental} igual a {@code false}, cada checkpoint grava o sistema inteiro
+ * ({@code jackut.checkpoint.incremental=false}).
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.BenchmarkSnapshot [usuarios] [threads] [segundos] [incremental]},
+ * por exemplo {@code 200000 8 10 false}.
+ */
+public class BenchmarkSnapshot {
+    private static final String SENHA = "senha";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        boolean incremental = args.length <= 3 || Boolean.parseBoolean(args[3]);
+        System.setProperty("jackut.checkpoint.incremental", Boolean.toString(incremental));
+
+        File diretorio = Files.createTempDirectory("jackut-snapshot").toFile();
+        Facade facade = new Facade(diretorio);
+        try {
+            facade.zerarSistema();
+            String[] sessoes = popular(facade, usuarios);
+            facade.saveSistema();
+
+            System.out.printf("%-15s %10s %9s %9s %10s %13s%n", "fase", "operações/s", "p50 µs", "p99 µs",
+                    "máx ms", "checkpoints");
+            medir(facade, sessoes, threads, segundos, false);
+            medir(facade, sessoes, threads, segundos, true);
+        } finally {
+            facade.encerrarSistema();
+            File[] arquivos = diretorio.listFiles();
+            if (arquivos != null) {
+                for (File arquivo : arquivos) {
+                    Files.deleteIfExists(arquivo.toPath());
+                }
+            }
+            Files.deleteIfExists(diretorio.toPath());
+        }
+    }
+
+    /**
+     * Cria os usuários, abre uma sessão para cada um, preenche alguns atributos e torna cada usuário
+     * amigo do seguinte.
+     */
+    private static String[] popular(Facade facade, int usuarios) {
+        facade.criarUsuarios(IntStream.range(0, usuarios)
+                .mapToObj(i -> new String[]{"carga" + i, SENHA, "Carga " + i}));
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            sessoes[i] = facade.abrirSessao("carga" + i, SENHA);
+            facade.editarPerfil(sessoes[i], "cidade", "cidade" + i % 100);
+            facade.editarPerfil(sessoes[i], "descricao", "Usuário de carga número " + i);
+        }
+        for (int i = 0; i + 1 < usuarios; i++) {
+            facade.adicionarAmigo(sessoes[i], "carga" + (i + 1));
+            facade.adicionarAmigo(sessoes[i + 1], "carga" + i);
+        }
+        return sessoes;
+    }
+
+    private static void medir(Facade facade, String[] sessoes, int threads, int segundos, boolean checkpoints)
+            throws InterruptedException {
+        int usuarios = sessoes.length;
+        HistogramaLatencia latencias = new HistogramaLatencia();
+        long inicioMedicao = System.nanoTime() + 1_000_000_000L;
+        long fim = inicioMedicao + segundos * 1_000_000_000L;
+
+        List<Thread> trabalhadoras = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom aleatorio = new SplittableRandom(t);
+            Thread thread = new Thread(() -> {
+                HistogramaLatencia locais = new HistogramaLatencia();
+                long agora;
+                while ((agora = System.nanoTime()) < fim) {
+                    int usuario = aleatorio.nextInt(usuarios);
+                    int sorteio = aleatorio.nextInt(10);
+                    try {
+                        if (sorteio == 0) {
+                            facade.editarPerfil(sessoes[usuario], "cidade", "cidade" + aleatorio.nextInt(100));
+                        } else if (sorteio == 1) {
+                            facade.enviarRecado(sessoes[usuario], "carga" + aleatorio.nextInt(usuarios), "oi");
+                        } else if (sorteio <= 5) {
+                            facade.getAtributoUsuario("carga" + usuario, "cidade");
+                        } else {
+                            facade.getAmigos("carga" + usuario);
+                        }
+                    } catch (JackutException e) {
+                        continue;
+                    }
+                    if (agora >= inicioMedicao) {
+                        locais.registrar(System.nanoTime() - agora);
+                    }
+                }
+                synchronized (latencias) {
+                    latencias.adicionar(locais);
+                }
+            }, "carga-" + t);
+            thread.start();
+            trabalhadoras.add(thread);
+        }
+
+        AtomicBoolean parar = new AtomicBoolean();
+        long[] gravados = new long[2];
+        Thread gravadora = new Thread(() -> {
+            while (!parar.get()) {
+                long inicio = System.nanoTime();
+                facade.saveSistema();
+                gravados[0]++;
+                gravados[1] += System.nanoTime() - inicio;
+            }
+        }, "checkpoints");
+        if (checkpoints) {
+            gravadora.start();
+        }
+        for (Thread thread : trabalhadoras) {
+            thread.join();
+        }
+        parar.set(true);
+        if (checkpoints) {
+            gravadora.join();
+        }
+
+        System.out.printf("%-15s %,10.0f %9.1f %9.1f %10.1f %13s%n", checkpoints ? "com checkpoints" : "sem checkpoints",
+                latencias.getQuantidade() / (double) segundos, latencias.percentil(0.5) / 1e3,
+                latencias.percentil(0.99) / 1e3, latencias.getMaximo() / 1e6,
+                checkpoints ? String.format("%d (%.0f ms)", gravados[0], gravados[1] / 1e6 / Math.max(1, gravados[0])) : "-");
+    }
+}
@@ -0,0 +1,258 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.exceptions.ScriptException;
+import br.ufal.ic.p2.jackut.metricas.HistogramaLatencia;
+import br.ufal.ic.p2.jackut.scripts.Comando;
+import br.ufal.ic.p2.jackut.scripts.ExecutorScript;
+import br.ufal.ic.p2.jackut.scripts.LeitorScript;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Teste de capacidade que reproduz os scripts de aceitação em paralelo, por muitos usuários virtuais.
+ * <p>
+ * Os scripts de {@code tests/} são agrupados em fluxos pelo prefixo do nome ({@code us3_1.txt} e
+ * {@code us3_2.txt} formam o fluxo {@code us3}), e cada fluxo vira um modelo: os logins criados pelo
+ * script ganham um sufixo diferente em cada execução, inclusive dentro dos valores esperados, então
+ * milhares de execuções do mesmo fluxo convivem no mesmo sistema sem conflitos e as verificações
+ * {@code expect} continuam valendo. Os comandos que afetam o sistema inteiro ({@code zerarSistema},
+ * {@code encerrarSistema} e {@code quit}) são ignorados.
+ * <p>
+ * As execuções são distribuídas entre as threads e cada uma sorteia o seu fluxo de acordo com os pesos
+ * da mistura de operações, por exemplo {@code us3=3,us4=1}. Ao final são impressas a vazão e a latência
+ * (p50, p99 e p999) de cada comando, além da quantidade de verificações que falharam. O sistema roda
+ * em um diretório temporário, com journal, como em produção.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.GeradorCarga [threads] [execucoes] [mistura] [aquecimento] [diretorioScripts]}
+ */
+public class GeradorCarga {
+    private static final Set<String> IGNORADOS = Set.of("zerarSistema", "encerrarSistema", "quit");
+    private static final int ERROS_IMPRESSOS = 5;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 4;
+        int execucoes = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        String mistura = args.length > 2 && !args[2].isEmpty() ? args[2] : null;
+        int aquecimento = args.length > 3 ? Integer.parseInt(args[3]) : execucoes / 10;
+        File scripts = new File(args.length > 4 ? args[4] : "tests");
+
+        Map<String, Fluxo> fluxos = lerFluxos(scripts);
+        List<Fluxo> sorteio = montarSorteio(fluxos, mistura);
+        File diretorio = Files.createTempDirectory("jackut-carga").toFile();
+
+        try {
+            Facade facade = new Facade(diretorio);
+
+            if (aquecimento > 0) {
+                executar(facade, sorteio, threads, aquecimento, "a");
+            }
+            long inicio = System.nanoTime();
+            Medicao medicao = executar(facade, sorteio, threads, execucoes, "u");
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+
+            System.out.printf("%,d execuções de %s em %.2f s com %d threads%n", execucoes, descreverMistura(sorteio), segundos, threads);
+            imprimir(medicao, segundos);
+
+            inicio = System.nanoTime();
+            facade.encerrarSistema();
+            System.out.printf("encerrarSistema: %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+        } finally {
+            File[] arquivos = diretorio.listFiles();
+            if (arquivos != null) {
+                for (File arquivo : arquivos) {
+                    arquivo.delete();
+                }
+            }
+            diretorio.delete();
+        }
+    }
+
+    private static Medicao executar(Facade facade, List<Fluxo> sorteio, int threads, int execucoes, String prefixo)
+            throws InterruptedException {
+        AtomicInteger proxima = new AtomicInteger();
+        Medicao total = new Medicao();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                Medicao medicao = new Medicao();
+                for (int i = proxima.getAndIncrement(); i < execucoes; i = proxima.getAndIncrement()) {
+                    // O fluxo depende só do número da execução, então a carga é a mesma a cada rodada
+                    Fluxo fluxo = sorteio.get(new SplittableRandom(i).nextInt(sorteio.size()));
+                    List<Comando> comandos = fluxo.instanciar("_" + prefixo + i);
+                    ExecutorScript script = new ExecutorScript(facade);
+                    for (Comando comando : comandos) {
+                        long inicio = System.nanoTime();
+                        try {
+                            script.executar(comando);
+                            medicao.registrar(comando.getMetodo(), System.nanoTime() - inicio, null);
+                        } catch (ScriptException e) {
+                            medicao.registrar(comando.getMetodo(), System.nanoTime() - inicio, e.getMessage());
+                        }
+                    }
+                }
+                synchronized (total) {
+                    total.adicionar(medicao);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return total;
+    }
+
+    private static Map<String, Fluxo> lerFluxos(File diretorio) throws IOException {
+        File[] arquivos = diretorio.listFiles((pasta, nome) -> nome.endsWith(".txt"));
+        if (arquivos == null || arquivos.length == 0) {
+            throw new IOException("Nenhum script encontrado em " + diretorio);
+        }
+        Arrays.sort(arquivos);
+
+        Map<String, List<Comando>> comandos = new TreeMap<>();
+        for (File arquivo : arquivos) {
+            String nome = arquivo.getName().replaceFirst("(_[^_]*)?\\.txt$", "");
+            List<Comando> doFluxo = comandos.computeIfAbsent(nome, chave -> new ArrayList<>());
+            for (Comando comando : LeitorScript.ler(arquivo)) {
+                if (!IGNORADOS.contains(comando.getMetodo())) {
+                    doFluxo.add(comando);
+                }
+            }
+        }
+
+        Map<String, Fluxo> fluxos = new TreeMap<>();
+        comandos.forEach((nome, lista) -> fluxos.put(nome, new Fluxo(nome, lista)));
+        return fluxos;
+    }
+
+    /**
+     * Monta a lista da qual os fluxos são sorteados, com cada fluxo repetido de acordo com o seu peso.
+     */
+    private static List<Fluxo> montarSorteio(Map<String, Fluxo> fluxos, String mistura) {
+        List<Fluxo> sorteio = new ArrayList<>();
+        if (mistura == null) {
+            sorteio.addAll(fluxos.values());
+            return sorteio;
+        }
+        for (String item : mistura.split(",")) {
+            String[] partes = item.split("=");
+            Fluxo fluxo = fluxos.get(partes[0].trim());
+            if (fluxo == null) {
+                throw new IllegalArgumentException("Fluxo desconhecido: " + partes[0] + " (disponíveis: " + fluxos.keySet() + ")");
+            }
+            int peso = partes.length > 1 ? Integer.parseInt(partes[1].trim()) : 1;
+            for (int i = 0; i < peso; i++) {
+                sorteio.add(fluxo);
+            }
+        }
+        return sorteio;
+    }
+
+    private static String descreverMistura(List<Fluxo> sorteio) {
+        Map<String, Integer> pesos = new TreeMap<>();
+        for (Fluxo fluxo : sorteio) {
+            pesos.merge(fluxo.nome, 1, Integer::sum);
+        }
+        return pesos.toString();
+    }
+
+    private static void imprimir(Medicao medicao, double segundos) {
+        System.out.printf("%-20s %10s %10s %9s %9s %9s %9s %7s%n",
+                "comando", "qtde", "ops/s", "p50 µs", "p99 µs", "p999 µs", "máx µs", "falhas");
+        HistogramaLatencia todos = new HistogramaLatencia();
+        long falhas = 0;
+        for (Map.Entry<String, HistogramaLatencia> entrada : medicao.latencias.entrySet()) {
+            HistogramaLatencia h = entrada.getValue();
+            long falhasComando = medicao.falhas.getOrDefault(entrada.getKey(), 0L);
+            imprimirLinha(entrada.getKey(), h, falhasComando, segundos);
+            todos.adicionar(h);
+            falhas += falhasComando;
+        }
+        imprimirLinha("total", todos, falhas, segundos);
+        for (String erro : medicao.exemplosErros) {
+            System.out.println("  " + erro);
+        }
+    }
+
+    private static void imprimirLinha(String nome, HistogramaLatencia h, long falhas, double segundos) {
+        System.out.printf("%-20s %,10d %,10.0f %9.1f %9.1f %9.1f %9.1f %,7d%n", nome, h.getQuantidade(),
+                h.getQuantidade() / segundos, h.percentil(0.5) / 1e3, h.percentil(0.99) / 1e3,
+                h.percentil(0.999) / 1e3, h.getMaximo() / 1e3, falhas);
+    }
+
+    /**
+     * Os comandos de um fluxo, com os logins criados por ele prontos para receber o sufixo de cada execução.
+     */
+    private static class Fluxo {
+        private final String nome;
+        private final List<Comando> comandos;
+        private final Pattern logins;
+
+        Fluxo(String nome, List<Comando> comandos) {
+            this.nome = nome;
+            this.comandos = comandos;
+
+            StringJoiner alternativas = new StringJoiner("|", "(?<![\\w])(", ")(?![\\w])");
+            Set<String> vistos = new HashSet<>();
+            for (Comando comando : comandos) {
+                if (comando.getMetodo().equals("criarUsuario") && !comando.getValores().isEmpty()) {
+                    String login = comando.getValores().get(0);
+                    if (login != null && !login.isEmpty() && vistos.add(login)) {
+                        alternativas.add(Pattern.quote(login));
+                    }
+                }
+            }
+            this.logins = vistos.isEmpty() ? null : Pattern.compile(alternativas.toString());
+        }
+
+        List<Comando> instanciar(String sufixo) {
+            if (logins == null) {
+                return comandos;
+            }
+            String substituicao = "$1" + Matcher.quoteReplacement(sufixo);
+            List<Comando> instancia = new ArrayList<>(comandos.size());
+            for (Comando comando : comandos) {
+                instancia.add(comando.transformar(valor -> logins.matcher(valor).replaceAll(substituicao)));
+            }
+            return instancia;
+        }
+    }
+
+    /**
+     * Latências e falhas por comando, registradas por uma thread e somadas ao final.
+     */
+    private static class Medicao {
+        private final Map<String, HistogramaLatencia> latencias = new TreeMap<>();
+        private final Map<String, Long> falhas = new TreeMap<>();
+        private final List<String> exemplosErros = new ArrayList<>();
+
+        void registrar(String comando, long nanos, String erro) {
+            latencias.computeIfAbsent(comando, chave -> new HistogramaLatencia()).registrar(nanos);
+            if (erro != null) {
+                falhas.merge(comando, 1L, Long::sum);
+                if (exemplosErros.size() < ERROS_IMPRESSOS) {
+                    exemplosErros.add(erro);
+                }
+            }
+        }
+
+        void adicionar(Medicao outra) {
+            outra.latencias.forEach((comando, h) ->
+                    latencias.computeIfAbsent(comando, chave -> new HistogramaLatencia()).adicionar(h));
+            outra.falhas.forEach((comando, n) -> falhas.merge(comando, n, Long::sum));
+            for (String erro : outra.exemplosErros) {
+                if (exemplosErros.size() < ERROS_IMPRESSOS) {
+                    exemplosErros.add(erro);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.servidor.ServidorJackut;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Um processo do {@link ServidorJackut} em uma porta livre, com os arquivos em um diretório temporário,
+ * usado pelos benchmarks com vários servidores no mesmo host.
+ */
+class ProcessoServidor implements AutoCloseable {
+    private static final String ACEITANDO = "Jackut aceitando conexões na porta ";
+    private static final String PUBLICANDO = "Jackut publicando o journal na porta ";
+
+    private final File diretorio;
+    private final Process processo;
+    private final InetSocketAddress endereco;
+    private InetSocketAddress enderecoReplicacao;
+
+    /**
+     * Inicia o servidor e aguarda até que ele aceite conexões.
+     *
+     * @param propriedades Propriedades do sistema passadas ao servidor, como {@code jackut.replicacao.porta=0}.
+     * @throws IOException Se o processo não puder ser iniciado ou terminar antes de aceitar conexões.
+     */
+    ProcessoServidor(String... propriedades) throws IOException {
+        diretorio = Files.createTempDirectory("jackut-servidor").toFile();
+        List<String> comando = new ArrayList<>();
+        comando.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        comando.add("-Dfile.encoding=UTF-8");
+        for (String propriedade : propriedades) {
+            comando.add("-D" + propriedade);
+        }
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(ServidorJackut.class.getName());
+        comando.add("0");
+        comando.add(diretorio.getPath());
+        processo = new ProcessBuilder(comando).redirectErrorStream(true).start();
+
+        // O servidor escolhe portas livres e as anuncia na saída antes de começar a atender
+        BufferedReader saida = new BufferedReader(new InputStreamReader(processo.getInputStream(), StandardCharsets.UTF_8));
+        String linha;
+        while ((linha = saida.readLine()) != null && !linha.startsWith(ACEITANDO)) {
+            if (linha.startsWith(PUBLICANDO)) {
+                enderecoReplicacao = new InetSocketAddress("127.0.0.1", porta(linha));
+            }
+        }
+        if (linha == null) {
+            processo.destroyForcibly();
+            throw new IOException("O servidor não iniciou");
+        }
+        endereco = new InetSocketAddress("127.0.0.1", porta(linha));
+    }
+
+    /**
+     * Obtém o endereço em que o servidor aceita comandos.
+     *
+     * @return O endereço.
+     */
+    InetSocketAddress getEndereco() {
+        return endereco;
+    }
+
+    /**
+     * Obtém o endereço em que o servidor publica o journal para réplicas.
+     *
+     * @return O endereço, ou null se o servidor não publicar o journal.
+     */
+    InetSocketAddress getEnderecoReplicacao() {
+        return enderecoReplicacao;
+    }
+
+    /**
+     * Encerra o servidor (que salva o sistema ao sair) e apaga o diretório. Se a thread for interrompida
+     * durante a espera, o processo é terminado à força e a interrupção é preservada.
+     */
+    @Override
+    public void close() {
+        processo.destroy();
+        try {
+            processo.waitFor();
+        } catch (InterruptedException e) {
+            processo.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        for (File arquivo : diretorio.listFiles()) {
+            arquivo.delete();
+        }
+        diretorio.delete();
+    }
+
+    private static int porta(String linha) {
+        return Integer.parseInt(linha.substring(linha.lastIndexOf(' ') + 1));
+    }
+}
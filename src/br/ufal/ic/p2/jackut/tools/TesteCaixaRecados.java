@@ -0,0 +1,61 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.recados.CaixaRecados;
+
+/**
+ * Teste da caixa de recados de uma conta popular cujo dono não lê os recados.
+ * <p>
+ * Vários remetentes enviam recados para o mesmo destinatário, que só começa a ler depois de todos
+ * terem sido enviados. O heap ocupado e a quantidade de segmentos em disco são impressos durante o
+ * envio e a leitura; ao final, verifica que os recados foram lidos na ordem em que foram enviados.
+ * <p>
+ * Uso: {@code java -Xmx64m br.ufal.ic.p2.jackut.tools.TesteCaixaRecados [recados] [tamanhoRecado]}
+ * <br>Termina com código 1 se algum recado for lido fora de ordem.
+ */
+public class TesteCaixaRecados {
+    private static final int REMETENTES = 100;
+
+    public static void main(String[] args) {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int tamanhoRecado = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Sistema sistema = new Sistema();
+        sistema.criarUsuario("popular", "senha", "Conta popular");
+        String[] remetentes = new String[REMETENTES];
+        for (int i = 0; i < REMETENTES; i++) {
+            sistema.criarUsuario("fa" + i, "senha", "Fã " + i);
+            remetentes[i] = sistema.abrirSessao("fa" + i, "senha");
+        }
+        String leitor = sistema.abrirSessao("popular", "senha");
+        String enchimento = "x".repeat(tamanhoRecado);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < quantidade; i++) {
+            sistema.enviarRecado(remetentes[i % REMETENTES], "popular", i + ":" + enchimento);
+            if ((i + 1) % (quantidade / 5) == 0) {
+                imprimir("enviados", i + 1);
+            }
+        }
+
+        for (int i = 0; i < quantidade; i++) {
+            String recado = sistema.lerRecado(leitor);
+            if (!recado.startsWith(i + ":")) {
+                System.out.println("Recado " + i + " fora de ordem: " + recado.substring(0, recado.indexOf(':')));
+                System.exit(1);
+            }
+            if ((i + 1) % (quantidade / 5) == 0) {
+                imprimir("lidos", i + 1);
+            }
+        }
+        System.out.printf("%,d recados enviados e lidos em ordem em %.2f s%n", quantidade,
+                (System.nanoTime() - inicio) / 1e9);
+    }
+
+    private static void imprimir(String etapa, int quantidade) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.printf("%,d %s, heap %.1f MB, %d segmentos em disco%n", quantidade, etapa,
+                (runtime.totalMemory() - runtime.freeMemory()) / 1e6, CaixaRecados.getSegmentosEmDisco());
+    }
+}
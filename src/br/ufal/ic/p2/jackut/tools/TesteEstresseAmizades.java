@@ -0,0 +1,113 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.entities.Usuario;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste de estresse do modo concorrente do {@link Sistema}.
+ * <p>
+ * Várias threads enviam convites de amizade, recados e consultas entre um grupo pequeno de usuários,
+ * de forma que as mesmas listras de trava sejam disputadas o tempo todo, inclusive em ordens opostas
+ * ({@code adicionarAmigo(a, b)} e {@code adicionarAmigo(b, a)} ao mesmo tempo). Ao final, verifica
+ * que todas as amizades são simétricas e que nenhum convite pendente sobrou entre amigos.
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.tools.TesteEstresseAmizades [threads] [usuarios] [operacoesPorThread]}
+ * <br>Termina com código 1 se alguma inconsistência for encontrada e 2 em caso de deadlock.
+ */
+public class TesteEstresseAmizades {
+    private static final long TEMPO_LIMITE_MINUTOS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        int quantidadeUsuarios = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int operacoes = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+
+        Sistema sistema = new Sistema();
+        String[] sessoes = new String[quantidadeUsuarios];
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            sistema.criarUsuario("usuario" + i, "senha", "Usuario " + i);
+            sessoes[i] = sistema.abrirSessao("usuario" + i, "senha");
+        }
+
+        AtomicLong concluidas = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long inicio = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < operacoes; i++) {
+                    int indice = random.nextInt(quantidadeUsuarios);
+                    int indiceOutro = random.nextInt(quantidadeUsuarios);
+                    if (indice == indiceOutro) {
+                        continue;
+                    }
+                    String login = "usuario" + indice;
+                    String outro = "usuario" + indiceOutro;
+                    try {
+                        int operacao = random.nextInt(10);
+                        if (operacao < 6) {
+                            sistema.adicionarAmigo(sessoes[indice], outro);
+                        } else if (operacao < 8) {
+                            sistema.enviarRecado(sessoes[indice], outro, "Recado de " + login);
+                        } else if (operacao < 9) {
+                            sistema.lerRecado(sessoes[indice]);
+                        } else {
+                            sistema.ehAmigo(login, outro);
+                        }
+                    } catch (JackutException e) {
+                        // convites repetidos e caixas vazias fazem parte da carga
+                    }
+                    concluidas.incrementAndGet();
+                }
+            });
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(TEMPO_LIMITE_MINUTOS, TimeUnit.MINUTES)) {
+            long[] bloqueadas = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+            System.out.println("Tempo limite esgotado; threads em deadlock: "
+                    + (bloqueadas == null ? 0 : bloqueadas.length));
+            System.exit(2);
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        List<String> inconsistencias = verificar(sistema);
+        System.out.printf("%d threads, %d usuários, %d operações em %.2f s (%.0f op/s)%n",
+                threads, quantidadeUsuarios, concluidas.get(), segundos, concluidas.get() / segundos);
+
+        if (!inconsistencias.isEmpty()) {
+            inconsistencias.stream().limit(20).forEach(System.out::println);
+            System.out.println(inconsistencias.size() + " inconsistências encontradas.");
+            System.exit(1);
+        }
+        System.out.println("Todas as amizades são simétricas.");
+    }
+
+    private static List<String> verificar(Sistema sistema) {
+        List<Usuario> usuarios = new ArrayList<>(sistema.getUsuarios());
+
+        List<String> inconsistencias = new ArrayList<>();
+        long amizades = 0;
+        for (Usuario usuario : usuarios) {
+            for (int amigo : usuario.getAmigos().toArray()) {
+                amizades++;
+                Usuario outro = usuarios.get(amigo);
+                if (!outro.getAmigos().contem(usuario.getId())) {
+                    inconsistencias.add(usuario.getLogin() + " tem " + outro.getLogin() + " como amigo, mas não o contrário");
+                }
+                if (usuario.getConvitesAmizade().contem(amigo)) {
+                    inconsistencias.add(usuario.getLogin() + " ainda tem convite pendente do amigo " + outro.getLogin());
+                }
+            }
+        }
+        System.out.println(amizades / 2 + " amizades verificadas.");
+        return inconsistencias;
+    }
+}
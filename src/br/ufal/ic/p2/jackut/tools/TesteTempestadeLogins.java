@@ -0,0 +1,64 @@
+package br.ufal.ic.p2.jackut.tools;
+
+import br.ufal.ic.p2.jackut.entities.Sistema;
+import br.ufal.ic.p2.jackut.exceptions.UserNotFoundException;
+import br.ufal.ic.p2.jackut.sessoes.GerenciadorSessoes;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste de uma rajada contínua de logins, que verifica se a memória ocupada pelas sessões se mantém
+ * estável.
+ * <p>
+ * Várias threads abrem sessões sem parar durante o tempo informado, enquanto a quantidade de sessões
+ * e o heap ocupado são impressos a cada segundo. Com expiração por ociosidade curta, os dois valores
+ * devem estabilizar em vez de crescer com o número de logins. Os limites de sessão são lidos das
+ * propriedades descritas em {@link GerenciadorSessoes}.
+ * <p>
+ * Uso: {@code java -Djackut.sessao.ociosidade=2000 br.ufal.ic.p2.jackut.tools.TesteTempestadeLogins [threads] [segundos]}
+ */
+public class TesteTempestadeLogins {
+    private static final int USUARIOS = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        Sistema sistema = new Sistema();
+        for (int i = 0; i < USUARIOS; i++) {
+            sistema.criarUsuario("usuario" + i, "senha", "Usuario " + i);
+        }
+
+        AtomicLong logins = new AtomicLong();
+        AtomicLong perdidas = new AtomicLong();
+        long fim = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int inicio = t;
+            executor.execute(() -> {
+                for (int i = inicio; System.nanoTime() < fim; i += threads) {
+                    String id = sistema.abrirSessao("usuario" + (i % USUARIOS), "senha");
+                    try {
+                        sistema.editarPerfil(id, "ultimoLogin", String.valueOf(i));
+                    } catch (UserNotFoundException e) {
+                        // a sessão pode expirar ou ser despejada antes do uso se o limite for atingido
+                        perdidas.incrementAndGet();
+                    }
+                    logins.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+
+        Runtime runtime = Runtime.getRuntime();
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            System.out.printf("%,d logins, %,d sessões abertas, heap %.1f MB%n", logins.get(),
+                    sistema.getQuantidadeSessoes(), (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+        }
+        System.out.printf("%,d logins em %d s (%.0f logins/s), %,d sessões perdidas antes do uso%n",
+                logins.get(), segundos, logins.get() / (double) segundos, perdidas.get());
+    }
+}
@@ -0,0 +1,104 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.migracao.ResultadoImportacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exportação de uma rede e importação dela em um sistema vazio, nos dois formatos.
+ */
+class TesteMigracao {
+
+    @TempDir
+    File diretorio;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"rede.jsonl", "rede.csv"})
+    void importaARedeExportada(String nome) {
+        File origem = new File(diretorio, "origem");
+        File destino = new File(diretorio, "destino");
+        assertTrue(origem.mkdir() && destino.mkdir());
+        String arquivo = new File(diretorio, nome).getPath();
+
+        Facade exportadora = new Facade(origem);
+        exportadora.criarUsuario("ana", "senha-ana", "Ana");
+        exportadora.criarUsuario("bia", "senha-bia", "Bia, \"a\" segunda");
+        exportadora.criarUsuario("caio", "senha-caio", "Caio");
+        String ana = exportadora.abrirSessao("ana", "senha-ana");
+        String bia = exportadora.abrirSessao("bia", "senha-bia");
+        String caio = exportadora.abrirSessao("caio", "senha-caio");
+        exportadora.editarPerfil(ana, "cidade", "Maceió\ncentro");
+        exportadora.adicionarAmigo(ana, "bia");
+        exportadora.adicionarAmigo(bia, "ana");
+        exportadora.adicionarAmigo(caio, "ana");
+        exportadora.enviarRecado(bia, "caio", "oi, caio");
+        assertEquals(3, exportadora.exportarRede(arquivo));
+        exportadora.encerrarSistema();
+
+        Facade importadora = new Facade(destino);
+        ResultadoImportacao resultado = importadora.importarRede(arquivo);
+        assertEquals(3, resultado.getUsuarios());
+        assertEquals(0, resultado.getQuantidadeFalhas(), resultado.toString());
+        verificarImportada(importadora);
+
+        // A importação é durável mesmo sem encerrar o sistema
+        Facade recuperada = new Facade(destino);
+        verificarImportada(recuperada);
+
+        // O convite pendente de caio é confirmado quando ana o aceita
+        recuperada.adicionarAmigo(recuperada.abrirSessao("ana", "senha-ana"), "caio");
+        assertTrue(recuperada.ehAmigo("caio", "ana"));
+        recuperada.encerrarSistema();
+    }
+
+    @Test
+    void recusaAmizadesDeUmLadoSo() throws IOException {
+        File arquivo = new File(diretorio, "rede.jsonl");
+        Files.write(arquivo.toPath(), List.of(
+                "{\"login\":\"ana\",\"senha\":\"s\",\"nome\":\"Ana\",\"amigos\":[\"bia\"]}",
+                "{\"login\":\"bia\",\"senha\":\"s\",\"nome\":\"Bia\"}",
+                "{\"login\":\"caio\",\"senha\":\"s\",\"nome\":\"Caio\",\"amigos\":[\"dani\"],\"convites\":[\"dani\"]}",
+                "{\"login\":\"dani\",\"senha\":\"s\",\"nome\":\"Dani\",\"amigos\":[\"caio\"]}"),
+                StandardCharsets.UTF_8);
+
+        Facade facade = new Facade(diretorio);
+        ResultadoImportacao resultado = facade.importarRede(arquivo.getPath());
+        assertEquals(4, resultado.getUsuarios());
+        assertEquals(2, resultado.getAmigos());
+        assertEquals(0, resultado.getConvites());
+        assertEquals(2, resultado.getQuantidadeFalhas(), resultado.toString());
+        assertEquals("1 (bia): Amizade não aparece no outro usuário.", resultado.getFalhas().get(0).toString());
+        assertEquals("3 (dani): Usuário já está adicionado como amigo.", resultado.getFalhas().get(1).toString());
+
+        assertFalse(facade.ehAmigo("ana", "bia"));
+        assertFalse(facade.ehAmigo("bia", "ana"));
+        assertEquals("{}", facade.getAmigos("ana"));
+        assertTrue(facade.ehAmigo("caio", "dani"));
+        assertTrue(facade.ehAmigo("dani", "caio"));
+        // A amizade desfeita pode ser feita depois pelo caminho normal
+        facade.adicionarAmigo(facade.abrirSessao("ana", "s"), "bia");
+        facade.adicionarAmigo(facade.abrirSessao("bia", "s"), "ana");
+        assertTrue(facade.ehAmigo("bia", "ana"));
+        facade.encerrarSistema();
+    }
+
+    private static void verificarImportada(Facade facade) {
+        assertEquals("Bia, \"a\" segunda", facade.getAtributoUsuario("bia", "nome"));
+        assertEquals("Maceió\ncentro", facade.getAtributoUsuario("ana", "cidade"));
+        assertTrue(facade.ehAmigo("ana", "bia"));
+        assertFalse(facade.ehAmigo("ana", "caio"));
+
+        String caio = facade.abrirSessao("caio", "senha-caio");
+        assertEquals("oi, caio", facade.espiarRecado(caio).getValor());
+    }
+}
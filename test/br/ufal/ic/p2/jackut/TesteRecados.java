@@ -0,0 +1,98 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.entities.Resultado;
+import br.ufal.ic.p2.jackut.exceptions.MessageException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Leitura dos recados em lote, contador de não lidos, consulta sem retirar e espera por recados.
+ */
+class TesteRecados {
+
+    @TempDir
+    File diretorio;
+
+    private Facade facade;
+    private String ana;
+    private String bia;
+
+    @BeforeEach
+    void criarUsuarios() {
+        facade = new Facade(diretorio);
+        facade.criarUsuario("ana", "senha", "Ana");
+        facade.criarUsuario("bia", "senha", "Bia");
+        ana = facade.abrirSessao("ana", "senha");
+        bia = facade.abrirSessao("bia", "senha");
+    }
+
+    @AfterEach
+    void encerrar() {
+        facade.encerrarSistema();
+    }
+
+    @Test
+    void lerRecadosEmLoteNaOrdemDeChegada() {
+        for (int i = 0; i < 5; i++) {
+            facade.enviarRecado(ana, "bia", "recado " + i);
+        }
+
+        assertEquals(5, facade.contarRecados(bia));
+        assertEquals("recado 0", facade.espiarRecado(bia).getValor());
+        assertEquals(5, facade.contarRecados(bia));
+
+        assertEquals(List.of("recado 0", "recado 1", "recado 2"), facade.lerRecados(bia, 3));
+        assertEquals(List.of("recado 3", "recado 4"), facade.lerRecados(bia, 10));
+        assertEquals(List.of(), facade.lerRecados(bia, 10));
+        assertEquals(0, facade.contarRecados(bia));
+    }
+
+    @Test
+    void caixaVaziaTemOMesmoErroNasDuasFormas() {
+        Resultado<String> resultado = facade.tryLerRecado(bia);
+        assertFalse(resultado.isSucesso());
+        assertEquals(Resultado.Status.SEM_RECADOS, resultado.getStatus());
+        assertEquals(Resultado.Status.SEM_RECADOS, facade.espiarRecado(bia).getStatus());
+
+        MessageException erro = assertThrows(MessageException.class, () -> facade.lerRecado(bia));
+        assertEquals("Não há recados.", erro.getMessage());
+        assertEquals(resultado.getMensagem(), erro.getMessage());
+    }
+
+    @Test
+    void recadosLidosEmLoteNaoVoltamDepoisDaQueda() {
+        for (int i = 0; i < 3; i++) {
+            facade.enviarRecado(ana, "bia", "recado " + i);
+        }
+        facade.lerRecados(bia, 2);
+
+        Facade recuperada = new Facade(diretorio);
+        String sessao = recuperada.abrirSessao("bia", "senha");
+        assertEquals(List.of("recado 2"), recuperada.lerRecados(sessao, 10));
+        recuperada.encerrarSistema();
+    }
+
+    @Test
+    void aguardarRecadosAcordaComAEntrega() throws Exception {
+        CompletableFuture<List<String>> espera =
+                CompletableFuture.supplyAsync(() -> facade.aguardarRecados(bia, 10, 30_000));
+        Thread.sleep(100);
+        facade.enviarRecado(ana, "bia", "chegou");
+
+        assertEquals(List.of("chegou"), espera.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void aguardarRecadosTerminaSemRecados() {
+        assertEquals(List.of(), facade.aguardarRecados(bia, 10, 50));
+    }
+}
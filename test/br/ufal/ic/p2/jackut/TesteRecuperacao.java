@@ -0,0 +1,125 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.exceptions.UserNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Recuperação do sistema depois de uma queda: uma {@link Facade} abandonada sem
+ * {@link Facade#encerrarSistema()} simula o processo interrompido, e uma nova {@code Facade} sobre o
+ * mesmo diretório deve reconstruir o estado a partir do snapshot, dos segmentos e do journal.
+ */
+class TesteRecuperacao {
+
+    @TempDir
+    File diretorio;
+
+    @Test
+    void reaplicaJournalSemCheckpoint() {
+        Facade facade = new Facade(diretorio);
+        popular(facade);
+
+        Facade recuperada = new Facade(diretorio);
+        verificarPopulado(recuperada);
+        recuperada.encerrarSistema();
+    }
+
+    @Test
+    void reaplicaJournalSobreCheckpointsIncrementais() {
+        Facade facade = new Facade(diretorio);
+        facade.criarUsuario("ana", "senha", "Ana");
+        // Uma base bem maior que os segmentos, para que eles não sejam compactados durante o teste
+        for (int i = 0; i < 100; i++) {
+            facade.criarUsuario("outro" + i, "senha", "Outro " + i);
+        }
+        facade.saveSistema();
+        String ana = facade.abrirSessao("ana", "senha");
+        facade.editarPerfil(ana, "cidade", "Maceió");
+        facade.saveSistema();
+        facade.criarUsuario("bia", "senha", "Bia");
+        facade.editarPerfil(ana, "cidade", "Recife");
+
+        assertTrue(existeSegmento(), "o segundo checkpoint deveria ser incremental");
+
+        Facade recuperada = new Facade(diretorio);
+        assertEquals("Recife", recuperada.getAtributoUsuario("ana", "cidade"));
+        assertEquals("Bia", recuperada.getAtributoUsuario("bia", "nome"));
+        recuperada.encerrarSistema();
+    }
+
+    @Test
+    void descartaRegistroIncompletoNoFimDoJournal() throws IOException {
+        Facade facade = new Facade(diretorio);
+        popular(facade);
+        try (OutputStream saida = new FileOutputStream(new File(diretorio, "sistema.journal"), true)) {
+            // O início de um registro cuja escrita foi interrompida
+            saida.write(new byte[]{0, 0, 0, 40, 0, 0, 0});
+        }
+
+        Facade recuperada = new Facade(diretorio);
+        verificarPopulado(recuperada);
+        recuperada.criarUsuario("caio", "senha", "Caio");
+
+        Facade novamente = new Facade(diretorio);
+        verificarPopulado(novamente);
+        assertEquals("Caio", novamente.getAtributoUsuario("caio", "nome"));
+        novamente.encerrarSistema();
+    }
+
+    @Test
+    void zerarSistemaTambemEhReaplicado() {
+        Facade facade = new Facade(diretorio);
+        popular(facade);
+        facade.saveSistema();
+        facade.zerarSistema();
+
+        Facade recuperada = new Facade(diretorio);
+        assertThrows(UserNotFoundException.class, () -> recuperada.getAtributoUsuario("ana", "nome"));
+        recuperada.encerrarSistema();
+    }
+
+    @Test
+    void encerrarSistemaPreservaOEstado() {
+        Facade facade = new Facade(diretorio);
+        popular(facade);
+        facade.encerrarSistema();
+
+        Facade reaberta = new Facade(diretorio);
+        verificarPopulado(reaberta);
+        reaberta.encerrarSistema();
+    }
+
+    private static void popular(Facade facade) {
+        facade.criarUsuario("ana", "senha", "Ana");
+        facade.criarUsuario("bia", "senha", "Bia");
+        String ana = facade.abrirSessao("ana", "senha");
+        String bia = facade.abrirSessao("bia", "senha");
+        facade.editarPerfil(ana, "cidade", "Maceió");
+        facade.adicionarAmigo(ana, "bia");
+        facade.adicionarAmigo(bia, "ana");
+        facade.enviarRecado(ana, "bia", "primeiro");
+        facade.enviarRecado(ana, "bia", "segundo");
+        assertEquals("primeiro", facade.lerRecado(bia));
+    }
+
+    private static void verificarPopulado(Facade facade) {
+        assertEquals("Maceió", facade.getAtributoUsuario("ana", "cidade"));
+        assertTrue(facade.ehAmigo("ana", "bia"));
+        assertTrue(facade.ehAmigo("bia", "ana"));
+        String bia = facade.abrirSessao("bia", "senha");
+        assertEquals(1, facade.contarRecados(bia));
+        assertEquals("segundo", facade.espiarRecado(bia).getValor());
+    }
+
+    private boolean existeSegmento() {
+        File[] segmentos = diretorio.listFiles((pasta, nome) -> nome.endsWith(".seg"));
+        return segmentos != null && segmentos.length > 0;
+    }
+}
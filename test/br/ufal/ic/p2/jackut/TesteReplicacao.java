@@ -0,0 +1,87 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.exceptions.ReadOnlyReplicaException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uma réplica somente leitura acompanhando o journal publicado pelo primário.
+ */
+class TesteReplicacao {
+    private static final long ESPERA_MILLIS = 10_000;
+
+    @TempDir
+    File diretorio;
+
+    private Facade primario;
+    private Facade replica;
+
+    @BeforeEach
+    void publicar() {
+        primario = new Facade(diretorio);
+        primario.criarUsuario("ana", "senha", "Ana");
+        int porta = primario.publicarReplicacao(0);
+        replica = Facade.replica(new InetSocketAddress("localhost", porta));
+    }
+
+    @AfterEach
+    void encerrar() {
+        replica.encerrarSistema();
+        primario.encerrarSistema();
+    }
+
+    @Test
+    void replicaRecebeOEstadoInicialEAsAlteracoes() {
+        aguardarReplica();
+        assertEquals("Ana", replica.getAtributoUsuario("ana", "nome"));
+
+        primario.criarUsuario("bia", "senha", "Bia");
+        String ana = primario.abrirSessao("ana", "senha");
+        String bia = primario.abrirSessao("bia", "senha");
+        primario.editarPerfil(ana, "cidade", "Maceió");
+        primario.adicionarAmigo(ana, "bia");
+        primario.adicionarAmigo(bia, "ana");
+        aguardarReplica();
+
+        assertEquals("Maceió", replica.getAtributoUsuario("ana", "cidade"));
+        assertTrue(replica.ehAmigo("bia", "ana"));
+        assertEquals("{ana}", replica.getAmigos("bia"));
+        assertEquals(0, replica.getAtrasoReplicacaoRegistros());
+    }
+
+    @Test
+    void replicaRecebeSnapshotDepoisDoCheckpoint() {
+        primario.criarUsuario("bia", "senha", "Bia");
+        primario.saveSistema();
+        primario.criarUsuario("caio", "senha", "Caio");
+        aguardarReplica();
+
+        assertEquals("Bia", replica.getAtributoUsuario("bia", "nome"));
+        assertEquals("Caio", replica.getAtributoUsuario("caio", "nome"));
+    }
+
+    @Test
+    void replicaRecusaAlteracoes() {
+        aguardarReplica();
+        assertThrows(ReadOnlyReplicaException.class, () -> replica.criarUsuario("bia", "senha", "Bia"));
+        assertThrows(ReadOnlyReplicaException.class, () -> replica.publicarReplicacao(0));
+    }
+
+    /**
+     * Espera a réplica aplicar tudo o que o primário já confirmou.
+     */
+    private void aguardarReplica() {
+        long lsn = primario.getUltimoLsn();
+        long limite = System.currentTimeMillis() + ESPERA_MILLIS;
+        while (replica.aguardarLsn(lsn) < lsn) {
+            assertTrue(System.currentTimeMillis() < limite, "a réplica não alcançou o LSN " + lsn);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package br.ufal.ic.p2.jackut.atores;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.exceptions.UserNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A API assíncrona sobre os atores dos usuários: mesmos resultados e exceções da {@link Facade}, ordem
+ * das operações de cada usuário e operações entre usuários sem impasse.
+ */
+class TesteFacadeAssincrona {
+    private static final long ESPERA_SEGUNDOS = 30;
+
+    @TempDir
+    File diretorio;
+
+    private Facade facade;
+    private FacadeAssincrona assincrona;
+
+    @BeforeEach
+    void criar() {
+        facade = new Facade(diretorio);
+        assincrona = new FacadeAssincrona(facade);
+    }
+
+    @AfterEach
+    void encerrar() throws Exception {
+        assincrona.encerrarSistema().get(ESPERA_SEGUNDOS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void executaAsOperacoesDaFacade() throws Exception {
+        esperar(assincrona.criarUsuario("ana", "senha", "Ana"));
+        esperar(assincrona.criarUsuario("bia", "senha", "Bia"));
+        String ana = esperar(assincrona.abrirSessao("ana", "senha"));
+        String bia = esperar(assincrona.abrirSessao("bia", "senha"));
+
+        esperar(assincrona.editarPerfil(ana, "cidade", "Maceió"));
+        assertEquals("Maceió", esperar(assincrona.getAtributoUsuario("ana", "cidade")));
+
+        esperar(assincrona.adicionarAmigo(ana, "bia"));
+        esperar(assincrona.adicionarAmigo(bia, "ana"));
+        assertTrue(esperar(assincrona.ehAmigo("ana", "bia")));
+        assertEquals("{bia}", esperar(assincrona.getAmigos("ana")));
+
+        esperar(assincrona.enviarRecado(ana, "bia", "oi"));
+        assertEquals("oi", esperar(assincrona.lerRecado(bia)));
+    }
+
+    @Test
+    void falhaComAExcecaoDaFacade() {
+        ExecutionException erro = assertThrows(ExecutionException.class,
+                () -> esperar(assincrona.getAtributoUsuario("ninguem", "nome")));
+        assertInstanceOf(UserNotFoundException.class, erro.getCause());
+
+        erro = assertThrows(ExecutionException.class, () -> esperar(assincrona.lerRecado("sessao-invalida")));
+        assertInstanceOf(UserNotFoundException.class, erro.getCause());
+    }
+
+    @Test
+    void mantemAOrdemDosRecadosDeUmRemetente() throws Exception {
+        facade.criarUsuario("ana", "senha", "Ana");
+        facade.criarUsuario("bia", "senha", "Bia");
+        String ana = facade.abrirSessao("ana", "senha");
+        String bia = facade.abrirSessao("bia", "senha");
+
+        List<CompletableFuture<Void>> envios = new ArrayList<>();
+        List<String> enviados = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            enviados.add("recado " + i);
+            envios.add(assincrona.enviarRecado(ana, "bia", "recado " + i));
+        }
+        esperar(CompletableFuture.allOf(envios.toArray(new CompletableFuture[0])));
+
+        assertEquals(enviados, esperar(assincrona.lerRecados(bia, 1000)));
+    }
+
+    @Test
+    void amizadesCruzadasTerminamSemImpasse() throws Exception {
+        int usuarios = 12;
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            facade.criarUsuario("u" + i, "senha", "U" + i);
+            sessoes[i] = facade.abrirSessao("u" + i, "senha");
+        }
+
+        List<CompletableFuture<Void>> convites = new ArrayList<>();
+        for (int i = 0; i < usuarios; i++) {
+            for (int j = 0; j < usuarios; j++) {
+                if (i != j) {
+                    convites.add(assincrona.adicionarAmigo(sessoes[i], "u" + j)
+                            .exceptionally(erro -> null));
+                }
+            }
+        }
+        esperar(CompletableFuture.allOf(convites.toArray(new CompletableFuture[0])));
+
+        for (int i = 0; i < usuarios; i++) {
+            for (int j = 0; j < usuarios; j++) {
+                if (i != j) {
+                    assertTrue(facade.ehAmigo("u" + i, "u" + j), "u" + i + " e u" + j);
+                }
+            }
+        }
+    }
+
+    private static <T> T esperar(CompletableFuture<T> futuro) throws Exception {
+        return futuro.get(ESPERA_SEGUNDOS, TimeUnit.SECONDS);
+    }
+}
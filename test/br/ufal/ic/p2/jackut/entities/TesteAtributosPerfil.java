@@ -0,0 +1,51 @@
+package br.ufal.ic.p2.jackut.entities;
+
+import br.ufal.ic.p2.jackut.exceptions.ProfileAttributeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Os atributos de perfil compactos mantêm o comportamento do antigo {@code HashMap}.
+ */
+class TesteAtributosPerfil {
+
+    @Test
+    void nomeNuloNaoEstaPreenchido() {
+        Usuario usuario = new Usuario(1, "ana", "senha", "Ana");
+        ProfileAttributeException erro = assertThrows(ProfileAttributeException.class,
+                () -> usuario.getAtributo(null));
+        assertEquals("Atributo não preenchido.", erro.getMessage());
+    }
+
+    @Test
+    void nomeNuloPodeSerDefinido() {
+        AtributosPerfil atributos = new AtributosPerfil();
+        atributos.definir(null, "valor");
+        atributos.definir("cidade", "Maceió");
+        assertTrue(atributos.contem(null));
+        assertEquals("valor", atributos.obter(null));
+        assertEquals(2, atributos.tamanho());
+
+        AtributosPerfil copia = atributos.copiar();
+        atributos.definir(null, "outro");
+        assertEquals("valor", copia.obter(null));
+    }
+
+    @Test
+    void valoresNulosSaoDistintosDeAusentes() {
+        AtributosPerfil atributos = new AtributosPerfil();
+        atributos.definir("cidade", "Maceió");
+        atributos.definir("cidade", null);
+        assertTrue(atributos.contem("cidade"));
+        assertNull(atributos.obter("cidade"));
+
+        Map<String, String> vistos = new LinkedHashMap<>();
+        atributos.paraCada(vistos::put);
+        assertEquals(1, vistos.size());
+        assertTrue(vistos.containsKey("cidade"));
+    }
+}
@@ -0,0 +1,72 @@
+package br.ufal.ic.p2.jackut.indice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Consultas do {@link IndicePerfis} concorrentes com alterações dos atributos que elas leem.
+ */
+class TesteIndicePerfis {
+
+    private final IndicePerfis indice = new IndicePerfis();
+
+    @Test
+    void atributoCriadoDuranteAConsultaContaComoVazio() {
+        int total = indice.consultar(new Alterando("cidade", () -> indice.adicionar("cidade", "Maceio", 1)),
+                ListaIds::tamanho);
+
+        assertEquals(0, total);
+        assertEquals(1, indice.consultar(Consulta.igual("cidade", "Maceio"), ListaIds::tamanho));
+    }
+
+    @Test
+    void alteracaoDeAtributoTravadoEsperaAConsulta() throws Exception {
+        indice.adicionar("cidade", "Maceio", 1);
+        AtomicReference<CompletableFuture<Void>> alteracao = new AtomicReference<>();
+        int total = indice.consultar(new Alterando("cidade", () -> {
+            alteracao.set(CompletableFuture.runAsync(() -> indice.adicionar("cidade", "Maceio", 2)));
+            assertThrows(TimeoutException.class, () -> alteracao.get().get(200, TimeUnit.MILLISECONDS));
+        }), ListaIds::tamanho);
+
+        assertEquals(1, total);
+        alteracao.get().get(10, TimeUnit.SECONDS);
+        assertEquals(2, indice.consultar(Consulta.igual("cidade", "Maceio"), ListaIds::tamanho));
+    }
+
+    /**
+     * Termo {@code atributo=Maceio} que, ao ser avaliado, executa antes uma alteração do índice e
+     * espera que ela termine ou fique bloqueada.
+     */
+    private static class Alterando extends Consulta {
+        private final String atributo;
+        private final Runnable alteracao;
+
+        Alterando(String atributo, Runnable alteracao) {
+            this.atributo = atributo;
+            this.alteracao = alteracao;
+        }
+
+        @Override
+        ListaIds avaliar(IndicePerfis.Travados indice) {
+            alteracao.run();
+            return indice.lista(atributo, "Maceio");
+        }
+
+        @Override
+        int estimar(IndicePerfis.Travados indice) {
+            return indice.lista(atributo, "Maceio").tamanho();
+        }
+
+        @Override
+        void coletarAtributos(Set<String> atributos) {
+            atributos.add(atributo);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package br.ufal.ic.p2.jackut.particoes;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.entities.Recomendacao;
+import br.ufal.ic.p2.jackut.exceptions.JackutException;
+import br.ufal.ic.p2.jackut.exceptions.UserNotFoundException;
+import br.ufal.ic.p2.jackut.servidor.ServidorJackut;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Amizades entre usuários de partições diferentes, por um {@link RoteadorJackut} sobre duas
+ * partições no mesmo processo.
+ */
+class TesteRoteador {
+
+    @TempDir
+    File diretorio;
+
+    private final Facade[] facades = new Facade[2];
+    private final ServidorJackut[] servidores = new ServidorJackut[2];
+    private RoteadorJackut roteador;
+
+    @BeforeEach
+    void iniciar() throws IOException {
+        List<InetSocketAddress> enderecos = new ArrayList<>();
+        for (int i = 0; i < facades.length; i++) {
+            File particao = new File(diretorio, "particao" + i);
+            assertTrue(particao.mkdir());
+            facades[i] = new Facade(particao);
+            servidores[i] = new ServidorJackut(facades[i], 0, true);
+            enderecos.add(new InetSocketAddress("localhost", servidores[i].getPorta()));
+        }
+        roteador = new RoteadorJackut(enderecos);
+    }
+
+    @AfterEach
+    void encerrar() {
+        roteador.close();
+        for (int i = 0; i < facades.length; i++) {
+            servidores[i].close();
+            facades[i].encerrarSistema();
+        }
+    }
+
+    @Test
+    void oOutroUsuarioCompletaUmaAmizadeConfirmadaEmParte() {
+        String outro = loginEm(1 - roteador.particao("ana"));
+        roteador.criarUsuario("ana", "senha", "Ana");
+        roteador.criarUsuario(outro, "senha", "Outro");
+        String sessaoAna = roteador.abrirSessao("ana", "senha");
+        roteador.adicionarAmigo(sessaoAna, outro);
+
+        // O outro aceitou, mas o roteador caiu antes de confirmar na partição dele
+        facades[roteador.particao("ana")].confirmarAmizadeRemota("ana", outro);
+        assertTrue(roteador.ehAmigo("ana", outro));
+        assertFalse(roteador.ehAmigo(outro, "ana"));
+
+        JackutException erro = assertThrows(JackutException.class, () -> roteador.adicionarAmigo(sessaoAna, outro));
+        assertEquals("Usuário já está adicionado como amigo.", erro.getMessage());
+        assertTrue(roteador.ehAmigo(outro, "ana"));
+        assertEquals("{ana}", roteador.getAmigos(outro));
+
+        String sessaoOutro = roteador.abrirSessao(outro, "senha");
+        erro = assertThrows(JackutException.class, () -> roteador.adicionarAmigo(sessaoOutro, "ana"));
+        assertEquals("Usuário já está adicionado como amigo.", erro.getMessage());
+    }
+
+    @Test
+    void referenciasRemotasSoAparecemComoCandidatas() {
+        int particao = roteador.particao("ana");
+        String outro = loginEm(1 - particao);
+        String vizinho = loginEm(particao);
+        roteador.criarUsuario("ana", "senha", "Ana");
+        roteador.criarUsuario(vizinho, "senha", "Vizinho");
+        roteador.criarUsuario(outro, "senha", "Outro");
+        String sessaoAna = roteador.abrirSessao("ana", "senha");
+        roteador.adicionarAmigo(sessaoAna, vizinho);
+        roteador.adicionarAmigo(roteador.abrirSessao(vizinho, "senha"), "ana");
+        roteador.adicionarAmigo(roteador.abrirSessao(outro, "senha"), "ana");
+        roteador.adicionarAmigo(sessaoAna, outro);
+
+        Facade facade = facades[particao];
+        assertThrows(UserNotFoundException.class, () -> facade.getAtributoUsuario(outro, "nome"));
+        assertThrows(UserNotFoundException.class, () -> facade.recomendarAmigos(outro, 5));
+        assertThrows(UserNotFoundException.class, () -> facade.contarAmigosEmComum("ana", outro));
+        assertEquals(List.of(vizinho), facade.buscarUsuarios("nome=Vizinho", null, 10).getUsuarios());
+        assertEquals(0, facade.buscarUsuarios("nome=Outro", null, 10).getTotal());
+
+        List<Recomendacao> recomendacoes = facade.recomendarAmigos(vizinho, 5);
+        assertEquals(1, recomendacoes.size());
+        assertEquals(outro, recomendacoes.get(0).getLogin());
+        assertEquals(1, recomendacoes.get(0).getAmigosEmComum());
+    }
+
+    private String loginEm(int particao) {
+        for (int i = 0; ; i++) {
+            String login = "usuario" + i;
+            if (roteador.particao(login) == particao) {
+                return login;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import br.ufal.ic.p2.jackut.exceptions.SystemSaveException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gravação, reprodução e falhas do {@link Journal}.
+ */
+class TesteJournal {
+
+    @TempDir
+    File diretorio;
+
+    @Test
+    void reproduzApenasOsRegistrosPosterioresAoCheckpoint() {
+        File arquivo = new File(diretorio, "sistema.journal");
+        Journal journal = Journal.abrir(arquivo, 0, registro -> fail("journal novo"));
+        journal.anexar(TipoRegistro.CRIAR_USUARIO, "ana", "senha", "Ana");
+        journal.anexar(TipoRegistro.EDITAR_PERFIL, "ana", "cidade", null);
+        journal.anexar(TipoRegistro.CRIAR_USUARIO, "bia", "senha", "Bia");
+        journal.commit();
+        assertEquals(3, journal.getUltimoDuravel());
+        journal.close();
+
+        List<RegistroJournal> reproduzidos = new ArrayList<>();
+        Journal reaberto = Journal.abrir(arquivo, 1, reproduzidos::add);
+        assertEquals(2, reproduzidos.size());
+        assertEquals(2, reproduzidos.get(0).getLsn());
+        assertNull(reproduzidos.get(0).getArgumento(2));
+        assertEquals("bia", reproduzidos.get(1).getArgumento(0));
+        assertEquals(4, reaberto.anexar(TipoRegistro.CRIAR_USUARIO, "caio", "senha", "Caio"));
+        reaberto.close();
+    }
+
+    @Test
+    void falhaDeGravacaoInutilizaOJournal() {
+        File arquivo = new File(diretorio, "sistema.journal");
+        Journal journal = Journal.abrir(arquivo, 0, registro -> { });
+        journal.anexar(TipoRegistro.CRIAR_USUARIO, "ana", "senha", "Ana");
+        journal.close();
+
+        // O canal fechado faz a gravação do próximo lote falhar
+        journal.anexar(TipoRegistro.CRIAR_USUARIO, "bia", "senha", "Bia");
+        assertThrows(SystemSaveException.class, journal::commit);
+
+        assertEquals(1, journal.getUltimoDuravel());
+        assertThrows(SystemSaveException.class, journal::commit);
+        assertThrows(SystemSaveException.class, () -> journal.anexar(TipoRegistro.CRIAR_USUARIO, "caio", "senha", "Caio"));
+        assertThrows(SystemSaveException.class, () -> journal.truncarAte(1));
+        assertEquals(1, journal.getUltimoDuravel());
+
+        List<RegistroJournal> reproduzidos = new ArrayList<>();
+        Journal.abrir(arquivo, 0, reproduzidos::add).close();
+        assertEquals(1, reproduzidos.size());
+    }
+}
@@ -0,0 +1,71 @@
+package br.ufal.ic.p2.jackut.recados;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A caixa de recados com blocos derramados em disco e as suas cópias.
+ */
+class TesteCaixaRecados {
+    private static final int RECADOS = 5_000;
+
+    @Test
+    void mantemAOrdemComBlocosEmDisco() {
+        CaixaRecados caixa = preencher("recado ");
+        assertEquals(RECADOS, caixa.tamanho());
+        assertEquals(esperados("recado "), retirarTodos(caixa));
+        assertTrue(caixa.isEmpty());
+    }
+
+    @Test
+    void copiaCompartilhaOsBlocosSemPerdeLos() {
+        CaixaRecados original = preencher("recado ");
+        original.poll();
+        CaixaRecados copia = original.copiar();
+        original.adicionar("só no original");
+        copia.adicionar("só na cópia");
+
+        // O original lê e libera os blocos, e outra caixa reaproveita o espaço dos segmentos
+        retirarTodos(original);
+        CaixaRecados outra = preencher("outro ");
+
+        List<String> esperados = esperados("recado ").subList(1, RECADOS);
+        List<String> lidos = retirarTodos(copia);
+        assertEquals(RECADOS, lidos.size());
+        assertEquals(esperados, lidos.subList(0, RECADOS - 1));
+        assertEquals("só na cópia", lidos.get(RECADOS - 1));
+        assertEquals(esperados("outro "), retirarTodos(outra));
+    }
+
+    @Test
+    void copiaLiberadaNaoAfetaOOriginal() {
+        CaixaRecados original = preencher("recado ");
+        original.copiar().liberar();
+        preencher("outro ");
+        assertEquals(esperados("recado "), retirarTodos(original));
+    }
+
+    private static CaixaRecados preencher(String prefixo) {
+        CaixaRecados caixa = new CaixaRecados();
+        esperados(prefixo).forEach(caixa::adicionar);
+        return caixa;
+    }
+
+    private static List<String> esperados(String prefixo) {
+        List<String> recados = new ArrayList<>(RECADOS);
+        for (int i = 0; i < RECADOS; i++) {
+            recados.add(prefixo + i);
+        }
+        return recados;
+    }
+
+    private static List<String> retirarTodos(CaixaRecados caixa) {
+        List<String> recados = new ArrayList<>();
+        caixa.poll(Integer.MAX_VALUE, recados::add);
+        return recados;
+    }
+}
@@ -0,0 +1,161 @@
+package br.ufal.ic.p2.jackut.servidor;
+
+import br.ufal.ic.p2.jackut.Facade;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * O protocolo de linhas do {@link ServidorJackut}, falado diretamente por um socket.
+ */
+class TesteProtocolo {
+
+    @TempDir
+    File diretorio;
+
+    private Facade facade;
+    private ServidorJackut servidor;
+    private Socket socket;
+    private BufferedReader entrada;
+    private Writer saida;
+
+    @BeforeEach
+    void iniciar() throws IOException {
+        facade = new Facade(diretorio);
+        conectar(new ServidorJackut(facade, 0));
+    }
+
+    private void conectar(ServidorJackut novo) throws IOException {
+        servidor = novo;
+        socket = new Socket();
+        socket.connect(new InetSocketAddress("localhost", servidor.getPorta()), 5_000);
+        socket.setSoTimeout(10_000);
+        entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        saida = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void encerrar() throws IOException {
+        socket.close();
+        servidor.close();
+        facade.encerrarSistema();
+    }
+
+    @Test
+    void executaComandosComVariaveisDaConexao() throws IOException {
+        assertEquals("OK", enviar("criarUsuario login=ana senha=senha nome=\"Ana Lima\""));
+        assertTrue(enviar("id=abrirSessao login=ana senha=senha").startsWith("OK "));
+        assertEquals("OK", enviar("editarPerfil id=${id} atributo=cidade valor=Maceió"));
+        assertEquals("OK Maceió", enviar("getAtributoUsuario login=ana atributo=cidade"));
+        assertEquals("ERRO Usuário não cadastrado.", enviar("getAtributoUsuario login=bia atributo=nome"));
+    }
+
+    @Test
+    void recusaImportacaoEExportacaoDeArquivos() throws IOException {
+        File exportado = new File(diretorio, "rede.jsonl");
+        assertEquals("ERRO Comando não permitido pela rede: exportarRede",
+                enviar("exportarRede arquivo=\"" + exportado.getPath() + "\""));
+        assertFalse(exportado.exists());
+
+        assertEquals("ERRO Comando não permitido pela rede: importarRede",
+                enviar("importarRede arquivo=\"" + exportado.getPath() + "\""));
+        assertEquals("ERRO Comando não permitido pela rede: importarRede",
+                enviar("x=importarRede arquivo=/etc/passwd"));
+    }
+
+    @Test
+    void recusaOperacoesSobreOSistemaInteiro() throws IOException {
+        assertEquals("ERRO Comando não permitido pela rede: encerrarSistema", enviar("encerrarSistema"));
+        assertEquals("ERRO Comando não permitido pela rede: readSistema", enviar("readSistema"));
+        assertEquals("ERRO Comando não permitido pela rede: publicarReplicacao", enviar("publicarReplicacao porta=0"));
+        // A conexão continua utilizável depois das recusas
+        assertEquals("OK", enviar("criarUsuario login=ana senha=senha nome=Ana"));
+    }
+
+    @Test
+    void recusaOperacoesInternasPorPadrao() throws IOException {
+        assertEquals("OK", enviar("criarUsuario login=ana senha=senha nome=Ana"));
+        assertEquals("ERRO Comando não permitido pela rede: zerarSistema", enviar("zerarSistema"));
+        assertEquals("ERRO Comando não permitido pela rede: saveSistema", enviar("saveSistema"));
+        assertEquals("ERRO Comando não permitido pela rede: receberRecado",
+                enviar("receberRecado remetente=x destinatario=ana recado=oi"));
+        assertEquals("ERRO Comando não permitido pela rede: getClass", enviar("getClass"));
+        assertEquals("OK Ana", enviar("getAtributoUsuario login=ana atributo=nome"));
+    }
+
+    @Test
+    void servidorInternoAceitaAsOperacoesDasParticoes() throws IOException {
+        socket.close();
+        servidor.close();
+        conectar(new ServidorJackut(facade, 0, true));
+
+        assertEquals("OK", enviar("criarUsuario login=ana senha=senha nome=Ana"));
+        assertEquals("OK", enviar("receberRecado remetente=bia destinatario=ana recado=oi"));
+        assertEquals("OK", enviar("saveSistema"));
+        assertEquals("OK", enviar("zerarSistema"));
+        assertEquals("ERRO Usuário não cadastrado.", enviar("getAtributoUsuario login=ana atributo=nome"));
+        assertEquals("ERRO Comando não permitido pela rede: exportarRede", enviar("exportarRede arquivo=rede.jsonl"));
+    }
+
+    @Test
+    void aguardarRecadosRespondeNaOrdemQuandoORecadoChega() throws IOException {
+        assertEquals("OK", enviar("criarUsuario login=ana senha=senha nome=Ana"));
+        assertEquals("OK", enviar("criarUsuario login=bia senha=senha nome=Bia"));
+        assertTrue(enviar("bia=abrirSessao login=bia senha=senha").startsWith("OK "));
+        saida.write("recados=aguardarRecados id=${bia} maximo=10 espera=30000\n");
+        saida.write("contarRecados id=${bia}\n");
+        saida.flush();
+
+        facade.enviarRecado(facade.abrirSessao("ana", "senha"), "bia", "oi");
+        assertEquals("OK [oi]", entrada.readLine());
+        assertEquals("OK 0", entrada.readLine());
+        assertEquals("OK []", enviar("expect [] aguardarRecados id=${bia} maximo=10 espera=50"));
+        assertEquals("ERRO Usuário não cadastrado.", enviar("aguardarRecados id=invalida maximo=10 espera=50"));
+    }
+
+    @Test
+    void leitoresOciososNaoOcupamOsTrabalhadores() throws IOException {
+        assertEquals("OK", enviar("criarUsuario login=ana senha=senha nome=Ana"));
+        List<Socket> leitores = new ArrayList<>();
+        try {
+            // Mais leitores esperando do que trabalhadores no servidor
+            for (int i = 0; i < 2 * Runtime.getRuntime().availableProcessors() + 8; i++) {
+                Socket leitor = abrir();
+                leitores.add(leitor);
+                Writer escrita = new OutputStreamWriter(leitor.getOutputStream(), StandardCharsets.UTF_8);
+                escrita.write("id=abrirSessao login=ana senha=senha\n");
+                escrita.write("aguardarRecados id=${id} maximo=1 espera=60000\n");
+                escrita.flush();
+            }
+            assertEquals("OK", enviar("criarUsuario login=bia senha=senha nome=Bia"));
+            assertEquals("OK Bia", enviar("getAtributoUsuario login=bia atributo=nome"));
+        } finally {
+            for (Socket leitor : leitores) {
+                leitor.close();
+            }
+        }
+    }
+
+    private Socket abrir() throws IOException {
+        Socket novo = new Socket();
+        novo.connect(new InetSocketAddress("localhost", servidor.getPorta()), 5_000);
+        novo.setSoTimeout(10_000);
+        return novo;
+    }
+
+    private String enviar(String linha) throws IOException {
+        saida.write(linha + "\n");
+        saida.flush();
+        return entrada.readLine();
+    }
+}